@@ -0,0 +1,248 @@
+package com.sphererelaxator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sphererelaxator.generator.FullSphereCsvGenerator;
+import com.sphererelaxator.io.MeshDocument;
+import com.sphererelaxator.mesh.Mesh;
+import com.sphererelaxator.mesh.MeshBuilder;
+import com.sphererelaxator.mesh.VertexWelder;
+import com.sphererelaxator.solver.RelaxationConfig;
+import com.sphererelaxator.solver.SphereRelaxator;
+import com.sphererelaxator.unreal.TopologyCache;
+import com.sphererelaxator.unreal.UnrealFormatProcessor;
+import com.sphererelaxator.unreal.UnrealTileCsvExporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Allocation regression guard ({@code --mode allocguard}): runs the hot paths on a generated
+ * Goldberg mesh after a warm-up run and compares the bytes they allocate per unit of work with the
+ * budgets in a properties file ({@code <path>=<bytes per unit>}). Allocation is read from the
+ * per-thread counters of {@link com.sun.management.ThreadMXBean}, sampled while a path runs so
+ * that short-lived pool threads are counted too; allocation in the last sampling interval of a
+ * thread that ends is missed.
+ */
+final class AllocationGuard {
+    private static final long SAMPLE_INTERVAL_MS = 1;
+    private static final double UNREAL_RADIUS = 450.0;
+
+    private AllocationGuard() {
+    }
+
+    record Measurement(String path, String unit, long units, long bytes, double budget) {
+        double bytesPerUnit() {
+            return units == 0 ? 0.0 : (double) bytes / units;
+        }
+
+        boolean withinBudget() {
+            return Double.isNaN(budget) || bytesPerUnit() <= budget;
+        }
+    }
+
+    static Map<String, Double> readBudgets(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, Double> budgets = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            budgets.put(name, Double.parseDouble(properties.getProperty(name).trim()));
+        }
+        return budgets;
+    }
+
+    /**
+     * Measures {@code relax} (bytes per vertex-iteration, from the difference of an
+     * {@code iterations} and a {@code 2 * iterations} run so per-call setup cancels out),
+     * {@code fromDocument} (per input vertex), {@code process} (per output vertex record of an
+     * Unreal-like item) and {@code exportRaw} (per input vertex). A path without a budget is
+     * reported but never fails. Files written on the way go to a fresh temporary directory that is
+     * removed afterwards.
+     */
+    static List<Measurement> measure(int subdivisions,
+                                     int iterations,
+                                     int threads,
+                                     Map<String, Double> budgets) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        RelaxationConfig config = new RelaxationConfig(iterations, 1.0, 0.28, 0.42, 0.45, 0.35, threads, 0, 0);
+        FullSphereCsvGenerator.GeneratedData generated;
+        MeshDocument document;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            generated = FullSphereCsvGenerator.generate(subdivisions, 1.0, pool);
+            Mesh welded = new UnrealFormatProcessor(mapper).weldedMesh(generated.positions(), generated.triangles(), pool);
+            document = MeshBuilder.toDocument(welded, 1.0);
+        } finally {
+            pool.shutdown();
+        }
+        int vertexCount = document.vertices.size();
+        List<Measurement> measurements = new ArrayList<>();
+
+        ForkJoinPool relaxPool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            SphereRelaxator relaxator = new SphereRelaxator();
+            relaxator.relax(MeshBuilder.fromDocument(document), config, relaxPool);
+            Mesh once = MeshBuilder.fromDocument(document);
+            Mesh twice = MeshBuilder.fromDocument(document);
+            RelaxationConfig doubled = new RelaxationConfig(iterations * 2, 1.0, 0.28, 0.42, 0.45, 0.35, threads, 0, 0);
+            long single = allocated(() -> relaxator.relax(once, config, relaxPool));
+            long dual = allocated(() -> relaxator.relax(twice, doubled, relaxPool));
+            measurements.add(measurement("relax", "vertex_iteration", (long) vertexCount * iterations,
+                    Math.max(0L, dual - single), budgets));
+        } finally {
+            relaxPool.shutdown();
+        }
+
+        MeshBuilder.fromDocument(document);
+        measurements.add(measurement("fromDocument", "vertex", vertexCount,
+                allocated(() -> MeshBuilder.fromDocument(document)), budgets));
+
+        Path scratch = Files.createTempDirectory("allocguard");
+        try {
+            RelaxationConfig unrealConfig = new RelaxationConfig(1, UNREAL_RADIUS, 0.28, 0.42, 0.45, 0.35, threads, 0, 0);
+            UnrealFormatProcessor processor = new UnrealFormatProcessor(mapper, VertexWelder.DEFAULT_TOLERANCE, 1,
+                    TopologyCache.inMemory(0));
+            Path json = scratch.resolve("allocguard.json");
+            processor.process(unrealRoot(mapper, generated), json, unrealConfig, true);
+            ArrayNode root = unrealRoot(mapper, generated);
+            measurements.add(measurement("process", "vertex_record", generated.vertexCount(),
+                    allocated(() -> processor.process(root, json, unrealConfig, true)), budgets));
+
+            UnrealTileCsvExporter exporter = new UnrealTileCsvExporter(threads);
+            Path prefix = scratch.resolve("allocguard");
+            exportRaw(exporter, prefix, generated);
+            measurements.add(measurement("exportRaw", "vertex_record", generated.vertexCount(),
+                    allocated(() -> exportRaw(exporter, prefix, generated)), budgets));
+        } finally {
+            try (Stream<Path> files = Files.walk(scratch)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        return measurements;
+    }
+
+    static void writeReport(Path output, List<Measurement> measurements) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("Path,Unit,Units,Bytes,BytesPerUnit,Budget,Status");
+            writer.newLine();
+            for (Measurement m : measurements) {
+                writer.write(String.format(Locale.US, "%s,%s,%d,%d,%.3f,%s,%s",
+                        m.path, m.unit, m.units, m.bytes, m.bytesPerUnit(),
+                        Double.isNaN(m.budget) ? "" : String.format(Locale.US, "%.3f", m.budget),
+                        m.withinBudget() ? "ok" : "over"));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static Measurement measurement(String path, String unit, long units, long bytes, Map<String, Double> budgets) {
+        return new Measurement(path, unit, units, bytes, budgets.getOrDefault(path, Double.NaN));
+    }
+
+    private static void exportRaw(UnrealTileCsvExporter exporter, Path prefix, FullSphereCsvGenerator.GeneratedData data)
+            throws IOException {
+        exporter.exportRaw(prefix, data.positions(), data.triangles(), data.normals(), data.uvs(), data.tangents());
+    }
+
+    /**
+     * One Unreal-like item with the generated positions scaled to {@link #UNREAL_RADIUS}.
+     */
+    private static ArrayNode unrealRoot(ObjectMapper mapper, FullSphereCsvGenerator.GeneratedData data) {
+        ArrayNode vertices = mapper.createArrayNode();
+        double[] p = data.positions();
+        for (int i = 0; i < data.vertexCount(); i++) {
+            vertices.add(String.format(Locale.US, "(X=%.6f,Y=%.6f,Z=%.6f)",
+                    p[i * 3] * UNREAL_RADIUS, p[i * 3 + 1] * UNREAL_RADIUS, p[i * 3 + 2] * UNREAL_RADIUS));
+        }
+        ArrayNode triangles = mapper.createArrayNode();
+        for (int t : data.triangles()) {
+            triangles.add(t);
+        }
+        ObjectNode item = mapper.createObjectNode();
+        item.put("Name", "allocguard");
+        item.set("Vertiches", vertices);
+        item.set("Triangles", triangles);
+        ArrayNode root = mapper.createArrayNode();
+        root.add(item);
+        return root;
+    }
+
+    interface Work {
+        void run() throws IOException;
+    }
+
+    /**
+     * Bytes allocated by all threads while {@code work} runs, excluding the sampler itself.
+     */
+    private static long allocated(Work work) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM does not report per-thread allocation");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        Map<Long, Long> baseline = new HashMap<>();
+        sample(threads, baseline);
+        Map<Long, Long> latest = new HashMap<>(baseline);
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                sample(threads, latest);
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "allocguard-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+        try {
+            work.run();
+        } finally {
+            sampler.interrupt();
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sample(threads, latest);
+        long total = 0;
+        for (Map.Entry<Long, Long> e : latest.entrySet()) {
+            if (e.getKey() != sampler.getId()) {
+                total += e.getValue() - baseline.getOrDefault(e.getKey(), 0L);
+            }
+        }
+        return total;
+    }
+
+    private static void sample(com.sun.management.ThreadMXBean threads, Map<Long, Long> into) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        synchronized (into) {
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    into.put(ids[i], bytes[i]);
+                }
+            }
+        }
+    }
+}
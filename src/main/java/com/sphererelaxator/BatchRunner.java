@@ -0,0 +1,297 @@
+package com.sphererelaxator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a manifest of CLI jobs in one JVM. Jobs start in manifest order, at most
+ * {@code concurrency} at a time, and only while their estimated memory fits the budget next to the
+ * jobs already running (a job always starts when nothing else runs). Each job's console output goes
+ * to its own log file; a failing job is recorded and the batch moves on.
+ */
+final class BatchRunner {
+    private static final Set<String> PATH_ARGS = Set.of("input", "output", "cacheDir", "topologyCacheDir");
+    private static final long MB = 1024L * 1024L;
+
+    private BatchRunner() {
+    }
+
+    interface JobExecutor {
+        void execute(Map<String, String> args) throws Exception;
+    }
+
+    record Job(int index, String id, Map<String, String> args, long estimatedBytes) {
+    }
+
+    record JobResult(Job job, boolean ok, long queuedNs, long wallNs, String error) {
+    }
+
+    /**
+     * Reads a JSON manifest (an array of job objects, or {@code {"jobs": [...]}}) or a CSV manifest
+     * (a header row of argument names, one job per row, empty cells skipped). Job arguments override
+     * {@code defaults}; relative paths are resolved against the manifest's directory. Optional
+     * {@code id} and {@code memoryMb} columns name the job and override its memory estimate.
+     */
+    static List<Job> readManifest(Path manifest, Map<String, String> defaults) throws IOException {
+        List<Map<String, String>> rows = manifest.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")
+                ? readCsvRows(manifest)
+                : readJsonRows(manifest);
+        Path base = manifest.toAbsolutePath().getParent();
+        List<Job> jobs = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, String> row = rows.get(i);
+            Map<String, String> args = new HashMap<>(defaults);
+            for (Map.Entry<String, String> e : row.entrySet()) {
+                String value = e.getValue();
+                if (PATH_ARGS.contains(e.getKey()) && base != null) {
+                    value = base.resolve(value).toString();
+                }
+                args.put(e.getKey(), value);
+            }
+            String id = args.containsKey("id") ? args.remove("id") : String.format(Locale.ROOT, "job_%04d", i + 1);
+            String memoryMb = args.remove("memoryMb");
+            long estimate = memoryMb != null ? Long.parseLong(memoryMb) * MB : estimateBytes(args);
+            jobs.add(new Job(i, id, args, estimate));
+        }
+        return jobs;
+    }
+
+    /**
+     * Rough peak heap of a job: proportional to the input size for input-driven modes and to the
+     * icosphere vertex count for generator modes.
+     */
+    static long estimateBytes(Map<String, String> args) throws IOException {
+        String mode = args.getOrDefault("mode", "relax").toLowerCase(Locale.ROOT);
+        if (args.containsKey("input")) {
+            Path input = Path.of(args.get("input"));
+            return 64L * MB + (Files.exists(input) ? Files.size(input) * 40L : 0L);
+        }
+        int subdivisions = Integer.parseInt(args.getOrDefault("subdivisions",
+                args.getOrDefault("maxSubdivisions", "0")));
+        long vertices = 10L * (1L << (2 * Math.min(subdivisions, 20))) + 2L;
+        long perVertex = switch (mode) {
+            case "icosphere" -> 150L;
+            case "fullcsv", "lod" -> Boolean.parseBoolean(args.getOrDefault("stream", Boolean.toString(subdivisions > 12)))
+                    ? 0L
+                    : 600L;
+            default -> 2_000L;
+        };
+        return 64L * MB + vertices * perVertex;
+    }
+
+    static List<JobResult> run(List<Job> jobs,
+                               int concurrency,
+                               long memoryBudget,
+                               Path logDir,
+                               JobExecutor executor) throws Exception {
+        Files.createDirectories(logDir);
+        ConsoleRouter router = ConsoleRouter.install();
+        Admission admission = new Admission(Math.max(1, concurrency), memoryBudget);
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        long startedAtNs = System.nanoTime();
+        List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+        try {
+            for (Job job : jobs) {
+                admission.acquire(job.estimatedBytes);
+                futures.add(workers.submit(() -> {
+                    try {
+                        return runJob(job, jobs.size(), startedAtNs, logDir, router, executor);
+                    } finally {
+                        admission.release(job.estimatedBytes);
+                    }
+                }));
+            }
+            List<JobResult> results = new ArrayList<>(jobs.size());
+            for (Future<JobResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static JobResult runJob(Job job,
+                                    int jobCount,
+                                    long batchStartedAtNs,
+                                    Path logDir,
+                                    ConsoleRouter router,
+                                    JobExecutor executor) throws IOException {
+        long startedAtNs = System.nanoTime();
+        String error = null;
+        try (OutputStream log = Files.newOutputStream(logDir.resolve(job.id + ".log"))) {
+            OutputStream previous = router.route(log);
+            try {
+                if ("batch".equalsIgnoreCase(job.args.get("mode"))) {
+                    throw new IllegalArgumentException("A batch job cannot run another batch");
+                }
+                executor.execute(job.args);
+            } catch (Exception | OutOfMemoryError e) {
+                error = e.toString();
+                e.printStackTrace(new PrintStream(log, true, StandardCharsets.UTF_8));
+            } finally {
+                System.out.flush();
+                router.route(previous);
+            }
+        }
+        long wallNs = System.nanoTime() - startedAtNs;
+        System.out.printf(Locale.US, "[%d/%d] %s %s in %.2fs%s%n",
+                job.index + 1, jobCount, job.id, error == null ? "ok" : "FAILED", wallNs / 1_000_000_000.0,
+                error == null ? "" : ": " + error);
+        return new JobResult(job, error == null, startedAtNs - batchStartedAtNs, wallNs, error);
+    }
+
+    static void writeSummary(Path output, List<JobResult> results) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("Index,Id,Mode,Output,Status,StartMs,WallMs,EstimatedMb,Error");
+            writer.newLine();
+            for (JobResult r : results) {
+                Job job = r.job;
+                writer.write(String.format(Locale.US, "%d,%s,%s,%s,%s,%.3f,%.3f,%d,%s",
+                        job.index + 1,
+                        csv(job.id),
+                        csv(job.args.getOrDefault("mode", "relax")),
+                        csv(job.args.getOrDefault("output", "")),
+                        r.ok ? "ok" : "failed",
+                        r.queuedNs / 1_000_000.0,
+                        r.wallNs / 1_000_000.0,
+                        job.estimatedBytes / MB,
+                        csv(r.error == null ? "" : r.error)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static List<Map<String, String>> readJsonRows(Path manifest) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(manifest.toFile());
+        JsonNode jobs = root != null && root.isObject() ? root.get("jobs") : root;
+        if (jobs == null || !jobs.isArray()) {
+            throw new IllegalArgumentException("Manifest must be a JSON array of jobs or an object with a 'jobs' array: " + manifest);
+        }
+        List<Map<String, String>> rows = new ArrayList<>(jobs.size());
+        for (JsonNode job : jobs) {
+            if (!job.isObject()) {
+                throw new IllegalArgumentException("Manifest job is not an object: " + job);
+            }
+            Map<String, String> row = new HashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = job.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                JsonNode value = field.getValue();
+                if (!value.isNull()) {
+                    row.put(field.getKey(), value.isValueNode() ? value.asText() : value.toString());
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Map<String, String>> readCsvRows(Path manifest) throws IOException {
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        List<Map<String, String>> rows = new ArrayList<>();
+        List<String> header = null;
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> cells = splitCsv(line);
+            if (header == null) {
+                header = cells;
+                continue;
+            }
+            Map<String, String> row = new HashMap<>();
+            for (int c = 0; c < Math.min(header.size(), cells.size()); c++) {
+                if (!cells.get(c).isEmpty()) {
+                    row.put(header.get(c), cells.get(c));
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Splits one CSV line; double-quoted cells may hold commas and {@code ""} escapes.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                cells.add(cell.toString().trim());
+                cell.setLength(0);
+            } else {
+                cell.append(ch);
+            }
+        }
+        cells.add(cell.toString().trim());
+        return cells;
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"").replace('\n', ' ') + '"';
+    }
+
+    /**
+     * FIFO admission by job slots and estimated bytes.
+     */
+    private static final class Admission {
+        private final int slots;
+        private final long budget;
+        private int running;
+        private long reserved;
+
+        Admission(int slots, long budget) {
+            this.slots = slots;
+            this.budget = budget;
+        }
+
+        synchronized void acquire(long bytes) throws InterruptedException {
+            while (running >= slots || (running > 0 && reserved + bytes > budget)) {
+                wait();
+            }
+            running++;
+            reserved += bytes;
+        }
+
+        synchronized void release(long bytes) {
+            running--;
+            reserved -= bytes;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sphererelaxator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code System.out} replacement that sends each thread's output to the sink set for it, or to the
+ * original console. Lets concurrent batch jobs and the result cache capture their own console
+ * output. Sinks are not inherited: pool threads outlive the job that started them, so work handed
+ * to other threads carries its sink explicitly through {@link #propagate}.
+ */
+public final class ConsoleRouter extends OutputStream {
+    private static final ThreadLocal<OutputStream> SINK = new ThreadLocal<>();
+    private static volatile ConsoleRouter installed;
+
+    private final PrintStream console;
+
+    private ConsoleRouter(PrintStream console) {
+        this.console = console;
+    }
+
+    static synchronized ConsoleRouter install() {
+        if (installed == null) {
+            installed = new ConsoleRouter(System.out);
+            System.setOut(new PrintStream(installed, true, StandardCharsets.UTF_8));
+        }
+        return installed;
+    }
+
+    /**
+     * {@code task} running with the calling thread's sink for its duration, restoring the running
+     * thread's own sink afterwards.
+     */
+    public static Runnable propagate(Runnable task) {
+        ConsoleRouter router = installed;
+        OutputStream sink = SINK.get();
+        if (router == null || sink == null) {
+            return task;
+        }
+        return () -> {
+            OutputStream previous = router.route(sink);
+            try {
+                task.run();
+            } finally {
+                router.route(previous);
+            }
+        };
+    }
+
+    /**
+     * Where the current thread writes right now: its sink, or the console.
+     */
+    OutputStream current() {
+        OutputStream sink = SINK.get();
+        return sink != null ? sink : console;
+    }
+
+    /**
+     * Sets the current thread's sink and returns the previous one ({@code null} for the console).
+     */
+    OutputStream route(OutputStream sink) {
+        OutputStream previous = SINK.get();
+        if (sink == null) {
+            SINK.remove();
+        } else {
+            SINK.set(sink);
+        }
+        return previous;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        current().flush();
+    }
+}
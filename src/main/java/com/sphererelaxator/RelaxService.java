@@ -0,0 +1,355 @@
+package com.sphererelaxator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sphererelaxator.unreal.TopologyCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Localhost HTTP front end that keeps one JVM (warm JIT, shared topology cache) serving CLI jobs.
+ * <ul>
+ *   <li>{@code POST /run} with a JSON object of CLI arguments runs a job and answers with its
+ *   status, timings and console output; {@code ?async=true} answers at once with the job id.</li>
+ *   <li>{@code GET /jobs/<id>} reports a job, {@code DELETE /jobs/<id>} cancels it (relaxation
+ *   stops at the next iteration).</li>
+ *   <li>{@code GET /health} reports counters, mean timings, heap and cache size;
+ *   {@code POST /shutdown} stops the service.</li>
+ * </ul>
+ * Every request must carry {@code Authorization: Bearer <token>} with the token printed at start-up
+ * (and written to {@code --tokenFile}), every {@code POST} must be {@code Content-Type:
+ * application/json}, and requests whose {@code Origin} is not the service itself are refused, so a
+ * web page cannot start jobs or stop the service with a cross-site form post.
+ */
+final class RelaxService {
+    private static final int MAX_FINISHED_JOBS = 256;
+
+    private final BatchRunner.JobExecutor executor;
+    private final TopologyCache topologyCache;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService workers;
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong totalWallNs = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final long startedAtNs = System.nanoTime();
+    private final byte[] token;
+    private volatile Set<String> ownOrigins = Set.of();
+
+    RelaxService(BatchRunner.JobExecutor executor, TopologyCache topologyCache, int concurrency) {
+        this.executor = executor;
+        this.topologyCache = topologyCache;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        this.token = HexFormat.of().formatHex(random).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Serves on {@code 127.0.0.1:port} until {@code POST /shutdown}; the per-launch token is printed
+     * and, when {@code tokenFile} is not {@code null}, written there readable by the owner only.
+     */
+    void serve(int port, Path tokenFile) throws IOException, InterruptedException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.createContext("/run", guarded(this::handleRun));
+        server.createContext("/jobs/", guarded(this::handleJob));
+        server.createContext("/health", guarded(this::handleHealth));
+        server.createContext("/shutdown", guarded(exchange -> {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, error("use POST"));
+                return;
+            }
+            reply(exchange, 200, mapper.createObjectNode().put("status", "stopping"));
+            stopped.countDown();
+        }));
+        int bound = server.getAddress().getPort();
+        ownOrigins = Set.of("http://127.0.0.1:" + bound, "http://localhost:" + bound);
+        if (tokenFile != null) {
+            writeToken(tokenFile);
+        }
+        ConsoleRouter.install();
+        server.start();
+        System.out.printf(Locale.US, "Serving on http://127.0.0.1:%d (POST /run, GET|DELETE /jobs/<id>, GET /health, POST /shutdown)%n",
+                bound);
+        System.out.println("Token: " + new String(token, StandardCharsets.US_ASCII)
+                + " (send as 'Authorization: Bearer <token>')");
+        try {
+            stopped.await();
+        } finally {
+            server.stop(0);
+            handlers.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Refuses foreign origins, requests without the bearer token and non-JSON posts before
+     * {@code handler} sees them.
+     */
+    private HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            if (origin != null && !ownOrigins.contains(origin)) {
+                reply(exchange, 403, error("cross-origin requests are not accepted"));
+                return;
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("Bearer ")
+                    || !MessageDigest.isEqual(token,
+                    authorization.substring("Bearer ".length()).trim().getBytes(StandardCharsets.US_ASCII))) {
+                reply(exchange, 401, error("missing or wrong 'Authorization: Bearer <token>'"));
+                return;
+            }
+            if ("POST".equals(exchange.getRequestMethod()) && !isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                reply(exchange, 415, error("POST bodies must be Content-Type: application/json"));
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    private static boolean isJson(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int parameters = contentType.indexOf(';');
+        String media = parameters < 0 ? contentType : contentType.substring(0, parameters);
+        return "application/json".equals(media.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private void writeToken(Path tokenFile) throws IOException {
+        Files.deleteIfExists(tokenFile);
+        try {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(tokenFile);
+        }
+        Files.write(tokenFile, token);
+    }
+
+    private void handleRun(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, error("use POST with a JSON object of CLI arguments"));
+                return;
+            }
+            Map<String, String> args = readArgs(exchange.getRequestBody());
+            String mode = args.getOrDefault("mode", "relax").toLowerCase(Locale.ROOT);
+            if ("serve".equals(mode) || "batch".equals(mode)) {
+                reply(exchange, 400, error("mode " + mode + " is not available as a service request"));
+                return;
+            }
+            Job job = submit(args);
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null && query.contains("async=true")) {
+                reply(exchange, 202, job.describe(mapper));
+                return;
+            }
+            try {
+                job.future.get();
+            } catch (Exception ignored) {
+                // The job records its own outcome.
+            }
+            if (!job.future.isCancelled() || !job.status.equals("queued")) {
+                job.done.await();
+            }
+            reply(exchange, job.status.equals("ok") ? 200 : 500, job.describe(mapper));
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            reply(exchange, 400, error(e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reply(exchange, 503, error("interrupted"));
+        }
+    }
+
+    private void handleJob(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Job job;
+        try {
+            long id = Long.parseLong(path.substring("/jobs/".length()));
+            synchronized (jobs) {
+                job = jobs.get(id);
+            }
+        } catch (NumberFormatException e) {
+            job = null;
+        }
+        if (job == null) {
+            reply(exchange, 404, error("unknown job " + path));
+            return;
+        }
+        if ("DELETE".equals(exchange.getRequestMethod())
+                && job.future.cancel(true)
+                && job.status.equals("queued")) {
+            cancelled.incrementAndGet();
+        }
+        reply(exchange, 200, job.describe(mapper));
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        long finished = completed.get() + failed.get();
+        int running;
+        synchronized (jobs) {
+            running = (int) jobs.values().stream().filter(j -> j.status.equals("running")).count();
+        }
+        ObjectNode node = mapper.createObjectNode()
+                .put("status", "ok")
+                .put("uptimeMs", (System.nanoTime() - startedAtNs) / 1_000_000L)
+                .put("running", running)
+                .put("completed", completed.get())
+                .put("failed", failed.get())
+                .put("cancelled", cancelled.get())
+                .put("meanWallMs", finished == 0 ? 0.0 : totalWallNs.get() / 1_000_000.0 / finished)
+                .put("topologyCacheEntries", topologyCache.size())
+                .put("heapUsedMb", (runtime.totalMemory() - runtime.freeMemory()) / (1024L * 1024L))
+                .put("heapMaxMb", runtime.maxMemory() / (1024L * 1024L));
+        reply(exchange, 200, node);
+    }
+
+    private Job submit(Map<String, String> args) {
+        Job job = new Job(nextId.getAndIncrement(), args);
+        job.future = workers.submit(() -> run(job));
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            Iterator<Job> it = jobs.values().iterator();
+            while (jobs.size() > MAX_FINISHED_JOBS && it.hasNext()) {
+                if (it.next().done.getCount() == 0) {
+                    it.remove();
+                }
+            }
+        }
+        return job;
+    }
+
+    private void run(Job job) {
+        ConsoleRouter router = ConsoleRouter.install();
+        long started = System.nanoTime();
+        job.queuedNs = started - job.submittedAtNs;
+        job.status = "running";
+        OutputStream previous = router.route(job.console);
+        try {
+            executor.execute(job.args);
+            job.status = "ok";
+            completed.incrementAndGet();
+        } catch (CancellationException e) {
+            job.status = "cancelled";
+            job.error = e.getMessage();
+            cancelled.incrementAndGet();
+        } catch (Exception | OutOfMemoryError e) {
+            job.status = Thread.currentThread().isInterrupted() ? "cancelled" : "failed";
+            job.error = e.toString();
+            (job.status.equals("cancelled") ? cancelled : failed).incrementAndGet();
+        } finally {
+            System.out.flush();
+            router.route(previous);
+            job.wallNs = System.nanoTime() - started;
+            if (!job.status.equals("cancelled")) {
+                totalWallNs.addAndGet(job.wallNs);
+            }
+            job.done.countDown();
+        }
+    }
+
+    private Map<String, String> readArgs(InputStream body) throws IOException {
+        JsonNode root = mapper.readTree(body);
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("request body must be a JSON object of CLI arguments");
+        }
+        Map<String, String> args = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            JsonNode value = field.getValue();
+            if (!value.isNull()) {
+                args.put(field.getKey(), value.isValueNode() ? value.asText() : value.toString());
+            }
+        }
+        return args;
+    }
+
+    private ObjectNode error(String message) {
+        return mapper.createObjectNode().put("error", message);
+    }
+
+    private void reply(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Job {
+        final long id;
+        final Map<String, String> args;
+        final long submittedAtNs = System.nanoTime();
+        final ByteArrayOutputStream console = new ByteArrayOutputStream();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Future<?> future;
+        volatile String status = "queued";
+        volatile String error;
+        volatile long queuedNs;
+        volatile long wallNs;
+
+        Job(long id, Map<String, String> args) {
+            this.id = id;
+            this.args = args;
+        }
+
+        ObjectNode describe(ObjectMapper mapper) {
+            String current = status;
+            if (current.equals("queued") && future != null && future.isCancelled()) {
+                current = "cancelled";
+            }
+            ObjectNode node = mapper.createObjectNode()
+                    .put("id", id)
+                    .put("mode", args.getOrDefault("mode", "relax"))
+                    .put("status", current)
+                    .put("queuedMs", queuedNs / 1_000_000.0)
+                    .put("wallMs", wallNs / 1_000_000.0);
+            if (error != null) {
+                node.put("error", error);
+            }
+            if (done.getCount() == 0) {
+                synchronized (console) {
+                    node.put("console", console.toString(StandardCharsets.UTF_8));
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -5,46 +5,255 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.sphererelaxator.generator.FullSphereCsvGenerator;
 import com.sphererelaxator.generator.IcosphereGenerator;
+import com.sphererelaxator.generator.StreamingSphereGenerator;
 import com.sphererelaxator.io.MeshDocument;
+import com.sphererelaxator.io.MeshDocumentStream;
+import com.sphererelaxator.io.ResultCache;
 import com.sphererelaxator.io.VertexDto;
 import com.sphererelaxator.mesh.Mesh;
 import com.sphererelaxator.mesh.MeshBuilder;
+import com.sphererelaxator.mesh.SphericalDelaunay;
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileLocator;
+import com.sphererelaxator.mesh.TileType;
 import com.sphererelaxator.mesh.Vec3;
+import com.sphererelaxator.mesh.VertexWelder;
+import com.sphererelaxator.solver.LaplacianWeighting;
+import com.sphererelaxator.solver.ParameterSweep;
+import com.sphererelaxator.solver.PartitionedRelaxator;
 import com.sphererelaxator.solver.RelaxationConfig;
 import com.sphererelaxator.solver.RelaxationMetrics;
-import com.sphererelaxator.solver.SphereRelaxator;
+import com.sphererelaxator.solver.RelaxationSolver;
+import com.sphererelaxator.solver.RelaxationWorker;
+import com.sphererelaxator.unreal.TileGraph;
+import com.sphererelaxator.unreal.TilePack;
+import com.sphererelaxator.unreal.TopologyCache;
 import com.sphererelaxator.unreal.UnrealFormatProcessor;
+import com.sphererelaxator.unreal.UnrealGlbExporter;
 import com.sphererelaxator.unreal.UnrealTileCsvExporter;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public final class SphereRelaxatorCli {
+    private static final double UNREAL_RADIUS = 450.0;
+
     private SphereRelaxatorCli() {
     }
 
     public static void main(String[] args) throws Exception {
         Map<String, String> parsed = parseArgs(args);
-        String mode = parsed.getOrDefault("mode", "relax").toLowerCase(Locale.ROOT);
-        boolean isIcosphereMode = "icosphere".equals(mode);
-        boolean isTileCsvMode = "tilecsv".equals(mode);
-        boolean isFullCsvMode = "fullcsv".equals(mode);
-        boolean requiresInput = !isIcosphereMode && !isFullCsvMode;
-
+        if ("serve".equalsIgnoreCase(parsed.get("mode")) && !parsed.containsKey("help")) {
+            runServeMode(parsed);
+            return;
+        }
+        if ("worker".equalsIgnoreCase(parsed.get("mode")) && !parsed.containsKey("help")) {
+            String token = parsed.containsKey("tokenFile")
+                    ? readWorkerToken(Path.of(parsed.get("tokenFile")), false)
+                    : System.getenv(PartitionedRelaxator.TOKEN_ENV);
+            if (token == null) {
+                throw new IllegalArgumentException("Worker mode needs --tokenFile with the coordinator's token");
+            }
+            RelaxationWorker.run(parsed.getOrDefault("host", "127.0.0.1"),
+                    parseInt(parsed, "port", 0),
+                    parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                    token);
+            return;
+        }
         if (parsed.containsKey("help")
                 || !parsed.containsKey("output")
-                || (requiresInput && !parsed.containsKey("input"))) {
+                || (requiresInput(parsed) && !parsed.containsKey("input"))) {
             printHelp();
             return;
         }
+        execute(parsed);
+    }
 
+    private static boolean requiresInput(Map<String, String> parsed) {
+        String mode = parsed.getOrDefault("mode", "relax").toLowerCase(Locale.ROOT);
+        boolean generated = "icosphere".equals(mode)
+                || "fullcsv".equals(mode)
+                || "lod".equals(mode)
+                || "pipeline".equals(mode)
+                || "allocguard".equals(mode);
+        return !generated && !("sweep".equals(mode) && parsed.containsKey("subdivisions"));
+    }
+
+    /**
+     * Runs one job from parsed arguments; shared by the command line and batch manifests.
+     */
+    static void execute(Map<String, String> parsed) throws Exception {
+        if (!parsed.containsKey("output")) {
+            throw new IllegalArgumentException("Missing --output");
+        }
+        if (requiresInput(parsed) && !parsed.containsKey("input")) {
+            throw new IllegalArgumentException("Missing --input");
+        }
+        String mode = parsed.getOrDefault("mode", "relax").toLowerCase(Locale.ROOT);
         Path output = Path.of(parsed.get("output"));
+        if (parsed.containsKey("cacheDir") && !"batch".equals(mode) && !"allocguard".equals(mode)) {
+            runCached(mode, parsed, output);
+        } else {
+            run(mode, parsed, output);
+        }
+    }
+
+    /**
+     * Arguments that do not change the produced files and are left out of the result cache key.
+     */
+    private static final Set<String> CACHE_NEUTRAL_ARGS = Set.of(
+            "output", "input", "cacheDir", "cacheMaxMb", "threads", "logEvery", "progressEvery",
+            "itemConcurrency", "topologyCacheSize", "topologyCacheDir",
+            "workerPort", "spawnWorkers", "workerThreads", "workerXmx", "bind", "tokenFile"
+    );
+
+    /**
+     * Arguments naming files a run reads besides {@code --input}; their contents are part of the
+     * result cache key.
+     */
+    private static final List<String> CACHE_INPUT_FILE_ARGS = List.of("queries", "budgets");
+
+    private static void runCached(String mode, Map<String, String> parsed, Path output) throws Exception {
+        ResultCache cache = new ResultCache(
+                Path.of(parsed.get("cacheDir")),
+                parseInt(parsed, "cacheMaxMb", 1024) * 1024L * 1024L
+        );
+        Map<String, String> keyArgs = new HashMap<>(parsed);
+        keyArgs.keySet().removeAll(CACHE_NEUTRAL_ARGS);
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        keyArgs.put("outputExtension", dot >= 0 ? name.substring(dot) : "");
+        Map<String, Path> inputs = new HashMap<>();
+        if (parsed.containsKey("input")) {
+            Path input = Path.of(parsed.get("input"));
+            if (!Files.isRegularFile(input) && TilePack.exists(input)) {
+                List<Path> packFiles = TilePack.files(input);
+                for (int i = 0; i < packFiles.size(); i++) {
+                    inputs.put("input" + i, packFiles.get(i));
+                }
+            } else {
+                inputs.put("input", input);
+            }
+        }
+        for (String arg : CACHE_INPUT_FILE_ARGS) {
+            if (parsed.containsKey(arg)) {
+                inputs.put(arg, Path.of(parsed.get(arg)));
+            }
+        }
+        String key = ResultCache.key(mode, keyArgs, inputs);
+        Map<String, Path> external = parsed.containsKey("queryOutput")
+                ? Map.of("queryOutput", Path.of(parsed.get("queryOutput")))
+                : Map.of();
+
+        ensureOutputPath(output);
+        if (cache.restore(key, output, external, System.out)) {
+            System.out.println("Result cache hit: " + key);
+            return;
+        }
+
+        Path staged = ResultCache.stage(output);
+        ConsoleRouter router = ConsoleRouter.install();
+        OutputStream console = router.current();
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        StagedConsole tee = new StagedConsole(staged.toString(), output.toString(), console, captured);
+        OutputStream previous = router.route(tee);
+        boolean completed = false;
+        try {
+            run(mode, parsed, staged);
+            completed = true;
+        } finally {
+            System.out.flush();
+            router.route(previous);
+            tee.close();
+            try {
+                if (completed) {
+                    cache.store(key, staged, external, captured.toByteArray());
+                }
+            } finally {
+                ResultCache.publish(staged, output);
+            }
+        }
+    }
+
+    /**
+     * Copies a cached run's console output to the real console and to the cache capture line by
+     * line, showing the staging path as the real output path.
+     */
+    private static final class StagedConsole extends OutputStream {
+        private final String stagedPath;
+        private final String outputPath;
+        private final OutputStream console;
+        private final OutputStream captured;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        StagedConsole(String stagedPath, String outputPath, OutputStream console, OutputStream captured) {
+            this.stagedPath = stagedPath;
+            this.outputPath = outputPath;
+            this.console = console;
+            this.captured = captured;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            line.write(b);
+            if (b == '\n') {
+                emit();
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            console.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            emit();
+            console.flush();
+        }
+
+        private void emit() throws IOException {
+            if (line.size() == 0) {
+                return;
+            }
+            byte[] bytes = line.toString(StandardCharsets.UTF_8)
+                    .replace(stagedPath, outputPath)
+                    .getBytes(StandardCharsets.UTF_8);
+            line.reset();
+            console.write(bytes);
+            captured.write(bytes);
+        }
+    }
+
+    private static void run(String mode, Map<String, String> parsed, Path output) throws Exception {
+        boolean isIcosphereMode = "icosphere".equals(mode);
+        boolean isTileCsvMode = "tilecsv".equals(mode);
+        boolean isFullCsvMode = "fullcsv".equals(mode);
+        boolean isLodMode = "lod".equals(mode);
+        boolean isPipelineMode = "pipeline".equals(mode);
         if (isIcosphereMode) {
             ensureOutputPath(output);
             runIcosphereMode(parsed, output);
@@ -55,12 +264,55 @@ public final class SphereRelaxatorCli {
             runFullCsvMode(parsed, output);
             return;
         }
+        if (isPipelineMode) {
+            ensureOutputPath(output);
+            runPipelineMode(parsed, output);
+            return;
+        }
+        if (isLodMode) {
+            ensureOutputPath(output);
+            runLodMode(parsed, output);
+            return;
+        }
+        if ("batch".equals(mode)) {
+            ensureOutputPath(output);
+            runBatchMode(parsed, output);
+            return;
+        }
+        if ("tilegraph".equals(mode)) {
+            ensureOutputPath(output);
+            runTileGraphMode(parsed, output);
+            return;
+        }
+        if ("locate".equals(mode)) {
+            ensureOutputPath(output);
+            runLocateMode(parsed, output);
+            return;
+        }
+        if ("sweep".equals(mode)) {
+            ensureOutputPath(output);
+            runSweepMode(parsed, output);
+            return;
+        }
+        if ("allocguard".equals(mode)) {
+            ensureOutputPath(output);
+            runAllocationGuardMode(parsed, output);
+            return;
+        }
         if (isTileCsvMode) {
             ensureOutputPath(output);
             Path input = Path.of(parsed.get("input"));
             ObjectMapper mapper = new ObjectMapper();
             JsonNode root = mapper.readTree(input.toFile());
-            UnrealTileCsvExporter exporter = new UnrealTileCsvExporter();
+            if (isGlbOutput(output)) {
+                UnrealGlbExporter.write(output, UnrealGlbExporter.primitives(root));
+                System.out.printf(Locale.US, "Done. mode=tilecsv, input=%s, output=%s (glb)%n", input, output);
+                return;
+            }
+            UnrealTileCsvExporter exporter = new UnrealTileCsvExporter(
+                    parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                    parseInt(parsed, "chunkTiles", 0)
+            );
             exporter.export(root, output);
             System.out.printf(Locale.US,
                     "Done. mode=tilecsv, input=%s, output_prefix=%s%n", input, output);
@@ -69,54 +321,717 @@ public final class SphereRelaxatorCli {
         ensureOutputPath(output);
 
         Path input = Path.of(parsed.get("input"));
+        if (parseInt(parsed, "workers", 1) > 1
+                && input.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+            MeshDocumentStream stream = MeshDocumentStream.open(input);
+            if (stream.tiled()) {
+                runStreamedPartitioned(parsed, stream, output);
+                return;
+            }
+        }
 
         ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.readTree(input.toFile());
+        JsonNode root = readInput(input, mapper);
         RelaxationConfig config;
         RelaxationMetrics metrics;
 
         if (UnrealFormatProcessor.isUnrealFormat(root)) {
-            config = new RelaxationConfig(
-                    parseInt(parsed, "iterations", 350),
-                    parseDouble(parsed, "radius", 450.0),
-                    parseDouble(parsed, "step", 0.24),
-                    parseDouble(parsed, "laplacianWeight", 0.38),
-                    parseDouble(parsed, "springWeight", 0.52),
-                    parseDouble(parsed, "pentagonExpandWeight", 0.45),
-                    parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
-                    parseInt(parsed, "logEvery", 25),
-                    parseInt(parsed, "progressEvery", 10)
-            );
-            UnrealFormatProcessor processor = new UnrealFormatProcessor(mapper);
-            metrics = processor.process(root, output, config, parseBoolean(parsed, "emitUv", false));
+            config = unrealConfig(parsed, UNREAL_RADIUS);
+            UnrealFormatProcessor processor = unrealProcessor(parsed, mapper);
+            ForkJoinPool pool = jobPool(config.threads());
+            try {
+                if (isGlbOutput(output)) {
+                    List<UnrealFormatProcessor.RelaxedMesh> relaxed = processor.relaxAll(root, config, pool);
+                    UnrealGlbExporter.write(output, relaxed.stream().map(mesh -> UnrealGlbExporter.Primitive.of(mesh, true)).toList());
+                    metrics = relaxed.isEmpty()
+                            ? new RelaxationMetrics(0.0, 0.0, 0.0, 0.0, 0.0, 0.0)
+                            : relaxed.get(relaxed.size() - 1).metrics();
+                } else {
+                    metrics = processor.process(root, output, config, parseBoolean(parsed, "emitUv", false), pool);
+                }
+            } finally {
+                release(pool);
+            }
+        } else if (isGlbOutput(output)) {
+            throw new IllegalArgumentException("GLB output needs Unreal-like input");
         } else {
             MeshDocument document = mapper.treeToValue(root, MeshDocument.class);
-            Mesh mesh = MeshBuilder.fromDocument(document);
-            config = new RelaxationConfig(
-                    parseInt(parsed, "iterations", 350),
-                    parseDouble(parsed, "radius", document.radius > 0.0 ? document.radius : 1.0),
-                    parseDouble(parsed, "step", 0.28),
-                    parseDouble(parsed, "laplacianWeight", 0.42),
-                    parseDouble(parsed, "springWeight", 0.45),
-                    parseDouble(parsed, "pentagonExpandWeight", 0.35),
-                    parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
-                    parseInt(parsed, "logEvery", 25),
-                    parseInt(parsed, "progressEvery", 10)
-            );
-            SphereRelaxator relaxator = new SphereRelaxator();
-            metrics = relaxator.relax(mesh, config);
+            config = documentConfig(parsed, document);
+            Mesh mesh = documentMesh(document, config.threads());
+            if (parseInt(parsed, "workers", 1) > 1) {
+                metrics = partitionedRelaxator(parsed, config).relax(mesh, config);
+            } else {
+                ForkJoinPool pool = jobPool(config.threads());
+                try {
+                    metrics = solver(parsed).relax(mesh, config, pool);
+                } finally {
+                    release(pool);
+                }
+            }
             MeshDocument out = MeshBuilder.toDocument(mesh, config.radius());
             mapper.enable(SerializationFeature.INDENT_OUTPUT);
             mapper.writeValue(output.toFile(), out);
         }
 
         System.out.printf(Locale.US, "Done. Iterations=%d, radius=%.6f%n", config.iterations(), config.radius());
+        printMetrics(metrics);
+    }
+
+    /**
+     * Partitioned relax of a mesh document that is read record by record, so this process never
+     * holds the mesh; the result is written in the layout of {@link MeshBuilder#toDocument}.
+     */
+    private static void runStreamedPartitioned(Map<String, String> parsed, MeshDocumentStream stream, Path output)
+            throws Exception {
+        RelaxationConfig config = documentConfig(parsed, stream.radius(), false);
+        PartitionedRelaxator relaxator = partitionedRelaxator(parsed, config);
+        PartitionedRelaxator.Source source = new PartitionedRelaxator.Source() {
+            @Override
+            public void vertices(PartitionedRelaxator.VertexVisitor visitor) throws IOException {
+                stream.vertices((index, v) -> visitor.vertex(index, v.x, v.y, v.z, v.fixed));
+            }
+
+            @Override
+            public void tiles(PartitionedRelaxator.TileVisitor visitor) throws IOException {
+                stream.tiles((tile, indices) -> visitor.tile(tile.id, TileType.from(tile.type), indices));
+            }
+        };
+        RelaxationMetrics metrics;
+        try (MeshDocumentStream.Writer writer = stream.writer(output, config.radius())) {
+            metrics = relaxator.relax(source, stream.vertexCount(), config, writer::vertex);
+            writer.finish();
+        }
+        System.out.printf(Locale.US, "Done. Iterations=%d, radius=%.6f%n", config.iterations(), config.radius());
+        printMetrics(metrics);
+    }
+
+    private static PartitionedRelaxator partitionedRelaxator(Map<String, String> parsed, RelaxationConfig config)
+            throws IOException {
+        if (solver(parsed) != RelaxationSolver.VERTEX) {
+            throw new IllegalArgumentException("--workers needs the vertex solver");
+        }
+        int workers = parseInt(parsed, "workers", 1);
+        boolean spawnWorkers = parseBoolean(parsed, "spawnWorkers", true);
+        String token = parsed.containsKey("tokenFile") ? readWorkerToken(Path.of(parsed.get("tokenFile")), true) : null;
+        return new PartitionedRelaxator(
+                workers,
+                parseInt(parsed, "workerPort", 0),
+                spawnWorkers,
+                parseInt(parsed, "workerThreads", Math.max(1, config.threads() / workers)),
+                parsed.get("workerXmx"),
+                parsed.containsKey("bind") ? InetAddress.getByName(parsed.get("bind")) : null,
+                token
+        );
+    }
+
+    /**
+     * Shared worker token from {@code file}; with {@code create}, a missing file is created
+     * (owner-only where the file system allows) holding a new random token.
+     */
+    private static String readWorkerToken(Path file, boolean create) throws IOException {
+        if (create && !Files.exists(file)) {
+            try {
+                Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } catch (UnsupportedOperationException e) {
+                Files.createFile(file);
+            }
+            Files.writeString(file, PartitionedRelaxator.newToken(), StandardCharsets.US_ASCII);
+        }
+        String token = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("Token file is empty: " + file);
+        }
+        return token;
+    }
+
+    /**
+     * Reads a JSON input; a {@code .txt} ({@code x y z} per line) or {@code .csv} ({@code x,y,z}
+     * columns, as written by icosphere mode) point cloud becomes a mesh document without tiles whose
+     * radius is the mean point distance from the origin.
+     */
+    private static JsonNode readInput(Path input, ObjectMapper mapper) throws Exception {
+        String name = input.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean csv = name.endsWith(".csv");
+        if (!csv && !name.endsWith(".txt")) {
+            return mapper.readTree(input.toFile());
+        }
+        MeshDocument document = new MeshDocument();
+        int[] columns = {0, 1, 2};
+        double radiusSum = 0.0;
+        for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] cells = trimmed.split(csv ? "\\s*,\\s*" : "\\s+");
+            if (csv && document.vertices.isEmpty() && !cells[0].isEmpty()
+                    && !Character.isDigit(cells[0].charAt(0)) && cells[0].charAt(0) != '-') {
+                List<String> header = Arrays.asList(cells);
+                columns = header.contains("x")
+                        ? new int[]{header.indexOf("x"), header.indexOf("y"), header.indexOf("z")}
+                        : new int[]{cells.length - 3, cells.length - 2, cells.length - 1};
+                continue;
+            }
+            if (cells.length < 3) {
+                throw new IllegalArgumentException("Expected x, y, z in " + input + ": " + line);
+            }
+            VertexDto v = new VertexDto();
+            v.id = document.vertices.size();
+            v.x = Double.parseDouble(cells[columns[0]]);
+            v.y = Double.parseDouble(cells[columns[1]]);
+            v.z = Double.parseDouble(cells[columns[2]]);
+            radiusSum += Math.sqrt(v.x * v.x + v.y * v.y + v.z * v.z);
+            document.vertices.add(v);
+        }
+        document.radius = document.vertices.isEmpty() ? 1.0 : radiusSum / document.vertices.size();
+        return mapper.valueToTree(document);
+    }
+
+    /**
+     * Solver mesh of a mesh document; a document with vertices but no tiles is a point cloud and
+     * gets the Goldberg dual of its spherical Delaunay triangulation.
+     */
+    private static Mesh documentMesh(MeshDocument document, int threads) {
+        if (document.vertices == null || document.vertices.isEmpty()
+                || (document.tiles != null && !document.tiles.isEmpty())) {
+            return MeshBuilder.fromDocument(document);
+        }
+        double[] xyz = new double[document.vertices.size() * 3];
+        for (int i = 0; i < document.vertices.size(); i++) {
+            VertexDto v = document.vertices.get(i);
+            xyz[i * 3] = v.x;
+            xyz[i * 3 + 1] = v.y;
+            xyz[i * 3 + 2] = v.z;
+        }
+        ForkJoinPool pool = jobPool(threads);
+        try {
+            SphericalDelaunay delaunay = SphericalDelaunay.build(xyz, pool);
+            Mesh mesh = delaunay.goldbergMesh(document.radius > 0.0 ? document.radius : 1.0, pool);
+            int pentagons = 0;
+            int irregular = 0;
+            for (Tile tile : mesh.tiles()) {
+                if (tile.type() == TileType.PENTAGON) {
+                    pentagons++;
+                } else if (tile.type() == TileType.IRREGULAR) {
+                    irregular++;
+                }
+            }
+            System.out.printf(Locale.US,
+                    "Goldberg dual of %d points: tiles=%d, pentagons=%d, corners=%d, skipped duplicates=%d%n",
+                    delaunay.pointCount(), mesh.tiles().size(), pentagons, mesh.vertices().length,
+                    delaunay.skippedCount());
+            if (irregular > 0) {
+                System.out.printf(Locale.US,
+                        "Notice: the points do not form a Goldberg polyhedron; %d non-hexagonal tiles are IRREGULAR "
+                                + "and get no pentagon expansion.%n", irregular);
+            }
+            return mesh;
+        } finally {
+            release(pool);
+        }
+    }
+
+    private static void printMetrics(RelaxationMetrics metrics) {
         System.out.printf(Locale.US, "Edge length min=%.6f max=%.6f mean=%.6f std=%.6f%n",
                 metrics.edgeMin(), metrics.edgeMax(), metrics.edgeMean(), metrics.edgeStdDev());
         System.out.printf(Locale.US, "Pentagon area mean=%.6f, Hex area mean=%.6f%n",
                 metrics.pentagonAreaMean(), metrics.hexAreaMean());
     }
 
+    private static RelaxationConfig documentConfig(Map<String, String> parsed, MeshDocument document) {
+        boolean pointCloud = document.vertices != null && !document.vertices.isEmpty()
+                && (document.tiles == null || document.tiles.isEmpty());
+        return documentConfig(parsed, document.radius, pointCloud);
+    }
+
+    /**
+     * Defaults for mesh JSON. A point cloud's radius is whatever its points say (usually 1), so its
+     * pentagon bias, an absolute displacement, defaults to 0.35 scaled from {@link #UNREAL_RADIUS}
+     * to the radius, as {@link #unrealConfig} does for generated spheres.
+     */
+    private static RelaxationConfig documentConfig(Map<String, String> parsed, double documentRadius, boolean pointCloud) {
+        double radius = parseDouble(parsed, "radius", documentRadius > 0.0 ? documentRadius : 1.0);
+        return new RelaxationConfig(
+                parseInt(parsed, "iterations", 350),
+                radius,
+                parseDouble(parsed, "step", 0.28),
+                parseDouble(parsed, "laplacianWeight", 0.42),
+                parseDouble(parsed, "springWeight", 0.45),
+                parseDouble(parsed, "pentagonExpandWeight", pointCloud ? 0.35 * (radius / UNREAL_RADIUS) : 0.35),
+                parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                parseInt(parsed, "logEvery", 25),
+                parseInt(parsed, "progressEvery", 10),
+                LaplacianWeighting.from(parsed.get("laplacian"))
+        );
+    }
+
+    /**
+     * Defaults tuned for Unreal-scale spheres. The pentagon bias is an absolute displacement while the
+     * other terms scale with the mesh, so for generated spheres ({@code defaultRadius} other than
+     * {@link #UNREAL_RADIUS}) its default is scaled from 0.45 at {@link #UNREAL_RADIUS} to the actual
+     * radius; Unreal input keeps 0.45 whatever {@code --radius} says.
+     */
+    private static RelaxationConfig unrealConfig(Map<String, String> parsed, double defaultRadius) {
+        double radius = parseDouble(parsed, "radius", defaultRadius);
+        double pentagonExpandWeight = defaultRadius == UNREAL_RADIUS ? 0.45 : 0.45 * (radius / UNREAL_RADIUS);
+        return new RelaxationConfig(
+                parseInt(parsed, "iterations", 350),
+                radius,
+                parseDouble(parsed, "step", 0.24),
+                parseDouble(parsed, "laplacianWeight", 0.38),
+                parseDouble(parsed, "springWeight", 0.52),
+                parseDouble(parsed, "pentagonExpandWeight", pentagonExpandWeight),
+                parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                parseInt(parsed, "logEvery", 25),
+                parseInt(parsed, "progressEvery", 10),
+                LaplacianWeighting.from(parsed.get("laplacian"))
+        );
+    }
+
+    /**
+     * Topology cache kept across jobs by the service mode; {@code null} gives each job its own.
+     */
+    private static volatile TopologyCache sharedTopologyCache;
+
+    /**
+     * Worker pool kept across jobs by the service mode and sized by its {@code --threads}, so jobs
+     * start on warm threads; {@code null} gives each job a pool of its own {@code --threads}.
+     */
+    private static volatile ForkJoinPool sharedPool;
+
+    private static ForkJoinPool jobPool(int threads) {
+        ForkJoinPool shared = sharedPool;
+        return shared != null ? shared : new ForkJoinPool(Math.max(1, threads));
+    }
+
+    private static void release(ForkJoinPool pool) {
+        if (pool != sharedPool) {
+            pool.shutdown();
+        }
+    }
+
+    private static UnrealFormatProcessor unrealProcessor(Map<String, String> parsed, ObjectMapper mapper) {
+        TopologyCache shared = sharedTopologyCache;
+        return new UnrealFormatProcessor(
+                mapper,
+                parseDouble(parsed, "weldTolerance", VertexWelder.DEFAULT_TOLERANCE),
+                parseInt(parsed, "itemConcurrency", UnrealFormatProcessor.defaultItemConcurrency()),
+                shared != null ? shared : topologyCache(parsed),
+                solver(parsed)
+        );
+    }
+
+    private static RelaxationSolver solver(Map<String, String> parsed) {
+        return RelaxationSolver.from(parsed.get("solver"));
+    }
+
+    private static TopologyCache topologyCache(Map<String, String> parsed) {
+        return new TopologyCache(
+                parseInt(parsed, "topologyCacheSize", 8),
+                parsed.containsKey("topologyCacheDir") ? Path.of(parsed.get("topologyCacheDir")) : null
+        );
+    }
+
+    private static void runServeMode(Map<String, String> parsed) throws Exception {
+        TopologyCache cache = topologyCache(parsed);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1,
+                parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors())));
+        sharedTopologyCache = cache;
+        sharedPool = pool;
+        try {
+            new RelaxService(SphereRelaxatorCli::execute, cache, parseInt(parsed, "jobConcurrency", 1))
+                    .serve(parseInt(parsed, "port", 8765),
+                            parsed.containsKey("tokenFile") ? Path.of(parsed.get("tokenFile")) : null);
+        } finally {
+            sharedTopologyCache = null;
+            sharedPool = null;
+            pool.shutdown();
+        }
+        System.out.println("Done. mode=serve");
+    }
+
+    private static void runPipelineMode(Map<String, String> parsed, Path output) throws Exception {
+        int subdivisions = parseInt(parsed, "subdivisions", 0);
+        RelaxationConfig config = unrealConfig(parsed, 1.0);
+        FullSphereCsvGenerator.GeneratedData generated;
+        UnrealFormatProcessor.RelaxedMesh relaxed;
+        ForkJoinPool pool = jobPool(config.threads());
+        try {
+            generated = FullSphereCsvGenerator.generate(subdivisions, config.radius(), pool);
+            relaxed = unrealProcessor(parsed, new ObjectMapper())
+                    .relax(generated.positions(), generated.triangles(), config, pool);
+        } finally {
+            release(pool);
+        }
+        if (isGlbOutput(output)) {
+            UnrealGlbExporter.write(output, UnrealGlbExporter.Primitive.of(relaxed, false));
+        } else {
+            UnrealTileCsvExporter exporter = new UnrealTileCsvExporter(config.threads(), parseInt(parsed, "chunkTiles", 0));
+            exporter.exportRaw(
+                    output,
+                    relaxed.positions(),
+                    relaxed.triangles(),
+                    relaxed.normals(),
+                    relaxed.uvs(),
+                    relaxed.tangents(),
+                    relaxed.tangentFlip()
+            );
+        }
+        System.out.printf(
+                Locale.US,
+                "Done. mode=pipeline, subdivisions=%d, iterations=%d, radius=%.6f, vertices=%d, triangles=%d, output_prefix=%s%n",
+                subdivisions,
+                config.iterations(),
+                config.radius(),
+                generated.vertexCount(),
+                generated.triangles().length / 3,
+                output
+        );
+        printMetrics(relaxed.metrics());
+    }
+
+    /**
+     * Batch-level arguments that are not passed down to jobs as defaults.
+     */
+    private static final Set<String> BATCH_ONLY_ARGS = Set.of(
+            "mode", "input", "output", "jobConcurrency", "memoryBudgetMb"
+    );
+
+    private static void runBatchMode(Map<String, String> parsed, Path output) throws Exception {
+        Path manifest = Path.of(parsed.get("input"));
+        int concurrency = Math.max(1, parseInt(parsed, "jobConcurrency", 1));
+        long budget = parsed.containsKey("memoryBudgetMb")
+                ? Long.parseLong(parsed.get("memoryBudgetMb")) * 1024L * 1024L
+                : (long) (Runtime.getRuntime().maxMemory() * 0.8);
+
+        Map<String, String> defaults = new HashMap<>(parsed);
+        defaults.keySet().removeAll(BATCH_ONLY_ARGS);
+        defaults.putIfAbsent("threads",
+                Integer.toString(Math.max(1, Runtime.getRuntime().availableProcessors() / concurrency)));
+
+        List<BatchRunner.Job> jobs = BatchRunner.readManifest(manifest, defaults);
+        long startedAtNs = System.nanoTime();
+        List<BatchRunner.JobResult> results = BatchRunner.run(
+                jobs, concurrency, budget, Path.of(output + "_logs"), SphereRelaxatorCli::execute
+        );
+        BatchRunner.writeSummary(output, results);
+
+        long failed = results.stream().filter(r -> !r.ok()).count();
+        System.out.printf(Locale.US,
+                "Done. mode=batch, manifest=%s, jobs=%d, failed=%d, concurrency=%d, memory_budget_mb=%d, elapsed=%.1fs, summary=%s%n",
+                manifest, jobs.size(), failed, concurrency, budget / (1024L * 1024L),
+                (System.nanoTime() - startedAtNs) / 1_000_000_000.0, output);
+    }
+
+    private static void runAllocationGuardMode(Map<String, String> parsed, Path output) throws Exception {
+        Path budgetsFile = Path.of(parsed.getOrDefault("budgets", "alloc-budgets.properties"));
+        Map<String, Double> budgets = AllocationGuard.readBudgets(budgetsFile);
+        int subdivisions = parseInt(parsed, "subdivisions", 5);
+        int iterations = parseInt(parsed, "iterations", 20);
+        List<AllocationGuard.Measurement> measurements = AllocationGuard.measure(
+                subdivisions,
+                iterations,
+                parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                budgets
+        );
+        AllocationGuard.writeReport(output, measurements);
+        for (AllocationGuard.Measurement m : measurements) {
+            System.out.printf(Locale.US, "%-12s %10.3f bytes/%s (budget %s) %s%n",
+                    m.path(), m.bytesPerUnit(), m.unit(),
+                    Double.isNaN(m.budget()) ? "none" : String.format(Locale.US, "%.3f", m.budget()),
+                    m.withinBudget() ? "ok" : "OVER");
+        }
+        List<String> over = measurements.stream()
+                .filter(m -> !m.withinBudget())
+                .map(AllocationGuard.Measurement::path)
+                .toList();
+        System.out.printf(Locale.US, "Done. mode=allocguard, subdivisions=%d, iterations=%d, budgets=%s, report=%s%n",
+                subdivisions, iterations, budgetsFile, output);
+        if (!over.isEmpty()) {
+            throw new IllegalStateException("Allocation budget exceeded: " + String.join(", ", over));
+        }
+    }
+
+    private static void runTileGraphMode(Map<String, String> parsed, Path output) throws Exception {
+        Path input = Path.of(parsed.get("input"));
+        int radius = parseInt(parsed, "ringRadius", 2);
+        int threads = parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors());
+        ForkJoinPool pool = jobPool(threads);
+        try {
+            long startedAtNs = System.nanoTime();
+            TileGraph graph = TileGraph.of(TilePack.read(input));
+            double loadSec = (System.nanoTime() - startedAtNs) / 1_000_000_000.0;
+            long tableStartedAtNs = System.nanoTime();
+            graph.writeKRingTable(output, radius, pool);
+            double tableSec = (System.nanoTime() - tableStartedAtNs) / 1_000_000_000.0;
+
+            TileGraph.KRingTable table = TileGraph.KRingTable.read(output);
+            TileGraph.Traversal state = graph.newTraversal();
+            int[] ring = new int[64];
+            int checked = Math.min(graph.tileCount(), 1_000);
+            int mismatches = 0;
+            for (int t = 0; t < checked; t++) {
+                ring = graph.kRing(t, radius, state, ring);
+                int start = table.start(t, 0);
+                int end = table.start(t, radius + 1);
+                boolean same = end - start == state.count();
+                for (int i = 0; same && i < state.count(); i++) {
+                    same = table.tileAt(start + i) == ring[i];
+                }
+                if (!same) {
+                    mismatches++;
+                }
+            }
+            System.out.printf(Locale.US,
+                    "Done. mode=tilegraph, tiles=%d, ring_radius=%d, entries=%d, load=%.3fs, table=%.3fs, table_check=%d/%d ok, output=%s%n",
+                    graph.tileCount(), radius, table.start(graph.tileCount() - 1, radius + 1),
+                    loadSec, tableSec, checked - mismatches, checked, output);
+        } finally {
+            release(pool);
+        }
+    }
+
+    private static void runLocateMode(Map<String, String> parsed, Path output) throws Exception {
+        Path input = Path.of(parsed.get("input"));
+        int threads = parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors());
+        ForkJoinPool pool = jobPool(threads);
+        try {
+            long startedAtNs = System.nanoTime();
+            TileLocator locator;
+            String source;
+            if (input.getFileName().toString().endsWith(".tileindex")) {
+                locator = TileLocator.read(input);
+                source = "index";
+            } else if (TilePack.exists(input)) {
+                locator = TilePack.read(input).locator();
+                source = "tilepack";
+            } else {
+                ObjectMapper mapper = new ObjectMapper();
+                JsonNode root = readInput(input, mapper);
+                Mesh mesh = UnrealFormatProcessor.isUnrealFormat(root)
+                        ? unrealProcessor(parsed, mapper).firstItemMesh(root, pool)
+                        : documentMesh(mapper.treeToValue(root, MeshDocument.class), threads);
+                locator = TileLocator.fromMesh(mesh);
+                source = "mesh";
+            }
+            if (!"index".equals(source)) {
+                locator.write(output);
+            }
+            System.out.printf(Locale.US, "Tile index: source=%s, tiles=%d, load+build=%.3fs, index=%s%n",
+                    source, locator.tileCount(), (System.nanoTime() - startedAtNs) / 1_000_000_000.0,
+                    "index".equals(source) ? input : output);
+
+            if (parsed.containsKey("queries")) {
+                Path queries = Path.of(parsed.get("queries"));
+                Path results = Path.of(parsed.getOrDefault("queryOutput", output + "_lookup.csv"));
+                ensureOutputPath(results);
+                double[] directions = readQueryDirections(queries);
+                long[] ids = new long[directions.length / 3];
+                long queryStartedAtNs = System.nanoTime();
+                locator.locateAll(directions, ids, pool);
+                double querySec = (System.nanoTime() - queryStartedAtNs) / 1_000_000_000.0;
+                try (BufferedWriter writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+                    writer.write("row,tile_id");
+                    writer.newLine();
+                    for (int i = 0; i < ids.length; i++) {
+                        writer.write(i + "," + ids[i]);
+                        writer.newLine();
+                    }
+                }
+                System.out.printf(Locale.US, "Queries: %d in %.3fs, results=%s%n", ids.length, querySec, results);
+            }
+
+            int samples = parseInt(parsed, "benchmark", 0);
+            if (samples > 0) {
+                Random random = new Random(42L);
+                double[] directions = new double[samples * 3];
+                for (int i = 0; i < directions.length; i++) {
+                    directions[i] = random.nextGaussian();
+                }
+                long[] ids = new long[samples];
+                locator.locateAll(directions, ids, pool);
+                long benchStartedAtNs = System.nanoTime();
+                locator.locateAll(directions, ids, pool);
+                double benchSec = (System.nanoTime() - benchStartedAtNs) / 1_000_000_000.0;
+
+                int checked = Math.min(samples, 2_000);
+                int mismatches = 0;
+                for (int i = 0; i < checked; i++) {
+                    double x = directions[i * 3];
+                    double y = directions[i * 3 + 1];
+                    double z = directions[i * 3 + 2];
+                    int found = locator.locate(x, y, z);
+                    if (!locator.contains(found, x, y, z) && found != locator.locateBruteForce(x, y, z)) {
+                        mismatches++;
+                    }
+                }
+                System.out.printf(Locale.US,
+                        "Benchmark: queries=%d, threads=%d, elapsed=%.3fs, throughput=%.0f queries/s, brute-force check=%d/%d ok%n",
+                        samples, threads, benchSec, samples / Math.max(benchSec, 1e-9), checked - mismatches, checked);
+            }
+        } finally {
+            release(pool);
+        }
+    }
+
+    /**
+     * Query directions from a headed CSV with {@code lat,lon} (degrees, also {@code latitude},
+     * {@code long}, {@code longitude}) or {@code x,y,z} columns, packed as {@code xyz}.
+     */
+    private static double[] readQueryDirections(Path queries) throws Exception {
+        List<String> lines = Files.readAllLines(queries, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            return new double[0];
+        }
+        List<String> header = Arrays.asList(lines.get(0).toLowerCase(Locale.ROOT).replace(" ", "").split(","));
+        int lat = firstIndex(header, "lat", "latitude");
+        int lon = firstIndex(header, "lon", "long", "longitude");
+        int x = header.indexOf("x");
+        int y = header.indexOf("y");
+        int z = header.indexOf("z");
+        boolean latLong = lat >= 0 && lon >= 0;
+        if (!latLong && (x < 0 || y < 0 || z < 0)) {
+            throw new IllegalArgumentException("Query CSV needs lat,lon or x,y,z columns: " + queries);
+        }
+        double[] directions = new double[(lines.size() - 1) * 3];
+        int count = 0;
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).isBlank()) {
+                continue;
+            }
+            String[] cells = lines.get(i).split(",");
+            int o = count++ * 3;
+            if (latLong) {
+                double la = Math.toRadians(Double.parseDouble(cells[lat].trim()));
+                double lo = Math.toRadians(Double.parseDouble(cells[lon].trim()));
+                directions[o] = Math.cos(la) * Math.cos(lo);
+                directions[o + 1] = Math.sin(la);
+                directions[o + 2] = Math.cos(la) * Math.sin(lo);
+            } else {
+                directions[o] = Double.parseDouble(cells[x].trim());
+                directions[o + 1] = Double.parseDouble(cells[y].trim());
+                directions[o + 2] = Double.parseDouble(cells[z].trim());
+            }
+        }
+        return Arrays.copyOf(directions, count * 3);
+    }
+
+    private static int firstIndex(List<String> header, String... names) {
+        for (String name : names) {
+            int i = header.indexOf(name);
+            if (i >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void runSweepMode(Map<String, String> parsed, Path output) throws Exception {
+        Map<String, String> single = new HashMap<>(parsed);
+        for (String key : SWEEP_KEYS) {
+            single.remove(key);
+        }
+        int threads = parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors());
+        ForkJoinPool pool = jobPool(threads);
+        try {
+            Mesh mesh;
+            RelaxationConfig base;
+            String source;
+            if (parsed.containsKey("input")) {
+                Path input = Path.of(parsed.get("input"));
+                ObjectMapper mapper = new ObjectMapper();
+                JsonNode root = readInput(input, mapper);
+                if (UnrealFormatProcessor.isUnrealFormat(root)) {
+                    base = unrealConfig(single, UNREAL_RADIUS);
+                    mesh = unrealProcessor(parsed, mapper).firstItemMesh(root, pool);
+                } else {
+                    MeshDocument document = mapper.treeToValue(root, MeshDocument.class);
+                    base = documentConfig(single, document);
+                    mesh = documentMesh(document, threads);
+                }
+                source = input.toString();
+            } else {
+                int subdivisions = parseInt(parsed, "subdivisions", 0);
+                base = unrealConfig(single, 1.0);
+                FullSphereCsvGenerator.GeneratedData generated =
+                        FullSphereCsvGenerator.generate(subdivisions, base.radius(), pool);
+                mesh = unrealProcessor(parsed, new ObjectMapper())
+                        .weldedMesh(generated.positions(), generated.triangles(), pool);
+                source = "subdivisions=" + subdivisions;
+            }
+
+            List<RelaxationConfig> configs = new ArrayList<>();
+            for (double step : parseDoubleList(parsed, "step", base.step())) {
+                for (double laplacian : parseDoubleList(parsed, "laplacianWeight", base.laplacianWeight())) {
+                    for (double spring : parseDoubleList(parsed, "springWeight", base.springWeight())) {
+                        for (double pentagon : parseDoubleList(parsed, "pentagonExpandWeight", base.pentagonExpandWeight())) {
+                            configs.add(new RelaxationConfig(
+                                    base.iterations(), base.radius(), step, laplacian, spring, pentagon,
+                                    base.threads(), 0, 0, base.laplacian()
+                            ));
+                        }
+                    }
+                }
+            }
+
+            long startedAtNs = System.nanoTime();
+            List<ParameterSweep.Result> results = ParameterSweep.run(
+                    mesh,
+                    configs,
+                    parseInt(parsed, "checkpointEvery", 0),
+                    parseDouble(parsed, "pruneRatio", 1.5),
+                    pool
+            );
+            double elapsedSec = (System.nanoTime() - startedAtNs) / 1_000_000_000.0;
+
+            try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                writer.write("Rank,Step,LaplacianWeight,SpringWeight,PentagonExpandWeight,Iterations,Status,Score,"
+                        + "EdgeMin,EdgeMax,EdgeMean,EdgeStdDev,PentagonAreaMean,HexAreaMean,RuntimeMs");
+                writer.newLine();
+                for (int i = 0; i < results.size(); i++) {
+                    ParameterSweep.Result r = results.get(i);
+                    RelaxationConfig c = r.config();
+                    RelaxationMetrics m = r.metrics();
+                    writer.write(String.format(Locale.US,
+                            "%d,%.6f,%.6f,%.6f,%.6f,%d,%s,%.9f,%.9f,%.9f,%.9f,%.9f,%.9f,%.9f,%.3f",
+                            i + 1, c.step(), c.laplacianWeight(), c.springWeight(), c.pentagonExpandWeight(),
+                            r.iterationsRun(), r.pruned() ? "pruned" : "done", r.score(),
+                            m.edgeMin(), m.edgeMax(), m.edgeMean(), m.edgeStdDev(),
+                            m.pentagonAreaMean(), m.hexAreaMean(), r.runtimeNs() / 1_000_000.0));
+                    writer.newLine();
+                }
+            }
+
+            System.out.printf(Locale.US,
+                    "Done. mode=sweep, source=%s, configs=%d, iterations=%d, elapsed=%.1fs, table=%s%n",
+                    source, configs.size(), base.iterations(), elapsedSec, output);
+            for (int i = 0; i < Math.min(5, results.size()); i++) {
+                ParameterSweep.Result r = results.get(i);
+                RelaxationConfig c = r.config();
+                System.out.printf(Locale.US,
+                        "#%d step=%.4f laplacianWeight=%.4f springWeight=%.4f pentagonExpandWeight=%.4f score=%.6f std=%.6f%s%n",
+                        i + 1, c.step(), c.laplacianWeight(), c.springWeight(), c.pentagonExpandWeight(),
+                        r.score(), r.metrics().edgeStdDev(), r.pruned() ? " (pruned)" : "");
+            }
+        } finally {
+            release(pool);
+        }
+    }
+
+    private static final List<String> SWEEP_KEYS = List.of("step", "laplacianWeight", "springWeight", "pentagonExpandWeight");
+
+    private static double[] parseDoubleList(Map<String, String> args, String key, double fallback) {
+        if (!args.containsKey(key)) {
+            return new double[] {fallback};
+        }
+        String[] parts = args.get(key).split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+
     private static void runIcosphereMode(Map<String, String> parsed, Path output) throws Exception {
         int subdivisions = parseInt(parsed, "subdivisions", 0);
         double radius = 1.0;
@@ -125,7 +1040,13 @@ public final class SphereRelaxatorCli {
         }
         String format = parsed.getOrDefault("format", detectOutputFormat(output));
 
-        List<Vec3> vertices = IcosphereGenerator.generateVertices(subdivisions, radius);
+        List<Vec3> vertices;
+        ForkJoinPool pool = jobPool(parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            vertices = IcosphereGenerator.generateVertices(subdivisions, radius, pool);
+        } finally {
+            release(pool);
+        }
         if ("json".equalsIgnoreCase(format)) {
             writeVerticesAsJson(vertices, radius, output);
         } else if ("csv".equalsIgnoreCase(format)) {
@@ -145,27 +1066,178 @@ public final class SphereRelaxatorCli {
             System.out.println("Notice: --radius is ignored in fullcsv mode. Using fixed radius=1.");
         }
 
-        FullSphereCsvGenerator.GeneratedData generated = FullSphereCsvGenerator.generate(subdivisions, radius);
-        UnrealTileCsvExporter exporter = new UnrealTileCsvExporter();
-        exporter.exportRaw(
-                output,
-                generated.vertices(),
-                generated.triangles(),
-                generated.normals(),
-                generated.uvs(),
-                generated.tangents()
+        int chunkTiles = parseInt(parsed, "chunkTiles", 0);
+        UnrealTileCsvExporter exporter = new UnrealTileCsvExporter(
+                parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                chunkTiles
         );
+        boolean stream = parseBoolean(parsed, "stream", subdivisions > IcosphereGenerator.MAX_SUBDIVISIONS);
+        if (stream) {
+            if (isGlbOutput(output)) {
+                throw new IllegalArgumentException("GLB output is not supported together with --stream");
+            }
+            if (chunkTiles > 0) {
+                throw new IllegalArgumentException("--chunkTiles is not supported together with --stream");
+            }
+            long tiles;
+            long triangles;
+            try (UnrealTileCsvExporter.PatchCsvWriter writer = exporter.openPatchWriter(output)) {
+                StreamingSphereGenerator.generate(
+                        subdivisions,
+                        radius,
+                        parseInt(parsed, "patchFrequency", StreamingSphereGenerator.DEFAULT_PATCH_FREQUENCY),
+                        writer
+                );
+                tiles = writer.tileCount();
+                triangles = writer.triangleCount();
+            }
+            System.out.printf(
+                    Locale.US,
+                    "Done. mode=fullcsv (streamed), subdivisions=%d, radius=%.6f, tiles=%d, vertices=%d, triangles=%d, output_prefix=%s%n",
+                    subdivisions,
+                    radius,
+                    tiles,
+                    StreamingSphereGenerator.vertexCount(subdivisions),
+                    triangles,
+                    output
+            );
+            return;
+        }
+
+        FullSphereCsvGenerator.GeneratedData generated;
+        ForkJoinPool pool = jobPool(parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            generated = FullSphereCsvGenerator.generate(subdivisions, radius, pool);
+        } finally {
+            release(pool);
+        }
+        if (isGlbOutput(output)) {
+            UnrealGlbExporter.write(output, new UnrealGlbExporter.Primitive(
+                    generated.positions(),
+                    generated.triangles(),
+                    generated.normals(),
+                    generated.uvs(),
+                    generated.tangents(),
+                    null,
+                    false
+            ));
+        } else {
+            exporter.exportRaw(
+                    output,
+                    generated.positions(),
+                    generated.triangles(),
+                    generated.normals(),
+                    generated.uvs(),
+                    generated.tangents()
+            );
+        }
         System.out.printf(
                 Locale.US,
                 "Done. mode=fullcsv, subdivisions=%d, radius=%.6f, vertices=%d, triangles=%d, output_prefix=%s%n",
                 subdivisions,
                 radius,
-                generated.vertices().size(),
+                generated.vertexCount(),
                 generated.triangles().length / 3,
                 output
         );
     }
 
+    private static void runLodMode(Map<String, String> parsed, Path output) throws Exception {
+        int minSubdivisions = parseInt(parsed, "minSubdivisions", 0);
+        int maxSubdivisions = parseInt(parsed, "maxSubdivisions", parseInt(parsed, "subdivisions", minSubdivisions));
+        if (minSubdivisions < 0 || maxSubdivisions < minSubdivisions) {
+            throw new IllegalArgumentException("LOD range must satisfy 0 <= minSubdivisions <= maxSubdivisions");
+        }
+        double radius = 1.0;
+        if (parsed.containsKey("radius") && Math.abs(parseDouble(parsed, "radius", 1.0) - 1.0) > 1e-9) {
+            System.out.println("Notice: --radius is ignored in lod mode. Using fixed radius=1.");
+        }
+        UnrealTileCsvExporter exporter = new UnrealTileCsvExporter(
+                parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()),
+                parseInt(parsed, "chunkTiles", 0)
+        );
+
+        ForkJoinPool pool = jobPool(parseInt(parsed, "threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            IcosphereGenerator.MeshData mesh = null;
+            for (int level = minSubdivisions; level <= maxSubdivisions; level++) {
+                int frequency = 1 << level;
+                mesh = mesh == null
+                        ? IcosphereGenerator.generateMesh(level, radius, pool)
+                        : IcosphereGenerator.refine(mesh, frequency / 2, radius, pool);
+                FullSphereCsvGenerator.GeneratedData generated = FullSphereCsvGenerator.generate(mesh, radius, pool);
+                Path levelPrefix = lodPrefix(output, level);
+                exporter.exportRaw(
+                        levelPrefix,
+                        generated.positions(),
+                        generated.triangles(),
+                        generated.normals(),
+                        generated.uvs(),
+                        generated.tangents()
+                );
+                if (level > minSubdivisions) {
+                    writeLodLinks(output, level, IcosphereGenerator.parentIndices(mesh, frequency, pool));
+                }
+                System.out.printf(
+                        Locale.US,
+                        "LOD %d written: tiles=%d, triangles=%d, output_prefix=%s%n",
+                        level, mesh.vertexCount(), generated.triangles().length / 3, levelPrefix
+                );
+            }
+        } finally {
+            release(pool);
+        }
+        System.out.printf(
+                Locale.US,
+                "Done. mode=lod, subdivisions=%d..%d, radius=%.6f, output_prefix=%s%n",
+                minSubdivisions, maxSubdivisions, radius, output
+        );
+    }
+
+    private static Path lodPrefix(Path output, int level) {
+        return Path.of(output + "_lod" + level);
+    }
+
+    /**
+     * Tile ids are icosphere vertex ids, so the vertex parent map doubles as the tile parent map.
+     */
+    private static void writeLodLinks(Path output, int level, int[] parents) throws Exception {
+        List<String> parentLines = new ArrayList<>(parents.length + 1);
+        parentLines.add("tile_id,parent_tile_id");
+        int coarseCount = 0;
+        for (int tile = 0; tile < parents.length; tile++) {
+            parentLines.add(tile + "," + parents[tile]);
+            coarseCount = Math.max(coarseCount, parents[tile] + 1);
+        }
+        Files.write(Path.of(lodPrefix(output, level) + "_parents.csv"), parentLines, StandardCharsets.UTF_8);
+
+        int[] childStart = new int[coarseCount + 1];
+        for (int parent : parents) {
+            childStart[parent + 1]++;
+        }
+        for (int p = 0; p < coarseCount; p++) {
+            childStart[p + 1] += childStart[p];
+        }
+        int[] children = new int[parents.length];
+        int[] fill = Arrays.copyOf(childStart, coarseCount);
+        for (int tile = 0; tile < parents.length; tile++) {
+            children[fill[parents[tile]]++] = tile;
+        }
+        List<String> childLines = new ArrayList<>(parents.length + 1);
+        childLines.add("tile_id,child_order,child_tile_id");
+        for (int p = 0; p < coarseCount; p++) {
+            for (int k = childStart[p]; k < childStart[p + 1]; k++) {
+                childLines.add(p + "," + (k - childStart[p]) + "," + children[k]);
+            }
+        }
+        Files.write(Path.of(lodPrefix(output, level - 1) + "_children.csv"), childLines, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isGlbOutput(Path output) {
+        Path name = output.getFileName();
+        return name != null && name.toString().toLowerCase(Locale.ROOT).endsWith(".glb");
+    }
+
     private static String detectOutputFormat(Path output) {
         String name = output.getFileName() == null ? "" : output.getFileName().toString().toLowerCase(Locale.ROOT);
         if (name.endsWith(".csv")) {
@@ -256,25 +1328,95 @@ public final class SphereRelaxatorCli {
         System.out.println("Usage:");
         System.out.println("  Relax mode:");
         System.out.println("    ./run_relaxator.sh --mode relax --input in.json --output out.json [options]");
+        System.out.println("    (--input may also be a point cloud: .txt/.csv vertices or mesh JSON without tiles; the Goldberg dual of");
+        System.out.println("    its spherical Delaunay triangulation is relaxed, e.g. --input icosphere_r4_vertices.csv)");
         System.out.println("  Icosphere mode (vertices only):");
         System.out.println("    ./run_relaxator.sh --mode icosphere --subdivisions 4 --output vertices.csv [--format txt|csv|json]");
         System.out.println("  Full CSV mode (from scratch, no input JSON):");
         System.out.println("    ./run_relaxator.sh --mode fullcsv --subdivisions 4 --output out/sphere_data");
+        System.out.println("  LOD mode (tile packs for a range of levels plus parent/child tile maps):");
+        System.out.println("    ./run_relaxator.sh --mode lod --minSubdivisions 2 --maxSubdivisions 6 --output out/sphere_data");
+        System.out.println("  Pipeline mode (generate, relax and write tile CSVs in one run, no JSON):");
+        System.out.println("    ./run_relaxator.sh --mode pipeline --subdivisions 5 --iterations 200 --output out/sphere_data");
+        System.out.println("  Sweep mode (relax comma-separated parameter lists over one topology, ranked CSV table):");
+        System.out.println("    ./run_relaxator.sh --mode sweep --input in.json --step 0.2,0.28 --springWeight 0.4,0.5 --output sweep.csv");
+        System.out.println("  Batch mode (run a JSON or CSV manifest of jobs in one JVM, per-job summary CSV):");
+        System.out.println("    ./run_relaxator.sh --mode batch --input jobs.json --jobConcurrency 2 --output out/batch_summary.csv");
+        System.out.println("  Serve mode (localhost HTTP: POST /run with JSON CLI arguments, GET|DELETE /jobs/<id>, GET /health;");
+        System.out.println("  requests need 'Authorization: Bearer <token>' with the printed token, POSTs 'Content-Type: application/json'):");
+        System.out.println("    ./run_relaxator.sh --mode serve --port 8765 [--jobConcurrency 1] [--tokenFile relax.token]");
+        System.out.println("  Partitioned relax (mesh JSON or point cloud, vertex solver, uniform Laplacian): --workers N splits the mesh");
+        System.out.println("  by icosahedron face into N worker JVMs that exchange boundary positions with this process each iteration;");
+        System.out.println("  mesh JSON is streamed to the workers, so this process holds only the partition and the boundary rings:");
+        System.out.println("    ./run_relaxator.sh --mode relax --input in.json --output out.json --workers 4");
+        System.out.println("    ./run_relaxator.sh --mode relax --input in.json --output out.json --workers 4 --spawnWorkers false \\");
+        System.out.println("        --bind 10.0.0.5 --workerPort 9000 --tokenFile shared.token");
+        System.out.println("  Worker mode (a worker for a coordinator started with --spawnWorkers false, same token file):");
+        System.out.println("    ./run_relaxator.sh --mode worker --host 10.0.0.5 --port 9000 --tokenFile shared.token [--threads 8]");
+        System.out.println("  Locate mode (point-to-tile index from a tile CSV pack, mesh JSON or .tileindex; optional queries/benchmark):");
+        System.out.println("    ./run_relaxator.sh --mode locate --input out/sphere_data --output out/sphere_data.tileindex [--queries points.csv] [--benchmark 1000000]");
+        System.out.println("  Allocation guard mode (bytes allocated per unit of work on hot paths vs. checked-in budgets; fails when over):");
+        System.out.println("    ./run_relaxator.sh --mode allocguard --budgets alloc-budgets.properties --output target/alloc_report.csv");
+        System.out.println("  Tile graph mode (precomputed k-ring table from a tile CSV pack, little-endian binary):");
+        System.out.println("    ./run_relaxator.sh --mode tilegraph --input out/sphere_data --ringRadius 3 --output out/sphere_data_krings.bin");
         System.out.println("  Tile CSV mode (Unreal-like JSON -> multiple CSV files):");
         System.out.println("    ./run_relaxator.sh --mode tilecsv --input sphere.json --output out/sphere_data");
+        System.out.println("  GLB output (relax with Unreal-like input, tilecsv, fullcsv, pipeline): an --output ending in .glb");
+        System.out.println("  writes one binary glTF file with per-vertex _TILE_ID instead of JSON or tile CSVs:");
+        System.out.println("    ./run_relaxator.sh --mode pipeline --subdivisions 5 --iterations 200 --output out/sphere.glb");
         System.out.println("Options:");
-        System.out.println("  --mode <relax|icosphere|fullcsv|tilecsv> default: relax");
-        System.out.println("  --subdivisions <int>          for icosphere/fullcsv mode, default: 0");
+        System.out.println("  --mode <relax|icosphere|fullcsv|tilecsv|lod|pipeline|sweep|batch|serve|worker|locate|tilegraph|allocguard> default: relax");
+        System.out.println("  --subdivisions <int>          for icosphere/fullcsv/pipeline mode, default: 0");
+        System.out.println("  --minSubdivisions <int>       lod mode: first level, default: 0");
+        System.out.println("  --maxSubdivisions <int>       lod mode: last level, default: --subdivisions or minSubdivisions");
         System.out.println("  --format <txt|csv|json>       for icosphere mode, default: by output extension");
+        System.out.println("  --stream <true/false>         fullcsv: generate and write patch by patch, default: true above subdivisions 12");
+        System.out.println("  --chunkTiles <int>            tilecsv/fullcsv: write spatial chunks of about this many tiles plus a manifest, default: 0 (one file set)");
+        System.out.println("  --patchFrequency <int>        fullcsv streaming patch size in lattice steps (power of two), default: 64");
         System.out.println("  --iterations <int>            default: 350");
-        System.out.println("  --radius <double>             used in relax mode; ignored in icosphere/fullcsv (fixed 1.0)");
+        System.out.println("  --radius <double>             used in relax/pipeline mode (pipeline default 1.0); ignored in icosphere/fullcsv (fixed 1.0)");
+        System.out.println("  --solver <name>               relax/pipeline: vertex (move every vertex), implicit (vertex with a conjugate-gradient");
+        System.out.println("                                Laplacian step, stable at large --step), dual (relax tile centers and rebuild corners),");
+        System.out.println("                                lbfgs (minimize an explicit energy), lloyd or cvt (centroidal Voronoi, cvt Anderson-accelerated),");
+        System.out.println("                                default: vertex");
+        System.out.println("  --laplacian <uniform|cotangent> Laplacian weights of the vertex/implicit solvers, default: uniform");
         System.out.println("  --step <double>               default: 0.28");
         System.out.println("  --laplacianWeight <double>    default: 0.42");
         System.out.println("  --springWeight <double>       default: 0.45");
-        System.out.println("  --pentagonExpandWeight <double> default: 0.35");
-        System.out.println("  --threads <int>               default: cpu count");
+        System.out.println("  --pentagonExpandWeight <double> default: 0.35 for mesh JSON, 0.45 for Unreal-like input; point clouds:");
+        System.out.println("                                0.35 * radius / 450; pipeline and generated sweeps: 0.45 * radius / 450");
+        System.out.println("                                (an absolute displacement, so scaled to the sphere)");
+        System.out.println("  --checkpointEvery <int>       sweep: compare configs every N iterations and prune laggards, default: 0 (off)");
+        System.out.println("  --pruneRatio <double>         sweep: prune configs whose std/mean edge score exceeds best * ratio, default: 1.5");
+        System.out.println("  --port <int>                  serve: localhost port, default: 8765; worker: coordinator port");
+        System.out.println("  --host <name>                 worker: coordinator host, default: 127.0.0.1");
+        System.out.println("  --workers <int>               relax: worker processes (1-20), default: 1 (in process)");
+        System.out.println("  --workerThreads <int>         relax: threads per worker, default: --threads / --workers");
+        System.out.println("  --workerXmx <size>            relax: -Xmx of spawned workers, e.g. 2g, default: JVM default");
+        System.out.println("  --spawnWorkers <true/false>   relax: start workers as local JVMs, default: true; false waits for");
+        System.out.println("                                --mode worker connections on --workerPort");
+        System.out.println("  --workerPort <int>            relax: coordinator port, default: 0 (any free port, only with spawned workers)");
+        System.out.println("  --bind <address>              relax: address --spawnWorkers false listens on, default: loopback");
+        System.out.println("  --jobConcurrency <int>        batch/serve: jobs run at once, default: 1 (job threads default to cpu count / concurrency)");
+        System.out.println("  --tokenFile <path>            serve: also write the per-launch access token here (owner-only);");
+        System.out.println("                                relax/worker: shared worker token, required with --spawnWorkers false");
+        System.out.println("                                (the coordinator creates the file with a random token when missing)");
+        System.out.println("  --memoryBudgetMb <int>        batch: estimated job memory admitted at once, default: 80% of max heap");
+        System.out.println("  --queries <path>              locate: CSV of lat,lon (degrees, y axis north) or x,y,z directions");
+        System.out.println("  --queryOutput <path>          locate: row,tile_id results, default: <output>_lookup.csv");
+        System.out.println("  --benchmark <int>             locate: time this many random queries and spot-check them by brute force");
+        System.out.println("  --budgets <path>              allocguard: properties file of bytes-per-unit budgets, default: alloc-budgets.properties");
+        System.out.println("                                (allocguard also reads --subdivisions, default 5, and --iterations, default 20)");
+        System.out.println("  --ringRadius <int>            tilegraph: hops stored per tile, default: 2");
+        System.out.println("  --threads <int>               default: cpu count; serve: size of the worker pool all jobs share");
         System.out.println("  --logEvery <int>              default: 25");
         System.out.println("  --progressEvery <int>         default: 10");
         System.out.println("  --emitUv <true/false>         default: false (for Unreal-like format)");
+        System.out.println("  --weldTolerance <double>      default: 1e-6 (vertex weld distance for Unreal-like format)");
+        System.out.println("  --itemConcurrency <int>       default: 2 on 4+ cores, else 1 (Unreal items relaxed at once)");
+        System.out.println("  --topologyCacheSize <int>     default: 8 (in-memory topologies kept for Unreal-like format)");
+        System.out.println("  --topologyCacheDir <path>     optional on-disk topology cache for Unreal-like format");
+        System.out.println("  --cacheDir <path>             optional result cache: identical runs restore their output files");
+        System.out.println("  --cacheMaxMb <int>            default: 1024 (result cache size, least recently used entries evicted)");
     }
 }
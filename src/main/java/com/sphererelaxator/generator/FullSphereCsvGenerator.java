@@ -1,123 +1,98 @@
 package com.sphererelaxator.generator;
 
+import com.sphererelaxator.mesh.LongIntHashMap;
 import com.sphererelaxator.mesh.Vec3;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
+/**
+ * Dual (Goldberg) tile sphere of an icosphere: one tile per icosphere vertex, fanned to the
+ * centers of its adjacent faces. Output vertices are the icosphere vertices followed by one
+ * center per icosphere face. Rings are walked through the face winding, counter-clockwise
+ * seen from outside, starting at the lowest-index adjacent face.
+ */
 public final class FullSphereCsvGenerator {
     private static final double EPS = 1e-12;
 
     private FullSphereCsvGenerator() {
     }
 
-    public static GeneratedData generate(int subdivisions, double radius) {
-        IcosphereGenerator.MeshData baseMesh = IcosphereGenerator.generateMesh(subdivisions, radius);
-        List<Vec3> baseVertices = baseMesh.vertices();
-        List<int[]> faces = baseMesh.faces();
+    public static GeneratedData generate(int subdivisions, double radius, ForkJoinPool pool) {
+        return generate(IcosphereGenerator.generateMesh(subdivisions, radius, pool), radius, pool);
+    }
 
-        List<Vec3> faceCenters = new ArrayList<>(faces.size());
-        for (int[] f : faces) {
-            Vec3 center = baseVertices.get(f[0])
-                    .add(baseVertices.get(f[1]))
-                    .add(baseVertices.get(f[2]))
+    public static GeneratedData generate(IcosphereGenerator.MeshData baseMesh, double radius, ForkJoinPool pool) {
+        double[] basePositions = baseMesh.positions();
+        int[] faces = baseMesh.faces();
+        int baseVertexCount = baseMesh.vertexCount();
+        int faceCount = baseMesh.faceCount();
+        int vertexCount = baseVertexCount + faceCount;
+
+        double[] positions = new double[vertexCount * 3];
+        System.arraycopy(basePositions, 0, positions, 0, basePositions.length);
+        pool.submit(() -> IntStream.range(0, faceCount).parallel().forEach(fi -> {
+            Vec3 center = vertexAt(basePositions, faces[fi * 3])
+                    .add(vertexAt(basePositions, faces[fi * 3 + 1]))
+                    .add(vertexAt(basePositions, faces[fi * 3 + 2]))
                     .scale(1.0 / 3.0)
                     .normalize()
                     .scale(radius);
-            faceCenters.add(center);
-        }
-
-        int baseVertexCount = baseVertices.size();
-        List<Vec3> vertices = new ArrayList<>(baseVertexCount + faceCenters.size());
-        vertices.addAll(baseVertices);
-        vertices.addAll(faceCenters);
-
-        List<List<Integer>> facesByVertex = new ArrayList<>(baseVertexCount);
-        for (int i = 0; i < baseVertexCount; i++) {
-            facesByVertex.add(new ArrayList<>());
-        }
-        for (int fi = 0; fi < faces.size(); fi++) {
-            int[] f = faces.get(fi);
-            facesByVertex.get(f[0]).add(fi);
-            facesByVertex.get(f[1]).add(fi);
-            facesByVertex.get(f[2]).add(fi);
+            int o = (baseVertexCount + fi) * 3;
+            positions[o] = center.x();
+            positions[o + 1] = center.y();
+            positions[o + 2] = center.z();
+        })).join();
+
+        HalfEdges halfEdges = HalfEdges.of(faces, baseVertexCount);
+        int[] firstTriangle = new int[baseVertexCount + 1];
+        for (int vi = 0; vi < baseVertexCount; vi++) {
+            int valence = halfEdges.valence[vi];
+            firstTriangle[vi + 1] = firstTriangle[vi] + (valence < 3 ? 0 : valence);
         }
 
-        List<Integer> triList = new ArrayList<>();
-        for (int vi = 0; vi < baseVertexCount; vi++) {
-            List<Integer> adjacentFaces = facesByVertex.get(vi);
-            if (adjacentFaces.size() < 3) {
-                continue;
+        int[] triangles = new int[firstTriangle[baseVertexCount] * 3];
+        pool.submit(() -> IntStream.range(0, baseVertexCount).parallel().forEach(vi -> {
+            int valence = halfEdges.valence[vi];
+            if (valence < 3) {
+                return;
             }
-            List<Integer> orderedFaces = sortFacesAroundVertex(baseVertices.get(vi), faceCenters, adjacentFaces);
-            List<Integer> ring = new ArrayList<>(orderedFaces.size());
-            for (int fi : orderedFaces) {
-                ring.add(baseVertexCount + fi);
+            int startCorner = halfEdges.firstCorner[vi];
+            int corner = startCorner;
+            int out = firstTriangle[vi] * 3;
+            for (int k = 0; k < valence; k++) {
+                int nextCorner = halfEdges.nextCornerAround(corner);
+                triangles[out++] = vi;
+                triangles[out++] = baseVertexCount + corner / 3;
+                triangles[out++] = baseVertexCount + nextCorner / 3;
+                corner = nextCorner;
             }
-            for (int i = 0; i < ring.size(); i++) {
-                int a = ring.get(i);
-                int b = ring.get((i + 1) % ring.size());
-                triList.add(vi);
-                triList.add(a);
-                triList.add(b);
-            }
-        }
-
-        int[] triangles = new int[triList.size()];
-        for (int i = 0; i < triList.size(); i++) {
-            triangles[i] = triList.get(i);
-        }
-
-        List<Vec3> normals = new ArrayList<>(vertices.size());
-        List<double[]> uvs = new ArrayList<>(vertices.size());
-        List<Vec3> tangents = new ArrayList<>(vertices.size());
-        for (Vec3 p : vertices) {
-            Vec3 n = p.normalize();
-            normals.add(n);
-            uvs.add(sphericalUv(n));
-            tangents.add(defaultTangent(n));
-        }
-
-        return new GeneratedData(vertices, triangles, normals, uvs, tangents);
+        })).join();
+
+        double[] normals = new double[vertexCount * 3];
+        double[] uvs = new double[vertexCount * 2];
+        double[] tangents = new double[vertexCount * 3];
+        pool.submit(() -> IntStream.range(0, vertexCount).parallel().forEach(vi -> {
+            Vec3 n = vertexAt(positions, vi).normalize();
+            normals[vi * 3] = n.x();
+            normals[vi * 3 + 1] = n.y();
+            normals[vi * 3 + 2] = n.z();
+            sphericalUv(n, uvs, vi * 2);
+            Vec3 t = defaultTangent(n);
+            tangents[vi * 3] = t.x();
+            tangents[vi * 3 + 1] = t.y();
+            tangents[vi * 3 + 2] = t.z();
+        })).join();
+
+        return new GeneratedData(positions, triangles, normals, uvs, tangents);
     }
 
-    private static List<Integer> sortFacesAroundVertex(Vec3 vertex,
-                                                       List<Vec3> faceCenters,
-                                                       List<Integer> adjacentFaces) {
-        Vec3 normal = vertex.normalize();
-        Vec3 ref = projected(faceCenters.get(adjacentFaces.get(0)), normal).normalize();
-        if (ref.length() < EPS) {
-            ref = fallbackTangent(normal);
-        }
-        Vec3 finalRef = ref;
-        return adjacentFaces.stream()
-                .map(fi -> new FaceAngle(fi, angleAround(faceCenters.get(fi), normal, finalRef)))
-                .sorted(Comparator.comparingDouble(FaceAngle::angle))
-                .map(FaceAngle::faceIndex)
-                .toList();
-    }
-
-    private static double angleAround(Vec3 point, Vec3 normal, Vec3 ref) {
-        Vec3 projected = projected(point, normal).normalize();
-        if (projected.length() < EPS) {
-            projected = ref;
-        }
-        double x = ref.dot(projected);
-        double y = normal.dot(ref.cross(projected));
-        return Math.atan2(y, x);
+    private static Vec3 vertexAt(double[] positions, int i) {
+        return new Vec3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
     }
 
-    private static Vec3 projected(Vec3 p, Vec3 normal) {
-        return p.subtract(normal.scale(p.dot(normal)));
-    }
-
-    private static Vec3 fallbackTangent(Vec3 normal) {
-        Vec3 axis = Math.abs(normal.y()) < 0.9 ? new Vec3(0, 1, 0) : new Vec3(1, 0, 0);
-        return axis.cross(normal).normalize();
-    }
-
-    private static Vec3 defaultTangent(Vec3 normal) {
+    static Vec3 defaultTangent(Vec3 normal) {
         Vec3 t = new Vec3(0, 1, 0).cross(normal);
         if (t.length() < EPS) {
             t = new Vec3(1, 0, 0).cross(normal);
@@ -125,22 +100,82 @@ public final class FullSphereCsvGenerator {
         return t.normalize();
     }
 
-    private static double[] sphericalUv(Vec3 normal) {
+    static void sphericalUv(Vec3 normal, double[] out, int offset) {
         double clampedY = Math.max(-1.0, Math.min(1.0, normal.y()));
-        double u = Math.atan2(normal.z(), normal.x()) / (2.0 * Math.PI) + 0.5;
-        double v = 0.5 - Math.asin(clampedY) / Math.PI;
-        return new double[]{u, v};
+        out[offset] = Math.atan2(normal.z(), normal.x()) / (2.0 * Math.PI) + 0.5;
+        out[offset + 1] = 0.5 - Math.asin(clampedY) / Math.PI;
     }
 
+    /**
+     * Packed output: {@code xyz} per vertex for positions, normals and tangents, {@code uv} per vertex.
+     */
     public record GeneratedData(
-            List<Vec3> vertices,
+            double[] positions,
             int[] triangles,
-            List<Vec3> normals,
-            List<double[]> uvs,
-            List<Vec3> tangents
+            double[] normals,
+            double[] uvs,
+            double[] tangents
     ) {
+        public int vertexCount() {
+            return positions.length / 3;
+        }
     }
 
-    private record FaceAngle(int faceIndex, double angle) {
+    /**
+     * Corner-based half-edge view of a closed triangle mesh. Corner {@code c} is vertex
+     * {@code faces[c]} of face {@code c / 3}; its outgoing half-edge goes to the next corner of the face.
+     */
+    private static final class HalfEdges {
+        final int[] faces;
+        final int[] valence;
+        final int[] firstCorner;
+        final LongIntHashMap index;
+
+        private HalfEdges(int[] faces,
+                          int[] valence,
+                          int[] firstCorner,
+                          LongIntHashMap index) {
+            this.faces = faces;
+            this.valence = valence;
+            this.firstCorner = firstCorner;
+            this.index = index;
+        }
+
+        static HalfEdges of(int[] faces, int vertexCount) {
+            int[] valence = new int[vertexCount];
+            int[] firstCorner = new int[vertexCount];
+            Arrays.fill(firstCorner, -1);
+            LongIntHashMap index = new LongIntHashMap(faces.length);
+            for (int c = 0; c < faces.length; c++) {
+                int from = faces[c];
+                int to = faces[next(c)];
+                index.putIfAbsent(halfEdgeKey(from, to), c);
+                valence[from]++;
+                if (firstCorner[from] < 0) {
+                    firstCorner[from] = c;
+                }
+            }
+            return new HalfEdges(faces, valence, firstCorner, index);
+        }
+
+        /**
+         * Next corner at the same vertex, counter-clockwise seen from outside: the face across the
+         * edge to this corner's previous vertex holds the half-edge {@code vertex -> previous}.
+         */
+        int nextCornerAround(int corner) {
+            return index.get(halfEdgeKey(faces[corner], faces[prev(corner)]));
+        }
+
+        private static int next(int corner) {
+            return corner % 3 == 2 ? corner - 2 : corner + 1;
+        }
+
+        private static int prev(int corner) {
+            return corner % 3 == 0 ? corner + 2 : corner - 1;
+        }
+
+        private static long halfEdgeKey(int from, int to) {
+            return ((long) from << 32) | (to & 0xffffffffL);
+        }
     }
 }
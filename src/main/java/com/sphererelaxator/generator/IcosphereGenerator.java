@@ -3,112 +3,382 @@ package com.sphererelaxator.generator;
 import com.sphererelaxator.mesh.Vec3;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
+/**
+ * Icosphere of frequency {@code n = 2^subdivisions}, indexed directly as 20 triangular lattices.
+ * Positions are bit-identical to repeated midpoint subdivision (every lattice point is the normalized
+ * midpoint of its two parents one level up).
+ *
+ * <p>Vertex order:
+ * <ol>
+ *   <li>{@code 0..11}: the icosahedron corners, in {@link #BASE_VERTICES} order;</li>
+ *   <li>{@code n - 1} interior points per base edge, edges in {@link #edgeCount()} order
+ *       (first appearance while walking {@link #BASE_FACES}), each run going from the lower
+ *       corner index to the higher one;</li>
+ *   <li>{@code (n - 1)(n - 2) / 2} interior points per base face, face by face, row by row
+ *       from the face's first corner.</li>
+ * </ol>
+ * Faces are emitted base face by base face ({@code n^2} each), keeping the base winding.
+ */
 public final class IcosphereGenerator {
+    public static final int MAX_SUBDIVISIONS = 12;
+
+    private static final double PHI = (1.0 + Math.sqrt(5.0)) / 2.0;
+
+    static final double[][] BASE_VERTICES = {
+            {-1, PHI, 0}, {1, PHI, 0}, {-1, -PHI, 0}, {1, -PHI, 0},
+            {0, -1, PHI}, {0, 1, PHI}, {0, -1, -PHI}, {0, 1, -PHI},
+            {PHI, 0, -1}, {PHI, 0, 1}, {-PHI, 0, -1}, {-PHI, 0, 1}
+    };
+
+    static final int[][] BASE_FACES = {
+            {0, 11, 5}, {0, 5, 1}, {0, 1, 7}, {0, 7, 10}, {0, 10, 11},
+            {1, 5, 9}, {5, 11, 4}, {11, 10, 2}, {10, 7, 6}, {7, 1, 8},
+            {3, 9, 4}, {3, 4, 2}, {3, 2, 6}, {3, 6, 8}, {3, 8, 9},
+            {4, 9, 5}, {2, 4, 11}, {6, 2, 10}, {8, 6, 7}, {9, 8, 1}
+    };
+
+    static final int[][] BASE_EDGES = new int[30][];
+    static final int[][] FACE_EDGES = new int[BASE_FACES.length][3];
+    static final boolean[][] OWNS_EDGE = new boolean[BASE_FACES.length][3];
+
+    static {
+        int edgeCount = 0;
+        for (int f = 0; f < BASE_FACES.length; f++) {
+            for (int k = 0; k < 3; k++) {
+                int a = Math.min(BASE_FACES[f][k], BASE_FACES[f][(k + 1) % 3]);
+                int b = Math.max(BASE_FACES[f][k], BASE_FACES[f][(k + 1) % 3]);
+                int found = -1;
+                for (int e = 0; e < edgeCount; e++) {
+                    if (BASE_EDGES[e][0] == a && BASE_EDGES[e][1] == b) {
+                        found = e;
+                        break;
+                    }
+                }
+                if (found < 0) {
+                    found = edgeCount;
+                    BASE_EDGES[edgeCount++] = new int[]{a, b};
+                    OWNS_EDGE[f][k] = true;
+                }
+                FACE_EDGES[f][k] = found;
+            }
+        }
+    }
+
     private IcosphereGenerator() {
     }
 
-    public static List<Vec3> generateVertices(int subdivisions, double radius) {
-        return generateMesh(subdivisions, radius).vertices();
+    public static List<Vec3> generateVertices(int subdivisions, double radius, ForkJoinPool pool) {
+        MeshData mesh = generateMesh(subdivisions, radius, pool);
+        List<Vec3> vertices = new ArrayList<>(mesh.vertexCount());
+        for (int i = 0; i < mesh.vertexCount(); i++) {
+            vertices.add(mesh.vertex(i));
+        }
+        return vertices;
     }
 
-    public static MeshData generateMesh(int subdivisions, double radius) {
+    public static MeshData generateMesh(int subdivisions, double radius, ForkJoinPool pool) {
         if (subdivisions < 0) {
             throw new IllegalArgumentException("subdivisions must be >= 0");
         }
-        double phi = (1.0 + Math.sqrt(5.0)) / 2.0;
-        List<Vec3> vertices = new ArrayList<>();
-        vertices.add(new Vec3(-1, phi, 0));
-        vertices.add(new Vec3(1, phi, 0));
-        vertices.add(new Vec3(-1, -phi, 0));
-        vertices.add(new Vec3(1, -phi, 0));
-        vertices.add(new Vec3(0, -1, phi));
-        vertices.add(new Vec3(0, 1, phi));
-        vertices.add(new Vec3(0, -1, -phi));
-        vertices.add(new Vec3(0, 1, -phi));
-        vertices.add(new Vec3(phi, 0, -1));
-        vertices.add(new Vec3(phi, 0, 1));
-        vertices.add(new Vec3(-phi, 0, -1));
-        vertices.add(new Vec3(-phi, 0, 1));
-        normalizeAll(vertices, radius);
-
-        List<int[]> faces = new ArrayList<>();
-        faces.add(new int[]{0, 11, 5});
-        faces.add(new int[]{0, 5, 1});
-        faces.add(new int[]{0, 1, 7});
-        faces.add(new int[]{0, 7, 10});
-        faces.add(new int[]{0, 10, 11});
-        faces.add(new int[]{1, 5, 9});
-        faces.add(new int[]{5, 11, 4});
-        faces.add(new int[]{11, 10, 2});
-        faces.add(new int[]{10, 7, 6});
-        faces.add(new int[]{7, 1, 8});
-        faces.add(new int[]{3, 9, 4});
-        faces.add(new int[]{3, 4, 2});
-        faces.add(new int[]{3, 2, 6});
-        faces.add(new int[]{3, 6, 8});
-        faces.add(new int[]{3, 8, 9});
-        faces.add(new int[]{4, 9, 5});
-        faces.add(new int[]{2, 4, 11});
-        faces.add(new int[]{6, 2, 10});
-        faces.add(new int[]{8, 6, 7});
-        faces.add(new int[]{9, 8, 1});
-
-        for (int i = 0; i < subdivisions; i++) {
-            Map<Long, Integer> midpointCache = new HashMap<>();
-            List<int[]> refined = new ArrayList<>(faces.size() * 4);
-            for (int[] face : faces) {
-                int a = face[0];
-                int b = face[1];
-                int c = face[2];
-                int ab = midpoint(a, b, vertices, midpointCache, radius);
-                int bc = midpoint(b, c, vertices, midpointCache, radius);
-                int ca = midpoint(c, a, vertices, midpointCache, radius);
-
-                refined.add(new int[]{a, ab, ca});
-                refined.add(new int[]{b, bc, ab});
-                refined.add(new int[]{c, ca, bc});
-                refined.add(new int[]{ab, bc, ca});
+        if (subdivisions > MAX_SUBDIVISIONS) {
+            throw new IllegalArgumentException("subdivisions must be <= " + MAX_SUBDIVISIONS + " for in-memory generation");
+        }
+        int n = 1 << subdivisions;
+        double[] positions = new double[(int) vertexCount(n) * 3];
+        int[] faces = new int[BASE_FACES.length * n * n * 3];
+
+        for (int v = 0; v < BASE_VERTICES.length; v++) {
+            baseCorner(v, radius, positions, v * 3);
+        }
+
+        pool.submit(() -> IntStream.range(0, BASE_FACES.length).parallel().forEach(f ->
+                fillFace(f, n, radius, positions, faces)
+        )).join();
+        return new MeshData(positions, faces);
+    }
+
+    static void baseCorner(int v, double radius, double[] out, int offset) {
+        double[] c = BASE_VERTICES[v];
+        double len = Math.sqrt(c[0] * c[0] + c[1] * c[1] + c[2] * c[2]);
+        double inv = 1.0 / len;
+        out[offset] = c[0] * inv * radius;
+        out[offset + 1] = c[1] * inv * radius;
+        out[offset + 2] = c[2] * inv * radius;
+    }
+
+    public static int baseFaceCount() {
+        return BASE_FACES.length;
+    }
+
+    /**
+     * Unit-length corner {@code slot} (0..2) of base face {@code f}, in face winding order.
+     */
+    public static Vec3 baseFaceCorner(int f, int slot) {
+        double[] corner = new double[3];
+        baseCorner(BASE_FACES[f][slot], 1.0, corner, 0);
+        return new Vec3(corner[0], corner[1], corner[2]);
+    }
+
+    public static long vertexCount(int frequency) {
+        return 10L * frequency * frequency + 2;
+    }
+
+    public static int edgeCount() {
+        return BASE_EDGES.length;
+    }
+
+    /**
+     * Global index of lattice point {@code (i, j)} of base face {@code f}, where the point is
+     * {@code corner0 + i/n (corner1 - corner0) + j/n (corner2 - corner0)}.
+     */
+    public static int latticeIndex(int f, int n, int i, int j) {
+        return (int) latticeId(f, n, i, j);
+    }
+
+    /**
+     * {@link #latticeIndex} without the {@code int} range limit, for streamed spheres.
+     */
+    public static long latticeId(int f, int n, int i, int j) {
+        int[] face = BASE_FACES[f];
+        int k = n - i - j;
+        if (j == 0 && i == 0) {
+            return face[0];
+        }
+        if (j == 0 && k == 0) {
+            return face[1];
+        }
+        if (i == 0 && k == 0) {
+            return face[2];
+        }
+        if (j == 0) {
+            return edgePoint(FACE_EDGES[f][0], n, face[0], i);
+        }
+        if (k == 0) {
+            return edgePoint(FACE_EDGES[f][1], n, face[1], j);
+        }
+        if (i == 0) {
+            return edgePoint(FACE_EDGES[f][2], n, face[2], n - j);
+        }
+        long interiorBase = BASE_VERTICES.length + (long) BASE_EDGES.length * (n - 1)
+                + f * ((long) (n - 1) * (n - 2) / 2);
+        long rowOffset = (long) (j - 1) * (n - 1) - (long) (j - 1) * j / 2;
+        return interiorBase + rowOffset + (i - 1);
+    }
+
+    private static long edgePoint(int edge, int n, int from, int stepsFromStart) {
+        int t = BASE_EDGES[edge][0] == from ? stepsFromStart : n - stepsFromStart;
+        return BASE_VERTICES.length + (long) edge * (n - 1) + (t - 1);
+    }
+
+    private static void fillFace(int f, int n, double radius, double[] positions, int[] faces) {
+        int stride = n + 1;
+        double[] lattice = new double[stride * stride * 3];
+        int[] corners = BASE_FACES[f];
+        copyPoint(positions, corners[0], lattice, 0);
+        copyPoint(positions, corners[1], lattice, n);
+        copyPoint(positions, corners[2], lattice, n * stride);
+
+        bisect(lattice, n, true, radius);
+        scatterFace(f, n, lattice, positions, faces);
+    }
+
+    /**
+     * One subdivision step: the mesh of frequency {@code 2n} from the mesh of frequency {@code n}
+     * produced by this class. Positions match {@link #generateMesh} at the finer level exactly.
+     */
+    public static MeshData refine(MeshData coarse, int n, double radius, ForkJoinPool pool) {
+        if (coarse.vertexCount() != vertexCount(n)) {
+            throw new IllegalArgumentException("Mesh is not an icosphere of frequency " + n);
+        }
+        int fine = n * 2;
+        if (fine > 1 << MAX_SUBDIVISIONS) {
+            throw new IllegalArgumentException("subdivisions must be <= " + MAX_SUBDIVISIONS + " for in-memory generation");
+        }
+        double[] positions = new double[(int) vertexCount(fine) * 3];
+        int[] faces = new int[BASE_FACES.length * fine * fine * 3];
+        System.arraycopy(coarse.positions(), 0, positions, 0, BASE_VERTICES.length * 3);
+        pool.submit(() -> IntStream.range(0, BASE_FACES.length).parallel().forEach(f -> {
+            int stride = fine + 1;
+            double[] lattice = new double[stride * stride * 3];
+            for (int j = 0; j <= n; j++) {
+                for (int i = 0; i + j <= n; i++) {
+                    copyPoint(coarse.positions(), latticeIndex(f, n, i, j), lattice, 2 * j * stride + 2 * i);
+                }
+            }
+            bisectLevel(lattice, fine, true, 1, radius);
+            scatterFace(f, fine, lattice, positions, faces);
+        })).join();
+        return new MeshData(positions, faces);
+    }
+
+    /**
+     * For every vertex of the frequency-{@code n} mesh, the index of its parent in the mesh of
+     * frequency {@code n / 2}: the vertex itself where it already existed, otherwise the nearer end
+     * of the coarse edge it was inserted on (lower index on a tie).
+     */
+    public static int[] parentIndices(MeshData mesh, int n, ForkJoinPool pool) {
+        if (n < 2 || mesh.vertexCount() != vertexCount(n)) {
+            throw new IllegalArgumentException("Mesh is not an icosphere of frequency " + n + " >= 2");
+        }
+        int coarse = n / 2;
+        int[] parents = new int[mesh.vertexCount()];
+        for (int c = 0; c < BASE_VERTICES.length; c++) {
+            parents[c] = c;
+        }
+        pool.submit(() -> IntStream.range(0, BASE_FACES.length).parallel().forEach(f -> {
+            for (int j = 0; j <= n; j++) {
+                for (int i = 0; i + j <= n; i++) {
+                    if ((i == 0 && j == 0) || i == n || j == n) {
+                        continue;
+                    }
+                    int edgeSide = j == 0 ? 0 : (i + j == n ? 1 : (i == 0 ? 2 : -1));
+                    if (edgeSide >= 0 && !OWNS_EDGE[f][edgeSide]) {
+                        continue;
+                    }
+                    int vertex = latticeIndex(f, n, i, j);
+                    boolean oddI = i % 2 == 1;
+                    boolean oddJ = j % 2 == 1;
+                    if (!oddI && !oddJ) {
+                        parents[vertex] = latticeIndex(f, coarse, i / 2, j / 2);
+                        continue;
+                    }
+                    int pi = oddI ? i - 1 : i;
+                    int pj = oddJ && !oddI ? j - 1 : (oddI && oddJ ? j + 1 : j);
+                    int qi = oddI ? i + 1 : i;
+                    int qj = oddJ && !oddI ? j + 1 : (oddI && oddJ ? j - 1 : j);
+                    int p = latticeIndex(f, n, pi, pj);
+                    int q = latticeIndex(f, n, qi, qj);
+                    double dp = mesh.vertex(vertex).distance(mesh.vertex(p));
+                    double dq = mesh.vertex(vertex).distance(mesh.vertex(q));
+                    boolean pickP = dp < dq || (dp == dq && p < q);
+                    parents[vertex] = pickP
+                            ? latticeIndex(f, coarse, pi / 2, pj / 2)
+                            : latticeIndex(f, coarse, qi / 2, qj / 2);
+                }
+            }
+        })).join();
+        return parents;
+    }
+
+    private static void scatterFace(int f, int n, double[] lattice, double[] positions, int[] faces) {
+        int stride = n + 1;
+        for (int j = 0; j <= n; j++) {
+            for (int i = 0; i + j <= n; i++) {
+                boolean corner = (i == 0 && j == 0) || i == n || j == n;
+                if (corner) {
+                    continue;
+                }
+                int edgeSide = j == 0 ? 0 : (i + j == n ? 1 : (i == 0 ? 2 : -1));
+                if (edgeSide >= 0 && !OWNS_EDGE[f][edgeSide]) {
+                    continue;
+                }
+                int global = latticeIndex(f, n, i, j);
+                int local = (j * stride + i) * 3;
+                positions[global * 3] = lattice[local];
+                positions[global * 3 + 1] = lattice[local + 1];
+                positions[global * 3 + 2] = lattice[local + 2];
+            }
+        }
+
+        int out = f * n * n * 3;
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i + j < n; i++) {
+                int a = latticeIndex(f, n, i, j);
+                int b = latticeIndex(f, n, i + 1, j);
+                int c = latticeIndex(f, n, i, j + 1);
+                faces[out++] = a;
+                faces[out++] = b;
+                faces[out++] = c;
+                if (i + j < n - 1) {
+                    faces[out++] = b;
+                    faces[out++] = latticeIndex(f, n, i + 1, j + 1);
+                    faces[out++] = c;
+                }
             }
-            faces = refined;
         }
-        return new MeshData(vertices, faces);
     }
 
-    private static int midpoint(int a,
-                                int b,
-                                List<Vec3> vertices,
-                                Map<Long, Integer> cache,
-                                double radius) {
-        int lo = Math.min(a, b);
-        int hi = Math.max(a, b);
-        long key = ((long) lo << 32) | (hi & 0xffffffffL);
-        Integer cached = cache.get(key);
-        if (cached != null) {
-            return cached;
+    /**
+     * Fills a lattice of frequency {@code size} (stride {@code size + 1}) from its corner points by
+     * repeated midpoints. {@code lower} selects the triangle {@code i + j <= size}; otherwise the
+     * lattice holds the flipped triangle {@code i + j >= size} with corners {@code (size, 0)},
+     * {@code (size, size)} and {@code (0, size)}.
+     */
+    static void bisect(double[] lattice, int size, boolean lower, double radius) {
+        for (int h = size / 2; h >= 1; h /= 2) {
+            bisectLevel(lattice, size, lower, h, radius);
+        }
+    }
+
+    private static void bisectLevel(double[] lattice, int size, boolean lower, int h, double radius) {
+        int stride = size + 1;
+        for (int j = 0; j <= size; j += h) {
+            for (int i = 0; i <= size; i += h) {
+                if (lower ? i + j > size : i + j < size) {
+                    continue;
+                }
+                boolean oddI = (i / h) % 2 == 1;
+                boolean oddJ = (j / h) % 2 == 1;
+                if (!oddI && !oddJ) {
+                    continue;
+                }
+                int p;
+                int q;
+                if (oddI && oddJ) {
+                    p = (j + h) * stride + (i - h);
+                    q = (j - h) * stride + (i + h);
+                } else if (oddI) {
+                    p = j * stride + (i - h);
+                    q = j * stride + (i + h);
+                } else {
+                    p = (j - h) * stride + i;
+                    q = (j + h) * stride + i;
+                }
+                midpoint(lattice, p, q, j * stride + i, radius);
+            }
         }
-        Vec3 va = vertices.get(a);
-        Vec3 vb = vertices.get(b);
-        Vec3 mid = new Vec3(
-                (va.x() + vb.x()) * 0.5,
-                (va.y() + vb.y()) * 0.5,
-                (va.z() + vb.z()) * 0.5
-        ).normalize().scale(radius);
-        int idx = vertices.size();
-        vertices.add(mid);
-        cache.put(key, idx);
-        return idx;
     }
 
-    private static void normalizeAll(List<Vec3> vertices, double radius) {
-        for (int i = 0; i < vertices.size(); i++) {
-            vertices.set(i, vertices.get(i).normalize().scale(radius));
+    private static void copyPoint(double[] positions, int vertex, double[] lattice, int slot) {
+        lattice[slot * 3] = positions[vertex * 3];
+        lattice[slot * 3 + 1] = positions[vertex * 3 + 1];
+        lattice[slot * 3 + 2] = positions[vertex * 3 + 2];
+    }
+
+    static void midpoint(double[] lattice, int p, int q, int target, double radius) {
+        double x = (lattice[p * 3] + lattice[q * 3]) * 0.5;
+        double y = (lattice[p * 3 + 1] + lattice[q * 3 + 1]) * 0.5;
+        double z = (lattice[p * 3 + 2] + lattice[q * 3 + 2]) * 0.5;
+        double len = Math.sqrt(x * x + y * y + z * z);
+        if (len >= 1e-12) {
+            double inv = 1.0 / len;
+            x *= inv;
+            y *= inv;
+            z *= inv;
         }
+        lattice[target * 3] = x * radius;
+        lattice[target * 3 + 1] = y * radius;
+        lattice[target * 3 + 2] = z * radius;
     }
 
-    public record MeshData(List<Vec3> vertices, List<int[]> faces) {
+    /**
+     * Generated mesh as packed {@code xyz} positions and {@code abc} face indices.
+     */
+    public record MeshData(double[] positions, int[] faces) {
+        public int vertexCount() {
+            return positions.length / 3;
+        }
+
+        public int faceCount() {
+            return faces.length / 3;
+        }
+
+        public Vec3 vertex(int i) {
+            return new Vec3(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+        }
     }
 }
@@ -0,0 +1,497 @@
+package com.sphererelaxator.generator;
+
+import com.sphererelaxator.mesh.Vec3;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Out-of-core variant of {@link FullSphereCsvGenerator}. Each base face is cut into aligned
+ * sub-triangles ("patches") of {@code patchFrequency} lattice steps, which are generated and handed
+ * to a {@link PatchSink} one at a time. Vertex, tile and triangle ids are derived from lattice
+ * coordinates and match the in-memory generator; patch corners are computed on demand and only a
+ * bounded number of them and of patch lattices is held, so memory does not grow with the vertex
+ * count.
+ *
+ * <p>Each tile is emitted exactly once, by the patch that owns its center vertex. Rings are in fan
+ * order: counter-clockwise seen from outside, starting at the lowest-index adjacent face, with face
+ * center ids {@code icosphereVertexCount + faceIndex}.
+ */
+public final class StreamingSphereGenerator {
+    public static final int MAX_SUBDIVISIONS = 20;
+    public static final int DEFAULT_PATCH_FREQUENCY = 64;
+
+    private static final int MAX_CACHED_LATTICES = 64;
+    private static final int MAX_CACHED_CORNERS = 4096;
+    private static final int[][] EDGE_FACES = new int[IcosphereGenerator.BASE_EDGES.length][4];
+    private static final boolean[][] OWNS_CORNER = new boolean[IcosphereGenerator.BASE_FACES.length][3];
+
+    static {
+        int[][] faces = IcosphereGenerator.BASE_FACES;
+        int[] edgeSlots = new int[EDGE_FACES.length];
+        boolean[] cornerSeen = new boolean[IcosphereGenerator.BASE_VERTICES.length];
+        for (int f = 0; f < faces.length; f++) {
+            for (int k = 0; k < 3; k++) {
+                int e = IcosphereGenerator.FACE_EDGES[f][k];
+                EDGE_FACES[e][edgeSlots[e]++] = f;
+                EDGE_FACES[e][edgeSlots[e]++] = k;
+                if (!cornerSeen[faces[f][k]]) {
+                    cornerSeen[faces[f][k]] = true;
+                    OWNS_CORNER[f][k] = true;
+                }
+            }
+        }
+    }
+
+    private final int n;
+    private final int m;
+    private final int q;
+    private final double radius;
+    private final long icosphereVertexCount;
+    private final Map<Long, double[]> corners;
+    private final Map<Long, double[]> lattices;
+    private final double[] midpointScratch = new double[9];
+    private final Fan fan = new Fan();
+
+    private StreamingSphereGenerator(int subdivisions, double radius, int patchFrequency) {
+        this.n = 1 << subdivisions;
+        this.m = Math.min(n, patchFrequency);
+        this.q = n / m;
+        this.radius = radius;
+        this.icosphereVertexCount = IcosphereGenerator.vertexCount(n);
+        this.corners = boundedCache(MAX_CACHED_CORNERS);
+        this.lattices = boundedCache(MAX_CACHED_LATTICES);
+    }
+
+    private static Map<Long, double[]> boundedCache(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static void generate(int subdivisions, double radius, int patchFrequency, PatchSink sink)
+            throws IOException {
+        if (subdivisions < 0) {
+            throw new IllegalArgumentException("subdivisions must be >= 0");
+        }
+        if (subdivisions > MAX_SUBDIVISIONS) {
+            throw new IllegalArgumentException("subdivisions must be <= " + MAX_SUBDIVISIONS);
+        }
+        if (patchFrequency < 1) {
+            throw new IllegalArgumentException("patchFrequency must be >= 1");
+        }
+        if (Integer.bitCount(patchFrequency) != 1) {
+            throw new IllegalArgumentException("patchFrequency must be a power of two: " + patchFrequency);
+        }
+        new StreamingSphereGenerator(subdivisions, radius, patchFrequency).run(sink);
+    }
+
+    public static long vertexCount(int subdivisions) {
+        long n = 1L << subdivisions;
+        return IcosphereGenerator.vertexCount((int) n) + 20L * n * n;
+    }
+
+    public static long triangleCount(int subdivisions) {
+        return 6L * IcosphereGenerator.vertexCount(1 << subdivisions) - 12;
+    }
+
+    private void run(PatchSink sink) throws IOException {
+        int patchIndex = 0;
+        for (int f = 0; f < IcosphereGenerator.BASE_FACES.length; f++) {
+            for (int b = 0; b < q; b++) {
+                for (int a = 0; a + b < q; a++) {
+                    sink.accept(buildPatch(patchIndex++, f, a, b, true));
+                    if (a + b < q - 1) {
+                        sink.accept(buildPatch(patchIndex++, f, a, b, false));
+                    }
+                }
+            }
+        }
+    }
+
+    private TilePatch buildPatch(int patchIndex, int f, int a, int b, boolean up) {
+        double[] own = lattice(f, a, b, up);
+        int capacity = (m + 1) * (m + 1);
+        long[] tileIds = new long[capacity];
+        double[] centers = new double[capacity * 3];
+        long[] firstTriangles = new long[capacity];
+        int[] ringOffsets = new int[capacity + 1];
+        long[] ringVertexIds = new long[capacity * 6];
+        double[] ringPositions = new double[capacity * 18];
+        double[] ringNormals = new double[capacity * 18];
+        double[] ringUvs = new double[capacity * 12];
+        double[] ringTangents = new double[capacity * 18];
+        int[] neighborOffsets = new int[capacity + 1];
+        long[] neighborIds = new long[capacity * 6];
+        long[] scratch = new long[18];
+
+        int tileCount = 0;
+        int ringSize = 0;
+        int neighborCount = 0;
+        for (int v = 0; v <= m; v++) {
+            for (int u = 0; u <= m; u++) {
+                if (up ? u + v > m : u + v < m) {
+                    continue;
+                }
+                int i = a * m + u;
+                int j = b * m + v;
+                if (!ownsPoint(f, i, j) || !ownerPatchIs(i, j, a, b, up)) {
+                    continue;
+                }
+                long tileId = IcosphereGenerator.latticeId(f, n, i, j);
+                tileIds[tileCount] = tileId;
+                firstTriangles[tileCount] = tileId < 12 ? 5 * tileId : 6 * tileId - 12;
+                System.arraycopy(own, (v * (m + 1) + u) * 3, centers, tileCount * 3, 3);
+
+                fan.collect(f, i, j);
+                int start = 0;
+                for (int k = 1; k < fan.count; k++) {
+                    if (fan.id[k] < fan.id[start]) {
+                        start = k;
+                    }
+                }
+                int current = start;
+                for (int k = 0; k < fan.count; k++) {
+                    writeFaceCenter(current, ringSize, ringVertexIds, ringPositions, ringNormals, ringUvs, ringTangents);
+                    ringSize++;
+                    current = fan.nextAround(current, tileId);
+                }
+                ringOffsets[tileCount + 1] = ringSize;
+
+                int distinct = 0;
+                for (int k = 0; k < fan.count; k++) {
+                    for (int c = 0; c < 3; c++) {
+                        long vertex = fan.vertices[k * 3 + c];
+                        if (vertex != tileId) {
+                            scratch[distinct++] = vertex;
+                        }
+                    }
+                }
+                Arrays.sort(scratch, 0, distinct);
+                for (int k = 0; k < distinct; k++) {
+                    if (k == 0 || scratch[k] != scratch[k - 1]) {
+                        neighborIds[neighborCount++] = scratch[k];
+                    }
+                }
+                neighborOffsets[tileCount + 1] = neighborCount;
+                tileCount++;
+            }
+        }
+
+        return new TilePatch(
+                patchIndex,
+                Arrays.copyOf(tileIds, tileCount),
+                Arrays.copyOf(centers, tileCount * 3),
+                Arrays.copyOf(firstTriangles, tileCount),
+                Arrays.copyOf(ringOffsets, tileCount + 1),
+                Arrays.copyOf(ringVertexIds, ringSize),
+                Arrays.copyOf(ringPositions, ringSize * 3),
+                Arrays.copyOf(ringNormals, ringSize * 3),
+                Arrays.copyOf(ringUvs, ringSize * 2),
+                Arrays.copyOf(ringTangents, ringSize * 3),
+                Arrays.copyOf(neighborOffsets, tileCount + 1),
+                Arrays.copyOf(neighborIds, neighborCount)
+        );
+    }
+
+    private void writeFaceCenter(int k,
+                                 int slot,
+                                 long[] ids,
+                                 double[] positions,
+                                 double[] normals,
+                                 double[] uvs,
+                                 double[] tangents) {
+        int f = fan.face[k];
+        int a = fan.ta[k];
+        int b = fan.tb[k];
+        boolean up = fan.up[k];
+        Vec3 center = latticePoint(f, up, a, b, up ? a : a + 1, b)
+                .add(latticePoint(f, up, a, b, a + 1, up ? b : b + 1))
+                .add(latticePoint(f, up, a, b, a, b + 1))
+                .scale(1.0 / 3.0)
+                .normalize()
+                .scale(radius);
+        ids[slot] = icosphereVertexCount + fan.id[k];
+        positions[slot * 3] = center.x();
+        positions[slot * 3 + 1] = center.y();
+        positions[slot * 3 + 2] = center.z();
+        Vec3 normal = center.normalize();
+        normals[slot * 3] = normal.x();
+        normals[slot * 3 + 1] = normal.y();
+        normals[slot * 3 + 2] = normal.z();
+        FullSphereCsvGenerator.sphericalUv(normal, uvs, slot * 2);
+        Vec3 tangent = FullSphereCsvGenerator.defaultTangent(normal);
+        tangents[slot * 3] = tangent.x();
+        tangents[slot * 3 + 1] = tangent.y();
+        tangents[slot * 3 + 2] = tangent.z();
+    }
+
+    /**
+     * Position of lattice point {@code (i, j)} of face {@code f}, read from the patch holding the
+     * fine triangle {@code (a, b, up)} that the point belongs to.
+     */
+    private Vec3 latticePoint(int f, boolean up, int a, int b, int i, int j) {
+        int pa = a / m;
+        int pb = b / m;
+        boolean upPatch = inUpPatch(a - pa * m, b - pb * m, up);
+        double[] lattice = lattice(f, pa, pb, upPatch);
+        int o = ((j - pb * m) * (m + 1) + (i - pa * m)) * 3;
+        return new Vec3(lattice[o], lattice[o + 1], lattice[o + 2]);
+    }
+
+    private boolean inUpPatch(int u, int v, boolean upTriangle) {
+        return u + v <= (upTriangle ? m - 1 : m - 2);
+    }
+
+    private double[] lattice(int f, int a, int b, boolean up) {
+        long key = (((long) f * q + b) * q + a) * 2 + (up ? 0 : 1);
+        double[] cached = lattices.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int stride = m + 1;
+        double[] lattice = new double[stride * stride * 3];
+        if (up) {
+            System.arraycopy(corner(f, a, b), 0, lattice, 0, 3);
+        } else {
+            System.arraycopy(corner(f, a + 1, b + 1), 0, lattice, (m * stride + m) * 3, 3);
+        }
+        System.arraycopy(corner(f, a + 1, b), 0, lattice, m * 3, 3);
+        System.arraycopy(corner(f, a, b + 1), 0, lattice, m * stride * 3, 3);
+        IcosphereGenerator.bisect(lattice, m, up, radius);
+        lattices.put(key, lattice);
+        return lattice;
+    }
+
+    /**
+     * Point {@code (i, j)} of the frequency-{@code q} lattice of face {@code f} (patch corners),
+     * computed on its own by replaying the bisection that would produce it in a full lattice: a
+     * point off the face corners is the normalized midpoint of two points on the next coarser level.
+     * Results match {@link IcosphereGenerator#bisect} exactly; only a bounded number is cached.
+     */
+    private double[] corner(int f, int i, int j) {
+        long key = ((long) f * (q + 1) + j) * (q + 1) + i;
+        double[] cached = corners.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        double[] point = new double[3];
+        int[] face = IcosphereGenerator.BASE_FACES[f];
+        if (i == 0 && j == 0) {
+            IcosphereGenerator.baseCorner(face[0], radius, point, 0);
+        } else if (i == q && j == 0) {
+            IcosphereGenerator.baseCorner(face[1], radius, point, 0);
+        } else if (i == 0 && j == q) {
+            IcosphereGenerator.baseCorner(face[2], radius, point, 0);
+        } else {
+            int h = Integer.lowestOneBit(i | j);
+            boolean oddI = (i / h) % 2 == 1;
+            boolean oddJ = (j / h) % 2 == 1;
+            double[] p;
+            double[] r;
+            if (oddI && oddJ) {
+                p = corner(f, i - h, j + h);
+                r = corner(f, i + h, j - h);
+            } else if (oddI) {
+                p = corner(f, i - h, j);
+                r = corner(f, i + h, j);
+            } else {
+                p = corner(f, i, j - h);
+                r = corner(f, i, j + h);
+            }
+            System.arraycopy(p, 0, midpointScratch, 0, 3);
+            System.arraycopy(r, 0, midpointScratch, 3, 3);
+            IcosphereGenerator.midpoint(midpointScratch, 0, 1, 2, radius);
+            System.arraycopy(midpointScratch, 6, point, 0, 3);
+        }
+        corners.put(key, point);
+        return point;
+    }
+
+    /**
+     * Base corners belong to the first face listing them and base edge points to the face that
+     * owns the edge, so that every vertex is emitted by exactly one base face.
+     */
+    private boolean ownsPoint(int f, int i, int j) {
+        int k = n - i - j;
+        if (i == 0 && j == 0) {
+            return OWNS_CORNER[f][0];
+        }
+        if (j == 0 && k == 0) {
+            return OWNS_CORNER[f][1];
+        }
+        if (i == 0 && k == 0) {
+            return OWNS_CORNER[f][2];
+        }
+        if (j == 0) {
+            return IcosphereGenerator.OWNS_EDGE[f][0];
+        }
+        if (k == 0) {
+            return IcosphereGenerator.OWNS_EDGE[f][1];
+        }
+        if (i == 0) {
+            return IcosphereGenerator.OWNS_EDGE[f][2];
+        }
+        return true;
+    }
+
+    /**
+     * Within a face a point belongs to the patch of the first "up" triangle that contains it.
+     */
+    private boolean ownerPatchIs(int i, int j, int a, int b, boolean up) {
+        int ti = i;
+        int tj = j;
+        if (i + j == n) {
+            if (i > 0) {
+                ti = i - 1;
+            } else {
+                tj = j - 1;
+            }
+        }
+        int pa = ti / m;
+        int pb = tj / m;
+        return pa == a && pb == b && inUpPatch(ti - pa * m, tj - pb * m, true) == up;
+    }
+
+    /**
+     * The fine triangles around one vertex, gathered from every base face that contains it.
+     */
+    private final class Fan {
+        final long[] id = new long[6];
+        final long[] vertices = new long[18];
+        final int[] face = new int[6];
+        final int[] ta = new int[6];
+        final int[] tb = new int[6];
+        final boolean[] up = new boolean[6];
+        int count;
+
+        void collect(int f, int i, int j) {
+            count = 0;
+            int[] corners = IcosphereGenerator.BASE_FACES[f];
+            int k = n - i - j;
+            int corner = i == 0 && j == 0 ? 0 : (j == 0 && k == 0 ? 1 : (i == 0 && k == 0 ? 2 : -1));
+            int side = j == 0 ? 0 : (k == 0 ? 1 : (i == 0 ? 2 : -1));
+            if (corner >= 0) {
+                int c = corners[corner];
+                for (int g = 0; g < IcosphereGenerator.BASE_FACES.length; g++) {
+                    for (int slot = 0; slot < 3; slot++) {
+                        if (IcosphereGenerator.BASE_FACES[g][slot] == c) {
+                            addAround(g, slot == 1 ? n : 0, slot == 2 ? n : 0);
+                        }
+                    }
+                }
+                return;
+            }
+            addAround(f, i, j);
+            if (side < 0) {
+                return;
+            }
+            int e = IcosphereGenerator.FACE_EDGES[f][side];
+            int[] edge = IcosphereGenerator.BASE_EDGES[e];
+            int steps = side == 0 ? i : (side == 1 ? j : n - j);
+            int t = edge[0] == corners[side] ? steps : n - steps;
+            for (int slot = 0; slot < 4; slot += 2) {
+                int g = EDGE_FACES[e][slot];
+                int gSide = EDGE_FACES[e][slot + 1];
+                if (g == f) {
+                    continue;
+                }
+                int s = edge[0] == IcosphereGenerator.BASE_FACES[g][gSide] ? t : n - t;
+                if (gSide == 0) {
+                    addAround(g, s, 0);
+                } else if (gSide == 1) {
+                    addAround(g, n - s, s);
+                } else {
+                    addAround(g, 0, n - s);
+                }
+            }
+        }
+
+        private void addAround(int g, int i, int j) {
+            addTriangle(g, true, i, j);
+            addTriangle(g, false, i - 1, j);
+            addTriangle(g, true, i - 1, j);
+            addTriangle(g, false, i - 1, j - 1);
+            addTriangle(g, true, i, j - 1);
+            addTriangle(g, false, i, j - 1);
+        }
+
+        private void addTriangle(int g, boolean upTriangle, int a, int b) {
+            if (a < 0 || b < 0 || a + b > (upTriangle ? n - 1 : n - 2)) {
+                return;
+            }
+            int slot = count++;
+            face[slot] = g;
+            ta[slot] = a;
+            tb[slot] = b;
+            up[slot] = upTriangle;
+            id[slot] = (long) g * n * n + 2L * n * b - (long) b * b + 2L * a + (upTriangle ? 0 : 1);
+            if (upTriangle) {
+                vertices[slot * 3] = IcosphereGenerator.latticeId(g, n, a, b);
+                vertices[slot * 3 + 1] = IcosphereGenerator.latticeId(g, n, a + 1, b);
+            } else {
+                vertices[slot * 3] = IcosphereGenerator.latticeId(g, n, a + 1, b);
+                vertices[slot * 3 + 1] = IcosphereGenerator.latticeId(g, n, a + 1, b + 1);
+            }
+            vertices[slot * 3 + 2] = IcosphereGenerator.latticeId(g, n, a, b + 1);
+        }
+
+        /**
+         * Next triangle counter-clockwise around {@code center}: the one holding the half-edge from
+         * {@code center} to its predecessor in {@code k}.
+         */
+        int nextAround(int k, long center) {
+            int p = cornerOf(k, center);
+            long previous = vertices[k * 3 + (p + 2) % 3];
+            for (int other = 0; other < count; other++) {
+                int c = cornerOf(other, center);
+                if (vertices[other * 3 + (c + 1) % 3] == previous) {
+                    return other;
+                }
+            }
+            throw new IllegalStateException("Open fan around vertex " + center);
+        }
+
+        private int cornerOf(int k, long center) {
+            for (int c = 0; c < 3; c++) {
+                if (vertices[k * 3 + c] == center) {
+                    return c;
+                }
+            }
+            throw new IllegalStateException("Triangle " + id[k] + " does not contain vertex " + center);
+        }
+    }
+
+    public interface PatchSink {
+        void accept(TilePatch patch) throws IOException;
+    }
+
+    /**
+     * Tiles of one patch, packed. Per tile: {@code centers} (xyz), {@code firstTriangles} (index of its
+     * first fan triangle), a ring of {@code ringOffsets[t]..ringOffsets[t + 1]} face-center vertices
+     * and a sorted neighbour list in {@code neighborIds}.
+     */
+    public record TilePatch(
+            int patchIndex,
+            long[] tileIds,
+            double[] centers,
+            long[] firstTriangles,
+            int[] ringOffsets,
+            long[] ringVertexIds,
+            double[] ringPositions,
+            double[] ringNormals,
+            double[] ringUvs,
+            double[] ringTangents,
+            int[] neighborOffsets,
+            long[] neighborIds
+    ) {
+        public int tileCount() {
+            return tileIds.length;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.sphererelaxator.io;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sphererelaxator.mesh.LongIntHashMap;
+import com.sphererelaxator.mesh.TileType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A {@link MeshDocument} file read one vertex or tile at a time, for callers that must not hold the
+ * whole document. Every pass re-parses the file; {@link #open} makes a first pass for the radius,
+ * the vertex count and the vertex id to index map (kept only when ids are not simply the indices).
+ * Tiles are handed out with vertex indices, as {@link com.sphererelaxator.mesh.MeshBuilder} resolves
+ * them.
+ */
+public final class MeshDocumentStream {
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private double radius = new MeshDocument().radius;
+    private int vertexCount;
+    private boolean tiled;
+    private LongIntHashMap idToIndex;
+
+    public interface VertexVisitor {
+        void vertex(int index, VertexDto vertex) throws IOException;
+    }
+
+    public interface TileVisitor {
+        void tile(TileDto tile, int[] indices) throws IOException;
+    }
+
+    private MeshDocumentStream(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Scans {@code file}; a file that is not a JSON object with vertices and tiles is reported by
+     * {@link #tiled()} rather than rejected.
+     */
+    public static MeshDocumentStream open(Path file) throws IOException {
+        MeshDocumentStream stream = new MeshDocumentStream(file);
+        try (JsonParser parser = stream.mapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return stream;
+            }
+            boolean hasTiles = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("radius".equals(field) && value.isNumeric()) {
+                    stream.radius = parser.getDoubleValue();
+                } else if ("vertices".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        stream.indexVertex(stream.mapper.readValue(parser, VertexDto.class).id);
+                    }
+                } else if ("tiles".equals(field) && value == JsonToken.START_ARRAY) {
+                    hasTiles = parser.nextToken() != JsonToken.END_ARRAY;
+                    if (hasTiles) {
+                        parser.skipChildren();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            stream.tiled = hasTiles && stream.vertexCount > 0;
+        }
+        return stream;
+    }
+
+    public double radius() {
+        return radius;
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Whether the file is a mesh document with vertices and tiles.
+     */
+    public boolean tiled() {
+        return tiled;
+    }
+
+    public void vertices(VertexVisitor visitor) throws IOException {
+        try (JsonParser parser = arrayParser("vertices")) {
+            int index = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                visitor.vertex(index++, mapper.readValue(parser, VertexDto.class));
+            }
+        }
+    }
+
+    public void tiles(TileVisitor visitor) throws IOException {
+        try (JsonParser parser = arrayParser("tiles")) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                TileDto tile = mapper.readValue(parser, TileDto.class);
+                int[] indices = new int[tile.vertexIds.size()];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = index(tile.vertexIds.get(i));
+                    if (indices[i] < 0) {
+                        throw new IllegalArgumentException("Unknown vertex id in tile " + tile.id + ": " + tile.vertexIds.get(i));
+                    }
+                }
+                visitor.tile(tile, indices);
+            }
+        }
+    }
+
+    /**
+     * Writes a document in the layout of {@code MeshBuilder.toDocument} with an indenting
+     * {@link ObjectMapper}: vertices are passed in index order, then {@link Writer#finish} copies the
+     * tiles from this stream.
+     */
+    public Writer writer(Path output, double radius) throws IOException {
+        return new Writer(output, radius);
+    }
+
+    private void indexVertex(int id) {
+        int index = vertexCount++;
+        if (idToIndex == null && id != index) {
+            idToIndex = new LongIntHashMap(index + 1024);
+            for (int i = 0; i < index; i++) {
+                idToIndex.putIfAbsent(i, i);
+            }
+        }
+        if (idToIndex != null) {
+            idToIndex.putIfAbsent(id, index);
+        }
+    }
+
+    private int index(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        if (idToIndex != null) {
+            return idToIndex.get(id);
+        }
+        return id >= 0 && id < vertexCount ? id : -1;
+    }
+
+    /**
+     * Parser positioned inside the top-level array {@code field}; an absent field reads as empty.
+     */
+    private JsonParser arrayParser(String field) throws IOException {
+        JsonParser parser = mapper.getFactory().createParser(file.toFile());
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && field.equals(name)) {
+                    return parser;
+                }
+                parser.skipChildren();
+            }
+        }
+        parser.close();
+        return mapper.getFactory().createParser("[]");
+    }
+
+    public final class Writer implements Closeable {
+        private final JsonGenerator gen;
+        private final VertexDto vertex = new VertexDto();
+
+        private Writer(Path output, double radius) throws IOException {
+            gen = mapper.getFactory().createGenerator(output.toFile(), JsonEncoding.UTF8);
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeNumberField("radius", radius);
+            gen.writeArrayFieldStart("vertices");
+        }
+
+        public void vertex(int index, double x, double y, double z, boolean fixed) throws IOException {
+            vertex.id = index;
+            vertex.x = x;
+            vertex.y = y;
+            vertex.z = z;
+            vertex.fixed = fixed;
+            mapper.writeValue(gen, vertex);
+        }
+
+        /**
+         * Ends the vertices and copies the tiles with vertex indices for ids and normalized types.
+         */
+        public void finish() throws IOException {
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("tiles");
+            TileDto out = new TileDto();
+            tiles((tile, indices) -> {
+                out.id = tile.id;
+                out.type = TileType.from(tile.type).name();
+                out.vertexIds.clear();
+                for (int index : indices) {
+                    out.vertexIds.add(index);
+                }
+                mapper.writeValue(gen, out);
+            });
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            gen.close();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.sphererelaxator.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed cache of CLI results. An entry is keyed by a SHA-256 over a fingerprint of the
+ * running code, the mode, the result-affecting arguments and the bytes of every file the run reads,
+ * and holds every file the run produced plus its console output, deflated into one
+ * {@code <key>.bin} file. Files written outside the output prefix (such as an explicit
+ * {@code --queryOutput}) are stored under a name and restored to the path the caller gives. Runs
+ * write into a private staging directory ({@link #stage}), so an entry holds exactly the files of
+ * its own run even when other jobs write next to the same output prefix. Entries are
+ * written through a temp file and an atomic move; the directory is trimmed to {@code maxBytes} by
+ * evicting the least recently used entries (a hit refreshes the entry's modification time).
+ */
+public final class ResultCache {
+    private static final int FILE_MAGIC = 0x53525243;
+    private static final int FILE_VERSION = 2;
+    private static final String SUFFIX = ".bin";
+    private static final String STAGING_PREFIX = ".result-cache-";
+
+    private static volatile String codeFingerprint;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ResultCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(0L, maxBytes);
+    }
+
+    /**
+     * Key over the arguments and the contents of {@code inputs}, named by role; an input that does
+     * not exist is keyed as missing (the run itself reports it).
+     */
+    public static String key(String mode, Map<String, String> args, Map<String, Path> inputs) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, "v" + FILE_VERSION);
+        update(digest, codeFingerprint());
+        update(digest, mode);
+        for (Map.Entry<String, String> e : new TreeMap<>(args).entrySet()) {
+            update(digest, e.getKey());
+            update(digest, e.getValue());
+        }
+        for (Map.Entry<String, Path> e : new TreeMap<>(inputs).entrySet()) {
+            update(digest, e.getKey());
+            if (!Files.isRegularFile(e.getValue())) {
+                update(digest, "missing");
+                continue;
+            }
+            update(digest, Long.toString(Files.size(e.getValue())));
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(e.getValue()))) {
+                byte[] buffer = new byte[1 << 16];
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Recreates the cached files for {@code output} and the named files in {@code external}, and
+     * replays the console output. Returns {@code false} on a miss or an unreadable entry.
+     */
+    public boolean restore(String key, Path output, Map<String, Path> external, PrintStream console) throws IOException {
+        Path file = directory.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        Entry entry;
+        try {
+            entry = read(file);
+        } catch (IOException e) {
+            System.out.println("Notice: ignoring unreadable result cache entry " + file + ": " + e.getMessage());
+            Files.deleteIfExists(file);
+            return false;
+        }
+        String prefix = prefixName(output);
+        Path parent = parentOf(output);
+        for (int i = 0; i < entry.suffixes.size(); i++) {
+            Path target = parent.resolve(prefix + entry.suffixes.get(i));
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Files.write(target, entry.contents.get(i));
+        }
+        for (int i = 0; i < entry.externalNames.size(); i++) {
+            Path target = external.get(entry.externalNames.get(i));
+            if (target == null) {
+                continue;
+            }
+            if (target.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+            }
+            Files.write(target, entry.externalContents.get(i));
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // LRU order is best effort.
+        }
+        console.write(entry.console);
+        console.flush();
+        return true;
+    }
+
+    /**
+     * A fresh staging path with the file name of {@code output}, in a private directory next to it
+     * (same file system, so {@link #publish} only renames).
+     */
+    public static Path stage(Path output) throws IOException {
+        Path parent = parentOf(output);
+        Files.createDirectories(parent);
+        return Files.createTempDirectory(parent, STAGING_PREFIX).resolve(prefixName(output));
+    }
+
+    /**
+     * Moves everything written under {@code staged}'s directory to the same relative place next to
+     * {@code output} and deletes the staging directory.
+     */
+    public static void publish(Path staged, Path output) throws IOException {
+        Path staging = staged.getParent();
+        Path parent = parentOf(output);
+        List<Path> files = producedFiles(staging);
+        for (Path file : files) {
+            Path target = parent.resolve(staging.relativize(file).toString());
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (Stream<Path> paths = Files.walk(staging)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Stores every regular file the run wrote into the staging directory of {@code staged}, plus
+     * the named files of {@code external} that exist.
+     */
+    public void store(String key, Path staged, Map<String, Path> external, byte[] console) throws IOException {
+        String prefix = prefixName(staged);
+        Path parent = staged.getParent();
+        List<Path> produced = producedFiles(parent).stream()
+                .filter(p -> parent.relativize(p).toString().startsWith(prefix))
+                .toList();
+        Map<String, Path> written = new TreeMap<>();
+        for (Map.Entry<String, Path> e : external.entrySet()) {
+            if (Files.isRegularFile(e.getValue())) {
+                written.put(e.getKey(), e.getValue());
+            }
+        }
+        if (produced.isEmpty() && written.isEmpty()) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+        Path target = directory.resolve(key + SUFFIX);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                DataOutputStream header = new DataOutputStream(raw);
+                header.writeInt(FILE_MAGIC);
+                header.writeInt(FILE_VERSION);
+                header.flush();
+                DeflaterOutputStream deflater = new DeflaterOutputStream(raw);
+                DataOutputStream out = new DataOutputStream(deflater);
+                out.writeInt(produced.size());
+                for (Path p : produced) {
+                    String relative = parent.relativize(p).toString().replace('\\', '/');
+                    byte[] bytes = Files.readAllBytes(p);
+                    out.writeUTF(relative.substring(prefix.length()));
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeInt(written.size());
+                for (Map.Entry<String, Path> e : written.entrySet()) {
+                    byte[] bytes = Files.readAllBytes(e.getValue());
+                    out.writeUTF(e.getKey());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeInt(console.length);
+                out.write(console);
+                out.flush();
+                deflater.finish();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+        long[] sizes = new long[entries.size()];
+        long[] times = new long[entries.size()];
+        long total = 0L;
+        for (int i = 0; i < entries.size(); i++) {
+            sizes[i] = Files.size(entries.get(i));
+            times[i] = Files.getLastModifiedTime(entries.get(i)).toMillis();
+            total += sizes[i];
+        }
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            Files.deleteIfExists(entries.get(order[i]));
+            total -= sizes[order[i]];
+        }
+    }
+
+    private static Entry read(Path file) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream header = new DataInputStream(raw);
+            if (header.readInt() != FILE_MAGIC || header.readInt() != FILE_VERSION) {
+                throw new IOException("unsupported result cache format");
+            }
+            DataInputStream in = new DataInputStream(new InflaterInputStream(raw));
+            int count = in.readInt();
+            List<String> suffixes = new ArrayList<>(count);
+            List<byte[]> contents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suffixes.add(in.readUTF());
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                contents.add(bytes);
+            }
+            int externalCount = in.readInt();
+            List<String> externalNames = new ArrayList<>(externalCount);
+            List<byte[]> externalContents = new ArrayList<>(externalCount);
+            for (int i = 0; i < externalCount; i++) {
+                externalNames.add(in.readUTF());
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                externalContents.add(bytes);
+            }
+            byte[] console = new byte[in.readInt()];
+            in.readFully(console);
+            return new Entry(suffixes, contents, externalNames, externalContents, console);
+        }
+    }
+
+    private static List<Path> producedFiles(Path staging) throws IOException {
+        try (Stream<Path> files = Files.walk(staging)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    /**
+     * SHA-256 over the class files (or jar) this code runs from, so entries written by another
+     * build are never replayed.
+     */
+    private static String codeFingerprint() throws IOException {
+        String fingerprint = codeFingerprint;
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        MessageDigest digest = sha256();
+        Path location;
+        try {
+            location = Path.of(ResultCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            throw new IOException("Cannot locate the running code for the result cache key", e);
+        }
+        if (Files.isDirectory(location)) {
+            List<Path> classes;
+            try (Stream<Path> files = Files.walk(location)) {
+                classes = files.filter(p -> p.getFileName().toString().endsWith(".class")).sorted().toList();
+            }
+            for (Path file : classes) {
+                update(digest, location.relativize(file).toString().replace('\\', '/'));
+                digest.update(Files.readAllBytes(file));
+            }
+        } else {
+            digest.update(Files.readAllBytes(location));
+        }
+        fingerprint = HexFormat.of().formatHex(digest.digest());
+        codeFingerprint = fingerprint;
+        return fingerprint;
+    }
+
+    private static String prefixName(Path output) {
+        return output.getFileName().toString();
+    }
+
+    private static Path parentOf(Path output) {
+        Path parent = output.toAbsolutePath().getParent();
+        return parent == null ? Path.of(".").toAbsolutePath() : parent;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private record Entry(List<String> suffixes,
+                         List<byte[]> contents,
+                         List<String> externalNames,
+                         List<byte[]> externalContents,
+                         byte[] console) {
+    }
+}
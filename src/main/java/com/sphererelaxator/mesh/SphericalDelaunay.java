@@ -0,0 +1,681 @@
+package com.sphererelaxator.mesh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Spherical Delaunay triangulation of an unstructured point set, built as the 3D convex hull of the
+ * points projected to unit directions, and its Goldberg (Voronoi) dual as a {@link Mesh} the solver
+ * can relax. Points are inserted in a biased randomized order (doubling random rounds, each sorted
+ * along a cube-map Morton curve), so each insertion walks a few faces from the previous one and
+ * replaces only its visible cavity: expected {@code O(n log n)}. Ordering and the dual run on the
+ * pool; insertion itself is sequential. Points closer than {@link #DUPLICATE_EPS} to an
+ * earlier one are skipped and get no tile.
+ */
+public final class SphericalDelaunay {
+    public static final double DUPLICATE_EPS = 1e-10;
+    private static final int MORTON_BITS = 11;
+
+    private final double[] directions;
+    private final int[] triangles;
+    private final int[] adjacency;
+    private final int[] vertexTriangle;
+    private final int skipped;
+
+    private SphericalDelaunay(double[] directions, int[] triangles, int[] adjacency, int[] vertexTriangle, int skipped) {
+        this.directions = directions;
+        this.triangles = triangles;
+        this.adjacency = adjacency;
+        this.vertexTriangle = vertexTriangle;
+        this.skipped = skipped;
+    }
+
+    /**
+     * Triangulates packed {@code xyz} points; only their directions from the origin matter, and they
+     * must surround it (a point set confined to a hemisphere has no spherical triangulation).
+     */
+    public static SphericalDelaunay build(double[] xyz, ForkJoinPool pool) {
+        int n = xyz.length / 3;
+        if (n < 4) {
+            throw new IllegalArgumentException("Spherical triangulation needs at least 4 points, got " + n);
+        }
+        double[] unit = new double[n * 3];
+        for (int i = 0; i < n; i++) {
+            double x = xyz[i * 3];
+            double y = xyz[i * 3 + 1];
+            double z = xyz[i * 3 + 2];
+            double length = Math.sqrt(x * x + y * y + z * z);
+            if (!(length > 0.0) || Double.isInfinite(length)) {
+                throw new IllegalArgumentException("Point " + i + " has no direction: (" + x + ", " + y + ", " + z + ")");
+            }
+            unit[i * 3] = x / length;
+            unit[i * 3 + 1] = y / length;
+            unit[i * 3 + 2] = z / length;
+        }
+        Hull hull = new Hull(unit);
+        int[] order = insertionOrder(unit, pool);
+        int[] seed = hull.seedTetrahedron(order);
+        for (int i : order) {
+            if (i != seed[0] && i != seed[1] && i != seed[2] && i != seed[3]) {
+                hull.insert(i);
+            }
+        }
+        return hull.finish();
+    }
+
+    public int pointCount() {
+        return directions.length / 3;
+    }
+
+    public int triangleCount() {
+        return triangles.length / 3;
+    }
+
+    /**
+     * Points dropped as duplicates (or swallowed by a degenerate cavity); they have no tile.
+     */
+    public int skippedCount() {
+        return skipped;
+    }
+
+    public boolean hasVertex(int point) {
+        return vertexTriangle[point] >= 0;
+    }
+
+    /**
+     * Triangle corner indices (input point indices), counter-clockwise seen from outside.
+     */
+    public int[] triangles() {
+        return triangles;
+    }
+
+    /**
+     * Neighbour triangle across edge {@code k} (corners {@code k}, {@code k + 1}) of each triangle.
+     */
+    public int[] adjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Goldberg dual on a sphere of {@code radius}: one tile per triangulated point (tile id = point
+     * index), its corners the spherical circumcenters of the point's triangles in counter-clockwise
+     * order seen from outside. Six-sided tiles are hexagons. Five-sided tiles are pentagons only when
+     * the dual is a Goldberg polyhedron (exactly 12 of them and no other non-hexagon); otherwise every
+     * non-hexagonal tile is {@link TileType#IRREGULAR}, since biasing hundreds of five-valent sites of
+     * an arbitrary point cloud outwards makes the relaxation diverge.
+     */
+    public Mesh goldbergMesh(double radius, ForkJoinPool pool) {
+        int triangleCount = triangleCount();
+        Vec3[] corners = new Vec3[triangleCount];
+        pool.submit(() -> IntStream.range(0, triangleCount).parallel().forEach(t -> {
+            Vec3 a = direction(triangles[t * 3]);
+            Vec3 b = direction(triangles[t * 3 + 1]);
+            Vec3 c = direction(triangles[t * 3 + 2]);
+            corners[t] = b.subtract(a).cross(c.subtract(a)).normalize().scale(radius);
+        })).join();
+
+        int pointCount = pointCount();
+        int[][] rings = new int[pointCount][];
+        pool.submit(() -> IntStream.range(0, pointCount).parallel().forEach(p -> {
+            if (vertexTriangle[p] >= 0) {
+                rings[p] = ringAround(p);
+            }
+        })).join();
+
+        int fiveSided = 0;
+        int otherSided = 0;
+        for (int[] ring : rings) {
+            if (ring != null && ring.length == 5) {
+                fiveSided++;
+            } else if (ring != null && ring.length != 6) {
+                otherSided++;
+            }
+        }
+        TileType nonHexagon = fiveSided == 12 && otherSided == 0 ? TileType.PENTAGON : TileType.IRREGULAR;
+
+        List<Tile> tiles = new ArrayList<>(pointCount - skipped);
+        Set<Integer> pentagonVertices = new HashSet<>();
+        for (int p = 0; p < pointCount; p++) {
+            int[] ring = rings[p];
+            if (ring == null) {
+                continue;
+            }
+            List<Integer> vertexIds = new ArrayList<>(ring.length);
+            for (int corner : ring) {
+                vertexIds.add(corner);
+            }
+            TileType type = ring.length == 6 ? TileType.HEXAGON : nonHexagon;
+            if (type == TileType.PENTAGON) {
+                pentagonVertices.addAll(vertexIds);
+            }
+            tiles.add(new Tile(p, type, vertexIds));
+        }
+
+        List<int[]> edges = new ArrayList<>(triangleCount * 3 / 2);
+        int[][] neighbors = new int[triangleCount][];
+        for (int t = 0; t < triangleCount; t++) {
+            neighbors[t] = new int[]{adjacency[t * 3], adjacency[t * 3 + 1], adjacency[t * 3 + 2]};
+            for (int k = 0; k < 3; k++) {
+                if (t < adjacency[t * 3 + k]) {
+                    edges.add(new int[]{t, adjacency[t * 3 + k]});
+                }
+            }
+        }
+        return new Mesh(corners, new boolean[triangleCount], edges, tiles, neighbors, pentagonVertices);
+    }
+
+    /**
+     * Triangles around {@code point}, counter-clockwise seen from outside.
+     */
+    private int[] ringAround(int point) {
+        int[] ring = new int[8];
+        int size = 0;
+        int start = vertexTriangle[point];
+        int t = start;
+        do {
+            if (size == ring.length) {
+                ring = Arrays.copyOf(ring, size * 2);
+            }
+            ring[size++] = t;
+            int k = triangles[t * 3] == point ? 0 : (triangles[t * 3 + 1] == point ? 1 : 2);
+            // Edge (k + 2) runs from the previous corner back to the point: the next wedge counter-clockwise.
+            t = adjacency[t * 3 + (k + 2) % 3];
+        } while (t != start && size <= triangles.length);
+        return Arrays.copyOf(ring, size);
+    }
+
+    private Vec3 direction(int point) {
+        return new Vec3(directions[point * 3], directions[point * 3 + 1], directions[point * 3 + 2]);
+    }
+
+    /**
+     * Biased randomized insertion order: a seeded shuffle cut into rounds of doubling size, each
+     * round sorted along a Morton curve on the cube map so consecutive points are close.
+     */
+    private static int[] insertionOrder(double[] unit, ForkJoinPool pool) {
+        int n = unit.length / 3;
+        int[] shuffled = new int[n];
+        for (int i = 0; i < n; i++) {
+            shuffled[i] = i;
+        }
+        Random random = new Random(0x5DE1A7L);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        long[] keys = new long[n];
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(k -> {
+            int point = shuffled[k];
+            long round = 32 - Integer.numberOfLeadingZeros(k);
+            keys[k] = (round << 57) | ((long) cubeMorton(unit, point) << 32) | point;
+        })).join();
+        Arrays.parallelSort(keys);
+        int[] order = new int[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = (int) keys[k];
+        }
+        return order;
+    }
+
+    /**
+     * Cube face (3 bits) above a {@link #MORTON_BITS}-per-axis Morton code of the face coordinates.
+     */
+    private static int cubeMorton(double[] unit, int point) {
+        double x = unit[point * 3];
+        double y = unit[point * 3 + 1];
+        double z = unit[point * 3 + 2];
+        double ax = Math.abs(x);
+        double ay = Math.abs(y);
+        double az = Math.abs(z);
+        int face;
+        double u;
+        double v;
+        if (ax >= ay && ax >= az) {
+            face = x >= 0.0 ? 0 : 1;
+            u = y / ax;
+            v = z / ax;
+        } else if (ay >= az) {
+            face = y >= 0.0 ? 2 : 3;
+            u = x / ay;
+            v = z / ay;
+        } else {
+            face = z >= 0.0 ? 4 : 5;
+            u = x / az;
+            v = y / az;
+        }
+        int cells = 1 << MORTON_BITS;
+        int iu = Math.min(cells - 1, (int) ((u + 1.0) * 0.5 * cells));
+        int iv = Math.min(cells - 1, (int) ((v + 1.0) * 0.5 * cells));
+        int code = 0;
+        for (int bit = 0; bit < MORTON_BITS; bit++) {
+            code |= ((iu >> bit) & 1) << (2 * bit);
+            code |= ((iv >> bit) & 1) << (2 * bit + 1);
+        }
+        return (face << (2 * MORTON_BITS)) | code;
+    }
+
+    /**
+     * Incremental convex hull over unit directions. Faces are counter-clockwise seen from outside;
+     * {@code adj[f * 3 + k]} is the face across edge {@code (v[k], v[k + 1])}. Dead face slots are
+     * reused. Point location walks from the last new face towards the query along the ray from an
+     * interior point of the seed tetrahedron, which stays inside the hull as it grows.
+     */
+    private static final class Hull {
+        private final double[] p;
+        private final int[] edgeFromA;
+        private final int[] edgeFromB;
+        private int[] faceVertex = new int[3 * 64];
+        private int[] adj = new int[3 * 64];
+        private boolean[] alive = new boolean[64];
+        private int[] mark = new int[64];
+        private int faceCount;
+        private int[] free = new int[64];
+        private int freeCount;
+        private int epoch;
+        private int last;
+        private double ox;
+        private double oy;
+        private double oz;
+        private int[] cavity = new int[64];
+        private int[] horizon = new int[3 * 64];
+        private int skipped;
+
+        Hull(double[] unit) {
+            this.p = unit;
+            int n = unit.length / 3;
+            this.edgeFromA = new int[n];
+            this.edgeFromB = new int[n];
+        }
+
+        int[] seedTetrahedron(int[] order) {
+            int a = order[0];
+            int b = -1;
+            double best = -1.0;
+            for (int i : order) {
+                double d = distanceSquared(a, i);
+                if (d > best) {
+                    best = d;
+                    b = i;
+                }
+            }
+            int c = -1;
+            best = -1.0;
+            for (int i : order) {
+                double area = crossLengthSquared(a, b, i);
+                if (area > best) {
+                    best = area;
+                    c = i;
+                }
+            }
+            int d = -1;
+            best = 0.0;
+            for (int i : order) {
+                double volume = Math.abs(orient(a, b, c, i));
+                if (volume > best) {
+                    best = volume;
+                    d = i;
+                }
+            }
+            if (d < 0 || best < 1e-18) {
+                throw new IllegalArgumentException("Points are coplanar; they do not span a sphere");
+            }
+            if (orient(a, b, c, d) > 0.0) {
+                int swap = b;
+                b = c;
+                c = swap;
+            }
+            ox = (p[a * 3] + p[b * 3] + p[c * 3] + p[d * 3]) * 0.25;
+            oy = (p[a * 3 + 1] + p[b * 3 + 1] + p[c * 3 + 1] + p[d * 3 + 1]) * 0.25;
+            oz = (p[a * 3 + 2] + p[b * 3 + 2] + p[c * 3 + 2] + p[d * 3 + 2]) * 0.25;
+            // d lies behind (a, b, c); the other three faces wind so d is the apex seen from outside.
+            int f0 = newFace(a, b, c);
+            int f1 = newFace(a, d, b);
+            int f2 = newFace(b, d, c);
+            int f3 = newFace(c, d, a);
+            link(f0, 0, f1, 2);
+            link(f0, 1, f2, 2);
+            link(f0, 2, f3, 2);
+            link(f1, 0, f3, 1);
+            link(f1, 1, f2, 0);
+            link(f2, 1, f3, 0);
+            last = f0;
+            return new int[]{a, b, c, d};
+        }
+
+        void insert(int q) {
+            int start = locate(q);
+            if (start >= 0 && orient(start, q) <= 0.0) {
+                // Rounding at a cone boundary: a neighbour across the nearby edge sees the point.
+                int seen = -1;
+                for (int k = 0; k < 3 && seen < 0; k++) {
+                    int g = adj[start * 3 + k];
+                    seen = orient(g, q) > 0.0 ? g : -1;
+                }
+                start = seen;
+            }
+            if (start < 0 || isDuplicate(start, q)) {
+                skipped++;
+                return;
+            }
+            int cavitySize = collectCavity(start, q);
+            int horizonSize;
+            while (true) {
+                horizonSize = collectHorizon(cavitySize);
+                int bad = firstInvertedHorizonEdge(horizonSize, q);
+                if (bad < 0) {
+                    break;
+                }
+                // A near-degenerate visibility test left the cavity non-star-shaped: grow it.
+                cavity = ensure(cavity, cavitySize + 1);
+                int outside = horizon[bad * 3 + 2];
+                mark[outside] = -epoch;
+                cavity[cavitySize++] = outside;
+            }
+            for (int i = 0; i < cavitySize; i++) {
+                kill(cavity[i]);
+            }
+            int firstNew = -1;
+            for (int h = 0; h < horizonSize; h++) {
+                int a = horizon[h * 3];
+                int b = horizon[h * 3 + 1];
+                int outside = horizon[h * 3 + 2];
+                int f = newFace(a, b, q);
+                int back = edgeTo(outside, a, b);
+                adj[f * 3] = outside;
+                adj[outside * 3 + back] = f;
+                edgeFromA[a] = f;
+                edgeFromB[b] = f;
+                firstNew = f;
+            }
+            for (int h = 0; h < horizonSize; h++) {
+                int a = horizon[h * 3];
+                int b = horizon[h * 3 + 1];
+                int f = edgeFromA[a];
+                adj[f * 3 + 1] = edgeFromA[b];
+                adj[f * 3 + 2] = edgeFromB[a];
+            }
+            last = firstNew;
+        }
+
+        SphericalDelaunay finish() {
+            int[] index = new int[faceCount];
+            int live = 0;
+            for (int f = 0; f < faceCount; f++) {
+                index[f] = alive[f] ? live++ : -1;
+            }
+            int[] triangles = new int[live * 3];
+            int[] adjacency = new int[live * 3];
+            int n = p.length / 3;
+            int[] vertexTriangle = new int[n];
+            Arrays.fill(vertexTriangle, -1);
+            for (int f = 0; f < faceCount; f++) {
+                if (!alive[f]) {
+                    continue;
+                }
+                int t = index[f];
+                for (int k = 0; k < 3; k++) {
+                    triangles[t * 3 + k] = faceVertex[f * 3 + k];
+                    adjacency[t * 3 + k] = index[adj[f * 3 + k]];
+                    vertexTriangle[faceVertex[f * 3 + k]] = t;
+                }
+                if (dot(faceVertex[f * 3], f) <= 0.0) {
+                    throw new IllegalArgumentException("Points do not surround the sphere center");
+                }
+            }
+            int vertices = 0;
+            for (int v = 0; v < n; v++) {
+                if (vertexTriangle[v] >= 0) {
+                    vertices++;
+                }
+            }
+            if (live != 2 * vertices - 4) {
+                throw new IllegalStateException("Hull is not a closed triangulation: " + vertices + " vertices, " + live + " faces");
+            }
+            return new SphericalDelaunay(p, triangles, adjacency, vertexTriangle, n - vertices);
+        }
+
+        /**
+         * Walks from the last new face to the face whose cone from the interior point holds {@code q}.
+         */
+        private int locate(int q) {
+            int f = last;
+            int limit = 4 * faceCount + 16;
+            for (int step = 0; step < limit; step++) {
+                int moved = -1;
+                for (int e = 0; e < 3; e++) {
+                    int k = (e + step) % 3;
+                    int a = faceVertex[f * 3 + k];
+                    int b = faceVertex[f * 3 + (k + 1) % 3];
+                    int c = faceVertex[f * 3 + (k + 2) % 3];
+                    if (side(a, b, q) * side(a, b, c) < 0.0) {
+                        moved = adj[f * 3 + k];
+                        break;
+                    }
+                }
+                if (moved < 0) {
+                    return f;
+                }
+                f = moved;
+            }
+            for (int g = 0; g < faceCount; g++) {
+                if (alive[g] && orient(g, q) > 0.0) {
+                    return g;
+                }
+            }
+            return -1;
+        }
+
+        private int collectCavity(int start, int q) {
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                epoch = 1;
+            }
+            int size = 0;
+            cavity = ensure(cavity, 1);
+            cavity[size++] = start;
+            mark[start] = -epoch;
+            for (int i = 0; i < size; i++) {
+                int f = cavity[i];
+                for (int k = 0; k < 3; k++) {
+                    int g = adj[f * 3 + k];
+                    if (Math.abs(mark[g]) == epoch) {
+                        continue;
+                    }
+                    if (orient(g, q) > 0.0) {
+                        mark[g] = -epoch;
+                        cavity = ensure(cavity, size + 1);
+                        cavity[size++] = g;
+                    } else {
+                        mark[g] = epoch;
+                    }
+                }
+            }
+            return size;
+        }
+
+        private int collectHorizon(int cavitySize) {
+            int size = 0;
+            for (int i = 0; i < cavitySize; i++) {
+                int f = cavity[i];
+                for (int k = 0; k < 3; k++) {
+                    int g = adj[f * 3 + k];
+                    if (mark[g] == -epoch) {
+                        continue;
+                    }
+                    horizon = ensure(horizon, size * 3 + 3);
+                    horizon[size * 3] = faceVertex[f * 3 + k];
+                    horizon[size * 3 + 1] = faceVertex[f * 3 + (k + 1) % 3];
+                    horizon[size * 3 + 2] = g;
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        private int firstInvertedHorizonEdge(int horizonSize, int q) {
+            for (int h = 0; h < horizonSize; h++) {
+                int a = horizon[h * 3];
+                int b = horizon[h * 3 + 1];
+                if (orientPoint(a, b, q, ox, oy, oz) >= 0.0) {
+                    return h;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isDuplicate(int f, int q) {
+            for (int k = 0; k < 3; k++) {
+                if (distanceSquared(faceVertex[f * 3 + k], q) < DUPLICATE_EPS * DUPLICATE_EPS) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int newFace(int a, int b, int c) {
+            int f;
+            if (freeCount > 0) {
+                f = free[--freeCount];
+            } else {
+                f = faceCount++;
+                if (f == alive.length) {
+                    int capacity = alive.length * 2;
+                    alive = Arrays.copyOf(alive, capacity);
+                    mark = Arrays.copyOf(mark, capacity);
+                    faceVertex = Arrays.copyOf(faceVertex, capacity * 3);
+                    adj = Arrays.copyOf(adj, capacity * 3);
+                }
+            }
+            alive[f] = true;
+            mark[f] = 0;
+            faceVertex[f * 3] = a;
+            faceVertex[f * 3 + 1] = b;
+            faceVertex[f * 3 + 2] = c;
+            return f;
+        }
+
+        private void kill(int f) {
+            alive[f] = false;
+            free = ensure(free, freeCount + 1);
+            free[freeCount++] = f;
+        }
+
+        private void link(int f, int k, int g, int j) {
+            adj[f * 3 + k] = g;
+            adj[g * 3 + j] = f;
+        }
+
+        private int edgeTo(int f, int a, int b) {
+            for (int k = 0; k < 3; k++) {
+                if (faceVertex[f * 3 + k] == b && faceVertex[f * 3 + (k + 1) % 3] == a) {
+                    return k;
+                }
+            }
+            throw new IllegalStateException("Face " + f + " does not border edge " + a + "-" + b);
+        }
+
+        /**
+         * Positive when {@code q} lies outside (in front of) face {@code f}.
+         */
+        private double orient(int f, int q) {
+            return orient(faceVertex[f * 3], faceVertex[f * 3 + 1], faceVertex[f * 3 + 2], q);
+        }
+
+        private double orient(int a, int b, int c, int q) {
+            return orientPoint(a, b, c, p[q * 3], p[q * 3 + 1], p[q * 3 + 2]);
+        }
+
+        private double orientPoint(int a, int b, int c, double qx, double qy, double qz) {
+            double abx = p[b * 3] - p[a * 3];
+            double aby = p[b * 3 + 1] - p[a * 3 + 1];
+            double abz = p[b * 3 + 2] - p[a * 3 + 2];
+            double acx = p[c * 3] - p[a * 3];
+            double acy = p[c * 3 + 1] - p[a * 3 + 1];
+            double acz = p[c * 3 + 2] - p[a * 3 + 2];
+            double aqx = qx - p[a * 3];
+            double aqy = qy - p[a * 3 + 1];
+            double aqz = qz - p[a * 3 + 2];
+            return aqx * (aby * acz - abz * acy) + aqy * (abz * acx - abx * acz) + aqz * (abx * acy - aby * acx);
+        }
+
+        /**
+         * Side of {@code q} relative to the plane through the interior point and edge {@code (a, b)}.
+         */
+        private double side(int a, int b, int q) {
+            double ax = p[a * 3] - ox;
+            double ay = p[a * 3 + 1] - oy;
+            double az = p[a * 3 + 2] - oz;
+            double bx = p[b * 3] - ox;
+            double by = p[b * 3 + 1] - oy;
+            double bz = p[b * 3 + 2] - oz;
+            double qx = p[q * 3] - ox;
+            double qy = p[q * 3 + 1] - oy;
+            double qz = p[q * 3 + 2] - oz;
+            return qx * (ay * bz - az * by) + qy * (az * bx - ax * bz) + qz * (ax * by - ay * bx);
+        }
+
+        private double nx(int f) {
+            int a = faceVertex[f * 3];
+            int b = faceVertex[f * 3 + 1];
+            int c = faceVertex[f * 3 + 2];
+            return (p[b * 3 + 1] - p[a * 3 + 1]) * (p[c * 3 + 2] - p[a * 3 + 2])
+                    - (p[b * 3 + 2] - p[a * 3 + 2]) * (p[c * 3 + 1] - p[a * 3 + 1]);
+        }
+
+        private double ny(int f) {
+            int a = faceVertex[f * 3];
+            int b = faceVertex[f * 3 + 1];
+            int c = faceVertex[f * 3 + 2];
+            return (p[b * 3 + 2] - p[a * 3 + 2]) * (p[c * 3] - p[a * 3])
+                    - (p[b * 3] - p[a * 3]) * (p[c * 3 + 2] - p[a * 3 + 2]);
+        }
+
+        private double nz(int f) {
+            int a = faceVertex[f * 3];
+            int b = faceVertex[f * 3 + 1];
+            int c = faceVertex[f * 3 + 2];
+            return (p[b * 3] - p[a * 3]) * (p[c * 3 + 1] - p[a * 3 + 1])
+                    - (p[b * 3 + 1] - p[a * 3 + 1]) * (p[c * 3] - p[a * 3]);
+        }
+
+        /**
+         * Face normal (unnormalized) dotted with point {@code v}.
+         */
+        private double dot(int v, int f) {
+            return nx(f) * p[v * 3] + ny(f) * p[v * 3 + 1] + nz(f) * p[v * 3 + 2];
+        }
+
+        private double distanceSquared(int a, int b) {
+            double dx = p[a * 3] - p[b * 3];
+            double dy = p[a * 3 + 1] - p[b * 3 + 1];
+            double dz = p[a * 3 + 2] - p[b * 3 + 2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        private double crossLengthSquared(int a, int b, int c) {
+            double abx = p[b * 3] - p[a * 3];
+            double aby = p[b * 3 + 1] - p[a * 3 + 1];
+            double abz = p[b * 3 + 2] - p[a * 3 + 2];
+            double acx = p[c * 3] - p[a * 3];
+            double acy = p[c * 3 + 1] - p[a * 3 + 1];
+            double acz = p[c * 3 + 2] - p[a * 3 + 2];
+            double x = aby * acz - abz * acy;
+            double y = abz * acx - abx * acz;
+            double z = abx * acy - aby * acx;
+            return x * x + y * y + z * z;
+        }
+
+        private static int[] ensure(int[] array, int minLength) {
+            return array.length >= minLength ? array : Arrays.copyOf(array, Math.max(minLength, array.length * 2));
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.sphererelaxator.mesh;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Point-to-tile lookup on a sphere. A cube map of about one cell per tile seeds each query with a
+ * nearby tile; a greedy walk over tile neighbours moves to the tile whose center is closest to the
+ * query direction, and an exact test against the tile's fan triangles (center to ring edge) picks
+ * that tile or one of its neighbours. Directions need not be normalized; lat/long uses the y axis
+ * as north, matching the spherical UVs of the generators.
+ */
+public final class TileLocator {
+    private static final int FILE_MAGIC = 0x5352544C;
+    private static final int FILE_VERSION = 1;
+    private static final double INSIDE_EPS = -1e-12;
+
+    private final long[] tileIds;
+    private final double[] centers;
+    private final int[] ringOffsets;
+    private final double[] ring;
+    private final int[] neighborOffsets;
+    private final int[] neighbors;
+    private final int grid;
+    private final int[] seeds;
+    private final byte[] orientation;
+
+    private TileLocator(long[] tileIds,
+                        double[] centers,
+                        int[] ringOffsets,
+                        double[] ring,
+                        int[] neighborOffsets,
+                        int[] neighbors,
+                        int grid,
+                        int[] seeds) {
+        this.tileIds = tileIds;
+        this.centers = centers;
+        this.ringOffsets = ringOffsets;
+        this.ring = ring;
+        this.neighborOffsets = neighborOffsets;
+        this.neighbors = neighbors;
+        this.grid = grid;
+        this.orientation = new byte[tileIds.length];
+        for (int t = 0; t < tileIds.length; t++) {
+            orientation[t] = orientationOf(t);
+        }
+        this.seeds = seeds != null ? seeds : buildSeeds();
+    }
+
+    /**
+     * Builds an index over tiles given as packed {@code xyz} centers and rings (CSR offsets into
+     * {@code ringPositions}) with CSR neighbour lists of dense tile indices. Positions are projected
+     * to unit directions.
+     */
+    public static TileLocator build(long[] tileIds,
+                                    double[] centers,
+                                    int[] ringOffsets,
+                                    double[] ringPositions,
+                                    int[] neighborOffsets,
+                                    int[] neighbors) {
+        int tileCount = tileIds.length;
+        if (centers.length != tileCount * 3 || ringOffsets.length != tileCount + 1
+                || neighborOffsets.length != tileCount + 1) {
+            throw new IllegalArgumentException("Tile arrays do not match tile count " + tileCount);
+        }
+        if (tileCount == 0) {
+            throw new IllegalArgumentException("Tile locator needs at least one tile");
+        }
+        int grid = Math.max(1, (int) Math.ceil(Math.sqrt(tileCount / 6.0)));
+        return new TileLocator(
+                tileIds.clone(),
+                normalized(centers),
+                ringOffsets.clone(),
+                normalized(ringPositions),
+                neighborOffsets.clone(),
+                neighbors.clone(),
+                grid,
+                null
+        );
+    }
+
+    /**
+     * Index over the tiles of a mesh, keyed by {@link Tile#id()}; tiles sharing a vertex are neighbours.
+     */
+    public static TileLocator fromMesh(Mesh mesh) {
+        List<Tile> tiles = mesh.tiles();
+        Vec3[] vertices = mesh.vertices();
+        int tileCount = tiles.size();
+        long[] ids = new long[tileCount];
+        double[] centers = new double[tileCount * 3];
+        int[] ringOffsets = new int[tileCount + 1];
+        for (int t = 0; t < tileCount; t++) {
+            ringOffsets[t + 1] = ringOffsets[t] + tiles.get(t).vertexIds().size();
+        }
+        double[] ringPositions = new double[ringOffsets[tileCount] * 3];
+        List<List<Integer>> tilesAtVertex = new ArrayList<>(vertices.length);
+        for (int v = 0; v < vertices.length; v++) {
+            tilesAtVertex.add(new ArrayList<>(3));
+        }
+        for (int t = 0; t < tileCount; t++) {
+            Tile tile = tiles.get(t);
+            ids[t] = tile.id();
+            Vec3 c = new Vec3(0.0, 0.0, 0.0);
+            int o = ringOffsets[t] * 3;
+            for (int v : tile.vertexIds()) {
+                Vec3 p = vertices[v];
+                c = c.add(p);
+                ringPositions[o++] = p.x();
+                ringPositions[o++] = p.y();
+                ringPositions[o++] = p.z();
+                tilesAtVertex.get(v).add(t);
+            }
+            centers[t * 3] = c.x();
+            centers[t * 3 + 1] = c.y();
+            centers[t * 3 + 2] = c.z();
+        }
+
+        int[] neighborOffsets = new int[tileCount + 1];
+        List<int[]> lists = new ArrayList<>(tileCount);
+        for (int t = 0; t < tileCount; t++) {
+            int self = t;
+            int[] nbs = tiles.get(t).vertexIds().stream()
+                    .flatMap(v -> tilesAtVertex.get(v).stream())
+                    .mapToInt(Integer::intValue)
+                    .filter(n -> n != self)
+                    .distinct()
+                    .toArray();
+            lists.add(nbs);
+            neighborOffsets[t + 1] = neighborOffsets[t] + nbs.length;
+        }
+        int[] neighbors = new int[neighborOffsets[tileCount]];
+        for (int t = 0; t < tileCount; t++) {
+            System.arraycopy(lists.get(t), 0, neighbors, neighborOffsets[t], lists.get(t).length);
+        }
+        return build(ids, centers, ringOffsets, ringPositions, neighborOffsets, neighbors);
+    }
+
+    public int tileCount() {
+        return tileIds.length;
+    }
+
+    public long tileId(int tile) {
+        return tileIds[tile];
+    }
+
+    /**
+     * Dense index of the tile containing direction {@code (x, y, z)}.
+     */
+    public int locate(double x, double y, double z) {
+        if (x == 0.0 && y == 0.0 && z == 0.0) {
+            throw new IllegalArgumentException("Cannot locate the zero vector");
+        }
+        int t = walk(seeds[cell(x, y, z)], x, y, z);
+        if (contains(t, x, y, z)) {
+            return t;
+        }
+        for (int k = neighborOffsets[t]; k < neighborOffsets[t + 1]; k++) {
+            if (contains(neighbors[k], x, y, z)) {
+                return neighbors[k];
+            }
+        }
+        return t;
+    }
+
+    public long locateId(double x, double y, double z) {
+        return tileIds[locate(x, y, z)];
+    }
+
+    public long locateLatLong(double latitudeDeg, double longitudeDeg) {
+        double lat = Math.toRadians(latitudeDeg);
+        double lon = Math.toRadians(longitudeDeg);
+        double c = Math.cos(lat);
+        return locateId(c * Math.cos(lon), Math.sin(lat), c * Math.sin(lon));
+    }
+
+    /**
+     * Tile ids for packed {@code xyz} directions, answered in parallel on {@code pool}.
+     */
+    public void locateAll(double[] directions, long[] out, ForkJoinPool pool) {
+        int count = directions.length / 3;
+        if (out.length < count) {
+            throw new IllegalArgumentException("Output holds " + out.length + " ids, need " + count);
+        }
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(i ->
+                out[i] = locateId(directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2])
+        )).join();
+    }
+
+    /**
+     * Reference answer by scanning every tile; for verification only.
+     */
+    public int locateBruteForce(double x, double y, double z) {
+        int nearest = 0;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t < tileIds.length; t++) {
+            if (contains(t, x, y, z)) {
+                return t;
+            }
+            double d = dotCenter(t, x, y, z);
+            if (d > best) {
+                best = d;
+                nearest = t;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Whether direction {@code (x, y, z)} lies in one of tile {@code t}'s fan triangles.
+     */
+    public boolean contains(int t, double x, double y, double z) {
+        if (dotCenter(t, x, y, z) <= 0.0) {
+            return false;
+        }
+        double o = orientation[t];
+        int c = t * 3;
+        double cx = centers[c];
+        double cy = centers[c + 1];
+        double cz = centers[c + 2];
+        int start = ringOffsets[t];
+        int end = ringOffsets[t + 1];
+        for (int k = start; k < end; k++) {
+            int a = k * 3;
+            int b = (k + 1 < end ? k + 1 : start) * 3;
+            double ax = ring[a];
+            double ay = ring[a + 1];
+            double az = ring[a + 2];
+            double bx = ring[b];
+            double by = ring[b + 1];
+            double bz = ring[b + 2];
+            if (o * det(cx, cy, cz, ax, ay, az, x, y, z) >= INSIDE_EPS
+                    && o * det(ax, ay, az, bx, by, bz, x, y, z) >= INSIDE_EPS
+                    && o * det(bx, by, bz, cx, cy, cz, x, y, z) >= INSIDE_EPS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(tileIds.length);
+            out.writeInt(grid);
+            for (long id : tileIds) {
+                out.writeLong(id);
+            }
+            writeDoubles(out, centers);
+            writeInts(out, ringOffsets);
+            writeDoubles(out, ring);
+            writeInts(out, neighborOffsets);
+            writeInts(out, neighbors);
+            writeInts(out, seeds);
+        }
+    }
+
+    public static TileLocator read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("unsupported tile index format: " + file);
+            }
+            long[] ids = new long[in.readInt()];
+            int grid = in.readInt();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = in.readLong();
+            }
+            double[] centers = readDoubles(in);
+            int[] ringOffsets = readInts(in);
+            double[] ring = readDoubles(in);
+            int[] neighborOffsets = readInts(in);
+            int[] neighbors = readInts(in);
+            int[] seeds = readInts(in);
+            if (seeds.length != 6 * grid * grid) {
+                throw new IOException("corrupt tile index: " + file);
+            }
+            return new TileLocator(ids, centers, ringOffsets, ring, neighborOffsets, neighbors, grid, seeds);
+        }
+    }
+
+    private int walk(int start, double x, double y, double z) {
+        int t = start;
+        double best = dotCenter(t, x, y, z);
+        while (true) {
+            int next = -1;
+            for (int k = neighborOffsets[t]; k < neighborOffsets[t + 1]; k++) {
+                double d = dotCenter(neighbors[k], x, y, z);
+                if (d > best) {
+                    best = d;
+                    next = neighbors[k];
+                }
+            }
+            if (next < 0) {
+                return t;
+            }
+            t = next;
+        }
+    }
+
+    /**
+     * Cube-map cell of a direction: major axis picks the face, the other two components divided by
+     * it pick the row and column.
+     */
+    private int cell(double x, double y, double z) {
+        double ax = Math.abs(x);
+        double ay = Math.abs(y);
+        double az = Math.abs(z);
+        int face;
+        double u;
+        double v;
+        if (ax >= ay && ax >= az) {
+            face = x > 0 ? 0 : 1;
+            u = y / ax;
+            v = z / ax;
+        } else if (ay >= az) {
+            face = y > 0 ? 2 : 3;
+            u = x / ay;
+            v = z / ay;
+        } else {
+            face = z > 0 ? 4 : 5;
+            u = x / az;
+            v = y / az;
+        }
+        int i = Math.min(grid - 1, (int) ((u + 1.0) * 0.5 * grid));
+        int j = Math.min(grid - 1, (int) ((v + 1.0) * 0.5 * grid));
+        return (face * grid + j) * grid + i;
+    }
+
+    private int[] buildSeeds() {
+        int[] built = new int[6 * grid * grid];
+        int t = 0;
+        for (int face = 0; face < 6; face++) {
+            for (int j = 0; j < grid; j++) {
+                for (int i = 0; i < grid; i++) {
+                    double u = (i + 0.5) / grid * 2.0 - 1.0;
+                    double v = (j + 0.5) / grid * 2.0 - 1.0;
+                    double s = (face & 1) == 0 ? 1.0 : -1.0;
+                    double x;
+                    double y;
+                    double z;
+                    if (face < 2) {
+                        x = s;
+                        y = u;
+                        z = v;
+                    } else if (face < 4) {
+                        x = u;
+                        y = s;
+                        z = v;
+                    } else {
+                        x = u;
+                        y = v;
+                        z = s;
+                    }
+                    t = walk(t, x, y, z);
+                    built[(face * grid + j) * grid + i] = t;
+                }
+            }
+        }
+        return built;
+    }
+
+    private byte orientationOf(int t) {
+        double sum = 0.0;
+        int c = t * 3;
+        int start = ringOffsets[t];
+        int end = ringOffsets[t + 1];
+        for (int k = start; k < end; k++) {
+            int a = k * 3;
+            int b = (k + 1 < end ? k + 1 : start) * 3;
+            sum += det(ring[a], ring[a + 1], ring[a + 2], ring[b], ring[b + 1], ring[b + 2],
+                    centers[c], centers[c + 1], centers[c + 2]);
+        }
+        return (byte) (sum < 0.0 ? -1 : 1);
+    }
+
+    private double dotCenter(int t, double x, double y, double z) {
+        int c = t * 3;
+        return centers[c] * x + centers[c + 1] * y + centers[c + 2] * z;
+    }
+
+    /**
+     * {@code (a x b) . p}.
+     */
+    private static double det(double ax, double ay, double az,
+                              double bx, double by, double bz,
+                              double px, double py, double pz) {
+        return (ay * bz - az * by) * px + (az * bx - ax * bz) * py + (ax * by - ay * bx) * pz;
+    }
+
+    private static double[] normalized(double[] xyz) {
+        double[] out = new double[xyz.length];
+        for (int i = 0; i + 2 < xyz.length; i += 3) {
+            double len = Math.sqrt(xyz[i] * xyz[i] + xyz[i + 1] * xyz[i + 1] + xyz[i + 2] * xyz[i + 2]);
+            double inv = len < 1e-12 ? 0.0 : 1.0 / len;
+            out[i] = xyz[i] * inv;
+            out[i + 1] = xyz[i + 1] * inv;
+            out[i + 2] = xyz[i + 2] * inv;
+        }
+        return out;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+}
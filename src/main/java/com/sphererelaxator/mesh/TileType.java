@@ -2,7 +2,11 @@ package com.sphererelaxator.mesh;
 
 public enum TileType {
     PENTAGON,
-    HEXAGON;
+    HEXAGON,
+    /**
+     * Non-hexagonal tile of a tiling that is not a Goldberg polyhedron; it gets no pentagon term.
+     */
+    IRREGULAR;
 
     public static TileType from(String value) {
         if (value == null) {
@@ -12,6 +16,9 @@ public enum TileType {
         if (v.startsWith("PENT")) {
             return PENTAGON;
         }
+        if (v.startsWith("IRREG")) {
+            return IRREGULAR;
+        }
         return HEXAGON;
     }
 }
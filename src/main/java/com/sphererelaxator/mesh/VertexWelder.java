@@ -0,0 +1,174 @@
+package com.sphererelaxator.mesh;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Grid-based vertex weld. Cells are {@code 2 * tolerance} wide, so a match can only sit in the
+ * same cell or in the neighbour on the nearer side of each axis (at most 8 probes per vertex).
+ * Unique ids follow first-occurrence order.
+ */
+public final class VertexWelder {
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    private static final int EMPTY = -1;
+
+    private VertexWelder() {
+    }
+
+    public static WeldResult weld(List<Vec3> points, double tolerance, ForkJoinPool pool) {
+        double[] xyz = new double[points.size() * 3];
+        for (int i = 0; i < points.size(); i++) {
+            Vec3 p = points.get(i);
+            xyz[i * 3] = p.x();
+            xyz[i * 3 + 1] = p.y();
+            xyz[i * 3 + 2] = p.z();
+        }
+        return weld(xyz, tolerance, pool);
+    }
+
+    public static WeldResult weld(double[] xyz, double tolerance, ForkJoinPool pool) {
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException("weld tolerance must be > 0");
+        }
+        int n = xyz.length / 3;
+        double cellSize = 2.0 * tolerance;
+        double toleranceSq = tolerance * tolerance;
+        long[] cellX = new long[n];
+        long[] cellY = new long[n];
+        long[] cellZ = new long[n];
+        byte[] side = new byte[n];
+
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> {
+            double fx = xyz[i * 3] / cellSize;
+            double fy = xyz[i * 3 + 1] / cellSize;
+            double fz = xyz[i * 3 + 2] / cellSize;
+            cellX[i] = (long) Math.floor(fx);
+            cellY[i] = (long) Math.floor(fy);
+            cellZ[i] = (long) Math.floor(fz);
+            int bits = 0;
+            if (fx - cellX[i] >= 0.5) {
+                bits |= 1;
+            }
+            if (fy - cellY[i] >= 0.5) {
+                bits |= 2;
+            }
+            if (fz - cellZ[i] >= 0.5) {
+                bits |= 4;
+            }
+            side[i] = (byte) bits;
+        })).join();
+
+        CellTable table = new CellTable(n);
+        int[] next = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            int slot = table.slotFor(cellX[i], cellY[i], cellZ[i], true);
+            next[i] = table.head[slot];
+            table.head[slot] = i;
+        }
+
+        int[] representative = new int[n];
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> {
+            double px = xyz[i * 3];
+            double py = xyz[i * 3 + 1];
+            double pz = xyz[i * 3 + 2];
+            int best = i;
+            for (int probe = 0; probe < 8; probe++) {
+                long cx = cellX[i] + offset(probe, 1, side[i]);
+                long cy = cellY[i] + offset(probe, 2, side[i]);
+                long cz = cellZ[i] + offset(probe, 4, side[i]);
+                int slot = table.slotFor(cx, cy, cz, false);
+                if (slot < 0) {
+                    continue;
+                }
+                for (int j = table.head[slot]; j != EMPTY && j < best; j = next[j]) {
+                    double dx = px - xyz[j * 3];
+                    double dy = py - xyz[j * 3 + 1];
+                    double dz = pz - xyz[j * 3 + 2];
+                    if (dx * dx + dy * dy + dz * dz <= toleranceSq) {
+                        best = j;
+                        break;
+                    }
+                }
+            }
+            representative[i] = best;
+        })).join();
+
+        int[] originalToUnique = new int[n];
+        int uniqueCount = 0;
+        for (int i = 0; i < n; i++) {
+            int rep = representative[i];
+            if (rep == i) {
+                originalToUnique[i] = uniqueCount++;
+            } else {
+                representative[i] = representative[rep];
+                originalToUnique[i] = originalToUnique[rep];
+            }
+        }
+
+        int[] uniqueRepresentative = new int[uniqueCount];
+        for (int i = 0; i < n; i++) {
+            if (representative[i] == i) {
+                uniqueRepresentative[originalToUnique[i]] = i;
+            }
+        }
+        return new WeldResult(originalToUnique, uniqueRepresentative);
+    }
+
+    private static long offset(int probe, int axisBit, int side) {
+        if ((probe & axisBit) == 0) {
+            return 0L;
+        }
+        return (side & axisBit) != 0 ? 1L : -1L;
+    }
+
+    public record WeldResult(int[] originalToUnique, int[] uniqueRepresentative) {
+        public int uniqueCount() {
+            return uniqueRepresentative.length;
+        }
+    }
+
+    private static final class CellTable {
+        final long[] keyX;
+        final long[] keyY;
+        final long[] keyZ;
+        final int[] head;
+        final int mask;
+
+        CellTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keyX = new long[capacity];
+            keyY = new long[capacity];
+            keyZ = new long[capacity];
+            head = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(head, EMPTY);
+        }
+
+        int slotFor(long x, long y, long z, boolean insert) {
+            int slot = (int) mix(x, y, z) & mask;
+            while (head[slot] != EMPTY) {
+                if (keyX[slot] == x && keyY[slot] == y && keyZ[slot] == z) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (!insert) {
+                return -1;
+            }
+            keyX[slot] = x;
+            keyY[slot] = y;
+            keyZ[slot] = z;
+            return slot;
+        }
+
+        private static long mix(long x, long y, long z) {
+            long h = x * 0x9E3779B97F4A7C15L;
+            h ^= y * 0xC2B2AE3D27D4EB4FL;
+            h ^= z * 0x165667B19E3779F9L;
+            return h ^ (h >>> 29);
+        }
+    }
+}
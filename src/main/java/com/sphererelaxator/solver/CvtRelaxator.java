@@ -0,0 +1,291 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Mesh;
+import com.sphererelaxator.mesh.Vec3;
+
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Spherical centroidal Voronoi relaxation of a Goldberg tile mesh. Tile centers are the generators,
+ * cell corners are the spherical circumcenters of the three generators around each ring corner, and
+ * every sweep moves each generator to the (optionally density-weighted) centroid of its cell, fanned
+ * from the generator over the existing ring. With {@code andersonDepth > 0} the Lloyd map is
+ * Anderson-accelerated; an accelerated step whose residual does not shrink is dropped for a plain
+ * Lloyd step and the history restarts.
+ * <p>
+ * Only {@code iterations}, {@code radius} and the logging settings of the config are used. Sweeps stop
+ * early once no generator moves more than a {@code 1e-10} fraction of the radius. Every tile corner
+ * must join exactly three tiles and none may be fixed.
+ */
+public class CvtRelaxator {
+    public static final int DEFAULT_ANDERSON_DEPTH = 5;
+    private static final double TOLERANCE = 1e-10;
+
+    private final ToDoubleFunction<Vec3> density;
+    private final int andersonDepth;
+
+    public CvtRelaxator() {
+        this(null, DEFAULT_ANDERSON_DEPTH);
+    }
+
+    /**
+     * @param density       positive weight at a unit direction, or {@code null} for uniform cells;
+     *                      denser regions get smaller cells
+     * @param andersonDepth Lloyd iterates mixed per step, {@code 0} for plain Lloyd
+     */
+    public CvtRelaxator(ToDoubleFunction<Vec3> density, int andersonDepth) {
+        if (andersonDepth < 0) {
+            throw new IllegalArgumentException("andersonDepth must be >= 0");
+        }
+        this.density = density;
+        this.andersonDepth = andersonDepth;
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return relax(mesh, config, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config, ForkJoinPool pool) {
+        TileDual dual = TileDual.of(mesh, config.radius(), "CVT relaxation");
+        double radius = config.radius();
+        int n = dual.centers.length;
+        double[] x = dual.centers;
+        double[] cornerXyz = new double[dual.corners.length * 3];
+        double[] mapped = new double[n];
+        double[] residual = new double[n];
+        double[] lloyd = new double[n];
+        Anderson anderson = andersonDepth > 0 ? new Anderson(andersonDepth, n) : null;
+
+        lloydMap(dual, x, radius, cornerXyz, mapped, pool);
+        PackedVectors.difference(mapped, x, residual, pool);
+        double residualNorm = Math.sqrt(PackedVectors.dot(residual, residual, pool));
+        long startedAtNs = System.nanoTime();
+
+        for (int iteration = 1; iteration <= config.iterations(); iteration++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Relaxation cancelled before iteration " + iteration);
+            }
+            double largestMove = largestVertexNorm(residual);
+            if (anderson == null) {
+                System.arraycopy(mapped, 0, x, 0, n);
+            } else {
+                System.arraycopy(mapped, 0, lloyd, 0, n);
+                anderson.push(mapped, residual);
+                anderson.extrapolate(x, pool);
+                project(x, radius, pool);
+            }
+            lloydMap(dual, x, radius, cornerXyz, mapped, pool);
+            PackedVectors.difference(mapped, x, residual, pool);
+            double nextNorm = Math.sqrt(PackedVectors.dot(residual, residual, pool));
+            if (anderson != null && anderson.size() > 1 && !(nextNorm < residualNorm)) {
+                anderson.clear();
+                System.arraycopy(lloyd, 0, x, 0, n);
+                lloydMap(dual, x, radius, cornerXyz, mapped, pool);
+                PackedVectors.difference(mapped, x, residual, pool);
+                nextNorm = Math.sqrt(PackedVectors.dot(residual, residual, pool));
+            }
+            residualNorm = nextNorm;
+
+            if (config.logEvery() > 0 && iteration % config.logEvery() == 0) {
+                dual.rebuildCorners(mesh, x, radius, pool);
+                RelaxationMetrics metrics = new SphereRelaxator().collectMetrics(mesh);
+                System.out.printf(Locale.US,
+                        "Iter %d: residual=%.6e edge std=%.6f pentMean=%.6f hexMean=%.6f%n",
+                        iteration, residualNorm, metrics.edgeStdDev(), metrics.pentagonAreaMean(), metrics.hexAreaMean());
+            }
+            if (config.progressEvery() > 0 && iteration % config.progressEvery() == 0) {
+                SphereRelaxator.printProgress(iteration, config.iterations(), startedAtNs);
+            }
+            if (largestMove <= TOLERANCE * radius) {
+                break;
+            }
+        }
+        dual.rebuildCorners(mesh, x, radius, pool);
+        return new SphereRelaxator().collectMetrics(mesh);
+    }
+
+    /**
+     * Writes the centroid of each generator's cell, on {@code radius}, to {@code out}.
+     */
+    private void lloydMap(TileDual dual, double[] x, double radius, double[] cornerXyz, double[] out, ForkJoinPool pool) {
+        dual.circumcenters(x, radius, cornerXyz, pool);
+        pool.submit(() -> IntStream.range(0, dual.tileCount).parallel().forEach(t -> {
+            double gx = x[t * 3];
+            double gy = x[t * 3 + 1];
+            double gz = x[t * 3 + 2];
+            int from = dual.ringOffsets[t];
+            int to = dual.ringOffsets[t + 1];
+            double sx = 0.0;
+            double sy = 0.0;
+            double sz = 0.0;
+            for (int k = from; k < to; k++) {
+                int a = dual.ringCorners[k];
+                int b = dual.ringCorners[k + 1 < to ? k + 1 : from];
+                double ax = cornerXyz[a * 3] - gx;
+                double ay = cornerXyz[a * 3 + 1] - gy;
+                double az = cornerXyz[a * 3 + 2] - gz;
+                double bx = cornerXyz[b * 3] - gx;
+                double by = cornerXyz[b * 3 + 1] - gy;
+                double bz = cornerXyz[b * 3 + 2] - gz;
+                double cx = ay * bz - az * by;
+                double cy = az * bx - ax * bz;
+                double cz = ax * by - ay * bx;
+                double weight = Math.sqrt(cx * cx + cy * cy + cz * cz);
+                double mx = gx + (ax + bx) / 3.0;
+                double my = gy + (ay + by) / 3.0;
+                double mz = gz + (az + bz) / 3.0;
+                if (density != null) {
+                    weight *= density.applyAsDouble(new Vec3(mx, my, mz).normalize());
+                }
+                sx += weight * mx;
+                sy += weight * my;
+                sz += weight * mz;
+            }
+            double length = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            if (length == 0.0) {
+                out[t * 3] = gx;
+                out[t * 3 + 1] = gy;
+                out[t * 3 + 2] = gz;
+                return;
+            }
+            out[t * 3] = sx * radius / length;
+            out[t * 3 + 1] = sy * radius / length;
+            out[t * 3 + 2] = sz * radius / length;
+        })).join();
+    }
+
+    private static void project(double[] x, double radius, ForkJoinPool pool) {
+        pool.submit(() -> IntStream.range(0, x.length / 3).parallel().forEach(t -> {
+            double length = Math.sqrt(x[t * 3] * x[t * 3] + x[t * 3 + 1] * x[t * 3 + 1] + x[t * 3 + 2] * x[t * 3 + 2]);
+            if (length > 0.0) {
+                x[t * 3] *= radius / length;
+                x[t * 3 + 1] *= radius / length;
+                x[t * 3 + 2] *= radius / length;
+            }
+        })).join();
+    }
+
+    private static double largestVertexNorm(double[] d) {
+        double largest = 0.0;
+        for (int i = 0; i < d.length; i += 3) {
+            largest = Math.max(largest, d[i] * d[i] + d[i + 1] * d[i + 1] + d[i + 2] * d[i + 2]);
+        }
+        return Math.sqrt(largest);
+    }
+
+    /**
+     * Type-II Anderson mixing over the last {@code depth + 1} Lloyd iterates {@code G(x)} and
+     * residuals {@code G(x) - x}.
+     */
+    private static final class Anderson {
+        private final int depth;
+        private final double[][] mappedHistory;
+        private final double[][] residualHistory;
+        private final double[][] deltaMapped;
+        private final double[][] deltaResidual;
+        private int count;
+        private int newest = -1;
+
+        Anderson(int depth, int n) {
+            this.depth = depth;
+            this.mappedHistory = new double[depth + 1][n];
+            this.residualHistory = new double[depth + 1][n];
+            this.deltaMapped = new double[depth][n];
+            this.deltaResidual = new double[depth][n];
+        }
+
+        int size() {
+            return count;
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        void push(double[] mapped, double[] residual) {
+            newest = (newest + 1) % (depth + 1);
+            System.arraycopy(mapped, 0, mappedHistory[newest], 0, mapped.length);
+            System.arraycopy(residual, 0, residualHistory[newest], 0, residual.length);
+            count = Math.min(depth + 1, count + 1);
+        }
+
+        /**
+         * Writes {@code G_k - Σ γ_j ΔG_j} to {@code out}, with {@code γ} the least-squares fit of the
+         * newest residual by the residual differences.
+         */
+        void extrapolate(double[] out, ForkJoinPool pool) {
+            double[] mapped = mappedHistory[newest];
+            double[] residual = residualHistory[newest];
+            int m = count - 1;
+            System.arraycopy(mapped, 0, out, 0, mapped.length);
+            if (m == 0) {
+                return;
+            }
+            for (int j = 0; j < m; j++) {
+                int later = Math.floorMod(newest - j, depth + 1);
+                int earlier = Math.floorMod(newest - j - 1, depth + 1);
+                PackedVectors.difference(residualHistory[later], residualHistory[earlier], deltaResidual[j], pool);
+                PackedVectors.difference(mappedHistory[later], mappedHistory[earlier], deltaMapped[j], pool);
+            }
+            double[][] normal = new double[m][m + 1];
+            double trace = 0.0;
+            for (int i = 0; i < m; i++) {
+                for (int j = i; j < m; j++) {
+                    double value = PackedVectors.dot(deltaResidual[i], deltaResidual[j], pool);
+                    normal[i][j] = value;
+                    normal[j][i] = value;
+                }
+                normal[i][m] = PackedVectors.dot(deltaResidual[i], residual, pool);
+                trace += normal[i][i];
+            }
+            for (int i = 0; i < m; i++) {
+                normal[i][i] += 1e-10 * trace + 1e-300;
+            }
+            double[] gamma = solve(normal, m);
+            for (int j = 0; j < m; j++) {
+                PackedVectors.axpy(-gamma[j], deltaMapped[j], out, pool);
+            }
+        }
+
+        /**
+         * Gaussian elimination with partial pivoting on the augmented {@code m × (m + 1)} system.
+         */
+        private static double[] solve(double[][] a, int m) {
+            for (int col = 0; col < m; col++) {
+                int pivot = col;
+                for (int row = col + 1; row < m; row++) {
+                    if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                        pivot = row;
+                    }
+                }
+                double[] swap = a[col];
+                a[col] = a[pivot];
+                a[pivot] = swap;
+                for (int row = col + 1; row < m; row++) {
+                    double factor = a[row][col] / a[col][col];
+                    for (int k = col; k <= m; k++) {
+                        a[row][k] -= factor * a[col][k];
+                    }
+                }
+            }
+            double[] x = new double[m];
+            for (int row = m - 1; row >= 0; row--) {
+                double sum = a[row][m];
+                for (int k = row + 1; k < m; k++) {
+                    sum -= a[row][k] * x[k];
+                }
+                x[row] = sum / a[row][row];
+            }
+            return x;
+        }
+    }
+}
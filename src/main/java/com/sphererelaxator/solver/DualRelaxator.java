@@ -0,0 +1,103 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Mesh;
+
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Relaxes a Goldberg tile mesh on its dual. Tile centers move under the same spring, Laplacian and
+ * pentagon terms as {@link SphereRelaxator} (the pentagon term pushes a pentagon's neighbour centers
+ * away from it), and corners are rebuilt as spherical circumcenters of the three centers around them
+ * in one parallel pass, whenever metrics are logged and at the end. A hex tiling has about half as
+ * many tiles as corners, so an iteration costs about half as much.
+ * <p>
+ * Every tile corner must join exactly three tiles and none may be fixed. Vertices outside tile rings
+ * (fan centers of Unreal-like meshes) are placed at the mean of their neighbours.
+ */
+public class DualRelaxator {
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return relax(mesh, config, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config, ForkJoinPool pool) {
+        TileDual dual = TileDual.of(mesh, config.radius(), "Dual relaxation");
+        double radius = config.radius();
+        int tileCount = dual.tileCount;
+        double[] centers = dual.centers;
+        double[] next = new double[centers.length];
+        double[] bias = new double[centers.length];
+        long startedAtNs = System.nanoTime();
+
+        for (int iteration = 1; iteration <= config.iterations(); iteration++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Relaxation cancelled before iteration " + iteration);
+            }
+            double targetEdgeLength = dual.meanNeighborDistance(centers);
+            dual.pentagonBias(centers, config.pentagonExpandWeight(), bias);
+            double[] current = centers;
+            pool.submit(() -> IntStream.range(0, tileCount).parallel().forEach(t -> {
+                int from = dual.neighborOffsets[t];
+                int to = dual.neighborOffsets[t + 1];
+                double cx = current[t * 3];
+                double cy = current[t * 3 + 1];
+                double cz = current[t * 3 + 2];
+                double ax = 0.0;
+                double ay = 0.0;
+                double az = 0.0;
+                double sx = 0.0;
+                double sy = 0.0;
+                double sz = 0.0;
+                for (int k = from; k < to; k++) {
+                    int nb = dual.neighbors[k];
+                    double dx = current[nb * 3] - cx;
+                    double dy = current[nb * 3 + 1] - cy;
+                    double dz = current[nb * 3 + 2] - cz;
+                    ax += current[nb * 3];
+                    ay += current[nb * 3 + 1];
+                    az += current[nb * 3 + 2];
+                    double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    if (len > 1e-12) {
+                        double scale = (len - targetEdgeLength) / len;
+                        sx += dx * scale;
+                        sy += dy * scale;
+                        sz += dz * scale;
+                    }
+                }
+                int degree = Math.max(1, to - from);
+                double lw = config.laplacianWeight();
+                double sw = config.springWeight() / degree;
+                double step = config.step();
+                double mx = cx + step * ((ax / degree - cx) * lw + sx * sw + bias[t * 3]);
+                double my = cy + step * ((ay / degree - cy) * lw + sy * sw + bias[t * 3 + 1]);
+                double mz = cz + step * ((az / degree - cz) * lw + sz * sw + bias[t * 3 + 2]);
+                double length = Math.sqrt(mx * mx + my * my + mz * mz);
+                double toRadius = length > 0.0 ? radius / length : 0.0;
+                next[t * 3] = mx * toRadius;
+                next[t * 3 + 1] = my * toRadius;
+                next[t * 3 + 2] = mz * toRadius;
+            })).join();
+            System.arraycopy(next, 0, centers, 0, centers.length);
+
+            if (config.logEvery() > 0 && iteration % config.logEvery() == 0) {
+                dual.rebuildCorners(mesh, centers, radius, pool);
+                RelaxationMetrics metrics = new SphereRelaxator().collectMetrics(mesh);
+                System.out.printf(Locale.US,
+                        "Iter %d: edge std=%.6f pentMean=%.6f hexMean=%.6f%n",
+                        iteration, metrics.edgeStdDev(), metrics.pentagonAreaMean(), metrics.hexAreaMean());
+            }
+            if (config.progressEvery() > 0 && iteration % config.progressEvery() == 0) {
+                SphereRelaxator.printProgress(iteration, config.iterations(), startedAtNs);
+            }
+        }
+        dual.rebuildCorners(mesh, centers, radius, pool);
+        return new SphereRelaxator().collectMetrics(mesh);
+    }
+}
@@ -0,0 +1,24 @@
+package com.sphererelaxator.solver;
+
+import java.util.Locale;
+
+/**
+ * Neighbour weights of the smoothing operator, selectable with {@code --laplacian}.
+ */
+public enum LaplacianWeighting {
+    /** Every neighbour counts the same. */
+    UNIFORM,
+    /** Cotangent weights of the triangles around each edge; needs a triangulated mesh. */
+    COTANGENT;
+
+    public static LaplacianWeighting from(String value) {
+        if (value == null) {
+            return UNIFORM;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown laplacian weighting: " + value + " (expected uniform or cotangent)");
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Mesh;
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileType;
+import com.sphererelaxator.mesh.Vec3;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Minimizes an explicit relaxation energy with L-BFGS on the sphere. The energy is a weighted sum of
+ * <ul>
+ *   <li>edge-length variance ({@code springWeight}),</li>
+ *   <li>umbrella smoothness, {@code |v - mean(neighbours)|²} ({@code laplacianWeight}),</li>
+ *   <li>pentagon area balance, each pentagon's area against five corners' worth of the mean area per
+ *       tile corner at the start ({@code pentagonExpandWeight}),</li>
+ * </ul>
+ * each made dimensionless by the starting mean edge length or corner area. Gradients are projected
+ * onto the tangent planes, steps are retracted to {@code radius} and a backtracking line search
+ * keeps every step downhill. {@code iterations} caps the L-BFGS steps and {@code step} bounds the
+ * first move to that fraction of the mean edge.
+ */
+public class LbfgsRelaxator {
+    private static final int MEMORY = 8;
+    private static final int MAX_BACKTRACKS = 30;
+    private static final double ARMIJO = 1e-4;
+    private static final double RELATIVE_TOLERANCE = 1e-12;
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return relax(mesh, config, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config, ForkJoinPool pool) {
+        Vec3[] vertices = mesh.vertices();
+        int n = vertices.length * 3;
+        double radius = config.radius();
+        double[] x = new double[n];
+        for (int v = 0; v < vertices.length; v++) {
+            Vec3 p = vertices[v];
+            if (!mesh.fixed()[v]) {
+                p = p.normalize().scale(radius);
+            }
+            x[v * 3] = p.x();
+            x[v * 3 + 1] = p.y();
+            x[v * 3 + 2] = p.z();
+        }
+        Energy energy = new Energy(mesh, config, x, pool);
+
+        double[] g = new double[n];
+        double[] trial = new double[n];
+        double[] trialG = new double[n];
+        double[] direction = new double[n];
+        double[][] s = new double[MEMORY][n];
+        double[][] y = new double[MEMORY][n];
+        double[] rho = new double[MEMORY];
+        double[] alpha = new double[MEMORY];
+        int stored = 0;
+        int newest = -1;
+        double f = energy.evaluate(x, g);
+        long startedAtNs = System.nanoTime();
+
+        for (int iteration = 1; iteration <= config.iterations(); iteration++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Relaxation cancelled before iteration " + iteration);
+            }
+            System.arraycopy(g, 0, direction, 0, n);
+            for (int k = 0; k < stored; k++) {
+                int slot = Math.floorMod(newest - k, MEMORY);
+                alpha[slot] = rho[slot] * PackedVectors.dot(s[slot], direction, pool);
+                PackedVectors.axpy(-alpha[slot], y[slot], direction, pool);
+            }
+            double initial;
+            if (stored > 0) {
+                double yy = PackedVectors.dot(y[newest], y[newest], pool);
+                PackedVectors.scale(direction, PackedVectors.dot(s[newest], y[newest], pool) / yy, pool);
+                initial = 1.0;
+            } else {
+                double largest = energy.maxVertexNorm(direction);
+                initial = largest > 0.0 ? config.step() * energy.meanEdge / largest : 0.0;
+            }
+            for (int k = stored - 1; k >= 0; k--) {
+                int slot = Math.floorMod(newest - k, MEMORY);
+                double beta = rho[slot] * PackedVectors.dot(y[slot], direction, pool);
+                PackedVectors.axpy(alpha[slot] - beta, s[slot], direction, pool);
+            }
+            PackedVectors.scale(direction, -1.0, pool);
+            energy.project(x, direction, pool);
+            double slope = PackedVectors.dot(g, direction, pool);
+            if (!(slope < 0.0)) {
+                stored = 0;
+                System.arraycopy(g, 0, direction, 0, n);
+                PackedVectors.scale(direction, -1.0, pool);
+                slope = PackedVectors.dot(g, direction, pool);
+                double largest = energy.maxVertexNorm(direction);
+                initial = largest > 0.0 ? config.step() * energy.meanEdge / largest : 0.0;
+            }
+            if (initial == 0.0 || slope == 0.0) {
+                break;
+            }
+
+            double stepLength = initial;
+            double next = Double.NaN;
+            for (int attempt = 0; attempt < MAX_BACKTRACKS; attempt++) {
+                energy.retract(x, direction, stepLength, trial, pool);
+                next = energy.evaluate(trial, trialG);
+                if (next <= f + ARMIJO * stepLength * slope) {
+                    break;
+                }
+                stepLength *= 0.5;
+                next = Double.NaN;
+            }
+            if (Double.isNaN(next)) {
+                if (stored == 0) {
+                    break;
+                }
+                stored = 0;
+                iteration--;
+                continue;
+            }
+
+            newest = (newest + 1) % MEMORY;
+            double[] sk = s[newest];
+            double[] yk = y[newest];
+            PackedVectors.difference(trial, x, sk, pool);
+            PackedVectors.difference(trialG, g, yk, pool);
+            double sy = PackedVectors.dot(sk, yk, pool);
+            if (sy > 1e-20 * Math.max(1.0, Math.abs(f))) {
+                rho[newest] = 1.0 / sy;
+                stored = Math.min(MEMORY, stored + 1);
+            } else {
+                newest = Math.floorMod(newest - 1, MEMORY);
+            }
+            System.arraycopy(trial, 0, x, 0, n);
+            System.arraycopy(trialG, 0, g, 0, n);
+            double previous = f;
+            f = next;
+
+            if (config.logEvery() > 0 && iteration % config.logEvery() == 0) {
+                energy.store(x, vertices);
+                RelaxationMetrics metrics = new SphereRelaxator().collectMetrics(mesh);
+                System.out.printf(Locale.US,
+                        "Iter %d: energy=%.6e edge std=%.6f pentMean=%.6f hexMean=%.6f%n",
+                        iteration, f, metrics.edgeStdDev(), metrics.pentagonAreaMean(), metrics.hexAreaMean());
+            }
+            if (config.progressEvery() > 0 && iteration % config.progressEvery() == 0) {
+                SphereRelaxator.printProgress(iteration, config.iterations(), startedAtNs);
+            }
+            if (previous - f <= RELATIVE_TOLERANCE * Math.max(1.0, Math.abs(previous))) {
+                break;
+            }
+        }
+        energy.store(x, vertices);
+        return new SphereRelaxator().collectMetrics(mesh);
+    }
+
+    /**
+     * Energy and tangent gradient over packed {@code xyz} positions.
+     */
+    private static final class Energy {
+        final double meanEdge;
+        private final int[][] neighbors;
+        private final boolean[] fixed;
+        private final int[][] pentagons;
+        private final double radius;
+        private final double edgeWeight;
+        private final double smoothWeight;
+        private final double pentagonWeight;
+        private final double pentagonTarget;
+        private final int edgeCount;
+        private final ForkJoinPool pool;
+        private final double[] umbrella;
+
+        Energy(Mesh mesh, RelaxationConfig config, double[] x, ForkJoinPool pool) {
+            this.neighbors = mesh.neighbors();
+            this.fixed = mesh.fixed();
+            this.radius = config.radius();
+            this.pool = pool;
+            this.umbrella = new double[x.length];
+            List<Tile> tiles = mesh.tiles();
+            this.pentagons = tiles.stream()
+                    .filter(tile -> tile.type() == TileType.PENTAGON)
+                    .map(tile -> tile.vertexIds().stream().mapToInt(Integer::intValue).toArray())
+                    .toArray(int[][]::new);
+
+            int directed = 0;
+            double lengthSum = 0.0;
+            for (int v = 0; v < neighbors.length; v++) {
+                for (int nb : neighbors[v]) {
+                    lengthSum += distance(x, v, nb);
+                    directed++;
+                }
+            }
+            this.edgeCount = directed / 2;
+            this.meanEdge = directed == 0 ? 0.0 : lengthSum / directed;
+            double areaSum = 0.0;
+            int cornerSum = 0;
+            double[] unused = new double[3];
+            for (Tile tile : tiles) {
+                int[] ring = tile.vertexIds().stream().mapToInt(Integer::intValue).toArray();
+                areaSum += vectorArea(x, ring, unused);
+                cornerSum += ring.length;
+            }
+            this.pentagonTarget = cornerSum == 0 ? 0.0 : 5.0 * areaSum / cornerSum;
+
+            double length2 = meanEdge * meanEdge;
+            this.edgeWeight = edgeCount == 0 || length2 == 0.0 ? 0.0 : config.springWeight() / (edgeCount * length2);
+            this.smoothWeight = neighbors.length == 0 || length2 == 0.0
+                    ? 0.0 : config.laplacianWeight() / (neighbors.length * length2);
+            this.pentagonWeight = pentagons.length == 0 || pentagonTarget == 0.0
+                    ? 0.0 : config.pentagonExpandWeight() / (pentagons.length * pentagonTarget * pentagonTarget);
+        }
+
+        /**
+         * Returns the energy at {@code x} and writes its tangent gradient to {@code g}.
+         */
+        double evaluate(double[] x, double[] g) {
+            int vertexCount = neighbors.length;
+            double lengthSum = pool.submit(() -> IntStream.range(0, vertexCount).parallel().mapToDouble(v -> {
+                double sum = 0.0;
+                for (int nb : neighbors[v]) {
+                    sum += distance(x, v, nb);
+                }
+                return sum;
+            }).sum()).join();
+            double mean = edgeCount == 0 ? 0.0 : lengthSum / (2.0 * edgeCount);
+
+            double smoothEnergy = pool.submit(() -> IntStream.range(0, vertexCount).parallel().mapToDouble(v -> {
+                int[] ring = neighbors[v];
+                if (ring.length == 0) {
+                    umbrella[v * 3] = 0.0;
+                    umbrella[v * 3 + 1] = 0.0;
+                    umbrella[v * 3 + 2] = 0.0;
+                    return 0.0;
+                }
+                double ax = 0.0;
+                double ay = 0.0;
+                double az = 0.0;
+                for (int nb : ring) {
+                    ax += x[nb * 3];
+                    ay += x[nb * 3 + 1];
+                    az += x[nb * 3 + 2];
+                }
+                double dx = x[v * 3] - ax / ring.length;
+                double dy = x[v * 3 + 1] - ay / ring.length;
+                double dz = x[v * 3 + 2] - az / ring.length;
+                umbrella[v * 3] = dx;
+                umbrella[v * 3 + 1] = dy;
+                umbrella[v * 3 + 2] = dz;
+                return dx * dx + dy * dy + dz * dz;
+            }).sum()).join();
+
+            double edgeEnergy = pool.submit(() -> IntStream.range(0, vertexCount).parallel().mapToDouble(v -> {
+                double energy = 0.0;
+                double gx = 2.0 * smoothWeight * umbrella[v * 3];
+                double gy = 2.0 * smoothWeight * umbrella[v * 3 + 1];
+                double gz = 2.0 * smoothWeight * umbrella[v * 3 + 2];
+                for (int nb : neighbors[v]) {
+                    double dx = x[v * 3] - x[nb * 3];
+                    double dy = x[v * 3 + 1] - x[nb * 3 + 1];
+                    double dz = x[v * 3 + 2] - x[nb * 3 + 2];
+                    double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    double deviation = len - mean;
+                    energy += deviation * deviation;
+                    if (len > 1e-12) {
+                        double pull = 2.0 * edgeWeight * deviation / len;
+                        gx += pull * dx;
+                        gy += pull * dy;
+                        gz += pull * dz;
+                    }
+                    double share = 2.0 * smoothWeight / neighbors[nb].length;
+                    gx -= share * umbrella[nb * 3];
+                    gy -= share * umbrella[nb * 3 + 1];
+                    gz -= share * umbrella[nb * 3 + 2];
+                }
+                g[v * 3] = gx;
+                g[v * 3 + 1] = gy;
+                g[v * 3 + 2] = gz;
+                return energy;
+            }).sum()).join() * 0.5;
+
+            double pentagonEnergy = 0.0;
+            if (pentagonWeight != 0.0) {
+                double[] normal = new double[3];
+                for (int[] ring : pentagons) {
+                    double area = vectorArea(x, ring, normal);
+                    double deviation = area - pentagonTarget;
+                    pentagonEnergy += deviation * deviation;
+                    if (area <= 0.0) {
+                        continue;
+                    }
+                    double factor = pentagonWeight * deviation;
+                    for (int k = 0; k < ring.length; k++) {
+                        int prev = ring[(k + ring.length - 1) % ring.length];
+                        int next = ring[(k + 1) % ring.length];
+                        double wx = x[next * 3] - x[prev * 3];
+                        double wy = x[next * 3 + 1] - x[prev * 3 + 1];
+                        double wz = x[next * 3 + 2] - x[prev * 3 + 2];
+                        int v = ring[k];
+                        g[v * 3] += factor * (wy * normal[2] - wz * normal[1]);
+                        g[v * 3 + 1] += factor * (wz * normal[0] - wx * normal[2]);
+                        g[v * 3 + 2] += factor * (wx * normal[1] - wy * normal[0]);
+                    }
+                }
+            }
+            project(x, g, pool);
+            return edgeWeight * edgeEnergy + smoothWeight * smoothEnergy + pentagonWeight * pentagonEnergy;
+        }
+
+        /**
+         * Removes the radial part of {@code d} at every vertex and zeroes fixed vertices.
+         */
+        void project(double[] x, double[] d, ForkJoinPool pool) {
+            pool.submit(() -> IntStream.range(0, neighbors.length).parallel().forEach(v -> {
+                if (fixed[v]) {
+                    d[v * 3] = 0.0;
+                    d[v * 3 + 1] = 0.0;
+                    d[v * 3 + 2] = 0.0;
+                    return;
+                }
+                double px = x[v * 3];
+                double py = x[v * 3 + 1];
+                double pz = x[v * 3 + 2];
+                double length2 = px * px + py * py + pz * pz;
+                if (length2 == 0.0) {
+                    return;
+                }
+                double radial = (d[v * 3] * px + d[v * 3 + 1] * py + d[v * 3 + 2] * pz) / length2;
+                d[v * 3] -= radial * px;
+                d[v * 3 + 1] -= radial * py;
+                d[v * 3 + 2] -= radial * pz;
+            })).join();
+        }
+
+        void retract(double[] x, double[] direction, double stepLength, double[] out, ForkJoinPool pool) {
+            pool.submit(() -> IntStream.range(0, neighbors.length).parallel().forEach(v -> {
+                double px = x[v * 3] + stepLength * direction[v * 3];
+                double py = x[v * 3 + 1] + stepLength * direction[v * 3 + 1];
+                double pz = x[v * 3 + 2] + stepLength * direction[v * 3 + 2];
+                double length = Math.sqrt(px * px + py * py + pz * pz);
+                double toRadius = fixed[v] || length == 0.0 ? 1.0 : radius / length;
+                out[v * 3] = px * toRadius;
+                out[v * 3 + 1] = py * toRadius;
+                out[v * 3 + 2] = pz * toRadius;
+            })).join();
+        }
+
+        double maxVertexNorm(double[] d) {
+            double largest = 0.0;
+            for (int v = 0; v < neighbors.length; v++) {
+                double dx = d[v * 3];
+                double dy = d[v * 3 + 1];
+                double dz = d[v * 3 + 2];
+                largest = Math.max(largest, dx * dx + dy * dy + dz * dz);
+            }
+            return Math.sqrt(largest);
+        }
+
+        void store(double[] x, Vec3[] vertices) {
+            for (int v = 0; v < vertices.length; v++) {
+                vertices[v] = new Vec3(x[v * 3], x[v * 3 + 1], x[v * 3 + 2]);
+            }
+        }
+
+        /**
+         * Area of the ring's vector area {@code ½ Σ v_k × v_(k+1)}; its unit normal goes to {@code normal}.
+         */
+        private static double vectorArea(double[] x, int[] ring, double[] normal) {
+            double ax = 0.0;
+            double ay = 0.0;
+            double az = 0.0;
+            for (int k = 0; k < ring.length; k++) {
+                int a = ring[k];
+                int b = ring[(k + 1) % ring.length];
+                ax += x[a * 3 + 1] * x[b * 3 + 2] - x[a * 3 + 2] * x[b * 3 + 1];
+                ay += x[a * 3 + 2] * x[b * 3] - x[a * 3] * x[b * 3 + 2];
+                az += x[a * 3] * x[b * 3 + 1] - x[a * 3 + 1] * x[b * 3];
+            }
+            double length = Math.sqrt(ax * ax + ay * ay + az * az);
+            if (length > 0.0) {
+                normal[0] = ax / length;
+                normal[1] = ay / length;
+                normal[2] = az / length;
+            }
+            return length * 0.5;
+        }
+
+        private static double distance(double[] x, int a, int b) {
+            double dx = x[a * 3] - x[b * 3];
+            double dy = x[a * 3 + 1] - x[b * 3 + 1];
+            double dz = x[a * 3 + 2] - x[b * 3 + 2];
+            return Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.sphererelaxator.solver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel kernels over packed coordinate vectors. They run over blocks of {@link #CHUNK} doubles
+ * rather than per element, which keeps stream overhead out of the inner loop.
+ */
+final class PackedVectors {
+    static final int CHUNK = 1 << 14;
+
+    private PackedVectors() {
+    }
+
+    static IntStream chunks(int length) {
+        return IntStream.range(0, (length + CHUNK - 1) / CHUNK).parallel();
+    }
+
+    static double dot(double[] a, double[] b, ForkJoinPool pool) {
+        return pool.submit(() -> chunks(a.length).mapToDouble(c -> {
+            double sum = 0.0;
+            for (int i = c * CHUNK, end = Math.min(a.length, i + CHUNK); i < end; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }).sum()).join();
+    }
+
+    /**
+     * {@code target += factor * a}.
+     */
+    static void axpy(double factor, double[] a, double[] target, ForkJoinPool pool) {
+        pool.submit(() -> chunks(a.length).forEach(c -> {
+            for (int i = c * CHUNK, end = Math.min(a.length, i + CHUNK); i < end; i++) {
+                target[i] += factor * a[i];
+            }
+        })).join();
+    }
+
+    static void scale(double[] target, double factor, ForkJoinPool pool) {
+        pool.submit(() -> chunks(target.length).forEach(c -> {
+            for (int i = c * CHUNK, end = Math.min(target.length, i + CHUNK); i < end; i++) {
+                target[i] *= factor;
+            }
+        })).join();
+    }
+
+    /**
+     * {@code out = a - b}.
+     */
+    static void difference(double[] a, double[] b, double[] out, ForkJoinPool pool) {
+        pool.submit(() -> chunks(a.length).forEach(c -> {
+            for (int i = c * CHUNK, end = Math.min(a.length, i + CHUNK); i < end; i++) {
+                out[i] = a[i] - b[i];
+            }
+        })).join();
+    }
+}
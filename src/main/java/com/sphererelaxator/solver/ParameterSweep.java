@@ -0,0 +1,130 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Mesh;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Relaxes many configs over one shared topology. Every config gets its own copy of the start
+ * positions; all configs advance together on one pool, stage by stage. At each checkpoint a config
+ * whose score is worse than {@code pruneRatio} times the best live score is dropped.
+ */
+public final class ParameterSweep {
+    private ParameterSweep() {
+    }
+
+    /**
+     * Relative edge-length spread {@code std / mean}; lower is better.
+     */
+    public static double score(RelaxationMetrics metrics) {
+        return metrics.edgeMean() > 0.0 ? metrics.edgeStdDev() / metrics.edgeMean() : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns one result per config, ranked: finished configs by score, then pruned ones by how far
+     * they got. {@code checkpointEvery <= 0} disables pruning.
+     */
+    public static List<Result> run(Mesh base,
+                                   List<RelaxationConfig> configs,
+                                   int checkpointEvery,
+                                   double pruneRatio,
+                                   ForkJoinPool pool) {
+        List<Run> runs = new ArrayList<>(configs.size());
+        for (RelaxationConfig config : configs) {
+            runs.add(new Run(base, config));
+        }
+        int iterations = 0;
+        for (RelaxationConfig config : configs) {
+            iterations = Math.max(iterations, config.iterations());
+        }
+        int stage = checkpointEvery > 0 ? checkpointEvery : Math.max(1, iterations);
+
+        List<Run> live = new ArrayList<>(runs);
+        for (int done = 0; done < iterations && !live.isEmpty(); done += stage) {
+            int first = done + 1;
+            int last = Math.min(iterations, done + stage);
+            List<Run> current = live;
+            pool.submit(() -> current.parallelStream().forEach(run -> run.advance(first, last, pool))).join();
+
+            live = new ArrayList<>();
+            for (Run run : current) {
+                if (run.iterationsRun < run.config.iterations()) {
+                    live.add(run);
+                }
+            }
+            if (checkpointEvery > 0 && live.size() > 1) {
+                double best = Double.POSITIVE_INFINITY;
+                for (Run run : live) {
+                    best = Math.min(best, score(run.metrics));
+                }
+                double limit = best * pruneRatio;
+                List<Run> kept = new ArrayList<>(live.size());
+                for (Run run : live) {
+                    if (score(run.metrics) > limit) {
+                        run.pruned = true;
+                    } else {
+                        kept.add(run);
+                    }
+                }
+                live = kept;
+            }
+        }
+
+        List<Result> results = new ArrayList<>(runs.size());
+        for (Run run : runs) {
+            if (run.metrics == null) {
+                run.metrics = new SphereRelaxator().collectMetrics(run.mesh);
+            }
+            results.add(new Result(run.config, run.metrics, run.iterationsRun, run.pruned, run.runtimeNs));
+        }
+        results.sort(Comparator.comparing(Result::pruned)
+                .thenComparing(Comparator.comparingInt(Result::iterationsRun).reversed())
+                .thenComparingDouble(Result::score));
+        return results;
+    }
+
+    public record Result(RelaxationConfig config,
+                         RelaxationMetrics metrics,
+                         int iterationsRun,
+                         boolean pruned,
+                         long runtimeNs) {
+        public double score() {
+            return ParameterSweep.score(metrics);
+        }
+    }
+
+    private static final class Run {
+        final RelaxationConfig config;
+        final Mesh mesh;
+        RelaxationMetrics metrics;
+        int iterationsRun;
+        boolean pruned;
+        long runtimeNs;
+
+        Run(Mesh base, RelaxationConfig config) {
+            this.config = config;
+            this.mesh = new Mesh(
+                    base.vertices().clone(),
+                    base.fixed(),
+                    base.edges(),
+                    base.tiles(),
+                    base.neighbors(),
+                    base.pentagonVertices()
+            );
+        }
+
+        void advance(int first, int last, ForkJoinPool pool) {
+            int to = Math.min(last, config.iterations());
+            if (first > to) {
+                return;
+            }
+            long started = System.nanoTime();
+            metrics = new SphereRelaxator().relax(mesh, config, pool, first, to);
+            runtimeNs += System.nanoTime() - started;
+            iterationsRun = to;
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.generator.IcosphereGenerator;
+import com.sphererelaxator.mesh.Mesh;
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileType;
+import com.sphererelaxator.mesh.Vec3;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the {@link SphereRelaxator} vertex update across worker processes. Vertices are split into
+ * domains by nearest icosahedron face (faces ordered by latitude band, then longitude, and dealt to
+ * workers in contiguous runs). Each worker ({@link RelaxationWorker}) holds its own vertices, the
+ * tiles touching them and a halo of the other corners of those tiles, and talks to this coordinator
+ * over a socket. Every iteration the coordinator sums the workers' edge-length sums into the global
+ * target, collects the boundary positions other workers need and sends each worker its halo back.
+ * <p>
+ * The mesh comes from a {@link Source} read twice, vertices then tiles, and forwarded record by
+ * record: the coordinator keeps one domain byte per vertex and the positions of the boundary rings,
+ * never the mesh. Metrics are reduced from per-worker partial sums, and the result is streamed back
+ * in vertex order.
+ * <p>
+ * A worker must answer a per-connection challenge with its HMAC under a shared token before it is
+ * sent anything. Spawned workers get a fresh token through {@link #TOKEN_ENV}; separately started
+ * ones read it from a file.
+ * <p>
+ * Per-vertex arithmetic is the single-process one; only the edge-length sum is added in a
+ * different order, so positions agree with {@link SphereRelaxator} to rounding. Uniform Laplacian
+ * weights and the explicit update only.
+ */
+public final class PartitionedRelaxator {
+    static final int MAGIC = 0x53505257;
+    static final int STEP = 1;
+    static final int HALO = 2;
+    static final int GATHER = 3;
+    static final int STOP = 4;
+    static final int METRICS = 5;
+    static final int SPREAD = 6;
+    static final int END = -1;
+    static final int CHALLENGE_BYTES = 32;
+    /**
+     * Environment variable that hands spawned workers their token.
+     */
+    public static final String TOKEN_ENV = "SPHERE_RELAXATOR_WORKER_TOKEN";
+    private static final int ACCEPT_TIMEOUT_MS = 120_000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 10_000;
+
+    private final int workers;
+    private final int port;
+    private final boolean spawnWorkers;
+    private final int workerThreads;
+    private final String workerHeap;
+    private final InetAddress bind;
+    private final String token;
+
+    /**
+     * Vertices and tiles of the mesh to relax, each visited in order once per call.
+     */
+    public interface Source {
+        void vertices(VertexVisitor visitor) throws IOException;
+
+        /**
+         * Tiles with vertex indices, in the order that defines edge order.
+         */
+        void tiles(TileVisitor visitor) throws IOException;
+    }
+
+    public interface VertexVisitor {
+        void vertex(int index, double x, double y, double z, boolean fixed) throws IOException;
+    }
+
+    public interface TileVisitor {
+        void tile(int id, TileType type, int[] indices) throws IOException;
+    }
+
+    /**
+     * @param port          coordinator port, {@code 0} for any free one
+     * @param spawnWorkers  start the workers as local JVMs; otherwise wait for {@code workers}
+     *                      connections from {@code --mode worker} processes
+     * @param workerThreads threads per worker
+     * @param workerHeap    {@code -Xmx} value for spawned workers, or {@code null}
+     * @param bind          listen address for separately started workers, {@code null} for
+     *                      loopback; spawned workers always use loopback
+     * @param token         shared worker token; {@code null} generates one, which only spawned
+     *                      workers can learn
+     */
+    public PartitionedRelaxator(int workers,
+                                int port,
+                                boolean spawnWorkers,
+                                int workerThreads,
+                                String workerHeap,
+                                InetAddress bind,
+                                String token) {
+        if (workers < 1 || workers > IcosphereGenerator.baseFaceCount()) {
+            throw new IllegalArgumentException("workers must be between 1 and " + IcosphereGenerator.baseFaceCount());
+        }
+        if (token == null && !spawnWorkers) {
+            throw new IllegalArgumentException("Separately started workers need a shared token (--tokenFile)");
+        }
+        this.workers = workers;
+        this.port = port;
+        this.spawnWorkers = spawnWorkers;
+        this.workerThreads = Math.max(1, workerThreads);
+        this.workerHeap = workerHeap;
+        this.bind = spawnWorkers || bind == null ? InetAddress.getLoopbackAddress() : bind;
+        this.token = token != null ? token : newToken();
+    }
+
+    public static String newToken() {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return HexFormat.of().formatHex(random);
+    }
+
+    /**
+     * Relaxes an in-memory mesh in place.
+     */
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) throws IOException {
+        Vec3[] vertices = mesh.vertices();
+        boolean[] fixed = mesh.fixed();
+        Source source = new Source() {
+            @Override
+            public void vertices(VertexVisitor visitor) throws IOException {
+                for (int v = 0; v < vertices.length; v++) {
+                    visitor.vertex(v, vertices[v].x(), vertices[v].y(), vertices[v].z(), fixed[v]);
+                }
+            }
+
+            @Override
+            public void tiles(TileVisitor visitor) throws IOException {
+                for (Tile tile : mesh.tiles()) {
+                    visitor.tile(tile.id(), tile.type(), tile.vertexIds().stream().mapToInt(Integer::intValue).toArray());
+                }
+            }
+        };
+        return relax(source, vertices.length, config, (v, x, y, z, isFixed) -> vertices[v] = new Vec3(x, y, z));
+    }
+
+    /**
+     * Relaxes the {@code vertexCount} vertices of {@code source} and hands the results to
+     * {@code result} in vertex order.
+     */
+    public RelaxationMetrics relax(Source source, int vertexCount, RelaxationConfig config, VertexVisitor result)
+            throws IOException {
+        if (config.laplacian() != LaplacianWeighting.UNIFORM) {
+            throw new IllegalArgumentException("Partitioned relaxation supports uniform Laplacian weights only");
+        }
+        List<Process> processes = new ArrayList<>();
+        List<Domain> domains = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(bind, port));
+            server.setSoTimeout(ACCEPT_TIMEOUT_MS);
+            if (spawnWorkers) {
+                for (int w = 0; w < workers; w++) {
+                    processes.add(spawn(server.getLocalPort()));
+                }
+            } else {
+                System.out.printf("Waiting for %d workers on %s:%d%n",
+                        workers, bind.getHostAddress(), server.getLocalPort());
+            }
+            while (domains.size() < workers) {
+                Domain domain = accept(server);
+                if (domain != null) {
+                    domain.sendConfig(config);
+                    domains.add(domain);
+                }
+            }
+            Boundary boundary = distribute(source, vertexCount, domains);
+            return run(config, domains, boundary, vertexCount, result);
+        } finally {
+            for (Domain domain : domains) {
+                domain.stop();
+            }
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Accepts one connection and checks its answer to a fresh challenge. A connection that fails is
+     * closed and {@code null} returned, so it does not take a worker slot.
+     */
+    private Domain accept(ServerSocket server) throws IOException {
+        Socket socket;
+        try {
+            socket = server.accept();
+        } catch (SocketTimeoutException e) {
+            throw new IOException("Timed out waiting for workers", e);
+        }
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            Domain domain = new Domain(socket);
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            new SecureRandom().nextBytes(challenge);
+            domain.out.writeInt(MAGIC);
+            domain.out.write(challenge);
+            domain.out.flush();
+            byte[] answer = new byte[CHALLENGE_BYTES];
+            domain.in.readFully(answer);
+            if (!MessageDigest.isEqual(answer, respond(token, challenge))) {
+                System.out.println("Notice: rejected a worker connection from "
+                        + socket.getInetAddress().getHostAddress() + " with a wrong token");
+                socket.close();
+                return null;
+            }
+            socket.setSoTimeout(0);
+            return domain;
+        } catch (IOException e) {
+            socket.close();
+            System.out.println("Notice: dropped a worker connection during the handshake: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * HMAC-SHA256 of {@code challenge} under {@code token}.
+     */
+    static byte[] respond(String token, byte[] challenge) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Streams each vertex to its owner and each tile to every domain it touches, then collects the
+     * workers' halos and tells every worker which of its vertices others read.
+     */
+    private Boundary distribute(Source source, int vertexCount, List<Domain> domains) throws IOException {
+        byte[] domainOf = new byte[vertexCount];
+        int[] owned = new int[domains.size()];
+        Vec3[] centers = faceCenters();
+        int[] faceDomain = faceDomains(centers);
+        source.vertices((v, x, y, z, fixed) -> {
+            int d = faceDomain[nearestFace(centers, x, y, z)];
+            domainOf[v] = (byte) d;
+            owned[d]++;
+            DataOutputStream out = domains.get(d).out;
+            out.writeInt(v);
+            out.writeDouble(x);
+            out.writeDouble(y);
+            out.writeDouble(z);
+            out.writeBoolean(fixed);
+        });
+        for (Domain domain : domains) {
+            domain.out.writeInt(END);
+        }
+        boolean[] touched = new boolean[domains.size()];
+        source.tiles((id, type, indices) -> {
+            Arrays.fill(touched, false);
+            for (int v : indices) {
+                touched[domainOf[v]] = true;
+            }
+            for (int d = 0; d < touched.length; d++) {
+                if (touched[d]) {
+                    DataOutputStream out = domains.get(d).out;
+                    out.writeInt(indices.length);
+                    out.writeInt(id);
+                    out.writeInt(type.ordinal());
+                    for (int v : indices) {
+                        out.writeInt(v);
+                    }
+                }
+            }
+        });
+        for (Domain domain : domains) {
+            domain.out.writeInt(END);
+            domain.out.flush();
+        }
+
+        int[][] halos = new int[domains.size()][];
+        for (int d = 0; d < domains.size(); d++) {
+            Domain domain = domains.get(d);
+            domain.edgeCount = domain.in.readInt();
+            halos[d] = readInts(domain.in, domain.in.readInt());
+        }
+        System.out.printf(Locale.US, "Partitioned %d vertices into %d domains: owned=%s halo=%s%n",
+                vertexCount, domains.size(), Arrays.toString(owned),
+                Arrays.toString(Arrays.stream(halos).mapToInt(h -> h.length).toArray()));
+        Boundary boundary = new Boundary(halos, domainOf);
+        for (int d = 0; d < domains.size(); d++) {
+            int[] exports = boundary.exports[d];
+            DataOutputStream out = domains.get(d).out;
+            out.writeInt(exports.length);
+            for (int v : exports) {
+                out.writeInt(v);
+            }
+            out.flush();
+        }
+        return boundary;
+    }
+
+    private RelaxationMetrics run(RelaxationConfig config,
+                                  List<Domain> domains,
+                                  Boundary boundary,
+                                  int vertexCount,
+                                  VertexVisitor result) throws IOException {
+        long edgeCount = 0;
+        for (Domain domain : domains) {
+            edgeCount += domain.edgeCount;
+        }
+        double[] edgeSums = new double[domains.size()];
+        exchangeHalos(domains, boundary, edgeSums);
+        long startedAtNs = System.nanoTime();
+
+        for (int iteration = 1; iteration <= config.iterations(); iteration++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Relaxation cancelled before iteration " + iteration);
+            }
+            double sum = 0.0;
+            for (double edgeSum : edgeSums) {
+                sum += edgeSum;
+            }
+            double targetEdgeLength = edgeCount == 0 ? 0.0 : sum / edgeCount;
+            for (Domain domain : domains) {
+                domain.out.writeInt(STEP);
+                domain.out.writeDouble(targetEdgeLength);
+                domain.out.flush();
+            }
+            exchangeHalos(domains, boundary, edgeSums);
+
+            if (config.logEvery() > 0 && iteration % config.logEvery() == 0) {
+                RelaxationMetrics metrics = metrics(domains);
+                System.out.printf(Locale.US,
+                        "Iter %d: edge std=%.6f pentMean=%.6f hexMean=%.6f%n",
+                        iteration, metrics.edgeStdDev(), metrics.pentagonAreaMean(), metrics.hexAreaMean());
+            }
+            if (config.progressEvery() > 0 && iteration % config.progressEvery() == 0) {
+                SphereRelaxator.printProgress(iteration, config.iterations(), startedAtNs);
+            }
+        }
+        RelaxationMetrics metrics = metrics(domains);
+        gather(domains, boundary.domainOf, vertexCount, result);
+        return metrics;
+    }
+
+    /**
+     * Reads the positions every worker exports into the boundary buffer, sends each worker its
+     * halo and collects the edge-length sums the workers answer with.
+     */
+    private static void exchangeHalos(List<Domain> domains, Boundary boundary, double[] edgeSums) throws IOException {
+        for (int d = 0; d < domains.size(); d++) {
+            readPositions(domains.get(d).in, boundary.exportSlots[d], boundary.xyz);
+        }
+        for (int d = 0; d < domains.size(); d++) {
+            Domain domain = domains.get(d);
+            domain.out.writeInt(HALO);
+            writePositions(domain.out, boundary.haloSlots[d], boundary.xyz);
+            domain.out.flush();
+        }
+        for (int d = 0; d < domains.size(); d++) {
+            edgeSums[d] = domains.get(d).in.readDouble();
+        }
+    }
+
+    /**
+     * The figures of {@link SphereRelaxator#collectMetrics}: the edge mean first, then the spread
+     * around it, each reduced over the workers' edges and tiles.
+     */
+    private static RelaxationMetrics metrics(List<Domain> domains) throws IOException {
+        for (Domain domain : domains) {
+            domain.out.writeInt(METRICS);
+            domain.out.flush();
+        }
+        long edges = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0.0;
+        double sum = 0.0;
+        double pentArea = 0.0;
+        long pentCount = 0;
+        double hexArea = 0.0;
+        long hexCount = 0;
+        for (Domain domain : domains) {
+            DataInputStream in = domain.in;
+            edges += in.readInt();
+            min = Math.min(min, in.readDouble());
+            max = Math.max(max, in.readDouble());
+            sum += in.readDouble();
+            pentArea += in.readDouble();
+            pentCount += in.readInt();
+            hexArea += in.readDouble();
+            hexCount += in.readInt();
+        }
+        double mean = edges == 0 ? 0.0 : sum / edges;
+        for (Domain domain : domains) {
+            domain.out.writeInt(SPREAD);
+            domain.out.writeDouble(mean);
+            domain.out.flush();
+        }
+        double var = 0.0;
+        for (Domain domain : domains) {
+            var += domain.in.readDouble();
+        }
+        return new RelaxationMetrics(
+                min == Double.POSITIVE_INFINITY ? 0.0 : min,
+                max,
+                mean,
+                edges == 0 ? 0.0 : Math.sqrt(var / edges),
+                pentCount == 0 ? 0.0 : pentArea / pentCount,
+                hexCount == 0 ? 0.0 : hexArea / hexCount
+        );
+    }
+
+    /**
+     * Merges the workers' owned vertices, each sent in ascending order, back into vertex order.
+     */
+    private static void gather(List<Domain> domains, byte[] domainOf, int vertexCount, VertexVisitor result)
+            throws IOException {
+        for (Domain domain : domains) {
+            domain.out.writeInt(GATHER);
+            domain.out.flush();
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            DataInputStream in = domains.get(domainOf[v]).in;
+            double x = in.readDouble();
+            double y = in.readDouble();
+            double z = in.readDouble();
+            result.vertex(v, x, y, z, in.readBoolean());
+        }
+    }
+
+    private Process spawn(int coordinatorPort) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (workerHeap != null) {
+            command.add("-Xmx" + workerHeap);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.sphererelaxator.SphereRelaxatorCli");
+        command.add("--mode");
+        command.add("worker");
+        command.add("--host");
+        command.add(InetAddress.getLoopbackAddress().getHostAddress());
+        command.add("--port");
+        command.add(Integer.toString(coordinatorPort));
+        command.add("--threads");
+        command.add(Integer.toString(workerThreads));
+        ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        builder.environment().put(TOKEN_ENV, token);
+        return builder.start();
+    }
+
+    private static Vec3[] faceCenters() {
+        int faceCount = IcosphereGenerator.baseFaceCount();
+        Vec3[] centers = new Vec3[faceCount];
+        for (int f = 0; f < faceCount; f++) {
+            centers[f] = IcosphereGenerator.baseFaceCorner(f, 0)
+                    .add(IcosphereGenerator.baseFaceCorner(f, 1))
+                    .add(IcosphereGenerator.baseFaceCorner(f, 2))
+                    .normalize();
+        }
+        return centers;
+    }
+
+    /**
+     * Domain of each face: faces sorted by band and longitude, dealt to workers in contiguous runs.
+     */
+    private int[] faceDomains(Vec3[] centers) {
+        int faceCount = centers.length;
+        Integer[] order = IntStream.range(0, faceCount).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator
+                .comparingDouble((Integer f) -> -Math.round(centers[f].z() * 1e6) / 1e6)
+                .thenComparingDouble(f -> Math.atan2(centers[f].y(), centers[f].x())));
+        int[] faceDomain = new int[faceCount];
+        for (int rank = 0; rank < faceCount; rank++) {
+            faceDomain[order[rank]] = rank * workers / faceCount;
+        }
+        return faceDomain;
+    }
+
+    private static int nearestFace(Vec3[] centers, double x, double y, double z) {
+        int best = 0;
+        double bestDot = Double.NEGATIVE_INFINITY;
+        for (int f = 0; f < centers.length; f++) {
+            double dot = centers[f].x() * x + centers[f].y() * y + centers[f].z() * z;
+            if (dot > bestDot) {
+                bestDot = dot;
+                best = f;
+            }
+        }
+        return best;
+    }
+
+    static void writePositions(DataOutputStream out, int[] rows, double[] xyz) throws IOException {
+        for (int v : rows) {
+            out.writeDouble(xyz[v * 3]);
+            out.writeDouble(xyz[v * 3 + 1]);
+            out.writeDouble(xyz[v * 3 + 2]);
+        }
+    }
+
+    static void readPositions(DataInputStream in, int[] rows, double[] xyz) throws IOException {
+        for (int v : rows) {
+            xyz[v * 3] = in.readDouble();
+            xyz[v * 3 + 1] = in.readDouble();
+            xyz[v * 3 + 2] = in.readDouble();
+        }
+    }
+
+    static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * The boundary rings: every vertex some worker reads without owning it gets one position slot;
+     * per domain, the vertices (and slots) it exports and the slots of its halo.
+     */
+    private static final class Boundary {
+        final byte[] domainOf;
+        final int[][] exports;
+        final int[][] exportSlots;
+        final int[][] haloSlots;
+        final double[] xyz;
+
+        Boundary(int[][] halos, byte[] domainOf) {
+            this.domainOf = domainOf;
+            int[] vertices = Arrays.stream(halos).flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+            this.xyz = new double[vertices.length * 3];
+            this.haloSlots = new int[halos.length][];
+            this.exports = new int[halos.length][];
+            this.exportSlots = new int[halos.length][];
+            for (int d = 0; d < halos.length; d++) {
+                int domain = d;
+                haloSlots[d] = Arrays.stream(halos[d]).map(v -> Arrays.binarySearch(vertices, v)).toArray();
+                exports[d] = Arrays.stream(vertices).filter(v -> domainOf[v] == domain).toArray();
+                exportSlots[d] = Arrays.stream(exports[d]).map(v -> Arrays.binarySearch(vertices, v)).toArray();
+            }
+        }
+    }
+
+    private static final class Domain {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        int edgeCount;
+
+        Domain(Socket socket) throws IOException {
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        void sendConfig(RelaxationConfig config) throws IOException {
+            out.writeDouble(config.radius());
+            out.writeDouble(config.step());
+            out.writeDouble(config.laplacianWeight());
+            out.writeDouble(config.springWeight());
+            out.writeDouble(config.pentagonExpandWeight());
+        }
+
+        void stop() {
+            try {
+                out.writeInt(STOP);
+                out.flush();
+            } catch (IOException ignored) {
+                // The worker is already gone.
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+        }
+    }
+}
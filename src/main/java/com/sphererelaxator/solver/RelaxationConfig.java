@@ -9,6 +9,19 @@ public record RelaxationConfig(
         double pentagonExpandWeight,
         int threads,
         int logEvery,
-        int progressEvery
+        int progressEvery,
+        LaplacianWeighting laplacian
 ) {
+    public RelaxationConfig(int iterations,
+                            double radius,
+                            double step,
+                            double laplacianWeight,
+                            double springWeight,
+                            double pentagonExpandWeight,
+                            int threads,
+                            int logEvery,
+                            int progressEvery) {
+        this(iterations, radius, step, laplacianWeight, springWeight, pentagonExpandWeight,
+                threads, logEvery, progressEvery, LaplacianWeighting.UNIFORM);
+    }
 }
@@ -0,0 +1,53 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Mesh;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Relaxation algorithms selectable with {@code --solver}.
+ */
+public enum RelaxationSolver {
+    VERTEX,
+    IMPLICIT,
+    DUAL,
+    LBFGS,
+    LLOYD,
+    CVT;
+
+    public static RelaxationSolver from(String value) {
+        if (value == null) {
+            return VERTEX;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown solver: " + value + " (expected vertex, implicit, dual, lbfgs, lloyd or cvt)");
+        }
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return relax(mesh, config, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config, ForkJoinPool pool) {
+        if (this == IMPLICIT) {
+            return new SphereRelaxator(true).relax(mesh, config, pool);
+        } else if (this == DUAL) {
+            return new DualRelaxator().relax(mesh, config, pool);
+        } else if (this == LBFGS) {
+            return new LbfgsRelaxator().relax(mesh, config, pool);
+        } else if (this == LLOYD) {
+            return new CvtRelaxator(null, 0).relax(mesh, config, pool);
+        } else if (this == CVT) {
+            return new CvtRelaxator().relax(mesh, config, pool);
+        }
+        return new SphereRelaxator().relax(mesh, config, pool);
+    }
+}
@@ -0,0 +1,299 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.LongIntHashMap;
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * One domain of a {@link PartitionedRelaxator} run, started with {@code --mode worker}. Connects to
+ * the coordinator, answers its challenge with the shared token, receives its owned vertices and the
+ * tiles touching them, and builds its own topology from those: neighbours and edges in the order
+ * {@link com.sphererelaxator.mesh.MeshBuilder} gives them, so the vertex update matches the
+ * single-process one. Then answers step, halo, metrics and gather requests until told to stop.
+ */
+public final class RelaxationWorker {
+    private RelaxationWorker() {
+    }
+
+    public static void run(String host, int port, int threads, String token) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            if (in.readInt() != PartitionedRelaxator.MAGIC) {
+                throw new IOException("Unexpected coordinator handshake");
+            }
+            byte[] challenge = new byte[PartitionedRelaxator.CHALLENGE_BYTES];
+            in.readFully(challenge);
+            out.write(PartitionedRelaxator.respond(token, challenge));
+            out.flush();
+            try {
+                serve(in, out, threads, pool);
+            } catch (EOFException e) {
+                throw new IOException("The coordinator closed the connection (wrong token?)", e);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void serve(DataInputStream in, DataOutputStream out, int threads, ForkJoinPool pool) throws IOException {
+        double radius = in.readDouble();
+        double step = in.readDouble();
+        double laplacianWeight = in.readDouble();
+        double springWeight = in.readDouble();
+        double pentagonExpandWeight = in.readDouble();
+        RelaxationConfig config = new RelaxationConfig(0, radius, step, laplacianWeight, springWeight,
+                pentagonExpandWeight, threads, 0, 0);
+
+        int[] owned = new int[1024];
+        double[] ownedXyz = new double[owned.length * 3];
+        boolean[] ownedFixed = new boolean[owned.length];
+        int ownedCount = 0;
+        for (int v = in.readInt(); v != PartitionedRelaxator.END; v = in.readInt()) {
+            if (ownedCount == owned.length) {
+                owned = Arrays.copyOf(owned, ownedCount * 2);
+                ownedXyz = Arrays.copyOf(ownedXyz, ownedCount * 6);
+                ownedFixed = Arrays.copyOf(ownedFixed, ownedCount * 2);
+            }
+            owned[ownedCount] = v;
+            VertexStep.storeOnSphere(in.readDouble(), in.readDouble(), in.readDouble(), radius, ownedXyz, ownedCount);
+            ownedFixed[ownedCount++] = in.readBoolean();
+        }
+        owned = Arrays.copyOf(owned, ownedCount);
+
+        List<int[]> rings = new ArrayList<>();
+        List<TileType> types = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        TileType[] tileTypes = TileType.values();
+        for (int n = in.readInt(); n != PartitionedRelaxator.END; n = in.readInt()) {
+            ids.add(in.readInt());
+            types.add(tileTypes[in.readInt()]);
+            rings.add(PartitionedRelaxator.readInts(in, n));
+        }
+        Topology topology = new Topology(owned, rings, types, ids);
+        int rows = topology.rows();
+        double[] xyz = new double[rows * 3];
+        System.arraycopy(ownedXyz, 0, xyz, 0, ownedCount * 3);
+        boolean[] fixed = Arrays.copyOf(ownedFixed, rows);
+
+        out.writeInt(topology.edges.size());
+        out.writeInt(topology.halo.length);
+        for (int v : topology.halo) {
+            out.writeInt(v);
+        }
+        out.flush();
+        int[] exports = PartitionedRelaxator.readInts(in, in.readInt());
+        for (int i = 0; i < exports.length; i++) {
+            exports[i] = topology.local(exports[i]);
+        }
+        int[] ownedRows = IntStream.range(0, ownedCount).toArray();
+        int[] haloRows = IntStream.range(ownedCount, rows).toArray();
+
+        VertexStep vertexStep = new VertexStep(topology.neighbors, fixed, topology.pentagonVertices,
+                topology.pentagons, SparseOperator.uniform(topology.neighbors), config, false);
+        PartitionedRelaxator.writePositions(out, exports, xyz);
+        out.flush();
+
+        while (true) {
+            int command = in.readInt();
+            if (command == PartitionedRelaxator.STEP) {
+                vertexStep.apply(xyz, ownedCount, in.readDouble(), pool);
+                PartitionedRelaxator.writePositions(out, exports, xyz);
+            } else if (command == PartitionedRelaxator.HALO) {
+                PartitionedRelaxator.readPositions(in, haloRows, xyz);
+                out.writeDouble(VertexStep.edgeLengthSum(xyz, topology.edges));
+            } else if (command == PartitionedRelaxator.METRICS) {
+                writeMetrics(out, xyz, topology);
+            } else if (command == PartitionedRelaxator.SPREAD) {
+                double mean = in.readDouble();
+                double var = 0.0;
+                for (int[] edge : topology.edges) {
+                    double d = length(xyz, edge[0], edge[1]) - mean;
+                    var += d * d;
+                }
+                out.writeDouble(var);
+            } else if (command == PartitionedRelaxator.GATHER) {
+                for (int v : ownedRows) {
+                    out.writeDouble(xyz[v * 3]);
+                    out.writeDouble(xyz[v * 3 + 1]);
+                    out.writeDouble(xyz[v * 3 + 2]);
+                    out.writeBoolean(fixed[v]);
+                }
+            } else if (command == PartitionedRelaxator.STOP) {
+                return;
+            } else {
+                throw new IOException("Unknown coordinator command: " + command);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Edge count, min, max and sum over this worker's edges, then area sum and count of its
+     * pentagons and hexagons.
+     */
+    private static void writeMetrics(DataOutputStream out, double[] xyz, Topology topology) throws IOException {
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0.0;
+        double sum = 0.0;
+        for (int[] edge : topology.edges) {
+            double len = length(xyz, edge[0], edge[1]);
+            sum += len;
+            min = Math.min(min, len);
+            max = Math.max(max, len);
+        }
+        double pentArea = 0.0;
+        int pentCount = 0;
+        double hexArea = 0.0;
+        int hexCount = 0;
+        for (int t = 0; t < topology.countedRings.size(); t++) {
+            TileType type = topology.countedTypes.get(t);
+            if (type == TileType.PENTAGON) {
+                pentArea += polygonArea(xyz, topology.countedRings.get(t));
+                pentCount++;
+            } else if (type == TileType.HEXAGON) {
+                hexArea += polygonArea(xyz, topology.countedRings.get(t));
+                hexCount++;
+            }
+        }
+        out.writeInt(topology.edges.size());
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeDouble(sum);
+        out.writeDouble(pentArea);
+        out.writeInt(pentCount);
+        out.writeDouble(hexArea);
+        out.writeInt(hexCount);
+    }
+
+    private static double length(double[] xyz, int a, int b) {
+        double dx = xyz[a * 3] - xyz[b * 3];
+        double dy = xyz[a * 3 + 1] - xyz[b * 3 + 1];
+        double dz = xyz[a * 3 + 2] - xyz[b * 3 + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Same arithmetic as the {@link Tile} fan area in {@link SphereRelaxator#collectMetrics}.
+     */
+    private static double polygonArea(double[] xyz, int[] ring) {
+        if (ring.length < 3) {
+            return 0.0;
+        }
+        int a = ring[0];
+        double area = 0.0;
+        for (int i = 1; i < ring.length - 1; i++) {
+            int b = ring[i];
+            int c = ring[i + 1];
+            double bx = xyz[b * 3] - xyz[a * 3];
+            double by = xyz[b * 3 + 1] - xyz[a * 3 + 1];
+            double bz = xyz[b * 3 + 2] - xyz[a * 3 + 2];
+            double cx = xyz[c * 3] - xyz[a * 3];
+            double cy = xyz[c * 3 + 1] - xyz[a * 3 + 1];
+            double cz = xyz[c * 3 + 2] - xyz[a * 3 + 2];
+            double nx = by * cz - bz * cy;
+            double ny = bz * cx - bx * cz;
+            double nz = bx * cy - by * cx;
+            area += Math.sqrt(nx * nx + ny * ny + nz * nz) * 0.5;
+        }
+        return area;
+    }
+
+    /**
+     * Local rows (owned vertices ascending, then the halo ascending) and the topology around the
+     * owned vertices. An edge belongs to the worker owning its lower endpoint and a tile, for
+     * metrics, to the worker owning its first corner, so each is counted once across workers.
+     */
+    private static final class Topology {
+        final int[] owned;
+        final int[] halo;
+        final int[][] neighbors;
+        final boolean[] pentagonVertices;
+        final List<Tile> pentagons = new ArrayList<>();
+        final List<int[]> edges = new ArrayList<>();
+        final List<int[]> countedRings = new ArrayList<>();
+        final List<TileType> countedTypes = new ArrayList<>();
+
+        Topology(int[] owned, List<int[]> rings, List<TileType> types, List<Integer> ids) {
+            this.owned = owned;
+            this.halo = rings.stream().flatMapToInt(Arrays::stream)
+                    .filter(v -> Arrays.binarySearch(owned, v) < 0)
+                    .sorted().distinct().toArray();
+            int rows = owned.length + halo.length;
+            this.pentagonVertices = new boolean[rows];
+
+            // Edges in first-seen order and neighbour sets filled in that order, as MeshBuilder does.
+            LongIntHashMap seen = new LongIntHashMap(rings.size() * 3);
+            List<Set<Integer>> neighborSets = new ArrayList<>(owned.length);
+            for (int i = 0; i < owned.length; i++) {
+                neighborSets.add(new HashSet<>());
+            }
+            for (int t = 0; t < rings.size(); t++) {
+                int[] ring = rings.get(t);
+                int[] localRing = new int[ring.length];
+                for (int i = 0; i < ring.length; i++) {
+                    localRing[i] = local(ring[i]);
+                }
+                if (types.get(t) == TileType.PENTAGON) {
+                    pentagons.add(new Tile(ids.get(t), TileType.PENTAGON, IntStream.of(localRing).boxed().toList()));
+                    for (int v : localRing) {
+                        pentagonVertices[v] = true;
+                    }
+                }
+                if (localRing.length > 0 && localRing[0] < owned.length) {
+                    countedRings.add(localRing);
+                    countedTypes.add(types.get(t));
+                }
+                for (int i = 0; i < ring.length; i++) {
+                    int lo = Math.min(ring[i], ring[(i + 1) % ring.length]);
+                    int hi = Math.max(ring[i], ring[(i + 1) % ring.length]);
+                    if (seen.putIfAbsent(LongIntHashMap.edgeKey(lo, hi), 0) >= 0) {
+                        continue;
+                    }
+                    int localLo = local(lo);
+                    int localHi = local(hi);
+                    if (localLo < owned.length) {
+                        edges.add(new int[]{localLo, localHi});
+                        neighborSets.get(localLo).add(hi);
+                    }
+                    if (localHi < owned.length) {
+                        neighborSets.get(localHi).add(lo);
+                    }
+                }
+            }
+            this.neighbors = new int[rows][];
+            for (int i = 0; i < owned.length; i++) {
+                neighbors[i] = neighborSets.get(i).stream().mapToInt(this::local).toArray();
+            }
+            for (int i = owned.length; i < rows; i++) {
+                neighbors[i] = new int[0];
+            }
+        }
+
+        int rows() {
+            return owned.length + halo.length;
+        }
+
+        int local(int v) {
+            int index = Arrays.binarySearch(owned, v);
+            return index >= 0 ? index : owned.length + Arrays.binarySearch(halo, v);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Vec3;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Symmetric neighbour weights {@code a_ij} assembled once in CSR form, acting on packed {@code xyz}
+ * arrays. {@link #average} is the row-normalized product {@code W x = D⁻¹ A x}, so the Laplacian is
+ * {@code W - I}; {@link #solveImplicit} solves the backward-Euler smoothing system
+ * {@code (I - λ(W - I)) y = b} by Jacobi-preconditioned conjugate gradients on its symmetric form
+ * {@code ((1 + λ)D - λA) y = D b}. Rows run in contiguous blocks, one block per task.
+ */
+public final class SparseOperator {
+    private static final int BLOCK = 2048;
+
+    private final int[] offsets;
+    private final int[] columns;
+    private final double[] weights;
+    private final double[] rowSums;
+    private final double[] rowScales;
+
+    private SparseOperator(int[] offsets, int[] columns, double[] weights) {
+        this.offsets = offsets;
+        this.columns = columns;
+        this.weights = weights;
+        int rows = offsets.length - 1;
+        this.rowSums = new double[rows];
+        this.rowScales = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            double sum = 0.0;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                sum += weights[k];
+            }
+            rowSums[i] = sum;
+            rowScales[i] = sum > 0.0 ? 1.0 / sum : 0.0;
+        }
+    }
+
+    /**
+     * Cotangent weights are {@code ½ Σ max(0, cot θ)} over the triangles on each edge, from the
+     * current positions; the vertex-area factor of the Laplace–Beltrami operator cancels in the row
+     * normalization. A graph without triangles (such as Goldberg tile rings) falls back to uniform
+     * weights.
+     */
+    public static SparseOperator laplacian(Vec3[] vertices,
+                                           int[][] neighbors,
+                                           LaplacianWeighting weighting,
+                                           ForkJoinPool pool) {
+        if (weighting == LaplacianWeighting.COTANGENT) {
+            int[] offsets = offsets(neighbors);
+            double[] weights = new double[offsets[neighbors.length]];
+            boolean triangulated = pool.submit(() -> IntStream.range(0, neighbors.length).parallel()
+                    .allMatch(i -> cotangentRow(vertices, neighbors, i, weights, offsets[i]))).join();
+            if (triangulated) {
+                return new SparseOperator(offsets, columns(neighbors, offsets), weights);
+            }
+            System.out.println("Notice: cotangent weights need a triangulated mesh; using uniform Laplacian weights.");
+        }
+        return uniform(neighbors);
+    }
+
+    public static SparseOperator uniform(int[][] neighbors) {
+        int[] offsets = offsets(neighbors);
+        double[] weights = new double[offsets[neighbors.length]];
+        Arrays.fill(weights, 1.0);
+        return new SparseOperator(offsets, columns(neighbors, offsets), weights);
+    }
+
+    private static int[] offsets(int[][] neighbors) {
+        int[] offsets = new int[neighbors.length + 1];
+        for (int i = 0; i < neighbors.length; i++) {
+            offsets[i + 1] = offsets[i] + neighbors[i].length;
+        }
+        return offsets;
+    }
+
+    private static int[] columns(int[][] neighbors, int[] offsets) {
+        int[] columns = new int[offsets[neighbors.length]];
+        for (int i = 0; i < neighbors.length; i++) {
+            System.arraycopy(neighbors[i], 0, columns, offsets[i], neighbors[i].length);
+        }
+        return columns;
+    }
+
+    private static boolean cotangentRow(Vec3[] vertices, int[][] neighbors, int i, double[] weights, int offset) {
+        int[] ring = neighbors[i];
+        double total = 0.0;
+        for (int n = 0; n < ring.length; n++) {
+            int j = ring[n];
+            double weight = 0.0;
+            for (int k : neighbors[j]) {
+                if (k == i || !contains(ring, k)) {
+                    continue;
+                }
+                Vec3 a = vertices[i].subtract(vertices[k]);
+                Vec3 b = vertices[j].subtract(vertices[k]);
+                double sine = a.cross(b).length();
+                if (sine > 1e-300) {
+                    weight += 0.5 * Math.max(0.0, a.dot(b) / sine);
+                }
+            }
+            weights[offset + n] = weight;
+            total += weight;
+        }
+        return ring.length == 0 || total > 0.0;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int rows() {
+        return rowSums.length;
+    }
+
+    /**
+     * {@code out_i = Σ_j a_ij x_j / Σ_j a_ij}, zero for rows without neighbours.
+     */
+    public void average(double[] xyz, double[] out, ForkJoinPool pool) {
+        int rows = rows();
+        pool.submit(() -> blocks(rows).forEach(block -> {
+            for (int i = block * BLOCK, end = Math.min(rows, i + BLOCK); i < end; i++) {
+                double sx = 0.0;
+                double sy = 0.0;
+                double sz = 0.0;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int j = columns[k] * 3;
+                    double w = weights[k];
+                    sx += w * xyz[j];
+                    sy += w * xyz[j + 1];
+                    sz += w * xyz[j + 2];
+                }
+                double scale = rowScales[i];
+                out[i * 3] = sx * scale;
+                out[i * 3 + 1] = sy * scale;
+                out[i * 3 + 2] = sz * scale;
+            }
+        })).join();
+    }
+
+    /**
+     * Solves {@code (I - λ(W - I)) y = rhs} for rows not {@code fixed}; fixed rows and rows without
+     * neighbours keep {@code rhs}. {@code out} holds the starting guess and receives the solution.
+     *
+     * @return conjugate-gradient iterations used
+     */
+    public int solveImplicit(double[] rhs,
+                             double lambda,
+                             boolean[] fixed,
+                             double[] out,
+                             double tolerance,
+                             int maxIterations,
+                             ForkJoinPool pool) {
+        int rows = rows();
+        int n = rows * 3;
+        double[] b = new double[n];
+        double[] diagonal = new double[rows];
+        pool.submit(() -> blocks(rows).forEach(block -> {
+            for (int i = block * BLOCK, end = Math.min(rows, i + BLOCK); i < end; i++) {
+                if (pinned(i, fixed)) {
+                    diagonal[i] = 1.0;
+                    b[i * 3] = rhs[i * 3];
+                    b[i * 3 + 1] = rhs[i * 3 + 1];
+                    b[i * 3 + 2] = rhs[i * 3 + 2];
+                    out[i * 3] = rhs[i * 3];
+                    out[i * 3 + 1] = rhs[i * 3 + 1];
+                    out[i * 3 + 2] = rhs[i * 3 + 2];
+                    continue;
+                }
+                double d = rowSums[i];
+                diagonal[i] = (1.0 + lambda) * d;
+                double bx = d * rhs[i * 3];
+                double by = d * rhs[i * 3 + 1];
+                double bz = d * rhs[i * 3 + 2];
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int j = columns[k];
+                    if (pinned(j, fixed)) {
+                        double w = lambda * weights[k];
+                        bx += w * rhs[j * 3];
+                        by += w * rhs[j * 3 + 1];
+                        bz += w * rhs[j * 3 + 2];
+                    }
+                }
+                b[i * 3] = bx;
+                b[i * 3 + 1] = by;
+                b[i * 3 + 2] = bz;
+            }
+        })).join();
+
+        double[] r = new double[n];
+        double[] z = new double[n];
+        double[] p = new double[n];
+        double[] q = new double[n];
+        applySystem(out, lambda, fixed, diagonal, q, pool);
+        PackedVectors.difference(b, q, r, pool);
+        double target = tolerance * Math.sqrt(PackedVectors.dot(b, b, pool));
+        precondition(r, diagonal, z, pool);
+        System.arraycopy(z, 0, p, 0, n);
+        double rz = PackedVectors.dot(r, z, pool);
+        int iteration = 0;
+        while (iteration < maxIterations && Math.sqrt(PackedVectors.dot(r, r, pool)) > target) {
+            applySystem(p, lambda, fixed, diagonal, q, pool);
+            double pq = PackedVectors.dot(p, q, pool);
+            if (!(pq > 0.0)) {
+                break;
+            }
+            double alpha = rz / pq;
+            PackedVectors.axpy(alpha, p, out, pool);
+            PackedVectors.axpy(-alpha, q, r, pool);
+            precondition(r, diagonal, z, pool);
+            double next = PackedVectors.dot(r, z, pool);
+            double beta = next / rz;
+            rz = next;
+            PackedVectors.scale(p, beta, pool);
+            PackedVectors.axpy(1.0, z, p, pool);
+            iteration++;
+        }
+        return iteration;
+    }
+
+    private boolean pinned(int row, boolean[] fixed) {
+        return fixed[row] || rowSums[row] == 0.0;
+    }
+
+    private void applySystem(double[] v, double lambda, boolean[] fixed, double[] diagonal, double[] out, ForkJoinPool pool) {
+        int rows = rows();
+        pool.submit(() -> blocks(rows).forEach(block -> {
+            for (int i = block * BLOCK, end = Math.min(rows, i + BLOCK); i < end; i++) {
+                double sx = diagonal[i] * v[i * 3];
+                double sy = diagonal[i] * v[i * 3 + 1];
+                double sz = diagonal[i] * v[i * 3 + 2];
+                if (!pinned(i, fixed)) {
+                    for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                        int j = columns[k];
+                        if (pinned(j, fixed)) {
+                            continue;
+                        }
+                        double w = lambda * weights[k];
+                        sx -= w * v[j * 3];
+                        sy -= w * v[j * 3 + 1];
+                        sz -= w * v[j * 3 + 2];
+                    }
+                }
+                out[i * 3] = sx;
+                out[i * 3 + 1] = sy;
+                out[i * 3 + 2] = sz;
+            }
+        })).join();
+    }
+
+    private static void precondition(double[] r, double[] diagonal, double[] out, ForkJoinPool pool) {
+        pool.submit(() -> blocks(diagonal.length).forEach(block -> {
+            for (int i = block * BLOCK, end = Math.min(diagonal.length, i + BLOCK); i < end; i++) {
+                double inverse = 1.0 / diagonal[i];
+                out[i * 3] = r[i * 3] * inverse;
+                out[i * 3 + 1] = r[i * 3 + 1] * inverse;
+                out[i * 3 + 2] = r[i * 3 + 2] * inverse;
+            }
+        })).join();
+    }
+
+    private static IntStream blocks(int rows) {
+        return IntStream.range(0, (rows + BLOCK - 1) / BLOCK).parallel();
+    }
+}
@@ -8,134 +8,110 @@ import com.sphererelaxator.mesh.Vec3;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ForkJoinPool;
-import java.util.stream.IntStream;
 
 public class SphereRelaxator {
-    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) {
-        Vec3[] vertices = mesh.vertices();
-        boolean[] fixed = mesh.fixed();
-        int[][] neighbors = mesh.neighbors();
-        Set<Integer> pentagonVertices = mesh.pentagonVertices();
-        double radius = config.radius();
+    private final boolean implicitLaplacian;
 
-        projectAllToRadius(vertices, radius);
-        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
-        long startedAtNs = System.nanoTime();
+    public SphereRelaxator() {
+        this(false);
+    }
 
+    /**
+     * @param implicitLaplacian take the Laplacian term as a backward-Euler step solved by conjugate
+     *                          gradients, which stays stable for much larger {@code step}
+     */
+    public SphereRelaxator(boolean implicitLaplacian) {
+        this.implicitLaplacian = implicitLaplacian;
+    }
+
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
         try {
-            for (int iteration = 1; iteration <= config.iterations(); iteration++) {
-                double targetEdgeLength = edgeMean(vertices, mesh.edges());
-                Vec3[] pentagonBias = pentagonExpansionBias(vertices, mesh.tiles(), config.pentagonExpandWeight());
-                Vec3[] next = new Vec3[vertices.length];
-
-                runInPool(pool, () -> IntStream.range(0, vertices.length).parallel().forEach(i -> {
-                    if (fixed[i]) {
-                        next[i] = vertices[i];
-                        return;
-                    }
-                    Vec3 current = vertices[i];
-                    int[] nbs = neighbors[i];
-                    if (nbs.length == 0) {
-                        next[i] = current.normalize().scale(radius);
-                        return;
-                    }
-
-                    Vec3 avg = new Vec3(0.0, 0.0, 0.0);
-                    Vec3 spring = new Vec3(0.0, 0.0, 0.0);
-                    for (int nb : nbs) {
-                        Vec3 pv = vertices[nb];
-                        avg = avg.add(pv);
-
-                        Vec3 d = pv.subtract(current);
-                        double len = d.length();
-                        if (len > 1e-12) {
-                            double diff = len - targetEdgeLength;
-                            spring = spring.add(d.scale(diff / len));
-                        }
-                    }
-                    avg = avg.scale(1.0 / nbs.length);
-
-                    Vec3 laplacian = avg.subtract(current).scale(config.laplacianWeight());
-                    Vec3 springForce = spring.scale(config.springWeight() / nbs.length);
-                    Vec3 pentagonForce = pentagonVertices.contains(i) ? pentagonBias[i] : new Vec3(0.0, 0.0, 0.0);
-
-                    Vec3 moved = current
-                            .add(laplacian.scale(config.step()))
-                            .add(springForce.scale(config.step()))
-                            .add(pentagonForce.scale(config.step()));
-
-                    next[i] = moved.normalize().scale(radius);
-                }));
-
-                System.arraycopy(next, 0, vertices, 0, vertices.length);
-
-                if (config.logEvery() > 0 && iteration % config.logEvery() == 0) {
-                    RelaxationMetrics metrics = collectMetrics(mesh);
-                    System.out.printf(Locale.US,
-                            "Iter %d: edge std=%.6f pentMean=%.6f hexMean=%.6f%n",
-                            iteration, metrics.edgeStdDev(), metrics.pentagonAreaMean(), metrics.hexAreaMean());
-                }
-                if (config.progressEvery() > 0 && iteration % config.progressEvery() == 0) {
-                    printProgress(iteration, config.iterations(), startedAtNs);
-                }
-            }
-            return collectMetrics(mesh);
+            return relax(mesh, config, pool);
         } finally {
             pool.shutdown();
         }
     }
 
-    private static Vec3[] pentagonExpansionBias(Vec3[] vertices, List<Tile> tiles, double weight) {
-        Vec3[] bias = new Vec3[vertices.length];
-        for (int i = 0; i < bias.length; i++) {
-            bias[i] = new Vec3(0.0, 0.0, 0.0);
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config, ForkJoinPool pool) {
+        return relax(mesh, config, pool, 1, config.iterations());
+    }
+
+    /**
+     * Runs only iterations {@code first..last} of {@code config}, so a relaxation can be advanced in
+     * stages; positions are projected to the radius when {@code first} is 1. Staged runs give the
+     * same positions as one full run (with cotangent weights, only if each stage starts where the
+     * previous one ended, since the weights come from the positions a call starts from).
+     * <p>
+     * The Laplacian term is the {@link SparseOperator} of {@code config.laplacian()}, assembled once
+     * per call; the spring and pentagon terms stay per vertex over packed positions.
+     */
+    public RelaxationMetrics relax(Mesh mesh, RelaxationConfig config, ForkJoinPool pool, int first, int last) {
+        Vec3[] vertices = mesh.vertices();
+        boolean[] fixed = mesh.fixed();
+        int[][] neighbors = mesh.neighbors();
+        double radius = config.radius();
+
+        if (first <= 1) {
+            projectAllToRadius(vertices, radius);
         }
-        if (weight == 0.0) {
-            return bias;
+        SparseOperator laplacian = SparseOperator.laplacian(vertices, neighbors, config.laplacian(), pool);
+        boolean[] pentagonVertices = new boolean[vertices.length];
+        for (int v : mesh.pentagonVertices()) {
+            pentagonVertices[v] = true;
         }
+        VertexStep step = new VertexStep(neighbors, fixed, pentagonVertices, mesh.tiles(), laplacian, config, implicitLaplacian);
+        double[] xyz = pack(vertices);
+        List<int[]> edges = mesh.edges();
+        long startedAtNs = System.nanoTime();
 
-        for (Tile tile : tiles) {
-            if (tile.type() != TileType.PENTAGON) {
-                continue;
+        for (int iteration = Math.max(1, first); iteration <= last; iteration++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Relaxation cancelled before iteration " + iteration);
+            }
+            double targetEdgeLength = edges.isEmpty() ? 0.0 : VertexStep.edgeLengthSum(xyz, edges) / edges.size();
+            step.apply(xyz, vertices.length, targetEdgeLength, pool);
+
+            if (config.logEvery() > 0 && iteration % config.logEvery() == 0) {
+                unpack(xyz, vertices);
+                RelaxationMetrics metrics = collectMetrics(mesh);
+                System.out.printf(Locale.US,
+                        "Iter %d: edge std=%.6f pentMean=%.6f hexMean=%.6f%n",
+                        iteration, metrics.edgeStdDev(), metrics.pentagonAreaMean(), metrics.hexAreaMean());
             }
-            Vec3 center = polygonCenter(vertices, tile.vertexIds());
-            for (int idx : tile.vertexIds()) {
-                Vec3 radial = vertices[idx].subtract(center).normalize().scale(weight);
-                bias[idx] = bias[idx].add(radial);
+            if (config.progressEvery() > 0 && iteration % config.progressEvery() == 0) {
+                printProgress(iteration, config.iterations(), startedAtNs);
             }
         }
-        return bias;
+        unpack(xyz, vertices);
+        return collectMetrics(mesh);
     }
 
-    private static Vec3 polygonCenter(Vec3[] vertices, List<Integer> ids) {
-        Vec3 c = new Vec3(0.0, 0.0, 0.0);
-        for (int i : ids) {
-            c = c.add(vertices[i]);
+    static double[] pack(Vec3[] vertices) {
+        double[] xyz = new double[vertices.length * 3];
+        for (int i = 0; i < vertices.length; i++) {
+            xyz[i * 3] = vertices[i].x();
+            xyz[i * 3 + 1] = vertices[i].y();
+            xyz[i * 3 + 2] = vertices[i].z();
         }
-        return c.scale(1.0 / ids.size());
+        return xyz;
     }
 
-    private static void projectAllToRadius(Vec3[] vertices, double radius) {
+    static void unpack(double[] xyz, Vec3[] vertices) {
         for (int i = 0; i < vertices.length; i++) {
-            vertices[i] = vertices[i].normalize().scale(radius);
+            vertices[i] = new Vec3(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
         }
     }
 
-    private static void runInPool(ForkJoinPool pool, Runnable action) {
-        pool.submit(action).join();
-    }
-
-    private static double edgeMean(Vec3[] vertices, List<int[]> edges) {
-        double sum = 0.0;
-        for (int[] edge : edges) {
-            sum += vertices[edge[0]].distance(vertices[edge[1]]);
+    static void projectAllToRadius(Vec3[] vertices, double radius) {
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = vertices[i].normalize().scale(radius);
         }
-        return edges.isEmpty() ? 0.0 : sum / edges.size();
     }
 
-    private static void printProgress(int iteration, int totalIterations, long startedAtNs) {
+    static void printProgress(int iteration, int totalIterations, long startedAtNs) {
         double progress = totalIterations == 0 ? 1.0 : (double) iteration / totalIterations;
         long elapsedNs = System.nanoTime() - startedAtNs;
         double elapsedSec = elapsedNs / 1_000_000_000.0;
@@ -180,7 +156,7 @@ public class SphereRelaxator {
             if (tile.type() == TileType.PENTAGON) {
                 pentArea += a;
                 pentCount++;
-            } else {
+            } else if (tile.type() == TileType.HEXAGON) {
                 hexArea += a;
                 hexCount++;
             }
@@ -0,0 +1,270 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Mesh;
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileType;
+import com.sphererelaxator.mesh.Vec3;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Tile view of a Goldberg mesh for solvers that move tile centers: packed centers, CSR tile
+ * adjacency, the oriented tile triple around each ring corner and each ring as corner indices.
+ * Every ring corner must join exactly three tiles and none may be fixed.
+ */
+final class TileDual {
+    final int tileCount;
+    final double[] centers;
+    final int[] neighborOffsets;
+    final int[] neighbors;
+    final int[] pentagons;
+    /** Mesh vertex id of each corner. */
+    final int[] corners;
+    final int[] cornerTiles;
+    final int[] ringOffsets;
+    /** Corner indices of each tile ring, in ring order. */
+    final int[] ringCorners;
+    /** Vertices outside every ring (fan centers), placed at the mean of their neighbours. */
+    final int[] others;
+
+    private TileDual(int tileCount,
+                     double[] centers,
+                     int[] neighborOffsets,
+                     int[] neighbors,
+                     int[] pentagons,
+                     int[] corners,
+                     int[] cornerTiles,
+                     int[] ringOffsets,
+                     int[] ringCorners,
+                     int[] others) {
+        this.tileCount = tileCount;
+        this.centers = centers;
+        this.neighborOffsets = neighborOffsets;
+        this.neighbors = neighbors;
+        this.pentagons = pentagons;
+        this.corners = corners;
+        this.cornerTiles = cornerTiles;
+        this.ringOffsets = ringOffsets;
+        this.ringCorners = ringCorners;
+        this.others = others;
+    }
+
+    /**
+     * Centers start at the normalized ring centroids on {@code radius}.
+     */
+    static TileDual of(Mesh mesh, double radius, String solverName) {
+        Vec3[] vertices = mesh.vertices();
+        List<Tile> tiles = mesh.tiles();
+        int tileCount = tiles.size();
+        int[] incident = new int[vertices.length];
+        int[][] slots = new int[vertices.length][];
+        double[] centers = new double[tileCount * 3];
+        int[] ringOffsets = new int[tileCount + 1];
+        int pentagonCount = 0;
+        for (int t = 0; t < tileCount; t++) {
+            List<Integer> ring = tiles.get(t).vertexIds();
+            Vec3 sum = new Vec3(0.0, 0.0, 0.0);
+            for (int v : ring) {
+                if (mesh.fixed()[v]) {
+                    throw new IllegalArgumentException(solverName + " does not support fixed vertices (vertex " + v + ")");
+                }
+                if (incident[v] == 3) {
+                    throw new IllegalArgumentException(solverName + " needs every tile corner to join exactly three tiles; vertex "
+                            + v + " joins more");
+                }
+                if (slots[v] == null) {
+                    slots[v] = new int[3];
+                }
+                slots[v][incident[v]++] = t;
+                sum = sum.add(vertices[v]);
+            }
+            Vec3 center = sum.normalize().scale(radius);
+            centers[t * 3] = center.x();
+            centers[t * 3 + 1] = center.y();
+            centers[t * 3 + 2] = center.z();
+            ringOffsets[t + 1] = ringOffsets[t] + ring.size();
+            if (tiles.get(t).type() == TileType.PENTAGON) {
+                pentagonCount++;
+            }
+        }
+
+        int cornerCount = 0;
+        int otherCount = 0;
+        for (int v = 0; v < vertices.length; v++) {
+            if (incident[v] == 0) {
+                otherCount++;
+            } else if (incident[v] == 3) {
+                cornerCount++;
+            } else {
+                throw new IllegalArgumentException(solverName + " needs every tile corner to join exactly three tiles; vertex "
+                        + v + " joins " + incident[v]);
+            }
+        }
+        int[] corners = new int[cornerCount];
+        int[] cornerOf = new int[vertices.length];
+        int[] cornerTiles = new int[cornerCount * 3];
+        int[] others = new int[otherCount];
+        long[] pairs = new long[cornerCount * 6];
+        int c = 0;
+        int o = 0;
+        for (int v = 0; v < vertices.length; v++) {
+            if (incident[v] == 0) {
+                others[o++] = v;
+                continue;
+            }
+            int a = slots[v][0];
+            int b = slots[v][1];
+            int d = slots[v][2];
+            if (orientation(centers, a, b, d, vertices[v]) < 0.0) {
+                int swap = b;
+                b = d;
+                d = swap;
+            }
+            corners[c] = v;
+            cornerOf[v] = c;
+            cornerTiles[c * 3] = a;
+            cornerTiles[c * 3 + 1] = b;
+            cornerTiles[c * 3 + 2] = d;
+            pairs[c * 6] = ((long) a << 32) | b;
+            pairs[c * 6 + 1] = ((long) b << 32) | a;
+            pairs[c * 6 + 2] = ((long) b << 32) | d;
+            pairs[c * 6 + 3] = ((long) d << 32) | b;
+            pairs[c * 6 + 4] = ((long) d << 32) | a;
+            pairs[c * 6 + 5] = ((long) a << 32) | d;
+            c++;
+        }
+        Arrays.parallelSort(pairs);
+        int[] neighborOffsets = new int[tileCount + 1];
+        int[] neighbors = new int[pairs.length];
+        int neighborCount = 0;
+        for (int k = 0; k < pairs.length; k++) {
+            if (k > 0 && pairs[k] == pairs[k - 1]) {
+                continue;
+            }
+            neighborOffsets[(int) (pairs[k] >>> 32) + 1]++;
+            neighbors[neighborCount++] = (int) pairs[k];
+        }
+        for (int t = 0; t < tileCount; t++) {
+            neighborOffsets[t + 1] += neighborOffsets[t];
+        }
+
+        int[] ringCorners = new int[ringOffsets[tileCount]];
+        int[] pentagons = new int[pentagonCount];
+        int p = 0;
+        for (int t = 0; t < tileCount; t++) {
+            int k = ringOffsets[t];
+            for (int v : tiles.get(t).vertexIds()) {
+                ringCorners[k++] = cornerOf[v];
+            }
+            if (tiles.get(t).type() == TileType.PENTAGON) {
+                pentagons[p++] = t;
+            }
+        }
+        return new TileDual(tileCount, centers, neighborOffsets, Arrays.copyOf(neighbors, neighborCount), pentagons,
+                corners, cornerTiles, ringOffsets, ringCorners, others);
+    }
+
+    double meanNeighborDistance(double[] centers) {
+        double sum = 0.0;
+        for (int t = 0; t < tileCount; t++) {
+            for (int k = neighborOffsets[t]; k < neighborOffsets[t + 1]; k++) {
+                sum += distance(centers, t, neighbors[k]);
+            }
+        }
+        return neighbors.length == 0 ? 0.0 : sum / neighbors.length;
+    }
+
+    /**
+     * Pushes each pentagon's neighbour centers {@code weight} away from it.
+     */
+    void pentagonBias(double[] centers, double weight, double[] bias) {
+        Arrays.fill(bias, 0.0);
+        if (weight == 0.0) {
+            return;
+        }
+        for (int pentagon : pentagons) {
+            for (int k = neighborOffsets[pentagon]; k < neighborOffsets[pentagon + 1]; k++) {
+                int nb = neighbors[k];
+                double length = distance(centers, pentagon, nb);
+                if (length <= 1e-12) {
+                    continue;
+                }
+                for (int axis = 0; axis < 3; axis++) {
+                    bias[nb * 3 + axis] += (centers[nb * 3 + axis] - centers[pentagon * 3 + axis]) / length * weight;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the spherical circumcenter of each corner's three centers, on {@code radius}, to the
+     * packed {@code out}.
+     */
+    void circumcenters(double[] centers, double radius, double[] out, ForkJoinPool pool) {
+        pool.submit(() -> IntStream.range(0, corners.length).parallel().forEach(c -> {
+            int a = cornerTiles[c * 3];
+            int b = cornerTiles[c * 3 + 1];
+            int d = cornerTiles[c * 3 + 2];
+            double abx = centers[b * 3] - centers[a * 3];
+            double aby = centers[b * 3 + 1] - centers[a * 3 + 1];
+            double abz = centers[b * 3 + 2] - centers[a * 3 + 2];
+            double adx = centers[d * 3] - centers[a * 3];
+            double ady = centers[d * 3 + 1] - centers[a * 3 + 1];
+            double adz = centers[d * 3 + 2] - centers[a * 3 + 2];
+            double nx = aby * adz - abz * ady;
+            double ny = abz * adx - abx * adz;
+            double nz = abx * ady - aby * adx;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            double toRadius = length > 0.0 ? radius / length : 0.0;
+            out[c * 3] = nx * toRadius;
+            out[c * 3 + 1] = ny * toRadius;
+            out[c * 3 + 2] = nz * toRadius;
+        })).join();
+    }
+
+    /**
+     * Rebuilds the mesh corners from {@code centers} and places the remaining vertices.
+     */
+    void rebuildCorners(Mesh mesh, double[] centers, double radius, ForkJoinPool pool) {
+        double[] packed = new double[corners.length * 3];
+        circumcenters(centers, radius, packed, pool);
+        Vec3[] vertices = mesh.vertices();
+        pool.submit(() -> IntStream.range(0, corners.length).parallel().forEach(c ->
+                vertices[corners[c]] = new Vec3(packed[c * 3], packed[c * 3 + 1], packed[c * 3 + 2])
+        )).join();
+        int[][] adjacency = mesh.neighbors();
+        pool.submit(() -> IntStream.range(0, others.length).parallel().forEach(o -> {
+            int v = others[o];
+            Vec3 sum = vertices[v];
+            if (adjacency[v].length > 0) {
+                sum = new Vec3(0.0, 0.0, 0.0);
+                for (int nb : adjacency[v]) {
+                    sum = sum.add(vertices[nb]);
+                }
+            }
+            vertices[v] = sum.normalize().scale(radius);
+        })).join();
+    }
+
+    private static double orientation(double[] centers, int a, int b, int d, Vec3 toward) {
+        double abx = centers[b * 3] - centers[a * 3];
+        double aby = centers[b * 3 + 1] - centers[a * 3 + 1];
+        double abz = centers[b * 3 + 2] - centers[a * 3 + 2];
+        double adx = centers[d * 3] - centers[a * 3];
+        double ady = centers[d * 3 + 1] - centers[a * 3 + 1];
+        double adz = centers[d * 3 + 2] - centers[a * 3 + 2];
+        return (aby * adz - abz * ady) * toward.x()
+                + (abz * adx - abx * adz) * toward.y()
+                + (abx * ady - aby * adx) * toward.z();
+    }
+
+    static double distance(double[] xyz, int a, int b) {
+        double dx = xyz[a * 3] - xyz[b * 3];
+        double dy = xyz[a * 3 + 1] - xyz[b * 3 + 1];
+        double dz = xyz[a * 3 + 2] - xyz[b * 3 + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
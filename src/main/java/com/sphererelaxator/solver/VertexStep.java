@@ -0,0 +1,200 @@
+package com.sphererelaxator.solver;
+
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * One {@link SphereRelaxator} iteration over packed positions, shared by the single-process solver
+ * and partition workers. Only the first {@code rows} positions move; later ones (a worker's halo)
+ * are read but left as they are.
+ */
+final class VertexStep {
+    private static final double IMPLICIT_TOLERANCE = 1e-8;
+    private static final int IMPLICIT_MAX_ITERATIONS = 200;
+
+    private final int[][] neighbors;
+    private final boolean[] fixed;
+    private final boolean[] pentagonVertices;
+    private final List<Tile> tiles;
+    private final SparseOperator laplacian;
+    private final RelaxationConfig config;
+    private final boolean implicitLaplacian;
+    private final double[] next;
+    private final double[] average;
+    private final double[] pentagonBias;
+    private final double[] solved;
+
+    VertexStep(int[][] neighbors,
+               boolean[] fixed,
+               boolean[] pentagonVertices,
+               List<Tile> tiles,
+               SparseOperator laplacian,
+               RelaxationConfig config,
+               boolean implicitLaplacian) {
+        this.neighbors = neighbors;
+        this.fixed = fixed;
+        this.pentagonVertices = pentagonVertices;
+        this.tiles = tiles;
+        this.laplacian = laplacian;
+        this.config = config;
+        this.implicitLaplacian = implicitLaplacian;
+        int n = neighbors.length * 3;
+        this.next = new double[n];
+        this.average = new double[n];
+        this.pentagonBias = new double[n];
+        this.solved = implicitLaplacian ? new double[n] : null;
+    }
+
+    /**
+     * Moves rows {@code 0..rows-1} of {@code xyz} in place toward {@code targetEdgeLength}. The
+     * implicit Laplacian solve needs every row, so it requires {@code rows} to cover the mesh.
+     */
+    void apply(double[] xyz, int rows, double targetEdgeLength, ForkJoinPool pool) {
+        if (implicitLaplacian && rows != neighbors.length) {
+            throw new IllegalStateException("The implicit Laplacian step needs every row");
+        }
+        double radius = config.radius();
+        double step = config.step();
+        double laplacianWeight = implicitLaplacian ? 0.0 : config.laplacianWeight();
+        pentagonExpansionBias(xyz, tiles, config.pentagonExpandWeight(), pentagonBias);
+        if (!implicitLaplacian) {
+            laplacian.average(xyz, average, pool);
+        }
+
+        pool.submit(() -> IntStream.range(0, rows).parallel().forEach(i -> {
+            double cx = xyz[i * 3];
+            double cy = xyz[i * 3 + 1];
+            double cz = xyz[i * 3 + 2];
+            if (fixed[i]) {
+                next[i * 3] = cx;
+                next[i * 3 + 1] = cy;
+                next[i * 3 + 2] = cz;
+                return;
+            }
+            int[] nbs = neighbors[i];
+            if (nbs.length == 0) {
+                storeOnSphere(cx, cy, cz, radius, next, i);
+                return;
+            }
+
+            double sx = 0.0;
+            double sy = 0.0;
+            double sz = 0.0;
+            for (int nb : nbs) {
+                double dx = xyz[nb * 3] - cx;
+                double dy = xyz[nb * 3 + 1] - cy;
+                double dz = xyz[nb * 3 + 2] - cz;
+                double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (len > 1e-12) {
+                    double scale = (len - targetEdgeLength) / len;
+                    sx = sx + dx * scale;
+                    sy = sy + dy * scale;
+                    sz = sz + dz * scale;
+                }
+            }
+            double springScale = config.springWeight() / nbs.length;
+            double px = pentagonVertices[i] ? pentagonBias[i * 3] : 0.0;
+            double py = pentagonVertices[i] ? pentagonBias[i * 3 + 1] : 0.0;
+            double pz = pentagonVertices[i] ? pentagonBias[i * 3 + 2] : 0.0;
+
+            double mx = cx + (average[i * 3] - cx) * laplacianWeight * step + sx * springScale * step + px * step;
+            double my = cy + (average[i * 3 + 1] - cy) * laplacianWeight * step + sy * springScale * step + py * step;
+            double mz = cz + (average[i * 3 + 2] - cz) * laplacianWeight * step + sz * springScale * step + pz * step;
+            if (implicitLaplacian) {
+                next[i * 3] = mx;
+                next[i * 3 + 1] = my;
+                next[i * 3 + 2] = mz;
+            } else {
+                storeOnSphere(mx, my, mz, radius, next, i);
+            }
+        })).join();
+
+        if (implicitLaplacian) {
+            System.arraycopy(next, 0, solved, 0, next.length);
+            laplacian.solveImplicit(next, step * config.laplacianWeight(), fixed, solved,
+                    IMPLICIT_TOLERANCE, IMPLICIT_MAX_ITERATIONS, pool);
+            pool.submit(() -> IntStream.range(0, rows).parallel().forEach(i -> {
+                if (!fixed[i] && neighbors[i].length > 0) {
+                    storeOnSphere(solved[i * 3], solved[i * 3 + 1], solved[i * 3 + 2], radius, next, i);
+                }
+            })).join();
+        }
+        System.arraycopy(next, 0, xyz, 0, rows * 3);
+    }
+
+    /**
+     * Sum of the lengths of {@code edges}, in list order.
+     */
+    static double edgeLengthSum(double[] xyz, List<int[]> edges) {
+        double sum = 0.0;
+        for (int[] edge : edges) {
+            double dx = xyz[edge[0] * 3] - xyz[edge[1] * 3];
+            double dy = xyz[edge[0] * 3 + 1] - xyz[edge[1] * 3 + 1];
+            double dz = xyz[edge[0] * 3 + 2] - xyz[edge[1] * 3 + 2];
+            sum += Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        return sum;
+    }
+
+    /**
+     * Same arithmetic as {@code new Vec3(x, y, z).normalize().scale(radius)}.
+     */
+    static void storeOnSphere(double x, double y, double z, double radius, double[] out, int i) {
+        double len = Math.sqrt(x * x + y * y + z * z);
+        if (len >= 1e-12) {
+            double inverse = 1.0 / len;
+            x = x * inverse;
+            y = y * inverse;
+            z = z * inverse;
+        }
+        out[i * 3] = x * radius;
+        out[i * 3 + 1] = y * radius;
+        out[i * 3 + 2] = z * radius;
+    }
+
+    private static void pentagonExpansionBias(double[] xyz, List<Tile> tiles, double weight, double[] bias) {
+        Arrays.fill(bias, 0.0);
+        if (weight == 0.0) {
+            return;
+        }
+
+        for (Tile tile : tiles) {
+            if (tile.type() != TileType.PENTAGON) {
+                continue;
+            }
+            List<Integer> ids = tile.vertexIds();
+            double cx = 0.0;
+            double cy = 0.0;
+            double cz = 0.0;
+            for (int idx : ids) {
+                cx = cx + xyz[idx * 3];
+                cy = cy + xyz[idx * 3 + 1];
+                cz = cz + xyz[idx * 3 + 2];
+            }
+            double inverseCount = 1.0 / ids.size();
+            cx = cx * inverseCount;
+            cy = cy * inverseCount;
+            cz = cz * inverseCount;
+            for (int idx : ids) {
+                double dx = xyz[idx * 3] - cx;
+                double dy = xyz[idx * 3 + 1] - cy;
+                double dz = xyz[idx * 3 + 2] - cz;
+                double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (len >= 1e-12) {
+                    double inverse = 1.0 / len;
+                    dx = dx * inverse;
+                    dy = dy * inverse;
+                    dz = dz * inverse;
+                }
+                bias[idx * 3] = bias[idx * 3] + dx * weight;
+                bias[idx * 3 + 1] = bias[idx * 3 + 1] + dy * weight;
+                bias[idx * 3 + 2] = bias[idx * 3 + 2] + dz * weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.sphererelaxator.unreal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sphererelaxator.generator.IcosphereGenerator;
+import com.sphererelaxator.mesh.LongIntHashMap;
+import com.sphererelaxator.mesh.Vec3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Writes a tile pack as spatial chunks. Tiles go to the icosahedron face containing their center,
+ * then to one of {@code k * k} sub-triangles of that face (split in gnomonic barycentric coordinates,
+ * {@code k} chosen from the target tile count). Every chunk gets a self-contained file set with local
+ * vertex ids under {@code <prefix>_chunks/}, and {@code <prefix>_chunks.json} lists chunk bounds,
+ * files and neighbouring chunks.
+ */
+final class TileChunkWriter {
+    private static final String[] FILES = {
+            "tiles", "tile_vertices", "vertex_map", "positions", "normals",
+            "uv", "tangents", "triangles", "links"
+    };
+
+    private TileChunkWriter() {
+    }
+
+    static void write(Path prefix,
+                      UnrealTileCsvExporter.TileBuildData data,
+                      int targetTiles,
+                      ForkJoinPool pool) throws IOException {
+        UnrealTileCsvExporter.TileInfo[] tiles = data.tiles;
+        int faceCount = IcosphereGenerator.baseFaceCount();
+        int k = Math.max(1, (int) Math.ceil(Math.sqrt((double) tiles.length / (faceCount * (double) targetTiles))));
+        Vec3[][] corners = new Vec3[faceCount][3];
+        Vec3[] centroids = new Vec3[faceCount];
+        for (int f = 0; f < faceCount; f++) {
+            for (int slot = 0; slot < 3; slot++) {
+                corners[f][slot] = IcosphereGenerator.baseFaceCorner(f, slot);
+            }
+            centroids[f] = corners[f][0].add(corners[f][1]).add(corners[f][2]).normalize();
+        }
+
+        int[] cellOfTile = new int[tiles.length];
+        pool.submit(() -> IntStream.range(0, tiles.length).parallel().forEach(t ->
+                cellOfTile[t] = cellOf(tiles[t].center, corners, centroids, k))).join();
+
+        int cellCount = faceCount * k * k;
+        int[] cellStart = new int[cellCount + 1];
+        for (int cell : cellOfTile) {
+            cellStart[cell + 1]++;
+        }
+        int[] chunkOfCell = new int[cellCount];
+        int chunkCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            chunkOfCell[cell] = cellStart[cell + 1] > 0 ? chunkCount++ : -1;
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] tilesByCell = new int[tiles.length];
+        int[] fill = Arrays.copyOf(cellStart, cellCount);
+        for (int t = 0; t < tiles.length; t++) {
+            tilesByCell[fill[cellOfTile[t]]++] = t;
+        }
+        int[] chunkOfTile = new int[tiles.length];
+        for (int t = 0; t < tiles.length; t++) {
+            chunkOfTile[t] = chunkOfCell[cellOfTile[t]];
+        }
+        int[] cellOfChunk = new int[chunkCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (chunkOfCell[cell] >= 0) {
+                cellOfChunk[chunkOfCell[cell]] = cell;
+            }
+        }
+
+        Path directory = Path.of(prefix + "_chunks");
+        Files.createDirectories(directory);
+        ChunkSummary[] summaries = new ChunkSummary[chunkCount];
+        pool.submit(() -> IntStream.range(0, summaries.length).parallel().forEach(chunk -> {
+            int cell = cellOfChunk[chunk];
+            int[] members = Arrays.copyOfRange(tilesByCell, cellStart[cell], cellStart[cell + 1]);
+            try {
+                summaries[chunk] = writeChunk(directory, chunk, members, chunkOfTile, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write chunk " + chunk + " to " + directory, e);
+            }
+        })).join();
+
+        writeManifest(Path.of(prefix + "_chunks.json"), directory, tiles.length, k, targetTiles, cellOfChunk, summaries);
+    }
+
+    private static int cellOf(Vec3 center, Vec3[][] corners, Vec3[] centroids, int k) {
+        double length = center.length();
+        Vec3 dir = length > 1e-12 ? center.scale(1.0 / length) : centroids[0];
+        int face = 0;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int f = 0; f < centroids.length; f++) {
+            double d = dir.dot(centroids[f]);
+            if (d > best) {
+                best = d;
+                face = f;
+            }
+        }
+        Vec3 a = corners[face][0];
+        Vec3 b = corners[face][1];
+        Vec3 c = corners[face][2];
+        double alpha = dir.dot(b.cross(c));
+        double beta = dir.dot(c.cross(a));
+        double gamma = dir.dot(a.cross(b));
+        double sum = alpha + beta + gamma;
+        double s = Math.max(0.0, beta / sum) * k;
+        double t = Math.max(0.0, gamma / sum) * k;
+        int i = Math.min((int) s, k - 1);
+        int j = Math.min((int) t, k - 1 - i);
+        boolean up = i + j == k - 1 || (s - i) + (t - j) < 1.0;
+        return face * k * k + 2 * k * j - j * j + 2 * i + (up ? 0 : 1);
+    }
+
+    private static ChunkSummary writeChunk(Path directory,
+                                           int chunk,
+                                           int[] members,
+                                           int[] chunkOfTile,
+                                           UnrealTileCsvExporter.TileBuildData data) throws IOException {
+        LongIntHashMap localIndex = new LongIntHashMap(members.length * 3);
+        int[] globalVertex = new int[16];
+        int vertexCount = 0;
+        int triangleCount = 0;
+        for (int t : members) {
+            UnrealTileCsvExporter.TileInfo tile = data.tiles[t];
+            int[] fanVertices = new int[1 + tile.ringVertexIndices.length + tile.triangleCount * 3];
+            fanVertices[0] = tile.centerVertex;
+            System.arraycopy(tile.ringVertexIndices, 0, fanVertices, 1, tile.ringVertexIndices.length);
+            System.arraycopy(data.triangles, tile.firstTriangle * 3, fanVertices, 1 + tile.ringVertexIndices.length,
+                    tile.triangleCount * 3);
+            for (int v : fanVertices) {
+                if (localIndex.putIfAbsent(v, vertexCount) < 0) {
+                    if (vertexCount == globalVertex.length) {
+                        globalVertex = Arrays.copyOf(globalVertex, vertexCount * 2);
+                    }
+                    globalVertex[vertexCount++] = v;
+                }
+            }
+            triangleCount += tile.triangleCount;
+        }
+
+        String name = String.format(Locale.US, "chunk_%05d", chunk);
+        BufferedWriter[] out = new BufferedWriter[FILES.length];
+        TreeMap<Integer, Integer> linksByChunk = new TreeMap<>();
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        try {
+            for (int file = 0; file < FILES.length; file++) {
+                out[file] = Files.newBufferedWriter(directory.resolve(name + "_" + FILES[file] + ".csv"), StandardCharsets.UTF_8);
+            }
+            line(out[0], "local_tile,tile_id,type,center_vertex,vertex_count,triangle_count");
+            line(out[1], "local_tile,vertex_order,vertex_index");
+            line(out[2], "local_vertex,vertex_index");
+            line(out[3], "local_vertex,x,y,z");
+            line(out[4], "local_vertex,nx,ny,nz");
+            line(out[5], "local_vertex,u,v");
+            line(out[6], "local_vertex,tangent_x,tangent_y,tangent_z,flip_y");
+            line(out[7], "local_triangle,triangle_index,tile_id,v0,v1,v2");
+            line(out[8], "tile_id,neighbor_tile_id,neighbor_chunk");
+
+            int localTriangle = 0;
+            for (int local = 0; local < members.length; local++) {
+                UnrealTileCsvExporter.TileInfo tile = data.tiles[members[local]];
+                line(out[0], String.format(
+                        Locale.US, "%d,%d,%s,%d,%d,%d",
+                        local, tile.tileId, tile.type, localIndex.get(tile.centerVertex),
+                        tile.ringVertexIndices.length, tile.triangleCount
+                ));
+                for (int i = 0; i < tile.ringVertexIndices.length; i++) {
+                    line(out[1], local + "," + i + "," + localIndex.get(tile.ringVertexIndices[i]));
+                }
+                for (int i = 0; i < tile.triangleCount; i++) {
+                    int tri = tile.firstTriangle + i;
+                    line(out[7], String.format(
+                            Locale.US, "%d,%d,%d,%d,%d,%d",
+                            localTriangle++, tri, tile.tileId,
+                            localIndex.get(data.triangles[tri * 3]),
+                            localIndex.get(data.triangles[tri * 3 + 1]),
+                            localIndex.get(data.triangles[tri * 3 + 2])
+                    ));
+                }
+                for (int n = data.neighborOffsets[tile.tileId]; n < data.neighborOffsets[tile.tileId + 1]; n++) {
+                    int neighbor = data.neighborIds[n];
+                    int neighborChunk = chunkOfTile[neighbor];
+                    if (neighborChunk != chunk) {
+                        line(out[8], tile.tileId + "," + neighbor + "," + neighborChunk);
+                        linksByChunk.merge(neighborChunk, 1, Integer::sum);
+                    }
+                }
+            }
+
+            for (int local = 0; local < vertexCount; local++) {
+                int vi = globalVertex[local];
+                double[] p = data.positions;
+                for (int axis = 0; axis < 3; axis++) {
+                    min[axis] = Math.min(min[axis], p[vi * 3 + axis]);
+                    max[axis] = Math.max(max[axis], p[vi * 3 + axis]);
+                }
+                line(out[2], local + "," + vi);
+                line(out[3], String.format(Locale.US, "%d,%.9f,%.9f,%.9f", local, p[vi * 3], p[vi * 3 + 1], p[vi * 3 + 2]));
+                Vec3 n = data.normals != null && vi * 3 < data.normals.length
+                        ? new Vec3(data.normals[vi * 3], data.normals[vi * 3 + 1], data.normals[vi * 3 + 2])
+                        : new Vec3(p[vi * 3], p[vi * 3 + 1], p[vi * 3 + 2]).normalize();
+                line(out[4], String.format(Locale.US, "%d,%.9f,%.9f,%.9f", local, n.x(), n.y(), n.z()));
+                boolean hasUv = data.uvs != null && vi * 2 < data.uvs.length && !Double.isNaN(data.uvs[vi * 2]);
+                line(out[5], hasUv
+                        ? String.format(Locale.US, "%d,%.9f,%.9f", local, data.uvs[vi * 2], data.uvs[vi * 2 + 1])
+                        : local + ",,");
+                double[] tan = data.tangents;
+                if (tan == null || vi * 3 >= tan.length || Double.isNaN(tan[vi * 3])) {
+                    line(out[6], local + ",,,,");
+                } else {
+                    boolean flip = data.tangentFlip != null && data.tangentFlip[vi];
+                    line(out[6], String.format(
+                            Locale.US, "%d,%.9f,%.9f,%.9f,%s",
+                            local, tan[vi * 3], tan[vi * 3 + 1], tan[vi * 3 + 2], flip ? "1" : "0"
+                    ));
+                }
+            }
+        } finally {
+            for (BufferedWriter writer : out) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return new ChunkSummary(name, members.length, vertexCount, triangleCount, min, max, linksByChunk);
+    }
+
+    private static void line(BufferedWriter out, String text) throws IOException {
+        out.write(text);
+        out.newLine();
+    }
+
+    private static void writeManifest(Path file,
+                                      Path directory,
+                                      int tileCount,
+                                      int k,
+                                      int targetTiles,
+                                      int[] cellOfChunk,
+                                      ChunkSummary[] summaries) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectNode root = mapper.createObjectNode();
+        root.put("tileCount", tileCount);
+        root.put("chunkCount", summaries.length);
+        root.put("targetTiles", targetTiles);
+        root.put("faceSplit", k);
+        Path base = file.toAbsolutePath().getParent();
+        root.put("directory", base == null ? directory.toString() : base.relativize(directory.toAbsolutePath()).toString());
+        ArrayNode fileKinds = root.putArray("files");
+        for (String kind : FILES) {
+            fileKinds.add(kind);
+        }
+        ArrayNode chunks = root.putArray("chunks");
+        for (int chunk = 0; chunk < summaries.length; chunk++) {
+            ChunkSummary s = summaries[chunk];
+            int cell = cellOfChunk[chunk];
+            int face = cell / (k * k);
+            ObjectNode node = chunks.addObject();
+            node.put("id", chunk);
+            node.put("name", s.name);
+            node.put("baseFace", face);
+            node.put("cell", cell - face * k * k);
+            node.put("tileCount", s.tileCount);
+            node.put("vertexCount", s.vertexCount);
+            node.put("triangleCount", s.triangleCount);
+            ArrayNode min = node.putArray("boundsMin");
+            ArrayNode max = node.putArray("boundsMax");
+            for (int axis = 0; axis < 3; axis++) {
+                min.add(s.min[axis]);
+                max.add(s.max[axis]);
+            }
+            ArrayNode neighbors = node.putArray("neighbors");
+            s.linksByChunk.forEach((other, links) -> neighbors.addObject().put("chunk", other).put("links", links));
+        }
+        mapper.writeValue(file.toFile(), root);
+    }
+
+    private record ChunkSummary(String name,
+                                int tileCount,
+                                int vertexCount,
+                                int triangleCount,
+                                double[] min,
+                                double[] max,
+                                TreeMap<Integer, Integer> linksByChunk) {
+    }
+}
@@ -0,0 +1,428 @@
+package com.sphererelaxator.unreal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * CSR tile adjacency with k-ring, hop-distance and weighted shortest-path queries. Queries take a
+ * {@link Traversal} owned by the caller and reuse its arrays, so repeated queries allocate nothing;
+ * a traversal is not thread-safe, use one per thread. Tiles are dense indices, as in {@link TilePack}.
+ */
+public final class TileGraph {
+    private static final int TABLE_MAGIC = 0x53524B52;
+    private static final int TABLE_VERSION = 1;
+
+    private final long[] tileIds;
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    public TileGraph(long[] tileIds, int[] offsets, int[] neighbors) {
+        if (offsets.length != tileIds.length + 1 || offsets[tileIds.length] != neighbors.length) {
+            throw new IllegalArgumentException("Adjacency offsets do not match " + tileIds.length + " tiles");
+        }
+        this.tileIds = tileIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    public static TileGraph of(TilePack pack) {
+        return new TileGraph(pack.tileIds(), pack.neighborOffsets(), pack.neighbors());
+    }
+
+    public int tileCount() {
+        return tileIds.length;
+    }
+
+    public long tileId(int tile) {
+        return tileIds[tile];
+    }
+
+    public int degree(int tile) {
+        return offsets[tile + 1] - offsets[tile];
+    }
+
+    public int neighbor(int tile, int k) {
+        return neighbors[offsets[tile] + k];
+    }
+
+    public Traversal newTraversal() {
+        return new Traversal(tileIds.length, neighbors.length + 1);
+    }
+
+    /**
+     * Tiles within {@code k} hops of {@code tile}, the tile itself first, in BFS order (so by hop
+     * distance). Writes into {@code out} (grown when too small, so pass the returned array back in)
+     * and leaves the count and per-tile distances in {@code state}.
+     */
+    public int[] kRing(int tile, int k, Traversal state, int[] out) {
+        state.begin();
+        int[] queue = ensure(out, 64);
+        queue[0] = tile;
+        state.visit(tile, 0);
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int t = queue[head++];
+            int d = state.distance[t];
+            if (d == k) {
+                continue;
+            }
+            for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+                int n = neighbors[i];
+                if (!state.seen(n)) {
+                    state.visit(n, d + 1);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, queue.length * 2);
+                    }
+                    queue[tail++] = n;
+                }
+            }
+        }
+        state.count = tail;
+        return queue;
+    }
+
+    /**
+     * Hop count between two tiles, or -1 if {@code to} is unreachable.
+     */
+    public int hopDistance(int from, int to, Traversal state) {
+        if (from == to) {
+            return 0;
+        }
+        state.begin();
+        int[] queue = state.queue;
+        queue[0] = from;
+        state.visit(from, 0);
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int t = queue[head++];
+            for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+                int n = neighbors[i];
+                if (!state.seen(n)) {
+                    if (n == to) {
+                        return state.distance[t] + 1;
+                    }
+                    state.visit(n, state.distance[t] + 1);
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cheapest path where entering a tile costs {@code tileWeights[tile]} (1 per hop when
+     * {@code tileWeights} is {@code null}; negative weights are not allowed). Writes the tiles
+     * from {@code from} to {@code to} into {@code path} and returns how many were written, or -1
+     * if unreachable; the total cost is left in {@link Traversal#pathCost()}.
+     */
+    public int shortestPath(int from, int to, double[] tileWeights, Traversal state, int[] path) {
+        state.begin();
+        state.cost[from] = 0.0;
+        state.parent[from] = -1;
+        state.visit(from, 0);
+        state.heapSize = 0;
+        state.push(from, 0.0);
+        boolean found = false;
+        while (state.heapSize > 0) {
+            int t = state.pop();
+            if (t == to) {
+                found = true;
+                break;
+            }
+            if (state.settled[t] == state.epoch) {
+                continue;
+            }
+            state.settled[t] = state.epoch;
+            for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+                int n = neighbors[i];
+                double step = tileWeights == null ? 1.0 : tileWeights[n];
+                if (step < 0.0) {
+                    throw new IllegalArgumentException("Negative weight for tile " + n);
+                }
+                double c = state.cost[t] + step;
+                if (!state.seen(n) || c < state.cost[n]) {
+                    state.visit(n, state.distance[t] + 1);
+                    state.cost[n] = c;
+                    state.parent[n] = t;
+                    state.push(n, c);
+                }
+            }
+        }
+        if (!found) {
+            state.pathCost = Double.POSITIVE_INFINITY;
+            return -1;
+        }
+        state.pathCost = state.cost[to];
+        int length = 0;
+        for (int t = to; t >= 0; t = state.parent[t]) {
+            length++;
+        }
+        if (path.length < length) {
+            throw new IllegalArgumentException("Path buffer holds " + path.length + " tiles, need " + length);
+        }
+        int i = length;
+        for (int t = to; t >= 0; t = state.parent[t]) {
+            path[--i] = t;
+        }
+        return length;
+    }
+
+    /**
+     * Writes every tile's k-ring up to {@code radius} hops as a little-endian table:
+     * {@code magic, version, tileCount, radius}, {@code tileCount} tile ids (int64), then
+     * {@code tileCount * (radius + 1) + 1} int32 offsets and the int32 tile indices. Tile
+     * {@code t}'s tiles at exactly {@code d} hops are entries
+     * {@code [offsets[t * (radius + 1) + d], offsets[t * (radius + 1) + d + 1])}.
+     */
+    public void writeKRingTable(Path file, int radius, ForkJoinPool pool) throws IOException {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must be >= 0");
+        }
+        int tileCount = tileIds.length;
+        int stride = radius + 1;
+        int[][] rings = new int[tileCount][];
+        int[][] split = new int[tileCount][];
+        ThreadLocal<Traversal> states = ThreadLocal.withInitial(this::newTraversal);
+        pool.submit(() -> IntStream.range(0, tileCount).parallel().forEach(t -> {
+            Traversal state = states.get();
+            int[] ring = kRing(t, radius, state, state.scratch);
+            state.scratch = ring;
+            rings[t] = Arrays.copyOf(ring, state.count);
+            int[] counts = new int[stride];
+            for (int i = 0; i < state.count; i++) {
+                counts[state.distance[ring[i]]]++;
+            }
+            split[t] = counts;
+        })).join();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(TABLE_MAGIC).putInt(TABLE_VERSION).putInt(tileCount).putInt(radius);
+            for (long id : tileIds) {
+                buffer = drainIfFull(channel, buffer, 8);
+                buffer.putLong(id);
+            }
+            int offset = 0;
+            for (int t = 0; t < tileCount; t++) {
+                for (int d = 0; d < stride; d++) {
+                    buffer = drainIfFull(channel, buffer, 4);
+                    buffer.putInt(offset);
+                    offset += split[t][d];
+                }
+            }
+            buffer = drainIfFull(channel, buffer, 4);
+            buffer.putInt(offset);
+            for (int[] ring : rings) {
+                for (int n : ring) {
+                    buffer = drainIfFull(channel, buffer, 4);
+                    buffer.putInt(n);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static ByteBuffer drainIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static int[] ensure(int[] array, int minLength) {
+        return array != null && array.length >= minLength ? array : new int[minLength];
+    }
+
+    /**
+     * Precomputed k-ring table as written by {@link #writeKRingTable}, read fully into memory.
+     */
+    public static final class KRingTable {
+        private final long[] tileIds;
+        private final int radius;
+        private final int[] offsets;
+        private final int[] tiles;
+
+        private KRingTable(long[] tileIds, int radius, int[] offsets, int[] tiles) {
+            this.tileIds = tileIds;
+            this.radius = radius;
+            this.offsets = offsets;
+            this.tiles = tiles;
+        }
+
+        public static KRingTable read(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.getInt() != TABLE_MAGIC || buffer.getInt() != TABLE_VERSION) {
+                    throw new IOException("unsupported k-ring table format: " + file);
+                }
+                int tileCount = buffer.getInt();
+                int radius = buffer.getInt();
+                long[] ids = new long[tileCount];
+                buffer.asLongBuffer().get(ids);
+                buffer.position(buffer.position() + tileCount * 8);
+                int[] offsets = new int[tileCount * (radius + 1) + 1];
+                buffer.asIntBuffer().get(offsets);
+                buffer.position(buffer.position() + offsets.length * 4);
+                int[] tiles = new int[offsets[offsets.length - 1]];
+                buffer.asIntBuffer().get(tiles);
+                return new KRingTable(ids, radius, offsets, tiles);
+            }
+        }
+
+        public int radius() {
+            return radius;
+        }
+
+        public int tileCount() {
+            return tileIds.length;
+        }
+
+        public long tileId(int tile) {
+            return tileIds[tile];
+        }
+
+        /**
+         * Start of tile {@code tile}'s entries at exactly {@code hops} hops; those at up to
+         * {@code hops} hops are {@code [start(tile, 0), start(tile, hops + 1))}.
+         */
+        public int start(int tile, int hops) {
+            if (hops < 0 || hops > radius + 1) {
+                throw new IllegalArgumentException("hops must be in [0, " + (radius + 1) + "]");
+            }
+            return offsets[tile * (radius + 1) + hops];
+        }
+
+        public int tileAt(int entry) {
+            return tiles[entry];
+        }
+    }
+
+    /**
+     * Reusable per-thread query state. Visited marks are epoch stamps, so starting a query does not
+     * clear any array.
+     */
+    public static final class Traversal {
+        final int[] mark;
+        final int[] settled;
+        final int[] distance;
+        final int[] parent;
+        final double[] cost;
+        final int[] queue;
+        final int[] heap;
+        final double[] heapKey;
+        int heapSize;
+        int epoch;
+        int count;
+        double pathCost;
+        int[] scratch;
+
+        private Traversal(int tileCount, int heapCapacity) {
+            mark = new int[tileCount];
+            settled = new int[tileCount];
+            distance = new int[tileCount];
+            parent = new int[tileCount];
+            cost = new double[tileCount];
+            queue = new int[Math.max(1, tileCount)];
+            heap = new int[heapCapacity];
+            heapKey = new double[heapCapacity];
+        }
+
+        /**
+         * Tiles written by the last {@link #kRing} call.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Hop distance of {@code tile} in the last query, or -1 if it was not reached.
+         */
+        public int distance(int tile) {
+            return seen(tile) ? distance[tile] : -1;
+        }
+
+        public double pathCost() {
+            return pathCost;
+        }
+
+        void begin() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                Arrays.fill(settled, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean seen(int tile) {
+            return mark[tile] == epoch;
+        }
+
+        void visit(int tile, int hops) {
+            mark[tile] = epoch;
+            distance[tile] = hops;
+        }
+
+        /**
+         * Binary min-heap of (tile, cost) entries; a tile may be pushed again with a lower cost and
+         * its stale entries are skipped once the tile is settled.
+         */
+        void push(int tile, double key) {
+            int i = heapSize++;
+            while (i > 0) {
+                int p = (i - 1) >> 1;
+                if (heapKey[p] <= key) {
+                    break;
+                }
+                heap[i] = heap[p];
+                heapKey[i] = heapKey[p];
+                i = p;
+            }
+            heap[i] = tile;
+            heapKey[i] = key;
+        }
+
+        int pop() {
+            int top = heap[0];
+            int last = heap[--heapSize];
+            double lastKey = heapKey[heapSize];
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= heapSize) {
+                    break;
+                }
+                if (c + 1 < heapSize && heapKey[c + 1] < heapKey[c]) {
+                    c++;
+                }
+                if (lastKey <= heapKey[c]) {
+                    break;
+                }
+                heap[i] = heap[c];
+                heapKey[i] = heapKey[c];
+                i = c;
+            }
+            heap[i] = last;
+            heapKey[i] = lastKey;
+            return top;
+        }
+    }
+}
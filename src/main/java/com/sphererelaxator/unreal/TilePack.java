@@ -0,0 +1,145 @@
+package com.sphererelaxator.unreal;
+
+import com.sphererelaxator.mesh.LongIntHashMap;
+import com.sphererelaxator.mesh.TileLocator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tile geometry and adjacency read back from a tile CSV pack ({@code <prefix>_tile_centers.csv},
+ * {@code <prefix>_tile_vertex_positions.csv}, {@code <prefix>_tile_neighbors.csv}) as written by
+ * {@link UnrealTileCsvExporter}. Tiles are densely indexed in center-file order; rings are packed
+ * {@code xyz} in {@code vertex_order}, neighbours are dense indices.
+ */
+public record TilePack(long[] tileIds,
+                       double[] centers,
+                       int[] ringOffsets,
+                       double[] ringPositions,
+                       int[] neighborOffsets,
+                       int[] neighbors) {
+
+    public int tileCount() {
+        return tileIds.length;
+    }
+
+    public int ringSize(int tile) {
+        return ringOffsets[tile + 1] - ringOffsets[tile];
+    }
+
+    public TileLocator locator() {
+        return TileLocator.build(tileIds, centers, ringOffsets, ringPositions, neighborOffsets, neighbors);
+    }
+
+    public static boolean exists(Path prefix) {
+        return Files.isRegularFile(Path.of(prefix + "_tile_centers.csv"));
+    }
+
+    /**
+     * The files {@link #read} loads for {@code prefix}.
+     */
+    public static List<Path> files(Path prefix) {
+        return List.of(
+                Path.of(prefix + "_tile_centers.csv"),
+                Path.of(prefix + "_tile_vertex_positions.csv"),
+                Path.of(prefix + "_tile_neighbors.csv")
+        );
+    }
+
+    public static TilePack read(Path prefix) throws IOException {
+        Columns centerRows = Columns.read(Path.of(prefix + "_tile_centers.csv"), 0, 2, 3, 4);
+        int tileCount = centerRows.rows;
+        long[] tileIds = new long[tileCount];
+        double[] centers = new double[tileCount * 3];
+        LongIntHashMap index = new LongIntHashMap(tileCount);
+        for (int t = 0; t < tileCount; t++) {
+            tileIds[t] = (long) centerRows.values[t * 4];
+            centers[t * 3] = centerRows.values[t * 4 + 1];
+            centers[t * 3 + 1] = centerRows.values[t * 4 + 2];
+            centers[t * 3 + 2] = centerRows.values[t * 4 + 3];
+            if (index.putIfAbsent(tileIds[t], t) != -1) {
+                throw new IllegalArgumentException("Duplicate tile id " + tileIds[t] + " in " + prefix);
+            }
+        }
+
+        Columns ringRows = Columns.read(Path.of(prefix + "_tile_vertex_positions.csv"), 0, 1, 3, 4, 5);
+        int[] ringOffsets = new int[tileCount + 1];
+        int[] rowTile = new int[ringRows.rows];
+        for (int r = 0; r < ringRows.rows; r++) {
+            rowTile[r] = tileIndex(index, (long) ringRows.values[r * 5], prefix);
+            ringOffsets[rowTile[r] + 1]++;
+        }
+        for (int t = 0; t < tileCount; t++) {
+            ringOffsets[t + 1] += ringOffsets[t];
+        }
+        double[] ringPositions = new double[ringRows.rows * 3];
+        for (int r = 0; r < ringRows.rows; r++) {
+            int t = rowTile[r];
+            int order = (int) ringRows.values[r * 5 + 1];
+            if (order < 0 || order >= ringOffsets[t + 1] - ringOffsets[t]) {
+                throw new IllegalArgumentException("Bad vertex_order " + order + " for tile " + tileIds[t]);
+            }
+            int o = (ringOffsets[t] + order) * 3;
+            System.arraycopy(ringRows.values, r * 5 + 2, ringPositions, o, 3);
+        }
+
+        Columns neighborRows = Columns.read(Path.of(prefix + "_tile_neighbors.csv"), 0, 1);
+        int[] neighborOffsets = new int[tileCount + 1];
+        int[] from = new int[neighborRows.rows];
+        int[] to = new int[neighborRows.rows];
+        for (int r = 0; r < neighborRows.rows; r++) {
+            from[r] = tileIndex(index, (long) neighborRows.values[r * 2], prefix);
+            to[r] = tileIndex(index, (long) neighborRows.values[r * 2 + 1], prefix);
+            neighborOffsets[from[r] + 1]++;
+        }
+        for (int t = 0; t < tileCount; t++) {
+            neighborOffsets[t + 1] += neighborOffsets[t];
+        }
+        int[] fill = Arrays.copyOf(neighborOffsets, tileCount);
+        int[] neighbors = new int[neighborRows.rows];
+        for (int r = 0; r < neighborRows.rows; r++) {
+            neighbors[fill[from[r]]++] = to[r];
+        }
+        return new TilePack(tileIds, centers, ringOffsets, ringPositions, neighborOffsets, neighbors);
+    }
+
+    private static int tileIndex(LongIntHashMap index, long tileId, Path prefix) {
+        int t = index.get(tileId);
+        if (t < 0) {
+            throw new IllegalArgumentException("Unknown tile id " + tileId + " in " + prefix);
+        }
+        return t;
+    }
+
+    /**
+     * Selected numeric columns of a headed CSV file, row-major.
+     */
+    private record Columns(int rows, double[] values) {
+        static Columns read(Path file, int... columns) throws IOException {
+            double[] values = new double[1024 * columns.length];
+            int rows = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] cells = line.split(",", -1);
+                    if ((rows + 1) * columns.length > values.length) {
+                        values = Arrays.copyOf(values, values.length * 2);
+                    }
+                    for (int c = 0; c < columns.length; c++) {
+                        values[rows * columns.length + c] = Double.parseDouble(cells[columns[c]]);
+                    }
+                    rows++;
+                }
+            }
+            return new Columns(rows, Arrays.copyOf(values, rows * columns.length));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.sphererelaxator.unreal;
+
+import com.sphererelaxator.mesh.Tile;
+import com.sphererelaxator.mesh.TileType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reuses weld maps, edges, neighbours and tile rings for Unreal items that share a triangle array.
+ * Entries are keyed by a hash of the triangles, vertex count and weld tolerance, and verified against
+ * the full triangle array on hit; callers still check the cached weld map against a fresh weld of
+ * the current positions. The optional disk tier survives between runs; a disk entry that cannot be
+ * read or written is reported and skipped.
+ */
+public final class TopologyCache {
+    private static final int FILE_MAGIC = 0x53525443;
+    private static final int FILE_VERSION = 1;
+
+    private final int maxEntries;
+    private final Path directory;
+    private final Map<Key, Topology> entries;
+
+    public TopologyCache(int maxEntries, Path directory) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.directory = directory;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Topology> eldest) {
+                return size() > TopologyCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static TopologyCache inMemory(int maxEntries) {
+        return new TopologyCache(maxEntries, null);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Topology get(int[] triangles, int vertexCount, double weldTolerance) {
+        Key key = Key.of(triangles, vertexCount, weldTolerance);
+        synchronized (entries) {
+            Topology cached = entries.get(key);
+            if (cached != null && Arrays.equals(cached.triangles, triangles)) {
+                return cached;
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key.fileName());
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Topology loaded;
+        try {
+            loaded = read(file);
+        } catch (IOException e) {
+            System.out.println("Notice: ignoring unreadable topology cache file " + file + ": " + e.getMessage());
+            return null;
+        }
+        if (loaded.originalToUnique.length != vertexCount || !Arrays.equals(loaded.triangles, triangles)) {
+            return null;
+        }
+        synchronized (entries) {
+            entries.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    public void put(Topology topology, double weldTolerance) {
+        Key key = Key.of(topology.triangles, topology.originalToUnique.length, weldTolerance);
+        synchronized (entries) {
+            entries.put(key, topology);
+        }
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(key.fileName());
+            Path temp = Files.createTempFile(directory, key.fileName(), ".tmp");
+            try {
+                write(temp, topology);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.out.println("Notice: cannot write topology cache entry to " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void write(Path file, Topology t) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            writeInts(out, t.triangles);
+            writeInts(out, t.originalToUnique);
+            writeInts(out, t.uniqueRepresentative);
+            out.writeInt(t.edges.size());
+            for (int[] e : t.edges) {
+                out.writeInt(e[0]);
+                out.writeInt(e[1]);
+            }
+            out.writeInt(t.neighbors.length);
+            for (int[] nbs : t.neighbors) {
+                writeInts(out, nbs);
+            }
+            out.writeInt(t.tiles.size());
+            for (Tile tile : t.tiles) {
+                out.writeInt(tile.id());
+                out.writeBoolean(tile.type() == TileType.PENTAGON);
+                out.writeInt(tile.vertexIds().size());
+                for (int v : tile.vertexIds()) {
+                    out.writeInt(v);
+                }
+            }
+        }
+    }
+
+    private static Topology read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("unsupported topology cache format");
+            }
+            int[] triangles = readInts(in);
+            int[] originalToUnique = readInts(in);
+            int[] uniqueRepresentative = readInts(in);
+            int edgeCount = in.readInt();
+            List<int[]> edges = new ArrayList<>(edgeCount);
+            for (int i = 0; i < edgeCount; i++) {
+                edges.add(new int[]{in.readInt(), in.readInt()});
+            }
+            int[][] neighbors = new int[in.readInt()][];
+            for (int i = 0; i < neighbors.length; i++) {
+                neighbors[i] = readInts(in);
+            }
+            int tileCount = in.readInt();
+            List<Tile> tiles = new ArrayList<>(tileCount);
+            for (int i = 0; i < tileCount; i++) {
+                int id = in.readInt();
+                TileType type = in.readBoolean() ? TileType.PENTAGON : TileType.HEXAGON;
+                int size = in.readInt();
+                List<Integer> ring = new ArrayList<>(size);
+                for (int k = 0; k < size; k++) {
+                    ring.add(in.readInt());
+                }
+                tiles.add(new Tile(id, type, ring));
+            }
+            return Topology.of(triangles, originalToUnique, uniqueRepresentative, edges, neighbors, tiles);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    public static final class Topology {
+        final int[] triangles;
+        final int[] originalToUnique;
+        final int[] uniqueRepresentative;
+        final List<int[]> edges;
+        final int[][] neighbors;
+        final List<Tile> tiles;
+        final Set<Integer> pentagonVertices;
+
+        private Topology(int[] triangles,
+                         int[] originalToUnique,
+                         int[] uniqueRepresentative,
+                         List<int[]> edges,
+                         int[][] neighbors,
+                         List<Tile> tiles,
+                         Set<Integer> pentagonVertices) {
+            this.triangles = triangles;
+            this.originalToUnique = originalToUnique;
+            this.uniqueRepresentative = uniqueRepresentative;
+            this.edges = edges;
+            this.neighbors = neighbors;
+            this.tiles = tiles;
+            this.pentagonVertices = pentagonVertices;
+        }
+
+        static Topology of(int[] triangles,
+                           int[] originalToUnique,
+                           int[] uniqueRepresentative,
+                           List<int[]> edges,
+                           int[][] neighbors,
+                           List<Tile> tiles) {
+            Set<Integer> pentagonVertices = new HashSet<>();
+            for (Tile t : tiles) {
+                if (t.type() == TileType.PENTAGON) {
+                    pentagonVertices.addAll(t.vertexIds());
+                }
+            }
+            return new Topology(
+                    triangles.clone(),
+                    originalToUnique,
+                    uniqueRepresentative,
+                    Collections.unmodifiableList(edges),
+                    neighbors,
+                    Collections.unmodifiableList(tiles),
+                    Collections.unmodifiableSet(pentagonVertices)
+            );
+        }
+    }
+
+    private record Key(long hash, int triangleCount, int vertexCount, long toleranceBits) {
+        static Key of(int[] triangles, int vertexCount, double weldTolerance) {
+            long h = 0xCBF29CE484222325L;
+            for (int v : triangles) {
+                h = (h ^ v) * 0x100000001B3L;
+                h ^= h >>> 31;
+            }
+            return new Key(h, triangles.length, vertexCount, Double.doubleToLongBits(weldTolerance));
+        }
+
+        String fileName() {
+            return String.format(Locale.US, "%016x_%d_%d_%016x.topo", hash, triangleCount, vertexCount, toleranceBits);
+        }
+    }
+}
@@ -1,21 +1,27 @@
 package com.sphererelaxator.unreal;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sphererelaxator.ConsoleRouter;
 import com.sphererelaxator.mesh.Mesh;
 import com.sphererelaxator.mesh.Tile;
 import com.sphererelaxator.mesh.TileType;
 import com.sphererelaxator.mesh.Vec3;
+import com.sphererelaxator.mesh.VertexWelder;
 import com.sphererelaxator.solver.RelaxationConfig;
 import com.sphererelaxator.solver.RelaxationMetrics;
-import com.sphererelaxator.solver.SphereRelaxator;
+import com.sphererelaxator.solver.RelaxationSolver;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -23,8 +29,17 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public class UnrealFormatProcessor {
     private static final Pattern VECTOR3_PATTERN = Pattern.compile("\\(X=([-0-9.Ee]+),Y=([-0-9.Ee]+),Z=([-0-9.Ee]+)\\)");
@@ -33,9 +48,36 @@ public class UnrealFormatProcessor {
     );
 
     private final ObjectMapper mapper;
+    private final double weldTolerance;
+    private final int itemConcurrency;
+    private final TopologyCache topologyCache;
+    private final RelaxationSolver solver;
 
     public UnrealFormatProcessor(ObjectMapper mapper) {
+        this(mapper, VertexWelder.DEFAULT_TOLERANCE, defaultItemConcurrency(), TopologyCache.inMemory(8));
+    }
+
+    public UnrealFormatProcessor(ObjectMapper mapper,
+                                 double weldTolerance,
+                                 int itemConcurrency,
+                                 TopologyCache topologyCache) {
+        this(mapper, weldTolerance, itemConcurrency, topologyCache, RelaxationSolver.VERTEX);
+    }
+
+    public UnrealFormatProcessor(ObjectMapper mapper,
+                                 double weldTolerance,
+                                 int itemConcurrency,
+                                 TopologyCache topologyCache,
+                                 RelaxationSolver solver) {
         this.mapper = mapper;
+        this.weldTolerance = weldTolerance;
+        this.itemConcurrency = Math.max(1, itemConcurrency);
+        this.topologyCache = topologyCache;
+        this.solver = solver;
+    }
+
+    public static int defaultItemConcurrency() {
+        return Runtime.getRuntime().availableProcessors() >= 4 ? 2 : 1;
     }
 
     public static boolean isUnrealFormat(JsonNode root) {
@@ -50,65 +92,345 @@ public class UnrealFormatProcessor {
                                      Path output,
                                      RelaxationConfig config,
                                      boolean emitUv) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return process(root, output, config, emitUv, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * {@link #process(JsonNode, Path, RelaxationConfig, boolean)} on a caller-owned pool, which is
+     * left running.
+     */
+    public RelaxationMetrics process(JsonNode root,
+                                     Path output,
+                                     RelaxationConfig config,
+                                     boolean emitUv,
+                                     ForkJoinPool pool) throws IOException {
         ArrayNode items = (ArrayNode) root;
-        RelaxationMetrics lastMetrics = null;
+        int solvers = Math.max(1, Math.min(itemConcurrency, items.size()));
+        List<CompletableFuture<RelaxationMetrics>> solved = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            solved.add(new CompletableFuture<>());
+        }
+        BlockingQueue<ParsedItem> parsed = new ArrayBlockingQueue<>(solvers);
+        ExecutorService stages = Executors.newFixedThreadPool(1 + solvers);
 
-        for (JsonNode item : items) {
-            if (!item.isObject()) {
-                continue;
-            }
-            ObjectNode node = (ObjectNode) item;
-            ArrayNode vertArray = requiredArray(node, "Vertiches");
-            ArrayNode triArray = requiredArray(node, "Triangles");
-            ArrayNode tangentArray = node.has("Tangents") && node.get("Tangents").isArray()
-                    ? (ArrayNode) node.get("Tangents")
-                    : null;
-
-            List<Vec3> originalVertices = parseVertices(vertArray);
-            int[] triangles = parseTriangles(triArray);
-            List<TangentData> tangents = tangentArray != null ? parseTangents(tangentArray) : List.of();
-
-            BuildResult built = buildMesh(originalVertices, triangles);
-            SphereRelaxator relaxator = new SphereRelaxator();
-            lastMetrics = relaxator.relax(built.mesh, config);
-
-            Vec3[] uniqueRelaxed = built.mesh.vertices();
-            ArrayNode outVerts = mapper.createArrayNode();
-            ArrayNode outNormals = mapper.createArrayNode();
-            ArrayNode outTangents = mapper.createArrayNode();
-            ArrayNode outUv = mapper.createArrayNode();
-
-            for (int i = 0; i < originalVertices.size(); i++) {
-                int u = built.originalToUnique[i];
-                Vec3 p = uniqueRelaxed[u];
-                Vec3 n = p.normalize();
-                Vec3 t = tangentFromSpherical(n);
-
-                boolean flip = i < tangents.size() ? tangents.get(i).flipY : true;
-                outVerts.add(formatVector3(p));
-                outNormals.add(formatVector3(n));
-                outTangents.add(formatTangent(t, flip));
-                outUv.add(formatUv(n));
+        try {
+            stages.execute(ConsoleRouter.propagate(() -> parseStage(items, parsed, solved, solvers)));
+            for (int w = 0; w < solvers; w++) {
+                stages.execute(ConsoleRouter.propagate(() -> solveStage(parsed, solved, config, emitUv, pool)));
             }
+            return writeInOrder(items, solved, output);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
 
-            node.set("Vertiches", outVerts);
-            node.set("Normals", outNormals);
+    private static void parseStage(ArrayNode items,
+                                   BlockingQueue<ParsedItem> parsed,
+                                   List<CompletableFuture<RelaxationMetrics>> solved,
+                                   int solvers) {
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                JsonNode item = items.get(i);
+                if (!item.isObject()) {
+                    solved.get(i).complete(null);
+                    continue;
+                }
+                try {
+                    parsed.put(parseItem(i, (ObjectNode) item));
+                } catch (RuntimeException e) {
+                    solved.get(i).completeExceptionally(e);
+                }
+            }
+            for (int w = 0; w < solvers; w++) {
+                parsed.put(ParsedItem.END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            boolean hasExistingUv = node.has("UV0") || node.has("UV") || node.has("UVs");
-            if (emitUv || hasExistingUv) {
-                String uvKey = detectUvKey(node);
-                node.set(uvKey, outUv);
+    private void solveStage(BlockingQueue<ParsedItem> parsed,
+                            List<CompletableFuture<RelaxationMetrics>> solved,
+                            RelaxationConfig config,
+                            boolean emitUv,
+                            ForkJoinPool pool) {
+        try {
+            while (true) {
+                ParsedItem item = parsed.take();
+                if (item == ParsedItem.END) {
+                    return;
+                }
+                try {
+                    solved.get(item.index).complete(solveItem(item, config, emitUv, pool));
+                } catch (Throwable e) {
+                    solved.get(item.index).completeExceptionally(e);
+                }
             }
-            node.set("Tangents", outTangents);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
+    private RelaxationMetrics writeInOrder(ArrayNode items,
+                                           List<CompletableFuture<RelaxationMetrics>> solved,
+                                           Path output) throws IOException {
+        RelaxationMetrics lastMetrics = null;
         mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        mapper.writeValue(output.toFile(), root);
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(output.toFile(), JsonEncoding.UTF8)) {
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartArray();
+            for (int i = 0; i < items.size(); i++) {
+                RelaxationMetrics metrics = awaitItem(solved.get(i));
+                if (metrics != null) {
+                    lastMetrics = metrics;
+                }
+                mapper.writeTree(gen, items.get(i));
+                gen.flush();
+            }
+            gen.writeEndArray();
+        }
         return lastMetrics == null
                 ? new RelaxationMetrics(0.0, 0.0, 0.0, 0.0, 0.0, 0.0)
                 : lastMetrics;
     }
 
+    private static RelaxationMetrics awaitItem(CompletableFuture<RelaxationMetrics> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Unreal-like processing cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static ParsedItem parseItem(int index, ObjectNode node) {
+        ArrayNode vertArray = requiredArray(node, "Vertiches");
+        ArrayNode triArray = requiredArray(node, "Triangles");
+        ArrayNode tangentArray = node.has("Tangents") && node.get("Tangents").isArray()
+                ? (ArrayNode) node.get("Tangents")
+                : null;
+
+        List<Vec3> originalVertices = parseVertices(vertArray);
+        int[] triangles = parseTriangles(triArray);
+        List<TangentData> tangents = tangentArray != null ? parseTangents(tangentArray) : List.of();
+        return new ParsedItem(index, node, originalVertices, triangles, tangents);
+    }
+
+    private RelaxationMetrics solveItem(ParsedItem item,
+                                        RelaxationConfig config,
+                                        boolean emitUv,
+                                        ForkJoinPool pool) {
+        List<Vec3> originalVertices = item.vertices;
+        List<TangentData> tangents = item.tangents;
+        ObjectNode node = item.node;
+
+        BuildResult built = buildMesh(originalVertices, item.triangles, weldTolerance, topologyCache, pool);
+        RelaxationMetrics metrics = solver.relax(built.mesh, config, pool);
+
+        Vec3[] uniqueRelaxed = built.mesh.vertices();
+        FormattedVertices formatted = formatUniqueVertices(uniqueRelaxed, pool);
+        ArrayNode outVerts = mapper.createArrayNode();
+        ArrayNode outNormals = mapper.createArrayNode();
+        ArrayNode outTangents = mapper.createArrayNode();
+        ArrayNode outUv = mapper.createArrayNode();
+
+        for (int i = 0; i < originalVertices.size(); i++) {
+            int u = built.originalToUnique[i];
+            boolean flip = i < tangents.size() ? tangents.get(i).flipY : true;
+            outVerts.add(formatted.positions[u]);
+            outNormals.add(formatted.normals[u]);
+            outTangents.add(formatTangent(formatted.tangents[u], flip));
+            outUv.add(formatted.uvs[u]);
+        }
+
+        node.set("Vertiches", outVerts);
+        node.set("Normals", outNormals);
+
+        boolean hasExistingUv = node.has("UV0") || node.has("UV") || node.has("UVs");
+        if (emitUv || hasExistingUv) {
+            String uvKey = detectUvKey(node);
+            node.set(uvKey, outUv);
+        }
+        node.set("Tangents", outTangents);
+        return metrics;
+    }
+
+    /**
+     * In-memory counterpart of {@link #process} for one fan-triangulated mesh given as packed
+     * {@code xyz} positions: welds, relaxes and recomputes normals, tangents and UVs without any JSON
+     * round trip. Results are per original vertex; tangents are flagged {@code bFlipTangentY} like
+     * items that carry no input tangents.
+     */
+    public RelaxedMesh relax(double[] positions, int[] triangles, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return relax(positions, triangles, config, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * {@link #relax(double[], int[], RelaxationConfig)} on a caller-owned pool, which is left running.
+     */
+    public RelaxedMesh relax(double[] positions, int[] triangles, RelaxationConfig config, ForkJoinPool pool) {
+        List<Vec3> vertices = packedView(positions);
+        BuildResult built = buildMesh(vertices, triangles, weldTolerance, topologyCache, pool);
+        RelaxationMetrics metrics = solver.relax(built.mesh, config, pool);
+        Vec3[] unique = built.mesh.vertices();
+        UniqueAttributes attributes = uniqueAttributes(unique, pool);
+
+        int count = vertices.size();
+        double[] outPositions = new double[count * 3];
+        double[] outNormals = new double[count * 3];
+        double[] outTangents = new double[count * 3];
+        double[] outUvs = new double[count * 2];
+        boolean[] flip = new boolean[count];
+        int[] originalToUnique = built.originalToUnique;
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> {
+            int u = originalToUnique[i];
+            Vec3 p = unique[u];
+            outPositions[i * 3] = p.x();
+            outPositions[i * 3 + 1] = p.y();
+            outPositions[i * 3 + 2] = p.z();
+            System.arraycopy(attributes.normals, u * 3, outNormals, i * 3, 3);
+            System.arraycopy(attributes.tangents, u * 3, outTangents, i * 3, 3);
+            System.arraycopy(attributes.uvs, u * 2, outUvs, i * 2, 2);
+            flip[i] = true;
+        })).join();
+        return new RelaxedMesh(outPositions, triangles, outNormals, outUvs, outTangents, flip, metrics);
+    }
+
+    /**
+     * {@link #relax(double[], int[], RelaxationConfig)} for every object item of an Unreal-like
+     * document, in order; items that carry tangents keep their {@code bFlipTangentY} flags.
+     */
+    public List<RelaxedMesh> relaxAll(JsonNode root, RelaxationConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.threads()));
+        try {
+            return relaxAll(root, config, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * {@link #relaxAll(JsonNode, RelaxationConfig)} on a caller-owned pool, which is left running.
+     */
+    public List<RelaxedMesh> relaxAll(JsonNode root, RelaxationConfig config, ForkJoinPool pool) {
+        List<RelaxedMesh> meshes = new ArrayList<>();
+        for (int i = 0; i < root.size(); i++) {
+            if (!root.get(i).isObject()) {
+                continue;
+            }
+            ParsedItem item = parseItem(i, (ObjectNode) root.get(i));
+            double[] positions = new double[item.vertices.size() * 3];
+            for (int v = 0; v < item.vertices.size(); v++) {
+                Vec3 p = item.vertices.get(v);
+                positions[v * 3] = p.x();
+                positions[v * 3 + 1] = p.y();
+                positions[v * 3 + 2] = p.z();
+            }
+            RelaxedMesh mesh = relax(positions, item.triangles, config, pool);
+            for (int v = 0; v < Math.min(item.tangents.size(), mesh.tangentFlip().length); v++) {
+                mesh.tangentFlip()[v] = item.tangents.get(v).flipY;
+            }
+            meshes.add(mesh);
+        }
+        return meshes;
+    }
+
+    /**
+     * Welded solver mesh of a packed {@code xyz} triangle mesh, for callers that relax the same
+     * topology many times.
+     */
+    public Mesh weldedMesh(double[] positions, int[] triangles, ForkJoinPool pool) {
+        return buildMesh(packedView(positions), triangles, weldTolerance, topologyCache, pool).mesh;
+    }
+
+    /**
+     * Welded solver mesh of the first object item of an Unreal-like document.
+     */
+    public Mesh firstItemMesh(JsonNode root, ForkJoinPool pool) {
+        for (int i = 0; i < root.size(); i++) {
+            if (root.get(i).isObject()) {
+                ParsedItem item = parseItem(i, (ObjectNode) root.get(i));
+                return buildMesh(item.vertices, item.triangles, weldTolerance, topologyCache, pool).mesh;
+            }
+        }
+        throw new IllegalArgumentException("Unreal-like input has no mesh items");
+    }
+
+    private static List<Vec3> packedView(double[] xyz) {
+        return new AbstractList<>() {
+            @Override
+            public Vec3 get(int index) {
+                return new Vec3(xyz[index * 3], xyz[index * 3 + 1], xyz[index * 3 + 2]);
+            }
+
+            @Override
+            public int size() {
+                return xyz.length / 3;
+            }
+        };
+    }
+
+    private static UniqueAttributes uniqueAttributes(Vec3[] unique, ForkJoinPool pool) {
+        int n = unique.length;
+        double[] normals = new double[n * 3];
+        double[] tangents = new double[n * 3];
+        double[] uvs = new double[n * 2];
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(u -> {
+            Vec3 normal = unique[u].normalize();
+            Vec3 tangent = tangentFromSpherical(normal);
+            normals[u * 3] = normal.x();
+            normals[u * 3 + 1] = normal.y();
+            normals[u * 3 + 2] = normal.z();
+            tangents[u * 3] = tangent.x();
+            tangents[u * 3 + 1] = tangent.y();
+            tangents[u * 3 + 2] = tangent.z();
+            sphericalUv(normal, uvs, u * 2);
+        })).join();
+        return new UniqueAttributes(normals, tangents, uvs);
+    }
+
+    private static FormattedVertices formatUniqueVertices(Vec3[] unique, ForkJoinPool pool) {
+        int n = unique.length;
+        UniqueAttributes attributes = uniqueAttributes(unique, pool);
+        double[] normals = attributes.normals;
+        double[] tangents = attributes.tangents;
+        double[] uvs = attributes.uvs;
+
+        FormattedVertices out = new FormattedVertices(n);
+        int chunks = Math.max(1, Math.min(n, pool.getParallelism() * 4));
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = (int) ((long) n * chunk / chunks);
+            int to = (int) ((long) n * (chunk + 1) / chunks);
+            for (int u = from; u < to; u++) {
+                Vec3 p = unique[u];
+                out.positions[u] = formatVector3(p.x(), p.y(), p.z());
+                out.normals[u] = formatVector3(normals[u * 3], normals[u * 3 + 1], normals[u * 3 + 2]);
+                out.tangents[u] = formatVector3(tangents[u * 3], tangents[u * 3 + 1], tangents[u * 3 + 2]);
+                out.uvs[u] = String.format(Locale.US, "(X=%.6f,Y=%.6f)", uvs[u * 2], uvs[u * 2 + 1]);
+            }
+        })).join();
+        return out;
+    }
+
     private static String detectUvKey(ObjectNode node) {
         if (node.has("UV0")) {
             return "UV0";
@@ -138,7 +460,7 @@ public class UnrealFormatProcessor {
         return ortho.scale(1.0 / len);
     }
 
-    private static String formatUv(Vec3 n) {
+    private static void sphericalUv(Vec3 n, double[] out, int offset) {
         double u = 0.5 + Math.atan2(n.z(), n.x()) / (2.0 * Math.PI);
         if (u < 0.0) {
             u += 1.0;
@@ -146,36 +468,56 @@ public class UnrealFormatProcessor {
         if (u > 1.0) {
             u -= 1.0;
         }
-        double v = 0.5 - Math.asin(clamp(n.y(), -1.0, 1.0)) / Math.PI;
-        return String.format(Locale.US, "(X=%.6f,Y=%.6f)", u, v);
+        out[offset] = u;
+        out[offset + 1] = 0.5 - Math.asin(clamp(n.y(), -1.0, 1.0)) / Math.PI;
     }
 
     private static double clamp(double v, double lo, double hi) {
         return Math.max(lo, Math.min(hi, v));
     }
 
-    private static BuildResult buildMesh(List<Vec3> originalVertices, int[] triangles) {
-        Map<String, Integer> keyToUnique = new HashMap<>();
-        List<Vec3> unique = new ArrayList<>();
-        int[] originalToUnique = new int[originalVertices.size()];
-
-        for (int i = 0; i < originalVertices.size(); i++) {
-            Vec3 p = originalVertices.get(i);
-            String key = quantizedKey(p);
-            Integer idx = keyToUnique.get(key);
-            if (idx == null) {
-                idx = unique.size();
-                unique.add(p);
-                keyToUnique.put(key, idx);
+    /**
+     * A cached topology is used only when a fresh weld of the current positions gives the same
+     * weld map, so vertices that stopped or started coinciding both invalidate it; the weld is the
+     * cheap part of building a topology.
+     */
+    private static BuildResult buildMesh(List<Vec3> originalVertices,
+                                         int[] triangles,
+                                         double weldTolerance,
+                                         TopologyCache cache,
+                                         ForkJoinPool pool) {
+        TopologyCache.Topology topology = cache == null
+                ? null
+                : cache.get(triangles, originalVertices.size(), weldTolerance);
+        VertexWelder.WeldResult weld = VertexWelder.weld(originalVertices, weldTolerance, pool);
+        if (topology != null && !Arrays.equals(topology.originalToUnique, weld.originalToUnique())) {
+            topology = null;
+        }
+        if (topology == null) {
+            topology = buildTopology(weld, triangles);
+            if (cache != null) {
+                cache.put(topology, weldTolerance);
             }
-            originalToUnique[i] = idx;
         }
 
-        Vec3[] verts = unique.toArray(new Vec3[0]);
+        int[] representative = topology.uniqueRepresentative;
+        Vec3[] verts = new Vec3[representative.length];
+        for (int u = 0; u < verts.length; u++) {
+            verts[u] = originalVertices.get(representative[u]);
+        }
         boolean[] fixed = new boolean[verts.length];
+        Mesh mesh = new Mesh(verts, fixed, topology.edges, topology.tiles, topology.neighbors, topology.pentagonVertices);
+        return new BuildResult(mesh, topology.originalToUnique);
+    }
+
+    private static TopologyCache.Topology buildTopology(VertexWelder.WeldResult weld, int[] triangles) {
+        int[] originalToUnique = weld.originalToUnique();
+        int[] uniqueRepresentative = weld.uniqueRepresentative();
+        int uniqueCount = weld.uniqueCount();
+
         Set<Long> edgeKeys = new LinkedHashSet<>();
-        List<Set<Integer>> neighborSets = new ArrayList<>(verts.length);
-        for (int i = 0; i < verts.length; i++) {
+        List<Set<Integer>> neighborSets = new ArrayList<>(uniqueCount);
+        for (int i = 0; i < uniqueCount; i++) {
             neighborSets.add(new HashSet<>());
         }
 
@@ -189,24 +531,16 @@ public class UnrealFormatProcessor {
         }
 
         List<Tile> tiles = buildTilesFromFans(triangles, originalToUnique);
-        Set<Integer> pentagonVertices = new HashSet<>();
-        for (Tile t : tiles) {
-            if (t.type() == TileType.PENTAGON) {
-                pentagonVertices.addAll(t.vertexIds());
-            }
-        }
 
         List<int[]> edges = new ArrayList<>(edgeKeys.size());
         for (long key : edgeKeys) {
             edges.add(new int[]{(int) (key >>> 32), (int) key});
         }
-        int[][] neighbors = new int[verts.length][];
-        for (int i = 0; i < verts.length; i++) {
+        int[][] neighbors = new int[uniqueCount][];
+        for (int i = 0; i < uniqueCount; i++) {
             neighbors[i] = neighborSets.get(i).stream().mapToInt(Integer::intValue).toArray();
         }
-
-        Mesh mesh = new Mesh(verts, fixed, edges, tiles, neighbors, pentagonVertices);
-        return new BuildResult(mesh, originalToUnique);
+        return TopologyCache.Topology.of(triangles, originalToUnique, uniqueRepresentative, edges, neighbors, tiles);
     }
 
     private static List<Tile> buildTilesFromFans(int[] triangles, int[] originalToUnique) {
@@ -268,10 +602,6 @@ public class UnrealFormatProcessor {
         }
     }
 
-    private static String quantizedKey(Vec3 p) {
-        return String.format(Locale.US, "%.6f|%.6f|%.6f", p.x(), p.y(), p.z());
-    }
-
     private static List<Vec3> parseVertices(ArrayNode array) {
         List<Vec3> result = new ArrayList<>(array.size());
         for (JsonNode n : array) {
@@ -321,17 +651,12 @@ public class UnrealFormatProcessor {
         );
     }
 
-    private static String formatVector3(Vec3 v) {
-        return String.format(Locale.US, "(X=%.6f,Y=%.6f,Z=%.6f)", v.x(), v.y(), v.z());
+    private static String formatVector3(double x, double y, double z) {
+        return String.format(Locale.US, "(X=%.6f,Y=%.6f,Z=%.6f)", x, y, z);
     }
 
-    private static String formatTangent(Vec3 tangent, boolean flip) {
-        return String.format(
-                Locale.US,
-                "(TangentX=(X=%.6f,Y=%.6f,Z=%.6f),bFlipTangentY=%s)",
-                tangent.x(), tangent.y(), tangent.z(),
-                flip ? "True" : "False"
-        );
+    private static String formatTangent(String tangentVector, boolean flip) {
+        return "(TangentX=" + tangentVector + ",bFlipTangentY=" + (flip ? "True" : "False") + ")";
     }
 
     private static ArrayNode requiredArray(ObjectNode node, String key) {
@@ -342,9 +667,47 @@ public class UnrealFormatProcessor {
         return (ArrayNode) value;
     }
 
+    /**
+     * Relaxed mesh as packed arrays: {@code xyz} per vertex for positions, normals and tangents,
+     * {@code uv} per vertex for UVs.
+     */
+    public record RelaxedMesh(double[] positions,
+                              int[] triangles,
+                              double[] normals,
+                              double[] uvs,
+                              double[] tangents,
+                              boolean[] tangentFlip,
+                              RelaxationMetrics metrics) {
+    }
+
     private record BuildResult(Mesh mesh, int[] originalToUnique) {
     }
 
+    private record UniqueAttributes(double[] normals, double[] tangents, double[] uvs) {
+    }
+
     private record TangentData(Vec3 tangent, boolean flipY) {
     }
+
+    private record ParsedItem(int index,
+                              ObjectNode node,
+                              List<Vec3> vertices,
+                              int[] triangles,
+                              List<TangentData> tangents) {
+        static final ParsedItem END = new ParsedItem(-1, null, List.of(), new int[0], List.of());
+    }
+
+    private static final class FormattedVertices {
+        final String[] positions;
+        final String[] normals;
+        final String[] tangents;
+        final String[] uvs;
+
+        FormattedVertices(int count) {
+            this.positions = new String[count];
+            this.normals = new String[count];
+            this.tangents = new String[count];
+            this.uvs = new String[count];
+        }
+    }
 }
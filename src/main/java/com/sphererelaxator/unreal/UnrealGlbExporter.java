@@ -0,0 +1,436 @@
+package com.sphererelaxator.unreal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sphererelaxator.mesh.LongIntHashMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary glTF 2.0 ({@code .glb}) export of fan-triangulated tile meshes. Each primitive becomes one
+ * mesh and node with tightly packed float {@code POSITION}, {@code NORMAL}, {@code TANGENT} and
+ * {@code TEXCOORD_0} buffers, {@code uint32} indices and a float {@code _TILE_ID} attribute holding
+ * the tile (fan) index as numbered in the tile CSV pack. A vertex shared by several tiles is
+ * duplicated so every vertex carries exactly one tile id.
+ * <p>
+ * Input arrays are in Unreal space (left-handed, Z up, centimetres) and are written in glTF space
+ * (right-handed, Y up, metres) with the mapping Unreal's own glTF exporter uses, so the importer gets
+ * the original coordinates back and clockwise Unreal front faces become counter-clockwise glTF ones.
+ * Generated meshes wind counter-clockwise around the outward normal in their raw coordinates, so
+ * their triangles are written in reverse order to face outwards after the mirror too.
+ * Buffers are streamed from the primitive arrays through a {@link FileChannel}.
+ */
+public final class UnrealGlbExporter {
+    private static final int GLB_MAGIC = 0x46546C67;
+    private static final int GLB_VERSION = 2;
+    private static final int CHUNK_JSON = 0x4E4F534A;
+    private static final int CHUNK_BIN = 0x004E4942;
+    private static final int FLOAT = 5126;
+    private static final int UNSIGNED_INT = 5125;
+    private static final int ARRAY_BUFFER = 34962;
+    private static final int ELEMENT_ARRAY_BUFFER = 34963;
+    private static final double UNREAL_UNITS_PER_METER = 100.0;
+    /** Largest tile index a float attribute holds exactly. */
+    private static final int MAX_TILE_ID = 1 << 24;
+
+    private UnrealGlbExporter() {
+    }
+
+    /**
+     * One fan-triangulated mesh as packed arrays: {@code xyz} per vertex for positions, normals and
+     * tangents, {@code uv} per vertex for UVs. Optional arrays may be {@code null}; missing normals
+     * fall back to the radial direction, a {@code NaN} UV or tangent entry is written as zero or
+     * {@code +X}. {@code unrealWinding} is {@code true} for triangles in Unreal's winding (Unreal-like
+     * input) and {@code false} for the counter-clockwise winding of generated meshes.
+     */
+    public record Primitive(double[] positions,
+                            int[] triangles,
+                            double[] normals,
+                            double[] uvs,
+                            double[] tangents,
+                            boolean[] tangentFlip,
+                            boolean unrealWinding) {
+
+        public static Primitive of(UnrealFormatProcessor.RelaxedMesh mesh, boolean unrealWinding) {
+            return new Primitive(mesh.positions(), mesh.triangles(), mesh.normals(), mesh.uvs(),
+                    mesh.tangents(), mesh.tangentFlip(), unrealWinding);
+        }
+    }
+
+    /**
+     * Primitives of the object items of an Unreal-like document, as they stand (no relaxation).
+     */
+    public static List<Primitive> primitives(JsonNode root) {
+        if (!UnrealFormatProcessor.isUnrealFormat(root)) {
+            throw new IllegalArgumentException("Input is not Unreal-like format (expected array with Vertiches/Triangles).");
+        }
+        List<Primitive> primitives = new ArrayList<>(root.size());
+        for (JsonNode item : root) {
+            if (item instanceof ObjectNode node) {
+                primitives.add(UnrealTileCsvExporter.parseItem(node));
+            }
+        }
+        return primitives;
+    }
+
+    public static void write(Path output, Primitive primitive) throws IOException {
+        write(output, List.of(primitive));
+    }
+
+    public static void write(Path output, List<Primitive> primitives) throws IOException {
+        List<Layout> layouts = new ArrayList<>(primitives.size());
+        long binLength = 0;
+        for (Primitive primitive : primitives) {
+            Layout layout = new Layout(primitive, binLength);
+            layouts.add(layout);
+            binLength = layout.end;
+        }
+        if (binLength > Integer.MAX_VALUE - 64) {
+            throw new IllegalArgumentException("Mesh too large for a single GLB buffer (" + binLength + " bytes)");
+        }
+
+        byte[] json = new ObjectMapper().writeValueAsBytes(document(layouts, binLength));
+        int jsonLength = align4(json.length);
+        int binChunkLength = align4((int) binLength);
+        long totalLength = 12L + 8L + jsonLength + 8L + binChunkLength;
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(GLB_MAGIC).putInt(GLB_VERSION).putInt((int) totalLength);
+            buffer.putInt(jsonLength).putInt(CHUNK_JSON);
+            for (int i = 0; i < jsonLength; i++) {
+                buffer = drainIfFull(channel, buffer, 1);
+                buffer.put(i < json.length ? json[i] : (byte) ' ');
+            }
+            buffer = drainIfFull(channel, buffer, 8);
+            buffer.putInt(binChunkLength).putInt(CHUNK_BIN);
+            for (Layout layout : layouts) {
+                buffer = writeBuffers(channel, buffer, layout);
+            }
+            for (long i = binLength; i < binChunkLength; i++) {
+                buffer = drainIfFull(channel, buffer, 1);
+                buffer.put((byte) 0);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static ObjectNode document(List<Layout> layouts, long binLength) {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        root.putObject("asset").put("version", "2.0").put("generator", "sphere-relaxator");
+        root.put("scene", 0);
+        ArrayNode sceneNodes = root.putArray("scenes").addObject().putArray("nodes");
+        ArrayNode nodes = root.putArray("nodes");
+        ArrayNode meshes = root.putArray("meshes");
+        ArrayNode accessors = root.putArray("accessors");
+        ArrayNode views = root.putArray("bufferViews");
+        root.putArray("buffers").addObject().put("byteLength", binLength);
+
+        for (int m = 0; m < layouts.size(); m++) {
+            Layout layout = layouts.get(m);
+            ObjectNode attributes = mapper.createObjectNode();
+            attributes.put("POSITION", accessor(accessors, views, layout.positionOffset, layout.vertexCount, "VEC3", FLOAT,
+                    ARRAY_BUFFER));
+            ObjectNode position = (ObjectNode) accessors.get(accessors.size() - 1);
+            ArrayNode min = position.putArray("min");
+            ArrayNode max = position.putArray("max");
+            for (int axis = 0; axis < 3; axis++) {
+                min.add(layout.bounds[axis]);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                max.add(layout.bounds[3 + axis]);
+            }
+            attributes.put("NORMAL", accessor(accessors, views, layout.normalOffset, layout.vertexCount, "VEC3", FLOAT,
+                    ARRAY_BUFFER));
+            if (layout.tangentOffset >= 0) {
+                attributes.put("TANGENT", accessor(accessors, views, layout.tangentOffset, layout.vertexCount, "VEC4",
+                        FLOAT, ARRAY_BUFFER));
+            }
+            if (layout.uvOffset >= 0) {
+                attributes.put("TEXCOORD_0", accessor(accessors, views, layout.uvOffset, layout.vertexCount, "VEC2",
+                        FLOAT, ARRAY_BUFFER));
+            }
+            attributes.put("_TILE_ID", accessor(accessors, views, layout.tileOffset, layout.vertexCount, "SCALAR", FLOAT,
+                    ARRAY_BUFFER));
+            int indices = accessor(accessors, views, layout.indexOffset, layout.indices.length, "SCALAR", UNSIGNED_INT,
+                    ELEMENT_ARRAY_BUFFER);
+
+            ObjectNode mesh = meshes.addObject();
+            mesh.put("name", "tiles_" + m);
+            ObjectNode primitive = mesh.putArray("primitives").addObject();
+            primitive.set("attributes", attributes);
+            primitive.put("indices", indices);
+            primitive.put("mode", 4);
+            mesh.putObject("extras").put("tileCount", layout.tileCount);
+            nodes.addObject().put("name", "tiles_" + m).put("mesh", m);
+            sceneNodes.add(m);
+        }
+        return root;
+    }
+
+    private static int accessor(ArrayNode accessors,
+                                ArrayNode views,
+                                long offset,
+                                int count,
+                                String type,
+                                int componentType,
+                                int target) {
+        int components = switch (type) {
+            case "VEC2" -> 2;
+            case "VEC3" -> 3;
+            case "VEC4" -> 4;
+            default -> 1;
+        };
+        views.addObject()
+                .put("buffer", 0)
+                .put("byteOffset", offset)
+                .put("byteLength", 4L * components * count)
+                .put("target", target);
+        accessors.addObject()
+                .put("bufferView", views.size() - 1)
+                .put("componentType", componentType)
+                .put("count", count)
+                .put("type", type);
+        return accessors.size() - 1;
+    }
+
+    private static ByteBuffer writeBuffers(FileChannel channel, ByteBuffer buffer, Layout layout) throws IOException {
+        Primitive p = layout.primitive;
+        int[] source = layout.source;
+        int count = layout.vertexCount;
+        for (int v = 0; v < count; v++) {
+            int s = source == null ? v : source[v];
+            buffer = drainIfFull(channel, buffer, 12);
+            putAxes(buffer, p.positions, s, 1.0 / UNREAL_UNITS_PER_METER);
+        }
+        for (int v = 0; v < count; v++) {
+            int s = source == null ? v : source[v];
+            buffer = drainIfFull(channel, buffer, 12);
+            if (p.normals != null && s * 3 + 2 < p.normals.length) {
+                putAxes(buffer, p.normals, s, 1.0);
+            } else {
+                double x = p.positions[s * 3];
+                double y = p.positions[s * 3 + 1];
+                double z = p.positions[s * 3 + 2];
+                double length = Math.sqrt(x * x + y * y + z * z);
+                putAxes(buffer, p.positions, s, length > 0.0 ? 1.0 / length : 0.0);
+            }
+        }
+        if (layout.tangentOffset >= 0) {
+            for (int v = 0; v < count; v++) {
+                int s = source == null ? v : source[v];
+                buffer = drainIfFull(channel, buffer, 16);
+                if (s * 3 + 2 < p.tangents.length && !Double.isNaN(p.tangents[s * 3])) {
+                    putAxes(buffer, p.tangents, s, 1.0);
+                } else {
+                    buffer.putFloat(0.0f).putFloat(0.0f).putFloat(-1.0f);
+                }
+                // The axis mirror reverses the bitangent handedness, so bFlipTangentY maps to w = +1.
+                boolean flip = p.tangentFlip != null && s < p.tangentFlip.length && p.tangentFlip[s];
+                buffer.putFloat(flip ? 1.0f : -1.0f);
+            }
+        }
+        if (layout.uvOffset >= 0) {
+            for (int v = 0; v < count; v++) {
+                int s = source == null ? v : source[v];
+                buffer = drainIfFull(channel, buffer, 8);
+                boolean valid = s * 2 + 1 < p.uvs.length && !Double.isNaN(p.uvs[s * 2]);
+                buffer.putFloat(valid ? (float) p.uvs[s * 2] : 0.0f);
+                buffer.putFloat(valid ? (float) p.uvs[s * 2 + 1] : 0.0f);
+            }
+        }
+        for (int v = 0; v < count; v++) {
+            buffer = drainIfFull(channel, buffer, 4);
+            buffer.putFloat(layout.vertexTile[v]);
+        }
+        int[] indices = layout.indices;
+        boolean reversed = !p.unrealWinding;
+        for (int i = 0; i < indices.length; i += 3) {
+            buffer = drainIfFull(channel, buffer, 12);
+            buffer.putInt(indices[i]);
+            buffer.putInt(indices[reversed ? i + 2 : i + 1]);
+            buffer.putInt(indices[reversed ? i + 1 : i + 2]);
+        }
+        return buffer;
+    }
+
+    /**
+     * Unreal {@code (x, y, z)} to glTF {@code (y, z, -x)}, scaled.
+     */
+    private static void putAxes(ByteBuffer buffer, double[] xyz, int vertex, double scale) {
+        buffer.putFloat(gltfAxis(xyz, vertex, 0, scale));
+        buffer.putFloat(gltfAxis(xyz, vertex, 1, scale));
+        buffer.putFloat(gltfAxis(xyz, vertex, 2, scale));
+    }
+
+    private static float gltfAxis(double[] xyz, int vertex, int axis, double scale) {
+        return switch (axis) {
+            case 0 -> (float) (xyz[vertex * 3 + 1] * scale);
+            case 1 -> (float) (xyz[vertex * 3 + 2] * scale);
+            default -> (float) (-xyz[vertex * 3] * scale);
+        };
+    }
+
+    private static ByteBuffer drainIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static int align4(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * Per-primitive vertex split and byte offsets inside the shared binary buffer.
+     */
+    private static final class Layout {
+        final Primitive primitive;
+        final int[] source;
+        final int[] vertexTile;
+        final int[] indices;
+        final int vertexCount;
+        final int tileCount;
+        final double[] bounds = new double[6];
+        final long positionOffset;
+        final long normalOffset;
+        final long tangentOffset;
+        final long uvOffset;
+        final long tileOffset;
+        final long indexOffset;
+        final long end;
+
+        Layout(Primitive p, long offset) {
+            if (p.triangles.length % 3 != 0) {
+                throw new IllegalArgumentException("Triangle index count is not a multiple of 3: " + p.triangles.length);
+            }
+            this.primitive = p;
+            int inputCount = p.positions.length / 3;
+            int[] triangles = p.triangles;
+
+            // Fans are consecutive triangles sharing their first vertex, as in UnrealTileCsvExporter.
+            int[] tileOfVertex = new int[inputCount];
+            Arrays.fill(tileOfVertex, -1);
+            LongIntHashMap copies = null;
+            int[] extraSource = new int[16];
+            int[] extraTile = new int[16];
+            int extra = 0;
+            int[] remapped = null;
+            int tile = -1;
+            for (int i = 0; i < triangles.length; i++) {
+                int v = triangles[i];
+                if (v < 0 || v >= inputCount) {
+                    throw new IllegalArgumentException("Triangle index " + v + " out of range for " + inputCount + " vertices");
+                }
+                if (i % 3 == 0 && (i == 0 || triangles[i] != triangles[i - 3])) {
+                    tile++;
+                }
+                if (tileOfVertex[v] < 0) {
+                    tileOfVertex[v] = tile;
+                }
+                if (tileOfVertex[v] == tile) {
+                    if (remapped != null) {
+                        remapped[i] = v;
+                    }
+                    continue;
+                }
+                if (remapped == null) {
+                    remapped = Arrays.copyOf(triangles, triangles.length);
+                    copies = new LongIntHashMap(inputCount / 2 + 1);
+                }
+                int copy = copies.putIfAbsent(((long) v << 32) | tile, inputCount + extra);
+                if (copy < 0) {
+                    copy = inputCount + extra;
+                    if (extra == extraSource.length) {
+                        extraSource = Arrays.copyOf(extraSource, extra * 2);
+                        extraTile = Arrays.copyOf(extraTile, extra * 2);
+                    }
+                    extraSource[extra] = v;
+                    extraTile[extra++] = tile;
+                }
+                remapped[i] = copy;
+            }
+            this.tileCount = tile + 1;
+            if (tileCount > MAX_TILE_ID) {
+                throw new IllegalArgumentException("GLB tile ids are float attributes; " + tileCount
+                        + " tiles exceed " + MAX_TILE_ID);
+            }
+            this.vertexCount = inputCount + extra;
+            this.indices = remapped == null ? triangles : remapped;
+            if (extra == 0) {
+                this.source = null;
+                this.vertexTile = tileOfVertex;
+            } else {
+                this.source = new int[vertexCount];
+                this.vertexTile = Arrays.copyOf(tileOfVertex, vertexCount);
+                for (int v = 0; v < inputCount; v++) {
+                    source[v] = v;
+                }
+                System.arraycopy(extraSource, 0, source, inputCount, extra);
+                System.arraycopy(extraTile, 0, vertexTile, inputCount, extra);
+            }
+            for (int v = 0; v < inputCount; v++) {
+                if (vertexTile[v] < 0) {
+                    vertexTile[v] = 0;
+                }
+            }
+
+            Arrays.fill(bounds, 0, 3, Double.POSITIVE_INFINITY);
+            Arrays.fill(bounds, 3, 6, Double.NEGATIVE_INFINITY);
+            for (int v = 0; v < inputCount; v++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    double value = gltfAxis(p.positions, v, axis, 1.0 / UNREAL_UNITS_PER_METER);
+                    bounds[axis] = Math.min(bounds[axis], value);
+                    bounds[3 + axis] = Math.max(bounds[3 + axis], value);
+                }
+            }
+            if (inputCount == 0) {
+                Arrays.fill(bounds, 0.0);
+            }
+
+            long cursor = offset;
+            this.positionOffset = cursor;
+            cursor += 12L * vertexCount;
+            this.normalOffset = cursor;
+            cursor += 12L * vertexCount;
+            if (p.tangents != null) {
+                this.tangentOffset = cursor;
+                cursor += 16L * vertexCount;
+            } else {
+                this.tangentOffset = -1;
+            }
+            if (p.uvs != null) {
+                this.uvOffset = cursor;
+                cursor += 8L * vertexCount;
+            } else {
+                this.uvOffset = -1;
+            }
+            this.tileOffset = cursor;
+            cursor += 4L * vertexCount;
+            this.indexOffset = cursor;
+            cursor += 4L * indices.length;
+            this.end = cursor;
+        }
+    }
+}
@@ -3,22 +3,25 @@ package com.sphererelaxator.unreal;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sphererelaxator.generator.StreamingSphereGenerator;
+import com.sphererelaxator.mesh.LongIntHashMap;
 import com.sphererelaxator.mesh.Vec3;
+import com.sphererelaxator.mesh.VertexWelder;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public final class UnrealTileCsvExporter {
     private static final Pattern VECTOR3_PATTERN = Pattern.compile("\\(X=([-0-9.Ee]+),Y=([-0-9.Ee]+),Z=([-0-9.Ee]+)\\)");
@@ -27,18 +30,43 @@ public final class UnrealTileCsvExporter {
             "\\(TangentX=\\(X=([-0-9.Ee]+),Y=([-0-9.Ee]+),Z=([-0-9.Ee]+)\\),bFlipTangentY=(True|False)\\)"
     );
 
+    private final int threads;
+    private final int chunkTiles;
+
+    public UnrealTileCsvExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public UnrealTileCsvExporter(int threads) {
+        this(threads, 0);
+    }
+
+    /**
+     * @param chunkTiles when positive, tiles are split into spatial chunks of about this many tiles,
+     *                   each written as its own file set next to a manifest (see {@link TileChunkWriter})
+     */
+    public UnrealTileCsvExporter(int threads, int chunkTiles) {
+        this.threads = Math.max(1, threads);
+        this.chunkTiles = Math.max(0, chunkTiles);
+    }
+
     public void export(JsonNode root, Path outputPrefix) throws IOException {
         if (!UnrealFormatProcessor.isUnrealFormat(root)) {
             throw new IllegalArgumentException("Input is not Unreal-like format (expected array with Vertiches/Triangles).");
         }
         ArrayNode items = (ArrayNode) root;
-        for (int i = 0; i < items.size(); i++) {
-            JsonNode item = items.get(i);
-            if (!(item instanceof ObjectNode node)) {
-                continue;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                JsonNode item = items.get(i);
+                if (!(item instanceof ObjectNode node)) {
+                    continue;
+                }
+                String suffix = items.size() > 1 ? "_item" + i : "";
+                exportOne(node, appendSuffix(outputPrefix, suffix), pool);
             }
-            String suffix = items.size() > 1 ? "_item" + i : "";
-            exportOne(node, appendSuffix(outputPrefix, suffix));
+        } finally {
+            pool.shutdown();
         }
     }
 
@@ -48,40 +76,61 @@ public final class UnrealTileCsvExporter {
                           List<Vec3> normals,
                           List<double[]> uvs,
                           List<Vec3> tangents) throws IOException {
-        List<Vec2> uvList = null;
+        double[] uvArray = null;
         if (uvs != null) {
-            uvList = new ArrayList<>(uvs.size());
-            for (double[] uv : uvs) {
-                if (uv == null || uv.length < 2) {
-                    uvList.add(null);
-                } else {
-                    uvList.add(new Vec2(uv[0], uv[1]));
-                }
+            uvArray = new double[uvs.size() * 2];
+            for (int i = 0; i < uvs.size(); i++) {
+                double[] uv = uvs.get(i);
+                boolean valid = uv != null && uv.length >= 2;
+                uvArray[i * 2] = valid ? uv[0] : Double.NaN;
+                uvArray[i * 2 + 1] = valid ? uv[1] : Double.NaN;
             }
         }
+        exportRaw(outputPrefix, pack(vertices), triangles, normals == null ? null : pack(normals), uvArray,
+                tangents == null ? null : pack(tangents));
+    }
 
-        List<TangentData> tangentList = null;
-        if (tangents != null) {
-            tangentList = new ArrayList<>(tangents.size());
-            for (Vec3 tangent : tangents) {
-                tangentList.add(tangent == null ? null : new TangentData(tangent, false));
-            }
+    /**
+     * Writes the tile CSV pack straight from packed arrays: {@code xyz} per vertex for positions,
+     * normals and tangents, {@code uv} per vertex for UVs. Optional arrays may be {@code null};
+     * a {@code NaN} entry marks a missing UV or tangent.
+     */
+    public void exportRaw(Path outputPrefix,
+                          double[] positions,
+                          int[] triangles,
+                          double[] normals,
+                          double[] uvs,
+                          double[] tangents) throws IOException {
+        exportRaw(outputPrefix, positions, triangles, normals, uvs, tangents, null);
+    }
+
+    public void exportRaw(Path outputPrefix,
+                          double[] positions,
+                          int[] triangles,
+                          double[] normals,
+                          double[] uvs,
+                          double[] tangents,
+                          boolean[] tangentFlip) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            TileBuildData data = buildTiles(positions, triangles, normals, uvs, tangents, tangentFlip, pool);
+            write(outputPrefix, data, pool);
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        TileBuildData data = buildTiles(vertices, triangles, normals, uvList, tangentList);
-        writeTilesCsv(outputPrefix, data);
-        writeTileCentersCsv(outputPrefix, data);
-        writeTileVerticesCsv(outputPrefix, data);
-        writeTileVertexPositionsCsv(outputPrefix, data);
-        writeTileVertexNormalsCsv(outputPrefix, data);
-        writeTileVertexUvsCsv(outputPrefix, data);
-        writeTileVertexTangentsCsv(outputPrefix, data);
-        writeTileTrianglesCsv(outputPrefix, data);
-        writeTriangleToTileCsv(outputPrefix, data);
-        writeTileNeighborsCsv(outputPrefix, data);
+    private void exportOne(ObjectNode node, Path prefix, ForkJoinPool pool) throws IOException {
+        UnrealGlbExporter.Primitive item = parseItem(node);
+        TileBuildData data = buildTiles(item.positions(), item.triangles(), item.normals(), item.uvs(),
+                item.tangents(), item.tangentFlip(), pool);
+        write(prefix, data, pool);
     }
 
-    private void exportOne(ObjectNode node, Path prefix) throws IOException {
+    /**
+     * Packed arrays of one Unreal-like item; {@code Normals}, UVs and {@code Tangents} are optional.
+     */
+    static UnrealGlbExporter.Primitive parseItem(ObjectNode node) {
         ArrayNode vertArray = requiredArray(node, "Vertiches");
         ArrayNode triArray = requiredArray(node, "Triangles");
         ArrayNode uvArray = tryUvArray(node);
@@ -92,13 +141,37 @@ public final class UnrealTileCsvExporter {
                 ? (ArrayNode) node.get("Tangents")
                 : null;
 
-        List<Vec3> vertices = parseVertices(vertArray);
-        List<Vec3> normals = normalArray != null ? parseVertices(normalArray) : null;
+        double[] vertices = parseVertices(vertArray);
+        double[] normals = normalArray != null ? parseVertices(normalArray) : null;
         int[] triangles = parseTriangles(triArray);
-        List<Vec2> uvs = uvArray != null ? parseUvs(uvArray) : null;
-        List<TangentData> tangents = tangentArray != null ? parseTangents(tangentArray) : null;
+        double[] uvs = uvArray != null ? parseUvs(uvArray) : null;
+        double[] tangents = null;
+        boolean[] tangentFlip = null;
+        if (tangentArray != null) {
+            tangents = new double[tangentArray.size() * 3];
+            tangentFlip = new boolean[tangentArray.size()];
+            parseTangents(tangentArray, tangents, tangentFlip);
+        }
+        return new UnrealGlbExporter.Primitive(vertices, triangles, normals, uvs, tangents, tangentFlip, true);
+    }
 
-        TileBuildData data = buildTiles(vertices, triangles, normals, uvs, tangents);
+    /**
+     * Opens the ten tile CSV files for incremental writing; rows arrive patch by patch from
+     * {@link StreamingSphereGenerator}, so they are grouped by patch rather than sorted by id.
+     */
+    public PatchCsvWriter openPatchWriter(Path outputPrefix) throws IOException {
+        return new PatchCsvWriter(outputPrefix, threads);
+    }
+
+    private void write(Path prefix, TileBuildData data, ForkJoinPool pool) throws IOException {
+        if (chunkTiles > 0) {
+            TileChunkWriter.write(prefix, data, chunkTiles, pool);
+        } else {
+            writeAll(prefix, data);
+        }
+    }
+
+    private static void writeAll(Path prefix, TileBuildData data) throws IOException {
         writeTilesCsv(prefix, data);
         writeTileCentersCsv(prefix, data);
         writeTileVerticesCsv(prefix, data);
@@ -111,6 +184,17 @@ public final class UnrealTileCsvExporter {
         writeTileNeighborsCsv(prefix, data);
     }
 
+    private static double[] pack(List<Vec3> values) {
+        double[] out = new double[values.size() * 3];
+        for (int i = 0; i < values.size(); i++) {
+            Vec3 v = values.get(i);
+            out[i * 3] = v == null ? Double.NaN : v.x();
+            out[i * 3 + 1] = v == null ? Double.NaN : v.y();
+            out[i * 3 + 2] = v == null ? Double.NaN : v.z();
+        }
+        return out;
+    }
+
     private static Path appendSuffix(Path prefix, String suffix) {
         Path parent = prefix.getParent();
         String base = prefix.getFileName() == null ? "tiles" : prefix.getFileName().toString();
@@ -118,97 +202,140 @@ public final class UnrealTileCsvExporter {
         return parent == null ? Path.of(name) : parent.resolve(name);
     }
 
-    private static TileBuildData buildTiles(List<Vec3> vertices,
+    private static TileBuildData buildTiles(double[] positions,
                                             int[] triangles,
-                                            List<Vec3> normals,
-                                            List<Vec2> uvs,
-                                            List<TangentData> tangents) {
-        List<TileInfo> tiles = new ArrayList<>();
+                                            double[] normals,
+                                            double[] uvs,
+                                            double[] tangents,
+                                            boolean[] tangentFlip,
+                                            ForkJoinPool pool) {
         int triangleCount = triangles.length / 3;
         int[] triangleToTile = new int[triangleCount];
-        for (int i = 0; i < triangleToTile.length; i++) {
-            triangleToTile[i] = -1;
-        }
+        Arrays.fill(triangleToTile, -1);
 
+        int[] fanStarts = new int[triangleCount + 1];
+        int tileCount = 0;
         int i = 0;
-        int triIndex = 0;
-        int tileId = 0;
         while (i + 2 < triangles.length) {
             int center = triangles[i];
-            List<int[]> pairs = new ArrayList<>();
-            List<Integer> tileTriangles = new ArrayList<>();
+            fanStarts[tileCount++] = i / 3;
             while (i + 2 < triangles.length && triangles[i] == center) {
-                pairs.add(new int[]{triangles[i + 1], triangles[i + 2]});
-                tileTriangles.add(triIndex);
-                triangleToTile[triIndex++] = tileId;
                 i += 3;
             }
-            List<Integer> ring = buildRingFromPairs(pairs);
-            String type = ring.size() == 5 ? "PENT" : "HEX";
-            Vec3 centerPos = vertices.get(center);
-            tiles.add(new TileInfo(tileId, type, center, centerPos, ring, tileTriangles));
-            tileId++;
         }
-
-        Map<String, List<Integer>> edgeToTiles = new LinkedHashMap<>();
+        fanStarts[tileCount] = i / 3;
+
+        TileInfo[] tiles = new TileInfo[tileCount];
+        pool.submit(() -> IntStream.range(0, tiles.length).parallel().forEach(tileId -> {
+            int first = fanStarts[tileId];
+            int end = fanStarts[tileId + 1];
+            Arrays.fill(triangleToTile, first, end, tileId);
+            int center = triangles[first * 3];
+            int[] ring = buildRingFromFan(triangles, first, end);
+            String type = ring.length == 5 ? "PENT" : "HEX";
+            Vec3 centerPos = new Vec3(positions[center * 3], positions[center * 3 + 1], positions[center * 3 + 2]);
+            tiles[tileId] = new TileInfo(tileId, type, center, centerPos, ring, first, end - first);
+        })).join();
+
+        int[] welded = VertexWelder.weld(positions, VertexWelder.DEFAULT_TOLERANCE, pool).originalToUnique();
+        int ringEdgeCount = 0;
         for (TileInfo t : tiles) {
-            int n = t.ringVertexIndices.size();
+            ringEdgeCount += t.ringVertexIndices.length;
+        }
+        LongIntHashMap edgeIndex = new LongIntHashMap(ringEdgeCount / 2 + 1);
+        int[] edgeHead = new int[ringEdgeCount];
+        int[] entryNext = new int[ringEdgeCount];
+        int[] entryTile = new int[ringEdgeCount];
+        int entryCount = 0;
+        for (TileInfo t : tiles) {
+            int[] ring = t.ringVertexIndices;
+            int n = ring.length;
             for (int k = 0; k < n; k++) {
-                int a = t.ringVertexIndices.get(k);
-                int b = t.ringVertexIndices.get((k + 1) % n);
-                String key = edgeKeyByPosition(vertices.get(a), vertices.get(b));
-                edgeToTiles.computeIfAbsent(key, x -> new ArrayList<>(2)).add(t.tileId);
+                long key = LongIntHashMap.edgeKey(welded[ring[k]], welded[ring[(k + 1) % n]]);
+                int edge = edgeIndex.putIfAbsent(key, edgeIndex.size());
+                if (edge < 0) {
+                    edge = edgeIndex.size() - 1;
+                    edgeHead[edge] = -1;
+                }
+                entryTile[entryCount] = t.tileId;
+                entryNext[entryCount] = edgeHead[edge];
+                edgeHead[edge] = entryCount++;
             }
         }
 
-        Map<Integer, Set<Integer>> neighbors = new HashMap<>();
-        for (TileInfo t : tiles) {
-            neighbors.put(t.tileId, new HashSet<>());
-        }
-        for (List<Integer> sharedRaw : edgeToTiles.values()) {
-            List<Integer> shared = sharedRaw.stream().distinct().toList();
-            if (shared.size() < 2) {
-                continue;
-            }
-            for (int a = 0; a < shared.size(); a++) {
-                for (int b = a + 1; b < shared.size(); b++) {
-                    int ta = shared.get(a);
-                    int tb = shared.get(b);
-                    neighbors.get(ta).add(tb);
-                    neighbors.get(tb).add(ta);
+        long[] pairs = new long[16];
+        int pairCount = 0;
+        for (int edge = 0; edge < edgeIndex.size(); edge++) {
+            for (int a = edgeHead[edge]; a >= 0; a = entryNext[a]) {
+                for (int b = entryNext[a]; b >= 0; b = entryNext[b]) {
+                    int ta = entryTile[a];
+                    int tb = entryTile[b];
+                    if (ta == tb) {
+                        continue;
+                    }
+                    if (pairCount + 2 > pairs.length) {
+                        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    }
+                    pairs[pairCount++] = ((long) ta << 32) | tb;
+                    pairs[pairCount++] = ((long) tb << 32) | ta;
                 }
             }
         }
-        return new TileBuildData(tiles, triangleToTile, neighbors, triangles, vertices, normals, uvs, tangents);
-    }
+        long[] sortedPairs = Arrays.copyOf(pairs, pairCount);
+        Arrays.parallelSort(sortedPairs);
 
-    private static String edgeKeyByPosition(Vec3 a, Vec3 b) {
-        String ka = String.format(Locale.US, "%.6f,%.6f,%.6f", a.x(), a.y(), a.z());
-        String kb = String.format(Locale.US, "%.6f,%.6f,%.6f", b.x(), b.y(), b.z());
-        return ka.compareTo(kb) <= 0 ? ka + "|" + kb : kb + "|" + ka;
+        int[] neighborOffsets = new int[tileCount + 1];
+        int[] neighborIds = new int[sortedPairs.length];
+        int neighborCount = 0;
+        for (int k = 0; k < sortedPairs.length; k++) {
+            if (k > 0 && sortedPairs[k] == sortedPairs[k - 1]) {
+                continue;
+            }
+            neighborOffsets[(int) (sortedPairs[k] >>> 32) + 1]++;
+            neighborIds[neighborCount++] = (int) sortedPairs[k];
+        }
+        for (int t = 0; t < tileCount; t++) {
+            neighborOffsets[t + 1] += neighborOffsets[t];
+        }
+        return new TileBuildData(
+                tiles,
+                triangleToTile,
+                neighborOffsets,
+                Arrays.copyOf(neighborIds, neighborCount),
+                triangles,
+                positions,
+                normals,
+                uvs,
+                tangents,
+                tangentFlip
+        );
     }
 
-    private static List<Integer> buildRingFromPairs(List<int[]> pairs) {
-        if (pairs.isEmpty()) {
-            return List.of();
-        }
-        Map<Integer, Integer> nextByCurrent = new HashMap<>();
-        for (int[] p : pairs) {
-            nextByCurrent.put(p[1], p[0]);
+    private static int[] buildRingFromFan(int[] triangles, int firstTriangle, int endTriangle) {
+        int pairCount = endTriangle - firstTriangle;
+        if (pairCount == 0) {
+            return new int[0];
         }
-        int start = pairs.get(0)[1];
-        List<Integer> ring = new ArrayList<>();
-        ring.add(start);
+        int start = triangles[firstTriangle * 3 + 2];
+        int[] ring = new int[pairCount + 1];
+        int size = 0;
+        ring[size++] = start;
         int current = start;
-        for (int k = 0; k < pairs.size(); k++) {
-            Integer next = nextByCurrent.get(current);
-            if (next == null || next == start) {
+        for (int k = 0; k < pairCount; k++) {
+            int next = -1;
+            for (int tri = endTriangle - 1; tri >= firstTriangle; tri--) {
+                if (triangles[tri * 3 + 2] == current) {
+                    next = triangles[tri * 3 + 1];
+                    break;
+                }
+            }
+            if (next < 0 || next == start) {
                 break;
             }
-            ring.add(next);
+            ring[size++] = next;
             current = next;
         }
-        return ring;
+        return size == ring.length ? ring : Arrays.copyOf(ring, size);
     }
 
     private static void writeTilesCsv(Path prefix, TileBuildData data) throws IOException {
@@ -219,7 +346,7 @@ public final class UnrealTileCsvExporter {
                     Locale.US,
                     "%d,%s,%d,%d,%d",
                     t.tileId, t.type, t.centerVertex,
-                    t.ringVertexIndices.size(), t.triangleIndices.size()
+                    t.ringVertexIndices.length, t.triangleCount
             ));
         }
         Files.write(Path.of(prefix + "_tiles.csv"), lines, StandardCharsets.UTF_8);
@@ -242,8 +369,8 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,vertex_order,vertex_index");
         for (TileInfo t : data.tiles) {
-            for (int i = 0; i < t.ringVertexIndices.size(); i++) {
-                int vi = t.ringVertexIndices.get(i);
+            for (int i = 0; i < t.ringVertexIndices.length; i++) {
+                int vi = t.ringVertexIndices[i];
                 lines.add(String.format(Locale.US, "%d,%d,%d", t.tileId, i, vi));
             }
         }
@@ -254,12 +381,12 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,vertex_order,vertex_index,x,y,z");
         for (TileInfo t : data.tiles) {
-            for (int i = 0; i < t.ringVertexIndices.size(); i++) {
-                int vi = t.ringVertexIndices.get(i);
-                Vec3 p = data.vertices.get(vi);
+            for (int i = 0; i < t.ringVertexIndices.length; i++) {
+                int vi = t.ringVertexIndices[i];
+                double[] p = data.positions;
                 lines.add(String.format(
                         Locale.US, "%d,%d,%d,%.9f,%.9f,%.9f",
-                        t.tileId, i, vi, p.x(), p.y(), p.z()
+                        t.tileId, i, vi, p[vi * 3], p[vi * 3 + 1], p[vi * 3 + 2]
                 ));
             }
         }
@@ -270,11 +397,12 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,vertex_order,vertex_index,nx,ny,nz");
         for (TileInfo t : data.tiles) {
-            for (int i = 0; i < t.ringVertexIndices.size(); i++) {
-                int vi = t.ringVertexIndices.get(i);
-                Vec3 n = data.normals != null && vi < data.normals.size()
-                        ? data.normals.get(vi)
-                        : data.vertices.get(vi).normalize();
+            for (int i = 0; i < t.ringVertexIndices.length; i++) {
+                int vi = t.ringVertexIndices[i];
+                Vec3 n = data.normals != null && vi * 3 < data.normals.length
+                        ? new Vec3(data.normals[vi * 3], data.normals[vi * 3 + 1], data.normals[vi * 3 + 2])
+                        : new Vec3(data.positions[vi * 3], data.positions[vi * 3 + 1], data.positions[vi * 3 + 2])
+                                .normalize();
                 lines.add(String.format(
                         Locale.US, "%d,%d,%d,%.9f,%.9f,%.9f",
                         t.tileId, i, vi, n.x(), n.y(), n.z()
@@ -288,11 +416,11 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,vertex_order,vertex_index,u,v");
         for (TileInfo t : data.tiles) {
-            for (int i = 0; i < t.ringVertexIndices.size(); i++) {
-                int vi = t.ringVertexIndices.get(i);
-                Vec2 uv = data.uvs != null && vi < data.uvs.size() ? data.uvs.get(vi) : null;
-                String u = uv == null ? "" : String.format(Locale.US, "%.9f", uv.u);
-                String v = uv == null ? "" : String.format(Locale.US, "%.9f", uv.v);
+            for (int i = 0; i < t.ringVertexIndices.length; i++) {
+                int vi = t.ringVertexIndices[i];
+                boolean hasUv = data.uvs != null && vi * 2 < data.uvs.length && !Double.isNaN(data.uvs[vi * 2]);
+                String u = hasUv ? String.format(Locale.US, "%.9f", data.uvs[vi * 2]) : "";
+                String v = hasUv ? String.format(Locale.US, "%.9f", data.uvs[vi * 2 + 1]) : "";
                 lines.add(String.format(Locale.US, "%d,%d,%d,%s,%s", t.tileId, i, vi, u, v));
             }
         }
@@ -303,16 +431,17 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,vertex_order,vertex_index,tangent_x,tangent_y,tangent_z,flip_y");
         for (TileInfo t : data.tiles) {
-            for (int i = 0; i < t.ringVertexIndices.size(); i++) {
-                int vi = t.ringVertexIndices.get(i);
-                TangentData tan = data.tangents != null && vi < data.tangents.size() ? data.tangents.get(vi) : null;
-                if (tan == null) {
+            for (int i = 0; i < t.ringVertexIndices.length; i++) {
+                int vi = t.ringVertexIndices[i];
+                double[] tan = data.tangents;
+                if (tan == null || vi * 3 >= tan.length || Double.isNaN(tan[vi * 3])) {
                     lines.add(String.format(Locale.US, "%d,%d,%d,,,,", t.tileId, i, vi));
                 } else {
+                    boolean flip = data.tangentFlip != null && data.tangentFlip[vi];
                     lines.add(String.format(
                             Locale.US,
                             "%d,%d,%d,%.9f,%.9f,%.9f,%s",
-                            t.tileId, i, vi, tan.tangent.x(), tan.tangent.y(), tan.tangent.z(), tan.flipY ? "1" : "0"
+                            t.tileId, i, vi, tan[vi * 3], tan[vi * 3 + 1], tan[vi * 3 + 2], flip ? "1" : "0"
                     ));
                 }
             }
@@ -324,8 +453,8 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,tile_triangle_order,triangle_index,v0,v1,v2");
         for (TileInfo t : data.tiles) {
-            for (int i = 0; i < t.triangleIndices.size(); i++) {
-                int tri = t.triangleIndices.get(i);
+            for (int i = 0; i < t.triangleCount; i++) {
+                int tri = t.firstTriangle + i;
                 int base = tri * 3;
                 lines.add(String.format(
                         Locale.US, "%d,%d,%d,%d,%d,%d",
@@ -349,9 +478,8 @@ public final class UnrealTileCsvExporter {
         List<String> lines = new ArrayList<>();
         lines.add("tile_id,neighbor_tile_id");
         for (TileInfo t : data.tiles) {
-            List<Integer> sorted = data.neighbors.get(t.tileId).stream().sorted().toList();
-            for (int n : sorted) {
-                lines.add(t.tileId + "," + n);
+            for (int k = data.neighborOffsets[t.tileId]; k < data.neighborOffsets[t.tileId + 1]; k++) {
+                lines.add(t.tileId + "," + data.neighborIds[k]);
             }
         }
         Files.write(Path.of(prefix + "_tile_neighbors.csv"), lines, StandardCharsets.UTF_8);
@@ -378,41 +506,47 @@ public final class UnrealTileCsvExporter {
         return null;
     }
 
-    private static List<Vec3> parseVertices(ArrayNode array) {
-        List<Vec3> result = new ArrayList<>(array.size());
-        for (JsonNode n : array) {
-            result.add(parseVector3(n.asText()));
+    private static double[] parseVertices(ArrayNode array) {
+        double[] result = new double[array.size() * 3];
+        for (int i = 0; i < array.size(); i++) {
+            Matcher m = VECTOR3_PATTERN.matcher(array.get(i).asText());
+            if (!m.find()) {
+                throw new IllegalArgumentException("Cannot parse vector3: " + array.get(i).asText());
+            }
+            result[i * 3] = Double.parseDouble(m.group(1));
+            result[i * 3 + 1] = Double.parseDouble(m.group(2));
+            result[i * 3 + 2] = Double.parseDouble(m.group(3));
         }
         return result;
     }
 
-    private static List<Vec2> parseUvs(ArrayNode array) {
-        List<Vec2> result = new ArrayList<>(array.size());
-        for (JsonNode n : array) {
-            result.add(parseVector2(n.asText()));
+    private static double[] parseUvs(ArrayNode array) {
+        double[] result = new double[array.size() * 2];
+        for (int i = 0; i < array.size(); i++) {
+            Matcher m = VECTOR2_PATTERN.matcher(array.get(i).asText());
+            if (!m.find()) {
+                throw new IllegalArgumentException("Cannot parse vector2: " + array.get(i).asText());
+            }
+            result[i * 2] = Double.parseDouble(m.group(1));
+            result[i * 2 + 1] = Double.parseDouble(m.group(2));
         }
         return result;
     }
 
-    private static List<TangentData> parseTangents(ArrayNode array) {
-        List<TangentData> result = new ArrayList<>(array.size());
-        for (JsonNode n : array) {
-            String raw = n.asText();
-            Matcher m = TANGENT_PATTERN.matcher(raw);
+    private static void parseTangents(ArrayNode array, double[] tangents, boolean[] flip) {
+        for (int i = 0; i < array.size(); i++) {
+            Matcher m = TANGENT_PATTERN.matcher(array.get(i).asText());
             if (m.find()) {
-                result.add(new TangentData(
-                        new Vec3(
-                                Double.parseDouble(m.group(1)),
-                                Double.parseDouble(m.group(2)),
-                                Double.parseDouble(m.group(3))
-                        ),
-                        "True".equals(m.group(4))
-                ));
+                tangents[i * 3] = Double.parseDouble(m.group(1));
+                tangents[i * 3 + 1] = Double.parseDouble(m.group(2));
+                tangents[i * 3 + 2] = Double.parseDouble(m.group(3));
+                flip[i] = "True".equals(m.group(4));
             } else {
-                result.add(null);
+                tangents[i * 3] = Double.NaN;
+                tangents[i * 3 + 1] = Double.NaN;
+                tangents[i * 3 + 2] = Double.NaN;
             }
         }
-        return result;
     }
 
     private static int[] parseTriangles(ArrayNode array) {
@@ -423,95 +557,205 @@ public final class UnrealTileCsvExporter {
         return result;
     }
 
-    private static Vec3 parseVector3(String raw) {
-        Matcher m = VECTOR3_PATTERN.matcher(raw);
-        if (!m.find()) {
-            throw new IllegalArgumentException("Cannot parse vector3: " + raw);
+    public static final class PatchCsvWriter implements StreamingSphereGenerator.PatchSink, Closeable {
+        private static final String[][] FILES = {
+                {"_tiles.csv", "tile_id,type,center_vertex,vertex_count,triangle_count"},
+                {"_tile_centers.csv", "tile_id,center_vertex,center_x,center_y,center_z"},
+                {"_tile_vertices.csv", "tile_id,vertex_order,vertex_index"},
+                {"_tile_vertex_positions.csv", "tile_id,vertex_order,vertex_index,x,y,z"},
+                {"_tile_vertex_normals.csv", "tile_id,vertex_order,vertex_index,nx,ny,nz"},
+                {"_tile_vertex_uv.csv", "tile_id,vertex_order,vertex_index,u,v"},
+                {"_tile_vertex_tangents.csv", "tile_id,vertex_order,vertex_index,tangent_x,tangent_y,tangent_z,flip_y"},
+                {"_tile_triangles.csv", "tile_id,tile_triangle_order,triangle_index,v0,v1,v2"},
+                {"_triangle_to_tile.csv", "triangle_index,tile_id"},
+                {"_tile_neighbors.csv", "tile_id,neighbor_tile_id"}
+        };
+
+        private final BufferedWriter[] writers = new BufferedWriter[FILES.length];
+        private final ForkJoinPool pool;
+        private long tileCount;
+        private long triangleCount;
+
+        private PatchCsvWriter(Path prefix, int threads) throws IOException {
+            this.pool = new ForkJoinPool(threads);
+            try {
+                for (int file = 0; file < FILES.length; file++) {
+                    writers[file] = Files.newBufferedWriter(Path.of(prefix + FILES[file][0]), StandardCharsets.UTF_8);
+                    writers[file].write(FILES[file][1]);
+                    writers[file].newLine();
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void accept(StreamingSphereGenerator.TilePatch patch) throws IOException {
+            String[] chunks = pool.submit(() -> IntStream.range(0, FILES.length)
+                    .parallel()
+                    .mapToObj(file -> formatRows(file, patch))
+                    .toArray(String[]::new)).join();
+            for (int file = 0; file < FILES.length; file++) {
+                writers[file].write(chunks[file]);
+            }
+            tileCount += patch.tileCount();
+            triangleCount += patch.ringOffsets()[patch.tileCount()];
         }
-        return new Vec3(
-                Double.parseDouble(m.group(1)),
-                Double.parseDouble(m.group(2)),
-                Double.parseDouble(m.group(3))
-        );
-    }
 
-    private static Vec2 parseVector2(String raw) {
-        Matcher m = VECTOR2_PATTERN.matcher(raw);
-        if (!m.find()) {
-            throw new IllegalArgumentException("Cannot parse vector2: " + raw);
+        public long tileCount() {
+            return tileCount;
+        }
+
+        public long triangleCount() {
+            return triangleCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pool.shutdown();
+            IOException failure = null;
+            for (BufferedWriter writer : writers) {
+                if (writer == null) {
+                    continue;
+                }
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private static String formatRows(int file, StreamingSphereGenerator.TilePatch p) {
+            StringBuilder out = new StringBuilder();
+            String newline = System.lineSeparator();
+            for (int t = 0; t < p.tileCount(); t++) {
+                long tileId = p.tileIds()[t];
+                int first = p.ringOffsets()[t];
+                int size = p.ringOffsets()[t + 1] - first;
+                if (file == 0) {
+                    out.append(String.format(
+                            Locale.US, "%d,%s,%d,%d,%d",
+                            tileId, size == 5 ? "PENT" : "HEX", tileId, size, size
+                    )).append(newline);
+                    continue;
+                }
+                if (file == 1) {
+                    double[] c = p.centers();
+                    out.append(String.format(
+                            Locale.US, "%d,%d,%.9f,%.9f,%.9f",
+                            tileId, tileId, c[t * 3], c[t * 3 + 1], c[t * 3 + 2]
+                    )).append(newline);
+                    continue;
+                }
+                if (file == 9) {
+                    for (int k = p.neighborOffsets()[t]; k < p.neighborOffsets()[t + 1]; k++) {
+                        out.append(tileId).append(',').append(p.neighborIds()[k]).append(newline);
+                    }
+                    continue;
+                }
+                for (int order = 0; order < size; order++) {
+                    long triangle = p.firstTriangles()[t] + order;
+                    if (file == 7) {
+                        out.append(String.format(
+                                Locale.US, "%d,%d,%d,%d,%d,%d",
+                                tileId, order, triangle, tileId,
+                                p.ringVertexIds()[first + order], p.ringVertexIds()[first + (order + 1) % size]
+                        )).append(newline);
+                        continue;
+                    }
+                    if (file == 8) {
+                        out.append(triangle).append(',').append(tileId).append(newline);
+                        continue;
+                    }
+                    // Fans arrive counter-clockwise; tile rings use the order buildRingFromFan gives a closed fan.
+                    int k = first + (1 - order + size) % size;
+                    long vi = p.ringVertexIds()[k];
+                    if (file == 2) {
+                        out.append(String.format(Locale.US, "%d,%d,%d", tileId, order, vi));
+                    } else if (file == 3 || file == 4 || file == 6) {
+                        double[] v = file == 3 ? p.ringPositions() : (file == 4 ? p.ringNormals() : p.ringTangents());
+                        out.append(String.format(
+                                Locale.US, "%d,%d,%d,%.9f,%.9f,%.9f",
+                                tileId, order, vi, v[k * 3], v[k * 3 + 1], v[k * 3 + 2]
+                        ));
+                        if (file == 6) {
+                            out.append(",0");
+                        }
+                    } else {
+                        String u = String.format(Locale.US, "%.9f", p.ringUvs()[k * 2]);
+                        String v = String.format(Locale.US, "%.9f", p.ringUvs()[k * 2 + 1]);
+                        out.append(String.format(Locale.US, "%d,%d,%d,%s,%s", tileId, order, vi, u, v));
+                    }
+                    out.append(newline);
+                }
+            }
+            return out.toString();
         }
-        return new Vec2(Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2)));
     }
 
-    private static final class TileBuildData {
-        final List<TileInfo> tiles;
+    static final class TileBuildData {
+        final TileInfo[] tiles;
         final int[] triangleToTile;
-        final Map<Integer, Set<Integer>> neighbors;
+        final int[] neighborOffsets;
+        final int[] neighborIds;
         final int[] triangles;
-        final List<Vec3> vertices;
-        final List<Vec3> normals;
-        final List<Vec2> uvs;
-        final List<TangentData> tangents;
+        final double[] positions;
+        final double[] normals;
+        final double[] uvs;
+        final double[] tangents;
+        final boolean[] tangentFlip;
 
-        TileBuildData(List<TileInfo> tiles,
+        TileBuildData(TileInfo[] tiles,
                       int[] triangleToTile,
-                      Map<Integer, Set<Integer>> neighbors,
+                      int[] neighborOffsets,
+                      int[] neighborIds,
                       int[] triangles,
-                      List<Vec3> vertices,
-                      List<Vec3> normals,
-                      List<Vec2> uvs,
-                      List<TangentData> tangents) {
+                      double[] positions,
+                      double[] normals,
+                      double[] uvs,
+                      double[] tangents,
+                      boolean[] tangentFlip) {
             this.tiles = tiles;
             this.triangleToTile = triangleToTile;
-            this.neighbors = neighbors;
+            this.neighborOffsets = neighborOffsets;
+            this.neighborIds = neighborIds;
             this.triangles = triangles;
-            this.vertices = vertices;
+            this.positions = positions;
             this.normals = normals;
             this.uvs = uvs;
             this.tangents = tangents;
+            this.tangentFlip = tangentFlip;
         }
     }
 
-    private static final class TileInfo {
+    static final class TileInfo {
         final int tileId;
         final String type;
         final int centerVertex;
         final Vec3 center;
-        final List<Integer> ringVertexIndices;
-        final List<Integer> triangleIndices;
+        final int[] ringVertexIndices;
+        final int firstTriangle;
+        final int triangleCount;
 
         TileInfo(int tileId,
                  String type,
                  int centerVertex,
                  Vec3 center,
-                 List<Integer> ringVertexIndices,
-                 List<Integer> triangleIndices) {
+                 int[] ringVertexIndices,
+                 int firstTriangle,
+                 int triangleCount) {
             this.tileId = tileId;
             this.type = type;
             this.centerVertex = centerVertex;
             this.center = center;
             this.ringVertexIndices = ringVertexIndices;
-            this.triangleIndices = triangleIndices;
-        }
-    }
-
-    private static final class Vec2 {
-        final double u;
-        final double v;
-
-        Vec2(double u, double v) {
-            this.u = u;
-            this.v = v;
-        }
-    }
-
-    private static final class TangentData {
-        final Vec3 tangent;
-        final boolean flipY;
-
-        TangentData(Vec3 tangent, boolean flipY) {
-            this.tangent = tangent;
-            this.flipY = flipY;
+            this.firstTriangle = firstTriangle;
+            this.triangleCount = triangleCount;
         }
     }
 }